@@ -3,13 +3,16 @@ package com.github.taffy128s.btrees;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * B Plus Tree implementation.
  *
- * Currently only support INSERT, FIND, RANGE FIND (no deletion),
- * since deletion is not needed in whole project.
+ * Support INSERT, FIND, RANGE FIND and REMOVE. A data block or tree node
+ * left less than half full by REMOVE borrows from a sibling, or is merged
+ * with it when the sibling has nothing to spare.
  *
  * @param <K> key type.
  * @param <V> value type.
@@ -53,6 +56,22 @@ public class BPlusTree<K, V> {
             }
         }
 
+        /**
+         * Remove data pair with corresponding key from this data block.
+         *
+         * @param key key to remove.
+         * @return 1 if a data removed, 0 if key not found.
+         */
+        public int remove(K key) {
+            int index = Collections.binarySearch(mKeys, key, mComparator);
+            if (index < 0) {
+                return 0;
+            }
+            mKeys.remove(index);
+            mValues.remove(index);
+            return 1;
+        }
+
         /**
          * Append a data pair(key, value) directly into the end of this data block.
          *
@@ -99,6 +118,9 @@ public class BPlusTree<K, V> {
             mNext = rightNode;
             rightNode.mNext = originNext;
             rightNode.mPrev = this;
+            if (originNext != null) {
+                originNext.mPrev = rightNode;
+            }
             return rightNode;
         }
 
@@ -753,6 +775,54 @@ public class BPlusTree<K, V> {
         return treeData.get(key);
     }
 
+    /**
+     * Remove data pair with corresponding key from this tree.
+     * Data blocks and tree nodes on the path which become less than half
+     * full are rebalanced with their siblings, from bottom to root.
+     *
+     * @param key key to remove.
+     * @return value removed, null if key not found.
+     */
+    public V remove(K key) {
+        ArrayList<BPlusTreeNode> path = new ArrayList<>();
+        ArrayList<Integer> indices = new ArrayList<>();
+        BPlusTreeNode treeNode = mRoot;
+        while (true) {
+            int index = Collections.binarySearch(treeNode.getKeys(), key, mComparator);
+            if (index < 0) {
+                index = (-1) * index - 1;
+            } else {
+                ++index;
+            }
+            path.add(treeNode);
+            indices.add(index);
+            if (treeNode.isEmpty() || treeNode.getNext(index) == null) {
+                break;
+            }
+            treeNode = treeNode.getNext(index);
+        }
+        int index = indices.get(indices.size() - 1);
+        BPlusTreeData treeData = treeNode.getValue(index);
+        V value = treeData.get(key);
+        if (treeData.remove(key) == 0) {
+            return null;
+        }
+        --mSize;
+        if (treeData.size() < mCapacity / 2 && !treeNode.isEmpty()) {
+            rebalanceData(treeNode, index);
+        }
+        for (int level = path.size() - 1; level > 0; --level) {
+            if (path.get(level).getKeys().size() >= (mOrder - 1) / 2) {
+                break;
+            }
+            rebalanceNode(path.get(level - 1), indices.get(level - 1));
+        }
+        if (mRoot.isEmpty() && mRoot.getNext(0) != null) {
+            mRoot = mRoot.getNext(0);
+        }
+        return value;
+    }
+
     /**
      * Get all keys.
      *
@@ -962,6 +1032,10 @@ public class BPlusTree<K, V> {
             if (treeData.size() > 0 && mComparator.compare(key, treeData.getKey(0)) <= 0) {
                 return ans;
             }
+            if (treeData.size() == 0) {
+                treeData = treeData.getNext();
+                continue;
+            }
             int startIndex = 0;
             int endIndex;
             K lastKey = treeData.getKeys().get(treeData.getKeys().size() - 1);
@@ -992,6 +1066,10 @@ public class BPlusTree<K, V> {
             if (treeData.size() > 0 && mComparator.compare(key, treeData.getKey(0)) <= 0) {
                 return ans;
             }
+            if (treeData.size() == 0) {
+                treeData = treeData.getNext();
+                continue;
+            }
             int startIndex = 0;
             int endIndex;
             K lastKey = treeData.getKeys().get(treeData.getKeys().size() - 1);
@@ -1022,6 +1100,10 @@ public class BPlusTree<K, V> {
             if (treeData.size() > 0 && mComparator.compare(key, treeData.getKey(0)) < 0) {
                 return ans;
             }
+            if (treeData.size() == 0) {
+                treeData = treeData.getNext();
+                continue;
+            }
             int startIndex = 0;
             int endIndex;
             K lastKey = treeData.getKeys().get(treeData.getKeys().size() - 1);
@@ -1054,6 +1136,10 @@ public class BPlusTree<K, V> {
             if (treeData.size() > 0 && mComparator.compare(key, treeData.getKey(0)) < 0) {
                 return ans;
             }
+            if (treeData.size() == 0) {
+                treeData = treeData.getNext();
+                continue;
+            }
             int startIndex = 0;
             int endIndex;
             K lastKey = treeData.getKeys().get(treeData.getKeys().size() - 1);
@@ -1193,6 +1279,108 @@ public class BPlusTree<K, V> {
         return ans;
     }
 
+    /**
+     * Get an iterator over all values in ascending key order.
+     * Walks the linked data blocks lazily, so reading the first
+     * few values doesn't touch the rest of the tree.
+     *
+     * @return an iterator of values.
+     */
+    public Iterator<V> valueIterator() {
+        return new Iterator<V>() {
+            private BPlusTreeData mBlock = skipEmpty(mFirst);
+            private int mIndex = 0;
+
+            private BPlusTreeData skipEmpty(BPlusTreeData block) {
+                while (block != null && block.size() == 0) {
+                    block = block.getNext();
+                }
+                return block;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return mBlock != null;
+            }
+
+            @Override
+            public V next() {
+                if (mBlock == null) {
+                    throw new NoSuchElementException();
+                }
+                V value = mBlock.getValue(mIndex++);
+                if (mIndex >= mBlock.size()) {
+                    mBlock = skipEmpty(mBlock.getNext());
+                    mIndex = 0;
+                }
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Get an iterator over all values in descending key order.
+     *
+     * @return an iterator of values.
+     */
+    public Iterator<V> descendingValueIterator() {
+        return new Iterator<V>() {
+            private BPlusTreeData mBlock = skipEmpty(mLast);
+            private int mIndex = (mBlock == null) ? -1 : mBlock.size() - 1;
+
+            private BPlusTreeData skipEmpty(BPlusTreeData block) {
+                while (block != null && block.size() == 0) {
+                    block = block.getPrev();
+                }
+                return block;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return mBlock != null;
+            }
+
+            @Override
+            public V next() {
+                if (mBlock == null) {
+                    throw new NoSuchElementException();
+                }
+                V value = mBlock.getValue(mIndex--);
+                if (mIndex < 0) {
+                    mBlock = skipEmpty(mBlock.getPrev());
+                    mIndex = (mBlock == null) ? -1 : mBlock.size() - 1;
+                }
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Get the smallest key, from the first data block.
+     *
+     * @return smallest key, null if tree is empty.
+     */
+    public K firstKey() {
+        BPlusTreeData block = mFirst;
+        while (block != null && block.size() == 0) {
+            block = block.getNext();
+        }
+        return (block == null) ? null : block.getKey(0);
+    }
+
+    /**
+     * Get the largest key, from the last data block.
+     *
+     * @return largest key, null if tree is empty.
+     */
+    public K lastKey() {
+        BPlusTreeData block = mLast;
+        while (block != null && block.size() == 0) {
+            block = block.getPrev();
+        }
+        return (block == null) ? null : block.getKey(block.size() - 1);
+    }
+
     /**
      * Check whether there is key in this tree.
      *
@@ -1313,6 +1501,94 @@ public class BPlusTree<K, V> {
         }
     }
 
+    /**
+     * Refill a data block which is less than half full, by borrowing a data
+     * pair from its left or right sibling, or merging it with one of them.
+     *
+     * @param treeNode tree node holding the data block, with at least one key.
+     * @param index index of the data block in tree node.
+     */
+    private void rebalanceData(BPlusTreeNode treeNode, int index) {
+        BPlusTreeData treeData = treeNode.getValue(index);
+        if (index > 0) {
+            BPlusTreeData left = treeNode.getValue(index - 1);
+            if (left.size() > mCapacity / 2) {
+                int last = left.size() - 1;
+                treeData.getKeys().add(0, left.getKeys().remove(last));
+                treeData.getValues().add(0, left.getValues().remove(last));
+                treeNode.setKey(index - 1, treeData.getKey(0));
+                return;
+            }
+        }
+        if (index < treeNode.getKeys().size()) {
+            BPlusTreeData right = treeNode.getValue(index + 1);
+            if (right.size() > mCapacity / 2) {
+                treeData.getKeys().add(right.getKeys().remove(0));
+                treeData.getValues().add(right.getValues().remove(0));
+                treeNode.setKey(index, right.getKey(0));
+                return;
+            }
+        }
+        int leftIndex = (index > 0) ? index - 1 : index;
+        BPlusTreeData left = treeNode.getValue(leftIndex);
+        BPlusTreeData right = treeNode.getValue(leftIndex + 1);
+        left.getKeys().addAll(right.getKeys());
+        left.getValues().addAll(right.getValues());
+        left.setNext(right.getNext());
+        if (right.getNext() != null) {
+            right.getNext().setPrev(left);
+        }
+        if (mLast == right) {
+            mLast = left;
+        }
+        treeNode.getKeys().remove(leftIndex);
+        treeNode.getValues().remove(leftIndex + 1);
+        treeNode.getNexts().remove(leftIndex + 1);
+    }
+
+    /**
+     * Refill a tree node which is less than half full, by rotating a key
+     * through parent from its left or right sibling, or merging it with
+     * one of them and the key between them in parent.
+     *
+     * @param parent parent of the tree node.
+     * @param index index of the tree node in parent.
+     */
+    private void rebalanceNode(BPlusTreeNode parent, int index) {
+        BPlusTreeNode treeNode = parent.getNext(index);
+        if (index > 0) {
+            BPlusTreeNode left = parent.getNext(index - 1);
+            if (left.getKeys().size() > (mOrder - 1) / 2) {
+                int last = left.getKeys().size() - 1;
+                treeNode.getKeys().add(0, parent.getKey(index - 1));
+                parent.setKey(index - 1, left.getKeys().remove(last));
+                treeNode.getValues().add(0, left.getValues().remove(last + 1));
+                treeNode.getNexts().add(0, left.getNexts().remove(last + 1));
+                return;
+            }
+        }
+        if (index < parent.getKeys().size()) {
+            BPlusTreeNode right = parent.getNext(index + 1);
+            if (right.getKeys().size() > (mOrder - 1) / 2) {
+                treeNode.getKeys().add(parent.getKey(index));
+                parent.setKey(index, right.getKeys().remove(0));
+                treeNode.getValues().add(right.getValues().remove(0));
+                treeNode.getNexts().add(right.getNexts().remove(0));
+                return;
+            }
+        }
+        int leftIndex = (index > 0) ? index - 1 : index;
+        BPlusTreeNode left = parent.getNext(leftIndex);
+        BPlusTreeNode right = parent.getNext(leftIndex + 1);
+        left.getKeys().add(parent.getKey(leftIndex));
+        left.getKeys().addAll(right.getKeys());
+        left.getValues().addAll(right.getValues());
+        left.getNexts().addAll(right.getNexts());
+        parent.getKeys().remove(leftIndex);
+        parent.getValues().remove(leftIndex + 1);
+        parent.getNexts().remove(leftIndex + 1);
+    }
+
     private void constructInsertTreeNode(BPlusTreeNode root, BPlusTreeNode parent, K key, BPlusTreeData treeData) {
         if (root == null) {
             parent.put(key, treeData, null);
@@ -5,16 +5,28 @@ import com.github.taffy128s.btrees.BPlusTree;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
 
 /**
  * B Plus Tree Table.
  */
 public class BPlusTreeTable extends Table {
+    /**
+     * insertAll() merges new records into leaves when batch has at least
+     * 1 / MERGE_RATIO as many records as keys in tree, puts them one by one otherwise.
+     */
+    private static final int MERGE_RATIO = 8;
+
     private BPlusTree<Object, ArrayList<DataRecord>> mTable;
     private ArrayList<DataRecord> mNullTable;
     private ArrayList<DataRecord> mAllRecords;
+    private Set<DataRecord> mDeletedRecords;
     private DataTypeIdentifier mIndexDataType;
     private int mKeyIndex;
+    private BloomFilter mBloomFilter;
 
     /**
      * Initialize a B Plus Tree Table.
@@ -25,6 +37,7 @@ public class BPlusTreeTable extends Table {
         mTable = new BPlusTree<>(100, 100);
         mNullTable = new ArrayList<>();
         mAllRecords = new ArrayList<>();
+        mDeletedRecords = Collections.newSetFromMap(new IdentityHashMap<>());
         mIndexDataType = DataTypeIdentifier.INT;
         mKeyIndex = 0;
     }
@@ -43,6 +56,7 @@ public class BPlusTreeTable extends Table {
         mTable = new BPlusTree<>(100, 100);
         mNullTable = new ArrayList<>();
         mAllRecords = new ArrayList<>();
+        mDeletedRecords = Collections.newSetFromMap(new IdentityHashMap<>());
         if (keyIndex == -1) {
             keyIndex = (primaryKey == -1) ? 0 : primaryKey;
         }
@@ -61,8 +75,17 @@ public class BPlusTreeTable extends Table {
      *         <0: o1 < o2<br>
      */
     private int compareKeyField(DataRecord o1, DataRecord o2) {
-        Object o1Key = o1.get(mKeyIndex);
-        Object o2Key = o2.get(mKeyIndex);
+        return compareKeys(o1.get(mKeyIndex), o2.get(mKeyIndex));
+    }
+
+    /**
+     * Compare two non-null keys of key field.
+     *
+     * @param o1Key key to compare.
+     * @param o2Key key to compare.
+     * @return same as Comparable.compareTo().
+     */
+    private int compareKeys(Object o1Key, Object o2Key) {
         if (mIndexDataType == DataTypeIdentifier.INT) {
             return ((Integer) o1Key).compareTo((Integer) o2Key);
         } else {
@@ -77,6 +100,9 @@ public class BPlusTreeTable extends Table {
      * @return true if exists, false otherwise.
      */
     private boolean isDuplicatedData(DataRecord dataRecord) {
+        if (mBloomFilter != null && !mBloomFilter.mightContain(dataRecord.get(mKeyIndex))) {
+            return false;
+        }
         ArrayList<DataRecord> results = mTable.get(dataRecord.get(mKeyIndex));
         if (results == null) {
             return false;
@@ -96,7 +122,40 @@ public class BPlusTreeTable extends Table {
      * @return true if valid, false otherwise.
      */
     private boolean checkPrimaryKey(DataRecord dataRecord) {
-        return mKeyIndex != mPrimaryKey || mPrimaryKey == -1 || !mTable.containsKey(dataRecord.get(mPrimaryKey));
+        return mKeyIndex != mPrimaryKey || mPrimaryKey == -1
+                || (mBloomFilter != null && !mBloomFilter.mightContain(dataRecord.get(mPrimaryKey)))
+                || !mTable.containsKey(dataRecord.get(mPrimaryKey));
+    }
+
+    @Override
+    public boolean enableBloomFilter() {
+        rebuildBloomFilter();
+        return true;
+    }
+
+    /**
+     * Rebuild bloom filter with all keys, leaving room for as many new keys.
+     */
+    private void rebuildBloomFilter() {
+        mBloomFilter = new BloomFilter(mTable.size() * 2);
+        for (Object key : mTable.getKeys()) {
+            mBloomFilter.add(key);
+        }
+    }
+
+    /**
+     * Add a new key into bloom filter if enabled, rebuild it when full.
+     *
+     * @param key key not in index yet.
+     */
+    private void addToBloomFilter(Object key) {
+        if (mBloomFilter == null) {
+            return;
+        }
+        if (mBloomFilter.isFull()) {
+            rebuildBloomFilter();
+        }
+        mBloomFilter.add(key);
     }
 
     /**
@@ -134,7 +193,9 @@ public class BPlusTreeTable extends Table {
         Table table = generateEmptyResultTable();
         if (mKeyIndex == columnIndex) {
             if (key == null) {
-                table.insertAll(getAllRecords());
+                for (ArrayList<DataRecord> records : mTable.getValues()) {
+                    table.insertAll(records);
+                }
                 return table;
             } else {
                 return super.queryNotEqual(columnIndex, key);
@@ -212,6 +273,19 @@ public class BPlusTreeTable extends Table {
         }
     }
 
+    @Override
+    public Table queryLike(int columnIndex, Object pattern) {
+        if (mKeyIndex == columnIndex && mIndexDataType == DataTypeIdentifier.VARCHAR) {
+            Table table = generateEmptyResultTable();
+            for (ArrayList<DataRecord> recordArrayList : getRangeValues(pattern, BinaryOperator.LIKE)) {
+                table.insertAll(recordArrayList);
+            }
+            return table;
+        } else {
+            return super.queryLike(columnIndex, pattern);
+        }
+    }
+
     @Override
     public Table queryRange(int columnIndex, Object fromKey, Object toKey) {
         Table table = generateEmptyResultTable();
@@ -246,6 +320,134 @@ public class BPlusTreeTable extends Table {
         }
     }
 
+    /**
+     * Get keys of buckets matching (key column operator key), in key order.
+     * Only for operators answered by tree, i.e. not EQUAL or NOT_EQUAL.
+     *
+     * @param key key to be compared, not null.
+     * @param operator a binary operator.
+     * @return a list of keys.
+     */
+    private ArrayList<Object> getRangeKeys(Object key, BinaryOperator operator) {
+        switch (operator) {
+            case LESS_THAN:
+                return mTable.getKeysLess(key);
+            case LESS_EQUAL:
+                return mTable.getKeysLessEqual(key);
+            case GREATER_THAN:
+                return mTable.getKeysGreater(key);
+            case GREATER_EQUAL:
+                return mTable.getKeysGreaterEqual(key);
+            case LIKE:
+                ArrayList<Object> keys = new ArrayList<>();
+                getLikeBuckets(key, keys, new ArrayList<>());
+                return keys;
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Get buckets matching (key column operator key), in key order.
+     * Only for operators answered by tree, i.e. not EQUAL or NOT_EQUAL.
+     *
+     * @param key key to be compared, not null.
+     * @param operator a binary operator.
+     * @return a list of buckets.
+     */
+    private ArrayList<ArrayList<DataRecord>> getRangeValues(Object key, BinaryOperator operator) {
+        switch (operator) {
+            case LESS_THAN:
+                return mTable.getValuesLess(key);
+            case LESS_EQUAL:
+                return mTable.getValuesLessEqual(key);
+            case GREATER_THAN:
+                return mTable.getValuesGreater(key);
+            case GREATER_EQUAL:
+                return mTable.getValuesGreaterEqual(key);
+            case LIKE:
+                ArrayList<ArrayList<DataRecord>> buckets = new ArrayList<>();
+                getLikeBuckets(key, new ArrayList<>(), buckets);
+                return buckets;
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Get keys and buckets matching a LIKE pattern, in key order.
+     * Only the range of keys starting with the literal prefix of pattern
+     * is read from tree, then each key in it is matched with the pattern.
+     *
+     * @param pattern quoted LIKE pattern.
+     * @param keys list to put matched keys into.
+     * @param buckets list to put buckets of matched keys into.
+     */
+    private void getLikeBuckets(Object pattern, ArrayList<Object> keys, ArrayList<ArrayList<DataRecord>> buckets) {
+        if (!(pattern instanceof String) || mIndexDataType != DataTypeIdentifier.VARCHAR || mTable.isEmpty()) {
+            return;
+        }
+        String prefix = Condition.getLikePrefix((String) pattern);
+        String upper = Condition.getPrefixUpperBound(prefix);
+        ArrayList<Object> rangeKeys = (upper == null) ? mTable.getKeysGreaterEqual(prefix) : mTable.getKeys(prefix, upper);
+        ArrayList<ArrayList<DataRecord>> rangeBuckets = (upper == null) ? mTable.getValuesGreaterEqual(prefix) : mTable.getValues(prefix, upper);
+        for (int i = 0; i < rangeKeys.size(); ++i) {
+            if (Condition.matchLike((String) rangeKeys.get(i), (String) pattern)) {
+                keys.add(rangeKeys.get(i));
+                buckets.add(rangeBuckets.get(i));
+            }
+        }
+    }
+
+    @Override
+    public int countQuery(int columnIndex, Object key, BinaryOperator operator) {
+        if (mKeyIndex != columnIndex) {
+            return -1;
+        }
+        if (operator == BinaryOperator.EQUAL) {
+            if (key == null) {
+                return mNullTable.size();
+            }
+            ArrayList<DataRecord> records = mTable.get(key);
+            return (records == null) ? 0 : records.size();
+        } else if (operator == BinaryOperator.NOT_EQUAL) {
+            return getRecordCount() - countQuery(columnIndex, key, BinaryOperator.EQUAL);
+        }
+        if (key == null) {
+            return 0;
+        }
+        int count = 0;
+        for (ArrayList<DataRecord> records : getRangeValues(key, operator)) {
+            count += records.size();
+        }
+        return count;
+    }
+
+    @Override
+    public ArrayList<Object> queryKeys(int columnIndex, Object key, BinaryOperator operator) {
+        if (mKeyIndex != columnIndex || operator == BinaryOperator.NOT_EQUAL) {
+            // NOT_EQUAL scans records in insertion order.
+            return null;
+        }
+        ArrayList<Object> keys = new ArrayList<>();
+        if (operator == BinaryOperator.EQUAL) {
+            int count = countQuery(columnIndex, key, operator);
+            for (int i = 0; i < count; ++i) {
+                keys.add(key);
+            }
+            return keys;
+        }
+        if (key == null) {
+            return keys;
+        }
+        ArrayList<Object> bucketKeys = getRangeKeys(key, operator);
+        ArrayList<ArrayList<DataRecord>> buckets = getRangeValues(key, operator);
+        for (int i = 0; i < bucketKeys.size(); ++i) {
+            for (int j = 0; j < buckets.get(i).size(); ++j) {
+                keys.add(bucketKeys.get(i));
+            }
+        }
+        return keys;
+    }
+
     /**
      * Get all values with key null.
      *
@@ -282,17 +484,18 @@ public class BPlusTreeTable extends Table {
     @Override
     public boolean insert(DataRecord dataRecord) {
         if (dataRecord.get(mKeyIndex) == null) {
-            mAllRecords.add(dataRecord);
+            addToAllRecords(dataRecord);
             return insertNull(dataRecord);
         }
         if (!mTable.containsKey(dataRecord.get(mKeyIndex))) {
+            addToBloomFilter(dataRecord.get(mKeyIndex));
             ArrayList<DataRecord> newData = new ArrayList<>();
             newData.add(dataRecord);
             mTable.put(dataRecord.get(mKeyIndex), newData);
         } else {
             mTable.get(dataRecord.get(mKeyIndex)).add(dataRecord);
         }
-        mAllRecords.add(dataRecord);
+        addToAllRecords(dataRecord);
         appendToDisk(mFilename, dataRecord);
         return true;
     }
@@ -302,7 +505,7 @@ public class BPlusTreeTable extends Table {
         if (dataRecords.isEmpty()) {
             return true;
         }
-        mAllRecords.addAll(dataRecords);
+        addAllToAllRecords(dataRecords);
         ArrayList<DataRecord> nullDataRecords = new ArrayList<>();
         ArrayList<DataRecord> notNullDataRecords = new ArrayList<>();
         for (DataRecord record : dataRecords) {
@@ -313,6 +516,22 @@ public class BPlusTreeTable extends Table {
             }
         }
         mNullTable.addAll(nullDataRecords);
+        if (notNullDataRecords.isEmpty()) {
+            return true;
+        }
+        if (notNullDataRecords.size() * MERGE_RATIO < mTable.size()) {
+            // a small batch into a large tree, merging would copy every leaf.
+            for (DataRecord record : notNullDataRecords) {
+                ArrayList<DataRecord> bucket = mTable.get(record.get(mKeyIndex));
+                if (bucket == null) {
+                    addToBloomFilter(record.get(mKeyIndex));
+                    bucket = new ArrayList<>();
+                    mTable.put(record.get(mKeyIndex), bucket);
+                }
+                bucket.add(record);
+            }
+            return true;
+        }
         notNullDataRecords.sort(this::compareKeyField);
         ArrayList<Object> sortedKeys = new ArrayList<>();
         ArrayList<ArrayList<DataRecord>> sortedDatas = new ArrayList<>();
@@ -330,35 +549,201 @@ public class BPlusTreeTable extends Table {
             }
             sortedDatas.get(sIndex).add(notNullDataRecords.get(i));
         }
+        if (!mTable.isEmpty()) {
+            mergeWithTree(sortedKeys, sortedDatas);
+        }
         mTable.construct(sortedKeys, sortedDatas);
+        if (mBloomFilter != null) {
+            rebuildBloomFilter();
+        }
         return true;
     }
 
+    /**
+     * Merge sorted run of new keys with keys already in tree, so that the tree
+     * can be constructed again from the result. Records with a key already in
+     * tree are appended to its bucket, after the existing ones.
+     *
+     * @param sortedKeys sorted new keys, replaced by all keys.
+     * @param sortedDatas buckets of new keys, replaced by all buckets.
+     */
+    private void mergeWithTree(ArrayList<Object> sortedKeys, ArrayList<ArrayList<DataRecord>> sortedDatas) {
+        ArrayList<Object> treeKeys = mTable.getKeys();
+        ArrayList<ArrayList<DataRecord>> treeDatas = mTable.getValues();
+        ArrayList<Object> keys = new ArrayList<>(treeKeys.size() + sortedKeys.size());
+        ArrayList<ArrayList<DataRecord>> datas = new ArrayList<>(treeKeys.size() + sortedKeys.size());
+        int i = 0;
+        int j = 0;
+        while (i < treeKeys.size() || j < sortedKeys.size()) {
+            int cmp;
+            if (i == treeKeys.size()) {
+                cmp = 1;
+            } else if (j == sortedKeys.size()) {
+                cmp = -1;
+            } else {
+                cmp = compareKeys(treeKeys.get(i), sortedKeys.get(j));
+            }
+            if (cmp <= 0) {
+                keys.add(treeKeys.get(i));
+                datas.add(treeDatas.get(i));
+                if (cmp == 0) {
+                    treeDatas.get(i).addAll(sortedDatas.get(j++));
+                }
+                ++i;
+            } else {
+                keys.add(sortedKeys.get(j));
+                datas.add(sortedDatas.get(j++));
+            }
+        }
+        sortedKeys.clear();
+        sortedKeys.addAll(keys);
+        sortedDatas.clear();
+        sortedDatas.addAll(datas);
+    }
+
+    @Override
+    public boolean deleteAll(ArrayList<DataRecord> dataRecords) {
+        Set<DataRecord> deleted = Collections.newSetFromMap(new IdentityHashMap<>());
+        deleted.addAll(dataRecords);
+        HashSet<Object> visitedKeys = new HashSet<>();
+        boolean hasNull = false;
+        for (DataRecord record : dataRecords) {
+            Object key = record.get(mKeyIndex);
+            if (key == null) {
+                hasNull = true;
+            } else if (visitedKeys.add(key)) {
+                ArrayList<DataRecord> bucket = mTable.get(key);
+                if (bucket != null && bucket.removeIf(deleted::contains) && bucket.isEmpty()) {
+                    mTable.remove(key);
+                }
+            }
+        }
+        if (hasNull) {
+            mNullTable.removeIf(deleted::contains);
+        }
+        // removed from mAllRecords by the next getAllRecords(), so deleting
+        // rows one statement at a time does not scan all records each time.
+        mDeletedRecords.addAll(deleted);
+        return true;
+    }
+
+    /**
+     * Add a record to list of all records. A deleted record inserted again
+     * (e.g. when an UPDATE is rolled back) is still in the list, so its
+     * deletion is cancelled instead.
+     *
+     * @param dataRecord record to add.
+     */
+    private void addToAllRecords(DataRecord dataRecord) {
+        if (mDeletedRecords.isEmpty() || !mDeletedRecords.remove(dataRecord)) {
+            mAllRecords.add(dataRecord);
+        }
+    }
+
+    /**
+     * Add records to list of all records, see addToAllRecords().
+     *
+     * @param dataRecords records to add.
+     */
+    private void addAllToAllRecords(ArrayList<DataRecord> dataRecords) {
+        if (mDeletedRecords.isEmpty()) {
+            mAllRecords.addAll(dataRecords);
+            return;
+        }
+        for (DataRecord record : dataRecords) {
+            addToAllRecords(record);
+        }
+    }
+
+    @Override
+    public int getRecordCount() {
+        synchronized (mDeletedRecords) {
+            return mAllRecords.size() - mDeletedRecords.size();
+        }
+    }
+
     @Override
     public ArrayList<DataRecord> getAllRecords() {
+        // snapshot readers may call this concurrently, one of them compacts.
+        synchronized (mDeletedRecords) {
+            if (!mDeletedRecords.isEmpty()) {
+                mAllRecords.removeIf(mDeletedRecords::contains);
+                mDeletedRecords.clear();
+            }
+        }
         return mAllRecords;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public ArrayList<DataRecord> getAllRecords(int sortIndex, SortingType sortingType) {
         if (sortIndex == mKeyIndex) {
-            ArrayList<DataRecord> allRecords = getAllRecords();
-            if (sortingType == SortingType.DESCENDING) {
-                Collections.reverse(allRecords);
-            }
-            return allRecords;
+            return getTopRecords(sortIndex, sortingType, getRecordCount());
         } else {
             return super.getAllRecords(sortIndex, sortingType);
         }
     }
 
+    @Override
+    public ArrayList<DataRecord> getTopRecords(int sortIndex, SortingType sortingType, int limit) {
+        if (sortIndex != mKeyIndex) {
+            return super.getTopRecords(sortIndex, sortingType, limit);
+        }
+        ArrayList<DataRecord> result = new ArrayList<>(Math.max(Math.min(limit, getRecordCount()), 0));
+        if (sortingType == SortingType.DESCENDING) {
+            Iterator<ArrayList<DataRecord>> iterator = mTable.descendingValueIterator();
+            while (iterator.hasNext() && addRecords(result, iterator.next(), limit)) {
+                // read until limit reached
+            }
+            addRecords(result, mNullTable, limit);
+        } else if (addRecords(result, mNullTable, limit)) {
+            Iterator<ArrayList<DataRecord>> iterator = mTable.valueIterator();
+            while (iterator.hasNext() && addRecords(result, iterator.next(), limit)) {
+                // read until limit reached
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Append records to result until result has limit records.
+     *
+     * @param result list to append to.
+     * @param records records to append.
+     * @param limit max size of result.
+     * @return true if result still has room for more records.
+     */
+    private static boolean addRecords(ArrayList<DataRecord> result, ArrayList<DataRecord> records, int limit) {
+        for (DataRecord record : records) {
+            if (result.size() >= limit) {
+                return false;
+            }
+            result.add(record);
+        }
+        return result.size() < limit;
+    }
+
+    @Override
+    public boolean hasOrderedIndex(int columnIndex) {
+        return columnIndex == mKeyIndex;
+    }
+
+    @Override
+    public Object getMinKey(int columnIndex) {
+        return (columnIndex == mKeyIndex) ? mTable.firstKey() : null;
+    }
+
+    @Override
+    public Object getMaxKey(int columnIndex) {
+        return (columnIndex == mKeyIndex) ? mTable.lastKey() : null;
+    }
+
     @Override
     public Table generateAliasTable(String aliasName) {
         BPlusTreeTable table = new BPlusTreeTable(aliasName, mAttributeNames, mAttributeTypes, mPrimaryKey, mKeyIndex);
         table.mTable = this.mTable;
         table.mNullTable = this.mNullTable;
         table.mAllRecords = this.mAllRecords;
+        table.mDeletedRecords = this.mDeletedRecords;
         return table;
     }
 
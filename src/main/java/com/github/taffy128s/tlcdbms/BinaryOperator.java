@@ -10,6 +10,7 @@ public enum BinaryOperator {
     LESS_EQUAL,
     EQUAL,
     NOT_EQUAL,
+    LIKE,
     AND,
     OR
 }
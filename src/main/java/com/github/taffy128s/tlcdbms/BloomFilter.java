@@ -0,0 +1,106 @@
+package com.github.taffy128s.tlcdbms;
+
+/**
+ * Bloom filter over keys of any type (null allowed).
+ *
+ * mightContain() never returns false for an added key, and returns true
+ * for a key never added with probability about 1% while at most capacity
+ * keys are added. Keys are hashed once with hashCode(), the probe
+ * positions are derived by double hashing.
+ */
+public class BloomFilter {
+    /**
+     * Number of bits per key, 10 bits with 7 hashes give about 1% false positives.
+     */
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASH_COUNT = 7;
+
+    private long[] mBits;
+    private int mMask;
+    private int mCapacity;
+    private int mSize;
+
+    /**
+     * Initialize an empty bloom filter.
+     *
+     * @param capacity expected number of keys.
+     */
+    public BloomFilter(int capacity) {
+        mCapacity = Math.max(capacity, 64);
+        long bitCount = Long.highestOneBit((long) mCapacity * BITS_PER_KEY - 1) << 1;
+        bitCount = Math.min(bitCount, 1L << 31);
+        mBits = new long[(int) (bitCount >>> 6)];
+        mMask = (int) (bitCount - 1);
+        mSize = 0;
+    }
+
+    /**
+     * Add a key.
+     *
+     * @param key key to add, null-able.
+     */
+    public void add(Object key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASH_COUNT; ++i) {
+            int bit = (h1 + i * h2) & mMask;
+            mBits[bit >>> 6] |= 1L << bit;
+        }
+        ++mSize;
+    }
+
+    /**
+     * Check whether a key may have been added.
+     *
+     * @param key key to check, null-able.
+     * @return false if key was never added, true if it probably was.
+     */
+    public boolean mightContain(Object key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASH_COUNT; ++i) {
+            int bit = (h1 + i * h2) & mMask;
+            if ((mBits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether more keys than capacity were added,
+     * i.e. false positive rate is higher than expected.
+     *
+     * @return true if filter should be rebuilt larger.
+     */
+    public boolean isFull() {
+        return mSize > mCapacity;
+    }
+
+    /**
+     * Get number of keys added.
+     *
+     * @return number of keys.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Hash a key into 64 bits.
+     *
+     * @param key key to hash, null-able.
+     * @return mixed hash.
+     */
+    private static long hash(Object key) {
+        long hash = (key == null) ? 0 : key.hashCode();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
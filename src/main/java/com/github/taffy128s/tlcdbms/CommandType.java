@@ -7,13 +7,21 @@ package com.github.taffy128s.tlcdbms;
 public enum CommandType {
     NONE,
     CREATE,
+    CREATE_VIEW,
     INSERT,
     SELECT,
+    DELETE,
+    UPDATE,
     DROP,
     SHOW_TABLE_LIST,
     SHOW_TABLE_CONTENT,
     DESC,
     LOAD,
+    LOAD_DATA,
+    SET,
+    PREPARE,
+    EXECUTE,
+    DEALLOCATE,
     EXIT,
     QUIT
 }
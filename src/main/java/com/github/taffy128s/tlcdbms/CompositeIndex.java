@@ -0,0 +1,298 @@
+package com.github.taffy128s.tlcdbms;
+
+import com.github.taffy128s.btrees.BPlusTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Index on a tuple of columns, e.g. KEY (a, b).
+ *
+ * Keys are DataRecords of the indexed fields, compared lexicographically
+ * with null smaller than any value (same order as ORDER BY).
+ * A B+ tree index supports lookups on any leading prefix of the columns,
+ * optionally with a range on the column right after the prefix, and reading
+ * all records in key order. A hash index only supports lookups on all columns.
+ * Records with null fields are indexed as well.
+ */
+public class CompositeIndex {
+    /**
+     * Sentinel greater than any value, used to build range bounds.
+     */
+    private static final Object MAX_VALUE = new Object();
+
+    private ArrayList<Integer> mColumnIndices;
+    private TableStructType mType;
+    private BPlusTree<DataRecord, ArrayList<DataRecord>> mTree;
+    private HashMap<DataRecord, ArrayList<DataRecord>> mHash;
+
+    /**
+     * Initialize an empty composite index.
+     *
+     * @param columnIndices indexed columns, in key order.
+     * @param type BPLUSTREE or HASH.
+     */
+    public CompositeIndex(ArrayList<Integer> columnIndices, TableStructType type) {
+        mColumnIndices = columnIndices;
+        mType = type;
+        if (type == TableStructType.HASH) {
+            mHash = new HashMap<>();
+        } else {
+            mTree = new BPlusTree<>(100, 100, CompositeIndex::compareKeys);
+        }
+    }
+
+    /**
+     * Column indices getter.
+     *
+     * @return indexed columns, in key order.
+     */
+    public ArrayList<Integer> getColumnIndices() {
+        return mColumnIndices;
+    }
+
+    /**
+     * Index type getter.
+     *
+     * @return BPLUSTREE or HASH.
+     */
+    public TableStructType getType() {
+        return mType;
+    }
+
+    /**
+     * Check whether records can be read in key order.
+     *
+     * @return true if this is a B+ tree index.
+     */
+    public boolean isOrdered() {
+        return mTree != null;
+    }
+
+    /**
+     * Compare two keys lexicographically, null first, MAX_VALUE last.
+     *
+     * @param a key to compare.
+     * @param b key to compare.
+     * @return same as Comparable.compareTo().
+     */
+    static int compareKeys(DataRecord a, DataRecord b) {
+        for (int i = 0; i < a.length() && i < b.length(); ++i) {
+            Object left = a.get(i);
+            Object right = b.get(i);
+            if (left == right) {
+                continue;
+            }
+            int cmp;
+            if (left == MAX_VALUE) {
+                cmp = 1;
+            } else if (right == MAX_VALUE) {
+                cmp = -1;
+            } else {
+                cmp = DataRecord.compare(left, right);
+            }
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(a.length(), b.length());
+    }
+
+    /**
+     * Get key of a record.
+     *
+     * @param record record of table.
+     * @return indexed fields of record.
+     */
+    private DataRecord keyOf(DataRecord record) {
+        DataRecord key = new DataRecord();
+        for (int index : mColumnIndices) {
+            key.append(record.get(index));
+        }
+        return key;
+    }
+
+    /**
+     * Insert a record.
+     *
+     * @param record record to insert.
+     */
+    public void insert(DataRecord record) {
+        DataRecord key = keyOf(record);
+        ArrayList<DataRecord> bucket = (mHash != null) ? mHash.get(key) : mTree.get(key);
+        if (bucket != null) {
+            bucket.add(record);
+            return;
+        }
+        bucket = new ArrayList<>();
+        bucket.add(record);
+        if (mHash != null) {
+            mHash.put(key, bucket);
+        } else {
+            mTree.put(key, bucket);
+        }
+    }
+
+    /**
+     * Insert records. Bulk loads the tree if it is empty.
+     *
+     * @param records records to insert.
+     */
+    public void insertAll(ArrayList<DataRecord> records) {
+        if (mHash != null || !mTree.isEmpty() || records.isEmpty()) {
+            for (DataRecord record : records) {
+                insert(record);
+            }
+            return;
+        }
+        ArrayList<DataRecord> keys = new ArrayList<>(records.size());
+        for (DataRecord record : records) {
+            keys.add(keyOf(record));
+        }
+        Integer[] order = new Integer[records.size()];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (o1, o2) -> compareKeys(keys.get(o1), keys.get(o2)));
+        ArrayList<DataRecord> sortedKeys = new ArrayList<>();
+        ArrayList<ArrayList<DataRecord>> sortedBuckets = new ArrayList<>();
+        for (int i : order) {
+            if (sortedKeys.isEmpty() || compareKeys(sortedKeys.get(sortedKeys.size() - 1), keys.get(i)) != 0) {
+                sortedKeys.add(keys.get(i));
+                sortedBuckets.add(new ArrayList<>());
+            }
+            sortedBuckets.get(sortedBuckets.size() - 1).add(records.get(i));
+        }
+        mTree.construct(sortedKeys, sortedBuckets);
+    }
+
+    /**
+     * Remove records, which should be the instances inserted.
+     * Each bucket is scanned once, and removed when it becomes empty.
+     *
+     * @param records records to remove.
+     */
+    public void removeAll(ArrayList<DataRecord> records) {
+        Set<DataRecord> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(records);
+        HashSet<DataRecord> visitedKeys = new HashSet<>();
+        for (DataRecord record : records) {
+            DataRecord key = keyOf(record);
+            if (!visitedKeys.add(key)) {
+                continue;
+            }
+            ArrayList<DataRecord> bucket = (mHash != null) ? mHash.get(key) : mTree.get(key);
+            if (bucket != null && bucket.removeIf(removed::contains) && bucket.isEmpty()) {
+                if (mHash != null) {
+                    mHash.remove(key);
+                } else {
+                    mTree.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get records whose leading indexed fields equal prefix, and whose next
+     * indexed field (if any bound given) is in range. Null never satisfies a range.
+     * Only B+ tree indices support proper prefixes and ranges.
+     *
+     * @param prefix values of leading columns.
+     * @param lower lower bound of next column, null if none.
+     * @param lowerInclusive whether lower bound is inclusive.
+     * @param upper upper bound of next column, null if none.
+     * @param upperInclusive whether upper bound is inclusive.
+     * @return matched records in key order, null if not supported by this index.
+     */
+    public ArrayList<DataRecord> query(ArrayList<Object> prefix, Object lower, boolean lowerInclusive,
+                                       Object upper, boolean upperInclusive) {
+        boolean hasRange = lower != null || upper != null;
+        if (prefix.size() > mColumnIndices.size() || (hasRange && prefix.size() >= mColumnIndices.size())) {
+            return null;
+        }
+        ArrayList<DataRecord> result = new ArrayList<>();
+        if (mHash != null) {
+            if (prefix.size() != mColumnIndices.size()) {
+                return null;
+            }
+            DataRecord key = new DataRecord();
+            key.appendAll(prefix);
+            ArrayList<DataRecord> bucket = mHash.get(key);
+            if (bucket != null) {
+                result.addAll(bucket);
+            }
+            return result;
+        }
+        int padding = mColumnIndices.size() - prefix.size() - (hasRange ? 1 : 0);
+        DataRecord from = new DataRecord();
+        DataRecord to = new DataRecord();
+        from.appendAll(prefix);
+        to.appendAll(prefix);
+        boolean fromInclusive = true;
+        boolean toInclusive = true;
+        if (hasRange) {
+            if (lower != null) {
+                from.append(lower);
+                fromInclusive = lowerInclusive;
+            } else {
+                // exclude null, which is smaller than any value.
+                from.append(null);
+                fromInclusive = false;
+            }
+            to.append((upper != null) ? upper : MAX_VALUE);
+            toInclusive = upper == null || upperInclusive;
+        }
+        for (int i = 0; i < padding; ++i) {
+            from.append(fromInclusive ? null : MAX_VALUE);
+            to.append(toInclusive ? MAX_VALUE : null);
+        }
+        int cmp = compareKeys(from, to);
+        if (cmp > 0 || (cmp == 0 && !(fromInclusive && toInclusive)) || mTree.isEmpty()) {
+            return result;
+        }
+        for (ArrayList<DataRecord> bucket : mTree.getValues(from, fromInclusive, to, toInclusive)) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    /**
+     * Get an iterator over all records in key order.
+     * Records with equal keys keep insertion order in both directions.
+     *
+     * @param descending true to read in descending key order.
+     * @return an iterator of records, null if this is not a B+ tree index.
+     */
+    public Iterator<DataRecord> iterator(boolean descending) {
+        if (mTree == null) {
+            return null;
+        }
+        Iterator<ArrayList<DataRecord>> buckets = descending ? mTree.descendingValueIterator() : mTree.valueIterator();
+        return new Iterator<DataRecord>() {
+            private Iterator<DataRecord> mBucket = null;
+
+            @Override
+            public boolean hasNext() {
+                while ((mBucket == null || !mBucket.hasNext()) && buckets.hasNext()) {
+                    mBucket = buckets.next().iterator();
+                }
+                return mBucket != null && mBucket.hasNext();
+            }
+
+            @Override
+            public DataRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return mBucket.next();
+            }
+        };
+    }
+}
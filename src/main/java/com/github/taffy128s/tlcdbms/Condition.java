@@ -1,11 +1,29 @@
 package com.github.taffy128s.tlcdbms;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
 /**
  * A condition represents an equation such as a < 5 or b > 6.
  * Basic form:<br>
  * leftTablename leftAttribute operator rightTablename rightAttribute.
  */
 public class Condition {
+    /**
+     * Max number of compiled LIKE patterns kept.
+     */
+    private static final int LIKE_CACHE_SIZE = 256;
+
+    private static final Map<String, Pattern> LIKE_PATTERNS = Collections.synchronizedMap(
+            new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+                    return size() > LIKE_CACHE_SIZE;
+                }
+            });
+
     private String mLeftConstant;
     private String mLeftTableName;
     private String mLeftAttribute;
@@ -231,6 +249,8 @@ public class Condition {
             stringBuilder.append("=");
         } else if (mOperator == BinaryOperator.NOT_EQUAL) {
             stringBuilder.append("<>");
+        } else if (mOperator == BinaryOperator.LIKE) {
+            stringBuilder.append("LIKE");
         } else {
             stringBuilder.append("unknown operator");
         }
@@ -268,6 +288,8 @@ public class Condition {
                 return BinaryOperator.LESS_THAN;
             case GREATER_EQUAL:
                 return BinaryOperator.LESS_EQUAL;
+            case LIKE:
+                return BinaryOperator.LIKE;
             default:
                 return BinaryOperator.EQUAL;
         }
@@ -351,8 +373,89 @@ public class Condition {
                 return ((Comparable) left).compareTo(right) > 0;
             case GREATER_EQUAL:
                 return ((Comparable) left).compareTo(right) >= 0;
+            case LIKE:
+                return left instanceof String && right instanceof String && matchLike((String) left, (String) right);
             default:
                 return false;
         }
     }
+
+    /**
+     * Check whether a quoted string matches a quoted LIKE pattern.
+     * '%' matches any sequence, '_' matches one character, '\' escapes the next one.
+     * Compiled patterns are cached.
+     *
+     * @param value quoted string to check.
+     * @param pattern quoted LIKE pattern.
+     * @return true if matched.
+     */
+    public static boolean matchLike(String value, String pattern) {
+        Pattern compiled = LIKE_PATTERNS.get(pattern);
+        if (compiled == null) {
+            StringBuilder regex = new StringBuilder();
+            String body = unquote(pattern);
+            for (int i = 0; i < body.length(); ++i) {
+                char c = body.charAt(i);
+                if (c == '\\' && i + 1 < body.length()) {
+                    regex.append(Pattern.quote(String.valueOf(body.charAt(++i))));
+                } else if (c == '%') {
+                    regex.append(".*");
+                } else if (c == '_') {
+                    regex.append(".");
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            compiled = Pattern.compile(regex.toString(), Pattern.DOTALL);
+            LIKE_PATTERNS.put(pattern, compiled);
+        }
+        return compiled.matcher(unquote(value)).matches();
+    }
+
+    /**
+     * Get the literal prefix of a LIKE pattern, i.e. characters before the first wildcard.
+     * Every string matching the pattern starts with this prefix.
+     *
+     * @param pattern quoted LIKE pattern.
+     * @return prefix with its opening quote, so that it compares like stored strings.
+     */
+    public static String getLikePrefix(String pattern) {
+        StringBuilder prefix = new StringBuilder(pattern.substring(0, 1));
+        String body = unquote(pattern);
+        for (int i = 0; i < body.length(); ++i) {
+            char c = body.charAt(i);
+            if (c == '%' || c == '_') {
+                break;
+            } else if (c == '\\' && i + 1 < body.length()) {
+                c = body.charAt(++i);
+            }
+            prefix.append(c);
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * Get the smallest string greater than all strings starting with prefix.
+     *
+     * @param prefix prefix of strings.
+     * @return upper bound (exclusive), null if there is none.
+     */
+    public static String getPrefixUpperBound(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; --i) {
+            if (prefix.charAt(i) != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (prefix.charAt(i) + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove quotes around a quoted string.
+     *
+     * @param quoted quoted string.
+     * @return string without quotes.
+     */
+    private static String unquote(String quoted) {
+        return (quoted.length() >= 2) ? quoted.substring(1, quoted.length() - 1) : quoted;
+    }
 }
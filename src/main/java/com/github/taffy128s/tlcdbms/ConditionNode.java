@@ -0,0 +1,190 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Stack;
+import java.util.function.Predicate;
+
+/**
+ * A node of condition tree built from postfix conditions.
+ *
+ * A leaf holds a single condition (such as a.x < 5),
+ * an inner node holds AND or OR with two children.
+ */
+public class ConditionNode {
+    private Condition mCondition;
+    private ConditionNode mLeft;
+    private ConditionNode mRight;
+    private HashSet<String> mSourceTables;
+
+    /**
+     * Initialize a leaf node.
+     *
+     * @param condition condition of this leaf.
+     */
+    public ConditionNode(Condition condition) {
+        mCondition = condition;
+        mLeft = null;
+        mRight = null;
+        mSourceTables = new HashSet<>();
+        if (condition.getLeftConstant() == null) {
+            mSourceTables.add(condition.getLeftTableName());
+        }
+        if (condition.getRightConstant() == null) {
+            mSourceTables.add(condition.getRightTableName());
+        }
+    }
+
+    /**
+     * Initialize an AND or OR node.
+     *
+     * @param condition condition with operator AND or OR.
+     * @param left left child.
+     * @param right right child.
+     */
+    public ConditionNode(Condition condition, ConditionNode left, ConditionNode right) {
+        mCondition = condition;
+        mLeft = left;
+        mRight = right;
+        mSourceTables = new HashSet<>(left.mSourceTables);
+        mSourceTables.addAll(right.mSourceTables);
+    }
+
+    /**
+     * Build a condition tree from conditions in postfix order.
+     *
+     * @param conditions conditions in postfix order, must be non-empty.
+     * @return root of condition tree.
+     */
+    public static ConditionNode build(ArrayList<Condition> conditions) {
+        Stack<ConditionNode> nodes = new Stack<>();
+        for (Condition condition : conditions) {
+            if (condition.getOperator() == BinaryOperator.AND || condition.getOperator() == BinaryOperator.OR) {
+                ConditionNode right = nodes.pop();
+                ConditionNode left = nodes.pop();
+                nodes.push(new ConditionNode(condition, left, right));
+            } else {
+                nodes.push(new ConditionNode(condition));
+            }
+        }
+        return nodes.pop();
+    }
+
+    /**
+     * Condition getter.
+     *
+     * @return condition of this node.
+     */
+    public Condition getCondition() {
+        return mCondition;
+    }
+
+    /**
+     * Left child getter.
+     *
+     * @return left child, null if leaf.
+     */
+    public ConditionNode getLeft() {
+        return mLeft;
+    }
+
+    /**
+     * Right child getter.
+     *
+     * @return right child, null if leaf.
+     */
+    public ConditionNode getRight() {
+        return mRight;
+    }
+
+    /**
+     * Check whether this node is a leaf.
+     *
+     * @return true if leaf.
+     */
+    public boolean isLeaf() {
+        return mLeft == null;
+    }
+
+    /**
+     * Get names of all tables referenced in this subtree.
+     * Constant conditions such as 1 = 1 reference no table.
+     *
+     * @return a set of table names.
+     */
+    public HashSet<String> getSourceTables() {
+        return mSourceTables;
+    }
+
+    /**
+     * Check whether evaluating this subtree as a table produces
+     * a cartesian product of tables, which happens for AND or OR
+     * between subtrees over different tables.
+     *
+     * @return true if cartesian product needed.
+     */
+    public boolean needsCrossProduct() {
+        if (isLeaf()) {
+            return false;
+        }
+        if (mCondition.getOperator() == BinaryOperator.OR) {
+            return !mLeft.mSourceTables.equals(mRight.mSourceTables)
+                    || mLeft.needsCrossProduct() || mRight.needsCrossProduct();
+        }
+        if (mLeft.mSourceTables.containsAll(mRight.mSourceTables) && !mLeft.needsCrossProduct()) {
+            return false;
+        }
+        return !(mRight.mSourceTables.containsAll(mLeft.mSourceTables) && !mRight.needsCrossProduct());
+    }
+
+    /**
+     * Generate a predicate on records of table given.
+     * The table must contain all attributes referenced in this subtree.
+     *
+     * @param table table whose records will be tested.
+     * @return a predicate on data records.
+     */
+    public Predicate<DataRecord> toPredicate(Table table) {
+        if (!isLeaf()) {
+            Predicate<DataRecord> left = mLeft.toPredicate(table);
+            Predicate<DataRecord> right = mRight.toPredicate(table);
+            if (mCondition.getOperator() == BinaryOperator.AND) {
+                return left.and(right);
+            } else {
+                return left.or(right);
+            }
+        }
+        boolean isResultTable = table.getTablename().equalsIgnoreCase("$result");
+        BinaryOperator operator = mCondition.getOperator();
+        Object leftConstant = (mCondition.getLeftConstant() != null) ? Condition.getConstant(mCondition.getLeftConstant()) : null;
+        Object rightConstant = (mCondition.getRightConstant() != null) ? Condition.getConstant(mCondition.getRightConstant()) : null;
+        int leftIndex = -1;
+        int rightIndex = -1;
+        if (mCondition.getLeftConstant() == null) {
+            leftIndex = table.getAttributeIndex(isResultTable ?
+                    mCondition.getLeftTableName() + "." + mCondition.getLeftAttribute() : mCondition.getLeftAttribute());
+            if (leftIndex == -1) {
+                return record -> false;
+            }
+        }
+        if (mCondition.getRightConstant() == null) {
+            rightIndex = table.getAttributeIndex(isResultTable ?
+                    mCondition.getRightTableName() + "." + mCondition.getRightAttribute() : mCondition.getRightAttribute());
+            if (rightIndex == -1) {
+                return record -> false;
+            }
+        }
+        final int left = leftIndex;
+        final int right = rightIndex;
+        if (left == -1 && right == -1) {
+            boolean result = Condition.calculateResult(leftConstant, rightConstant, operator);
+            return record -> result;
+        } else if (left == -1) {
+            return record -> Condition.calculateResult(leftConstant, record.get(right), operator);
+        } else if (right == -1) {
+            return record -> Condition.calculateResult(record.get(left), rightConstant, operator);
+        } else {
+            return record -> Condition.calculateResult(record.get(left), record.get(right), operator);
+        }
+    }
+}
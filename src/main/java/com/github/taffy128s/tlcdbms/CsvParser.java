@@ -0,0 +1,428 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Streaming CSV parser for LOAD DATA.
+ *
+ * The file is read in chunks of whole lines, a batch of chunks is parsed
+ * in parallel straight from bytes, and fields are typed against the table
+ * columns. One line is one record: fields are separated by a terminator
+ * character, may be enclosed in double quotes (a doubled quote inside
+ * stands for one quote), and an unquoted empty field, NULL or \N is null.
+ * Lines that cannot be typed are reported by line number and skipped.
+ */
+public class CsvParser {
+    /**
+     * Size of a chunk to read and parse by one thread.
+     */
+    public static final int CHUNK_SIZE = 1 << 22;
+
+    /**
+     * Records parsed from a chunk.
+     */
+    private static class ParsedChunk {
+        private ArrayList<DataRecord> mRecords = new ArrayList<>();
+        private ArrayList<Integer> mLineNumbers = new ArrayList<>();
+        private TreeMap<Integer, String> mErrors = new TreeMap<>();
+        private int mLineCount = 0;
+    }
+
+    private ArrayList<String> mAttributeNames;
+    private ArrayList<DataType> mAttributeTypes;
+    private byte mTerminator;
+    private String mFilename;
+    private InputStream mStream;
+    private byte[] mRemainder;
+    private boolean mEnded;
+    private int mLineCount;
+    private ArrayList<Integer> mLineNumbers;
+    private TreeMap<Integer, String> mErrors;
+
+    /**
+     * Initialize a parser for records of given columns.
+     *
+     * @param attributeNames column names, used in error messages.
+     * @param attributeTypes column types.
+     * @param terminator field terminator, an ASCII character.
+     */
+    public CsvParser(ArrayList<String> attributeNames, ArrayList<DataType> attributeTypes, char terminator) {
+        mAttributeNames = attributeNames;
+        mAttributeTypes = attributeTypes;
+        mTerminator = (byte) terminator;
+        mRemainder = new byte[0];
+        mEnded = false;
+        mLineCount = 0;
+        mLineNumbers = new ArrayList<>();
+        mErrors = new TreeMap<>();
+    }
+
+    /**
+     * Open a file to parse.
+     *
+     * @param filename CSV file name.
+     * @return true if succeed, false if failed.
+     */
+    public boolean open(String filename) {
+        mFilename = filename;
+        try {
+            mStream = new FileInputStream(filename);
+            return true;
+        } catch (FileNotFoundException e) {
+            System.out.println(filename + ": no such file or directory.");
+        }
+        return false;
+    }
+
+    /**
+     * Close the file.
+     */
+    public void close() {
+        try {
+            if (mStream != null) {
+                mStream.close();
+            }
+        } catch (IOException e) {
+            System.err.println(mFilename + ": file I/O error.");
+        }
+        mStream = null;
+    }
+
+    /**
+     * Read and parse the next batch of lines, one chunk per degree of parallelism.
+     *
+     * @return valid records in line order, null at end of file or if failed.
+     */
+    public ArrayList<DataRecord> readBatch() {
+        mLineNumbers = new ArrayList<>();
+        mErrors = new TreeMap<>();
+        if (mEnded) {
+            return null;
+        }
+        ArrayList<byte[]> chunks = new ArrayList<>();
+        int parallelism = ParallelScanner.getParallelism();
+        try {
+            while (chunks.size() < parallelism && !mEnded) {
+                byte[] chunk = readChunk();
+                if (chunk.length > 0) {
+                    chunks.add(chunk);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println(mFilename + ": file I/O error.");
+            mEnded = true;
+            return null;
+        }
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        ArrayList<ParsedChunk> parsedChunks = new ArrayList<>();
+        if (chunks.size() == 1) {
+            parsedChunks.add(parseChunk(chunks.get(0)));
+        } else {
+            ArrayList<ForkJoinTask<ParsedChunk>> tasks = new ArrayList<>();
+            for (byte[] chunk : chunks) {
+                tasks.add(ParallelScanner.getPool().submit(() -> parseChunk(chunk)));
+            }
+            for (ForkJoinTask<ParsedChunk> task : tasks) {
+                parsedChunks.add(task.join());
+            }
+        }
+        ArrayList<DataRecord> records = new ArrayList<>();
+        for (ParsedChunk parsedChunk : parsedChunks) {
+            records.addAll(parsedChunk.mRecords);
+            for (int lineNumber : parsedChunk.mLineNumbers) {
+                mLineNumbers.add(mLineCount + lineNumber);
+            }
+            for (Map.Entry<Integer, String> error : parsedChunk.mErrors.entrySet()) {
+                mErrors.put(mLineCount + error.getKey(), error.getValue());
+            }
+            mLineCount += parsedChunk.mLineCount;
+        }
+        return records;
+    }
+
+    /**
+     * Get line numbers (from 1) of records returned by last readBatch().
+     *
+     * @return line number of each record.
+     */
+    public ArrayList<Integer> getLineNumbers() {
+        return mLineNumbers;
+    }
+
+    /**
+     * Get lines of last readBatch() which could not be parsed.
+     *
+     * @return error message of each line, keyed by line number.
+     */
+    public TreeMap<Integer, String> getErrors() {
+        return mErrors;
+    }
+
+    /**
+     * Read about CHUNK_SIZE bytes ending at a line break (or end of file).
+     * Bytes after the last line break are kept for the next chunk.
+     *
+     * @return a chunk of whole lines, may be empty at end of file.
+     * @throws IOException if read failed.
+     */
+    private byte[] readChunk() throws IOException {
+        byte[] buffer = Arrays.copyOf(mRemainder, mRemainder.length + CHUNK_SIZE);
+        int size = mRemainder.length;
+        int searchFrom = size;
+        while (true) {
+            int read = mStream.read(buffer, size, buffer.length - size);
+            if (read == -1) {
+                mEnded = true;
+                mRemainder = new byte[0];
+                return Arrays.copyOf(buffer, size);
+            }
+            size += read;
+            if (size < buffer.length) {
+                continue;
+            }
+            int end = size - 1;
+            while (end >= searchFrom && buffer[end] != '\n') {
+                --end;
+            }
+            if (end >= searchFrom) {
+                mRemainder = Arrays.copyOfRange(buffer, end + 1, size);
+                return Arrays.copyOf(buffer, end + 1);
+            }
+            // a line longer than buffer, keep reading.
+            searchFrom = size;
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+    }
+
+    /**
+     * Parse a chunk of whole lines. Empty lines are skipped.
+     *
+     * @param data bytes of lines.
+     * @return parsed records and errors, line numbers start from 1.
+     */
+    private ParsedChunk parseChunk(byte[] data) {
+        ParsedChunk result = new ParsedChunk();
+        byte[] field = new byte[256];
+        int pos = 0;
+        while (pos < data.length) {
+            int line = ++result.mLineCount;
+            int lineEnd = pos;
+            while (lineEnd < data.length && data[lineEnd] != '\n') {
+                ++lineEnd;
+            }
+            int contentEnd = (lineEnd > pos && data[lineEnd - 1] == '\r') ? lineEnd - 1 : lineEnd;
+            if (contentEnd == pos) {
+                pos = lineEnd + 1;
+                continue;
+            }
+            DataRecord record = new DataRecord();
+            String error = null;
+            int column = 0;
+            int cursor = pos;
+            while (error == null) {
+                if (column >= mAttributeTypes.size()) {
+                    error = "Too many fields, " + mAttributeTypes.size() + " expected.";
+                    break;
+                }
+                Object value;
+                int next;
+                if (cursor < contentEnd && data[cursor] == '"') {
+                    int length = 0;
+                    int i = cursor + 1;
+                    boolean closed = false;
+                    while (i < contentEnd) {
+                        if (data[i] == '"') {
+                            if (i + 1 < contentEnd && data[i + 1] == '"') {
+                                i += 2;
+                                field = appendByte(field, length++, (byte) '"');
+                                continue;
+                            }
+                            closed = true;
+                            ++i;
+                            break;
+                        }
+                        field = appendByte(field, length++, data[i++]);
+                    }
+                    if (!closed) {
+                        error = "Quotes not matched.";
+                        break;
+                    }
+                    if (i < contentEnd && data[i] != mTerminator) {
+                        error = "Field terminator expected after closing quote.";
+                        break;
+                    }
+                    next = i;
+                    value = toValue(field, 0, length, column);
+                    if (value == null) {
+                        error = getTypeError(field, 0, length, column);
+                        break;
+                    }
+                } else {
+                    int i = cursor;
+                    while (i < contentEnd && data[i] != mTerminator) {
+                        ++i;
+                    }
+                    next = i;
+                    if (isNull(data, cursor, i)) {
+                        value = null;
+                    } else {
+                        value = toValue(data, cursor, i - cursor, column);
+                        if (value == null) {
+                            error = getTypeError(data, cursor, i - cursor, column);
+                            break;
+                        }
+                    }
+                }
+                record.append(value);
+                ++column;
+                if (next >= contentEnd) {
+                    break;
+                }
+                cursor = next + 1;
+                if (cursor == contentEnd) {
+                    // line ends with a terminator, last field is empty.
+                    if (column >= mAttributeTypes.size()) {
+                        error = "Too many fields, " + mAttributeTypes.size() + " expected.";
+                    } else {
+                        record.append(null);
+                        ++column;
+                    }
+                    break;
+                }
+            }
+            if (error == null && column != mAttributeTypes.size()) {
+                error = "Too few fields, " + mAttributeTypes.size() + " expected, " + column + " given.";
+            }
+            if (error == null) {
+                result.mRecords.add(record);
+                result.mLineNumbers.add(line);
+            } else {
+                result.mErrors.put(line, error);
+            }
+            pos = lineEnd + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Append a byte to a buffer, growing it if needed.
+     *
+     * @param buffer buffer to append to.
+     * @param index position to write.
+     * @param value byte to write.
+     * @return buffer, or a larger copy of it.
+     */
+    private static byte[] appendByte(byte[] buffer, int index, byte value) {
+        if (index >= buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[index] = value;
+        return buffer;
+    }
+
+    /**
+     * Check whether an unquoted field is null, i.e. empty, NULL or \N.
+     *
+     * @param data bytes of line.
+     * @param from start of field.
+     * @param to end of field, exclusive.
+     * @return true if null.
+     */
+    private static boolean isNull(byte[] data, int from, int to) {
+        int length = to - from;
+        if (length == 0) {
+            return true;
+        } else if (length == 2) {
+            return data[from] == '\\' && data[from + 1] == 'N';
+        } else if (length == 4) {
+            return (data[from] | 0x20) == 'n' && (data[from + 1] | 0x20) == 'u'
+                    && (data[from + 2] | 0x20) == 'l' && (data[from + 3] | 0x20) == 'l';
+        }
+        return false;
+    }
+
+    /**
+     * Type a field against its column.
+     *
+     * @param data bytes holding the field.
+     * @param from start of field.
+     * @param length length of field in bytes.
+     * @param column column index.
+     * @return an Integer or a quoted String, null if invalid.
+     */
+    private Object toValue(byte[] data, int from, int length, int column) {
+        DataType type = mAttributeTypes.get(column);
+        if (type.getType() == DataTypeIdentifier.INT) {
+            return parseInteger(data, from, length);
+        }
+        String value = new String(data, from, length, StandardCharsets.UTF_8);
+        if (!DataChecker.isValidVarChar(value, type.getLimit()) || value.indexOf('\0') != -1) {
+            return null;
+        }
+        return "'" + value + "'";
+    }
+
+    /**
+     * Get error message of a field which toValue() rejected.
+     *
+     * @param data bytes holding the field.
+     * @param from start of field.
+     * @param length length of field in bytes.
+     * @param column column index.
+     * @return error message.
+     */
+    private String getTypeError(byte[] data, int from, int length, int column) {
+        DataType type = mAttributeTypes.get(column);
+        String value = new String(data, from, length, StandardCharsets.UTF_8);
+        String prefix = "For attribute '" + mAttributeNames.get(column) + "': ";
+        if (type.getType() == DataTypeIdentifier.INT) {
+            return prefix + "Wrong input type (INT expected): " + value + ".";
+        }
+        return prefix + "Wrong input type (VARCHAR(" + type.getLimit() + ") expected): " + value
+                + " with length " + value.length() + ".";
+    }
+
+    /**
+     * Parse a decimal INT from bytes.
+     *
+     * @param data bytes holding the number.
+     * @param from start of number.
+     * @param length length of number in bytes.
+     * @return parsed value, null if not a valid INT.
+     */
+    static Integer parseInteger(byte[] data, int from, int length) {
+        int i = from;
+        int end = from + length;
+        boolean negative = false;
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            ++i;
+        }
+        if (i == end || end - i > 10) {
+            return null;
+        }
+        long value = 0;
+        for (; i < end; ++i) {
+            if (data[i] < '0' || data[i] > '9') {
+                return null;
+            }
+            value = value * 10 + (data[i] - '0');
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+            return null;
+        }
+        return (int) value;
+    }
+}
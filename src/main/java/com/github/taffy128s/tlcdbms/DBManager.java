@@ -1,12 +1,21 @@
 package com.github.taffy128s.tlcdbms;
 
 import com.github.taffy128s.tlcdbms.sqlparsers.SQLParseResult;
+import com.github.taffy128s.tlcdbms.sqlparsers.SQLParser;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
 /**
  * Database manager.
  * Check the result generated by parser, and pass it to table(if valid).
+ *
+ * One manager can be shared by sessions on different threads. Tables used
+ * by a query are kept per thread. CREATE and DROP wait for all other
+ * statements, statements changing records (INSERT, DELETE, UPDATE, LOAD DATA)
+ * run one at a time, and SELECT reads a snapshot, so it runs along with all of them.
  */
 public class DBManager implements DiskWritable {
     /**
@@ -28,15 +37,43 @@ public class DBManager implements DiskWritable {
 
     public static final String FILENAME = "dbtables.tlc";
     public static final String DIRNAME = "dbtlc";
+    /**
+     * LOAD DATA prints messages of at most this many failed lines.
+     */
+    private static final int MAX_REPORTED_LOAD_ERRORS = 10;
 
     private HashMap<String, Table> mTables;
-    private HashMap<String, Table> mQueryTables;
+    private ThreadLocal<HashMap<String, Table>> mQueryTables;
+    private ResultCache mResultCache;
+    private ReentrantReadWriteLock mCatalogLock;
+    private ReentrantLock mWriteLock;
 
     /**
      * Initialize.
      */
     public DBManager() {
         mTables = new HashMap<>();
+        mQueryTables = ThreadLocal.withInitial(HashMap::new);
+        mResultCache = new ResultCache();
+        mCatalogLock = new ReentrantReadWriteLock();
+        mWriteLock = new ReentrantLock();
+    }
+
+    /**
+     * Start a statement which changes records of tables. Tables are not
+     * created or dropped until it ends, and other such statements wait.
+     */
+    private void lockForWrite() {
+        mCatalogLock.readLock().lock();
+        mWriteLock.lock();
+    }
+
+    /**
+     * End a statement started by lockForWrite().
+     */
+    private void unlockForWrite() {
+        mWriteLock.unlock();
+        mCatalogLock.readLock().unlock();
     }
 
     /**
@@ -45,61 +82,252 @@ public class DBManager implements DiskWritable {
      * @param parameter parse result generated by parser.
      */
     public void create(SQLParseResult parameter) {
-        String tablename = parameter.getTablename();
-        ArrayList<String> attributeNames = parameter.getAttributeNames();
-        ArrayList<DataType> attributeTypes = parameter.getAttributeTypes();
-        ArrayList<TableStructure> attributeIndices = parameter.getAttributeIndices();
-        int primaryKey = parameter.getPrimaryKeyIndex();
-        if (mTables.containsKey(tablename)) {
-            System.out.println("Table '" + tablename + "' already exists.");
-            return;
+        mCatalogLock.writeLock().lock();
+        try {
+            String tablename = parameter.getTablename();
+            ArrayList<String> attributeNames = parameter.getAttributeNames();
+            ArrayList<DataType> attributeTypes = parameter.getAttributeTypes();
+            ArrayList<TableStructure> attributeIndices = parameter.getAttributeIndices();
+            int primaryKey = parameter.getPrimaryKeyIndex();
+            if (mTables.containsKey(tablename)) {
+                System.out.println("Table '" + tablename + "' already exists.");
+                return;
+            }
+            Table newTable = new MultiIndexTable(tablename, attributeNames, attributeTypes, attributeIndices, primaryKey, -1);
+            mTables.put(tablename, newTable);
+            appendTableToTableList(FILENAME, tablename);
+            mTables.get(tablename).writeToDisk("./" + DIRNAME + "/" + tablename + ".tlctable");
+            System.out.println("Query OK, table '" + tablename + "' created successfully.");
+        } finally {
+            mCatalogLock.writeLock().unlock();
         }
-        Table newTable = new MultiIndexTable(tablename, attributeNames, attributeTypes, attributeIndices, primaryKey, -1);
-        mTables.put(tablename, newTable);
-        appendTableToTableList(FILENAME, tablename);
-        mTables.get(tablename).writeToDisk("./" + DIRNAME + "/" + tablename + ".tlctable");
-        System.out.println("Query OK, table '" + tablename + "' created successfully.");
     }
 
     /**
-     * Do INSERT.
+     * Do CREATE MATERIALIZED VIEW.
      *
      * @param parameter parse result generated by parser.
      */
-    public void insert(SQLParseResult parameter) {
-        String tablename = parameter.getTablename();
-        if (!mTables.containsKey(tablename)) {
-            System.out.println("Table '" + tablename + "' not exists.");
-            return;
+    public void createView(SQLParseResult parameter) {
+        mCatalogLock.writeLock().lock();
+        try {
+            String viewname = parameter.getTablename();
+            SQLParseResult statement = parameter.getStatement();
+            if (mTables.containsKey(viewname)) {
+                System.out.println("Table '" + viewname + "' already exists.");
+                return;
+            }
+            mQueryTables.set(new HashMap<>());
+            MaterializedView view = buildView(viewname, statement, statement.getQueryText());
+            mQueryTables.set(new HashMap<>());
+            if (view == null) {
+                return;
+            }
+            appendTableToTableList(FILENAME, viewname);
+            view.writeToDisk("./" + DIRNAME + "/" + viewname + ".tlctable");
+            System.out.println("Query OK, materialized view '" + viewname + "' created successfully.");
+        } finally {
+            mCatalogLock.writeLock().unlock();
         }
-        ArrayList<DataRecord> dataRecords = generateDataRecord(parameter);
-        if (dataRecords == null || dataRecords.isEmpty()) {
-            return;
+    }
+
+    /**
+     * Build a materialized view from its defining SELECT and register it on its base table.
+     *
+     * @param viewname name of view.
+     * @param parameter parse result of SELECT, will be modified.
+     * @param definition SELECT statement text.
+     * @return the view, null if definition is not supported.
+     */
+    private MaterializedView buildView(String viewname, SQLParseResult parameter, String definition) {
+        if (parameter.getTablenames().size() != 1) {
+            System.out.println("Materialized view should select from exactly one table.");
+            return null;
         }
-        int succeed = 0;
-        int failed = 0;
-        for (DataRecord dataRecord : dataRecords) {
-            if (dataRecords.size() > 1) {
-                System.out.print("Inserting " + dataRecord.toString() + "... ");
+        String baseTablename = parameter.getTablenames().get(0);
+        if (!mTables.containsKey(baseTablename)) {
+            System.out.println("Table '" + baseTablename + "' doesn't exist.");
+            return null;
+        }
+        if (!(mTables.get(baseTablename) instanceof MultiIndexTable)) {
+            System.out.println("Materialized view cannot be defined on '" + baseTablename + "'.");
+            return null;
+        }
+        if (parameter.getAttributeNames() != null || parameter.getShowRowLimitation() != -1) {
+            System.out.println("ORDER BY and LIMIT are not supported in materialized view.");
+            return null;
+        }
+        MultiIndexTable baseTable = (MultiIndexTable) mTables.get(baseTablename);
+        String alias = parameter.getTableAliases().keySet().iterator().next();
+        Table aliasTable = baseTable.generateAliasTable(alias);
+        mQueryTables.get().put(alias, aliasTable);
+        if (!resolveSelect(parameter)) {
+            return null;
+        }
+        Table resultTable = aliasTable.generateEmptyResultTable();
+        ArrayList<String> targetAttributeNames = new ArrayList<>();
+        ArrayList<DataType> targetAttributeTypes = new ArrayList<>();
+        ArrayList<Integer> targetIndices = new ArrayList<>();
+        ArrayList<QueryType> targetQueryTypes = new ArrayList<>();
+        resolveTargets(parameter, resultTable, targetAttributeNames, targetAttributeTypes, targetIndices, targetQueryTypes);
+        boolean hasAggregation = parameter.getGroupTargets() != null;
+        for (QueryType queryType : targetQueryTypes) {
+            if (queryType != QueryType.NORMAL) {
+                hasAggregation = true;
             }
-            InsertionResult checkResult = mTables.get(tablename).checkInputData(dataRecord);
-            if (checkResult == InsertionResult.DUPLICATED_DATA_TUPLE) {
-                System.out.println("Data tuple already exists in table.");
-                ++failed;
-            } else if (checkResult == InsertionResult.NULL_PRIMARY_KEY) {
-                System.out.println("Primary Key field cannot be null.");
-                ++failed;
-            } else if (checkResult == InsertionResult.DUPLICATED_PRIMARY_KEY) {
-                int primaryKeyIndex = mTables.get(tablename).getPrimaryKey();
-                System.out.println("Primary Key " + dataRecord.get(primaryKeyIndex) + " already exists in table.");
-                ++failed;
-            } else {
+        }
+        ArrayList<Integer> groupIndices = null;
+        if (hasAggregation) {
+            if (!postCheckGroupBy(targetAttributeNames, targetQueryTypes, parameter.getGroupTargets())) {
+                return null;
+            }
+            groupIndices = new ArrayList<>();
+            if (parameter.getGroupTargets() != null) {
+                for (String groupTarget : parameter.getGroupTargets()) {
+                    groupIndices.add(resultTable.getAttributeIndex(groupTarget));
+                }
+            }
+        }
+        ArrayList<String> columnNames = new ArrayList<>();
+        HashSet<String> columnNameSet = new HashSet<>();
+        for (String targetAttributeName : targetAttributeNames) {
+            String columnName = targetAttributeName.replace(alias + ".", "");
+            if (columnName.endsWith("(*)")) {
+                columnName = columnName.substring(0, columnName.length() - 3);
+            } else if (columnName.endsWith(")")) {
+                columnName = columnName.replace("(", "_").replace(")", "");
+            }
+            if (!columnNameSet.add(columnName)) {
+                System.out.println("Duplicate column name '" + columnName + "' in materialized view.");
+                return null;
+            }
+            columnNames.add(columnName);
+        }
+        Predicate<DataRecord> predicate = null;
+        if (!parameter.getConditions().isEmpty()) {
+            predicate = ConditionNode.build(parameter.getConditions()).toPredicate(aliasTable);
+        }
+        MaterializedView view = new MaterializedView(viewname, columnNames, targetAttributeTypes, baseTablename,
+                definition, predicate, groupIndices, targetIndices, targetQueryTypes);
+        view.build(baseTable.getAllRecords());
+        baseTable.addView(view);
+        mTables.put(viewname, view);
+        return view;
+    }
+
+    /**
+     * Do INSERT.
+     *
+     * @param parameter parse result generated by parser.
+     */
+    public void insert(SQLParseResult parameter) {
+        lockForWrite();
+        try {
+            String tablename = parameter.getTablename();
+            if (!mTables.containsKey(tablename)) {
+                System.out.println("Table '" + tablename + "' not exists.");
+                return;
+            }
+            if (mTables.get(tablename) instanceof MaterializedView) {
+                System.out.println("Cannot insert into materialized view '" + tablename + "'.");
+                return;
+            }
+            ArrayList<DataRecord> dataRecords = generateDataRecord(parameter);
+            if (dataRecords == null || dataRecords.isEmpty()) {
+                return;
+            }
+            Table table = mTables.get(tablename);
+            if (dataRecords.size() > 1 && table instanceof MultiIndexTable) {
+                bulkInsert((MultiIndexTable) table, dataRecords);
+                return;
+            }
+            int succeed = 0;
+            int failed = 0;
+            for (DataRecord dataRecord : dataRecords) {
                 if (dataRecords.size() > 1) {
-                    System.out.println("Success");
+                    System.out.print("Inserting " + dataRecord.toString() + "... ");
+                }
+                InsertionResult checkResult = table.checkInputData(dataRecord);
+                if (checkResult == InsertionResult.SUCCESS) {
+                    if (dataRecords.size() > 1) {
+                        System.out.println("Success");
+                    }
+                    table.insert(dataRecord);
+                    ++succeed;
+                } else {
+                    System.out.println(getInsertionMessage(table, dataRecord, checkResult));
+                    ++failed;
                 }
-                mTables.get(tablename).insert(dataRecord);
-                ++succeed;
             }
+            printInsertSummary(tablename, succeed, failed);
+        } finally {
+            unlockForWrite();
+        }
+    }
+
+    /**
+     * Insert many records into a table at once: validate the whole batch,
+     * merge accepted records into indices, and append them to disk with a single write.
+     * Prints the same messages as inserting records one by one.
+     *
+     * @param table table to insert into.
+     * @param dataRecords records to insert, in input order.
+     */
+    private void bulkInsert(MultiIndexTable table, ArrayList<DataRecord> dataRecords) {
+        ArrayList<InsertionResult> checkResults = table.checkInputData(dataRecords);
+        ArrayList<DataRecord> accepted = new ArrayList<>();
+        StringBuilder output = new StringBuilder();
+        int failed = 0;
+        for (int i = 0; i < dataRecords.size(); ++i) {
+            DataRecord dataRecord = dataRecords.get(i);
+            output.append("Inserting ").append(dataRecord.toString()).append("... ");
+            if (checkResults.get(i) == InsertionResult.SUCCESS) {
+                output.append("Success\n");
+                accepted.add(dataRecord);
+            } else {
+                output.append(getInsertionMessage(table, dataRecord, checkResults.get(i))).append('\n');
+                ++failed;
+            }
+            if (output.length() >= 8192) {
+                System.out.print(output);
+                output.setLength(0);
+            }
+        }
+        System.out.print(output);
+        if (!accepted.isEmpty()) {
+            table.insertBatch(accepted);
+        }
+        printInsertSummary(table.getTablename(), accepted.size(), failed);
+    }
+
+    /**
+     * Get error message of a rejected record.
+     *
+     * @param table table inserting into.
+     * @param dataRecord rejected record.
+     * @param checkResult result of checkInputData().
+     * @return message to print.
+     */
+    private String getInsertionMessage(Table table, DataRecord dataRecord, InsertionResult checkResult) {
+        if (checkResult == InsertionResult.DUPLICATED_DATA_TUPLE) {
+            return "Data tuple already exists in table.";
+        } else if (checkResult == InsertionResult.NULL_PRIMARY_KEY) {
+            return "Primary Key field cannot be null.";
+        } else {
+            return "Primary Key " + dataRecord.get(table.getPrimaryKey()) + " already exists in table.";
+        }
+    }
+
+    /**
+     * Touch table and print summary of an INSERT.
+     *
+     * @param tablename name of table inserted into.
+     * @param succeed number of records inserted.
+     * @param failed number of records rejected.
+     */
+    private void printInsertSummary(String tablename, int succeed, int failed) {
+        if (succeed > 0) {
+            mTables.get(tablename).touch();
         }
         if (succeed == 1) {
             System.out.println("Query OK, table '" + tablename + "': 1 row added.");
@@ -113,15 +341,215 @@ public class DBManager implements DiskWritable {
         }
     }
 
+    /**
+     * Do DELETE.
+     *
+     * @param parameter parse result generated by parser.
+     */
+    public void delete(SQLParseResult parameter) {
+        lockForWrite();
+        try {
+            MultiIndexTable table = getModifiableTable(parameter.getTablename(), "delete from");
+            if (table == null) {
+                return;
+            }
+            ArrayList<DataRecord> matched = getMatchedRecords(parameter);
+            if (matched == null) {
+                return;
+            }
+            if (!matched.isEmpty()) {
+                table.deleteAll(matched);
+                table.touch();
+            }
+            printModifySummary(parameter.getTablename(), matched.size(), matched.size(), "deleted");
+        } finally {
+            unlockForWrite();
+        }
+    }
+
+    /**
+     * Do UPDATE.
+     * All changed records are checked together as if they were inserted
+     * after removing the old ones; if any is rejected, nothing is updated.
+     *
+     * @param parameter parse result generated by parser.
+     */
+    public void update(SQLParseResult parameter) {
+        lockForWrite();
+        try {
+            MultiIndexTable table = getModifiableTable(parameter.getTablename(), "update");
+            if (table == null) {
+                return;
+            }
+            ArrayList<DataRecord> values = generateDataRecord(parameter);
+            if (values == null) {
+                return;
+            }
+            ArrayList<Integer> updateIndices = new ArrayList<>();
+            for (String attrName : parameter.getUpdateOrder()) {
+                updateIndices.add(table.getAttributeNames().indexOf(attrName));
+            }
+            ArrayList<DataRecord> matched = getMatchedRecords(parameter);
+            if (matched == null) {
+                return;
+            }
+            ArrayList<DataRecord> oldRecords = new ArrayList<>();
+            ArrayList<DataRecord> newRecords = new ArrayList<>();
+            for (DataRecord record : matched) {
+                DataRecord newRecord = new DataRecord();
+                newRecord.appendAll(record.getAllFields());
+                for (int index : updateIndices) {
+                    newRecord.set(index, values.get(0).get(index));
+                }
+                if (!newRecord.equals(record)) {
+                    oldRecords.add(record);
+                    newRecords.add(newRecord);
+                }
+            }
+            if (!oldRecords.isEmpty()) {
+                ArrayList<InsertionResult> checkResults = table.update(oldRecords, newRecords);
+                boolean rejected = false;
+                for (int i = 0; i < checkResults.size(); ++i) {
+                    if (checkResults.get(i) != InsertionResult.SUCCESS) {
+                        System.out.print("Updating " + oldRecords.get(i).toString() + "... ");
+                        System.out.println(getInsertionMessage(table, newRecords.get(i), checkResults.get(i)));
+                        rejected = true;
+                    }
+                }
+                if (rejected) {
+                    System.out.println("Query aborted, table '" + parameter.getTablename() + "': no rows updated.");
+                    return;
+                }
+                table.touch();
+            }
+            printModifySummary(parameter.getTablename(), matched.size(), oldRecords.size(), "updated");
+        } finally {
+            unlockForWrite();
+        }
+    }
+
+    /**
+     * Get a table which DELETE or UPDATE can modify.
+     *
+     * @param tablename name of table.
+     * @param action action in error message, e.g. "delete from".
+     * @return the table, null if not exists or not modifiable.
+     */
+    private MultiIndexTable getModifiableTable(String tablename, String action) {
+        if (!mTables.containsKey(tablename)) {
+            System.out.println("Table '" + tablename + "' not exists.");
+            return null;
+        }
+        Table table = mTables.get(tablename);
+        if (!(table instanceof MultiIndexTable)) {
+            String kind = (table instanceof MaterializedView) ? "materialized view" : "table";
+            System.out.println("Cannot " + action + " " + kind + " '" + tablename + "'.");
+            return null;
+        }
+        return (MultiIndexTable) table;
+    }
+
+    /**
+     * Get records of the table of a DELETE or UPDATE which satisfy its WHERE clause,
+     * using indices the same way as SELECT.
+     *
+     * @param parameter parse result of DELETE or UPDATE.
+     * @return matched records, each once, null if conditions are invalid.
+     */
+    private ArrayList<DataRecord> getMatchedRecords(SQLParseResult parameter) {
+        String tablename = parameter.getTablename();
+        Table table = mTables.get(tablename);
+        if (parameter.getConditions() == null || parameter.getConditions().isEmpty()) {
+            return new ArrayList<>(table.getAllRecords());
+        }
+        mQueryTables.set(new HashMap<>());
+        mQueryTables.get().put(tablename, table.generateAliasTable(tablename));
+        ArrayList<DataRecord> matched = null;
+        boolean valid = true;
+        for (Condition condition : parameter.getConditions()) {
+            if (condition.getOperator() != BinaryOperator.AND && condition.getOperator() != BinaryOperator.OR
+                    && !setConditionParameters(condition, parameter)) {
+                valid = false;
+                break;
+            }
+        }
+        if (valid) {
+            ArrayList<DataRecord> records = evaluateCondition(ConditionNode.build(parameter.getConditions()), tablename).getAllRecords();
+            RowHashSet seen = new RowHashSet(records.size());
+            matched = new ArrayList<>();
+            for (DataRecord record : records) {
+                if (seen.add(record)) {
+                    matched.add(record);
+                }
+            }
+        }
+        mQueryTables.set(new HashMap<>());
+        return matched;
+    }
+
+    /**
+     * Print summary of a DELETE or UPDATE.
+     *
+     * @param tablename name of table modified.
+     * @param matched number of records satisfying WHERE clause.
+     * @param changed number of records deleted or changed.
+     * @param action "deleted" or "updated".
+     */
+    private void printModifySummary(String tablename, int matched, int changed, String action) {
+        if (changed == 1) {
+            System.out.println("Query OK, table '" + tablename + "': 1 row " + action + ".");
+        } else {
+            System.out.println("Query OK, table '" + tablename + "': " + changed + " rows " + action + ".");
+        }
+        if (matched != changed) {
+            System.out.print("Rows matched: " + matched + "  ");
+            System.out.println("Changed: " + changed);
+        }
+    }
+
     /**
      * Do SELECT.
      *
      * @param parameter parse result generated by parser.
      */
     public void select(SQLParseResult parameter) {
-        mQueryTables = new HashMap<>();
-        innerSelect(parameter);
-        mQueryTables = new HashMap<>();
+        mCatalogLock.readLock().lock();
+        try {
+            if (parameter.getQueryText() != null && parameter.getOutfile() == null && mResultCache.isEnabled()) {
+                ArrayList<String> attributeNames = new ArrayList<>();
+                ArrayList<DataType> attributeTypes = new ArrayList<>();
+                ArrayList<DataRecord> records = mResultCache.get(parameter.getQueryText(), mTables, attributeNames, attributeTypes);
+                if (records != null) {
+                    printTable(attributeNames, attributeTypes, records);
+                    return;
+                }
+            }
+            for (String tableName : parameter.getTablenames()) {
+            	if (!mTables.containsKey(tableName)) {
+            		System.out.println("Table '" + tableName + "' doesn't exist.");
+            		return;
+            	}
+            }
+            // read versions before opening snapshot, so that a result is never
+            // cached with versions of a write the snapshot cannot see.
+            HashMap<String, Long> tableVersions = null;
+            if (parameter.getQueryText() != null && parameter.getOutfile() == null && mResultCache.isEnabled()) {
+                tableVersions = new HashMap<>();
+                for (String tableName : parameter.getTablenames()) {
+                    tableVersions.put(tableName, mTables.get(tableName).getVersion());
+                }
+            }
+            mQueryTables.set(new HashMap<>());
+            long snapshot = VersionClock.openSnapshot();
+            try {
+                innerSelect(parameter, tableVersions, snapshot);
+            } finally {
+                VersionClock.closeSnapshot(snapshot);
+                mQueryTables.set(new HashMap<>());
+            }
+        } finally {
+            mCatalogLock.readLock().unlock();
+        }
     }
 
     /**
@@ -129,94 +557,407 @@ public class DBManager implements DiskWritable {
      * Separate function to let select() clean up mQueryTables.
      *
      * @param parameter parse result generated by parser.
+     * @param tableVersions versions of tables read, null if result should not be cached.
+     * @param snapshot version of snapshot to read tables at.
      */
-    private void innerSelect(SQLParseResult parameter) {
+    private void innerSelect(SQLParseResult parameter, HashMap<String, Long> tableVersions, long snapshot) {
         String randomTablename = "";
         HashMap<String, String> aliasMap = parameter.getTableAliases();
-        for (String tableName : parameter.getTablenames()) {
-        	if (!mTables.containsKey(tableName)) {
-        		System.out.println("Table '" + tableName + "' doesn't exist.");
-        		return;
-        	}
-        }
         for (String alias : aliasMap.keySet()) {
             if (randomTablename.equalsIgnoreCase("")) {
                 randomTablename = alias;
             }
-            mQueryTables.put(alias, mTables.get(aliasMap.get(alias)).generateAliasTable(alias));
-        }
-        if (parameter.getConditions() == null) {
-            parameter.setConditions(new ArrayList<>());
-        }
-        for (Condition condition : parameter.getConditions()) {
-            if (condition.getOperator() == BinaryOperator.AND || condition.getOperator() == BinaryOperator.OR) {
-                continue;
-            }
-            if (!setConditionParameters(condition, parameter)) {
-                return;
-            }
+            mQueryTables.get().put(alias, mTables.get(aliasMap.get(alias)).generateSnapshotTable(alias, snapshot));
         }
-        if (!setTargetsParameters(parameter)) {
-            return;
-        }
-        if (!setGroupTarget(parameter)) {
+        if (!resolveSelect(parameter)) {
             return;
         }
-        if (!setSortingTarget(parameter)) {
-            return;
+        ArrayList<String> targetAttributeNames = new ArrayList<>();
+        ArrayList<DataType> targetAttributeTypes = new ArrayList<>();
+        ArrayList<DataRecord> indexOnlyResult = indexOnlySelect(parameter, mQueryTables.get().get(randomTablename),
+                targetAttributeNames, targetAttributeTypes);
+        if (indexOnlyResult == null) {
+            indexOnlyResult = metadataSelect(parameter, mQueryTables.get().get(randomTablename),
+                    targetAttributeNames, targetAttributeTypes);
         }
-        if (!checkGroupBy(parameter)) {
+        if (indexOnlyResult != null) {
+            finishSelect(parameter, tableVersions, targetAttributeNames, targetAttributeTypes, indexOnlyResult);
             return;
         }
-        Stack<Table> selectedTables = new Stack<>();
-        if (parameter.getConditions().isEmpty()) {
-            selectedTables.push(mQueryTables.get(randomTablename).query(Condition.getAlwaysTrueCondition()));
+        Table resultTable;
+        Table recordTable;
+        if (parameter.getConditions().isEmpty() && aliasMap.size() == 1) {
+            // read records from the table itself, so its indices can serve ORDER BY.
+            recordTable = mQueryTables.get().get(randomTablename);
+            resultTable = recordTable.generateEmptyResultTable();
         } else {
-            for (Condition condition : parameter.getConditions()) {
-                if (condition.getOperator() == BinaryOperator.AND) {
-                    Table second = selectedTables.pop();
-                    Table first = selectedTables.pop();
-                    selectedTables.push(Table.intersect(first, second, mQueryTables));
-                } else if (condition.getOperator() == BinaryOperator.OR) {
-                    Table second = selectedTables.pop();
-                    Table first = selectedTables.pop();
-                    selectedTables.push(Table.union(first, second, mQueryTables));
-                } else if (condition.getLeftConstant() != null && condition.getRightConstant() != null) {
-                    selectedTables.push(mQueryTables.get(randomTablename).query(condition));
-                } else if (condition.getLeftConstant() != null && condition.getRightConstant() == null) {
-                    selectedTables.push(mQueryTables.get(condition.getRightTableName()).query(condition));
-                } else if (condition.getLeftConstant() == null && condition.getRightConstant() != null) {
-                    selectedTables.push(mQueryTables.get(condition.getLeftTableName()).query(condition));
-                } else if (condition.getLeftConstant() == null && condition.getRightConstant() == null) {
-                    if (!condition.getLeftTableName().equals(condition.getRightTableName())) {
-                        selectedTables.push(Table.join(mQueryTables.get(condition.getLeftTableName()), mQueryTables.get(condition.getRightTableName()), condition));
-                    } else {
-                        selectedTables.push(mQueryTables.get(condition.getLeftTableName()).query(condition));
-                    }
+            if (parameter.getConditions().isEmpty()) {
+                resultTable = mQueryTables.get().get(randomTablename).query(Condition.getAlwaysTrueCondition());
+            } else {
+                resultTable = evaluateCondition(ConditionNode.build(parameter.getConditions()), randomTablename);
+            }
+            for (String tablename : aliasMap.keySet()) {
+                if (!resultTable.getSourceTables().contains(tablename)) {
+                    resultTable = Table.join(resultTable, mQueryTables.get().get(tablename), Condition.getAlwaysTrueCondition());
                 }
             }
+            recordTable = resultTable;
         }
-        Table resultTable = selectedTables.pop();
-        for (String tablename : aliasMap.keySet()) {
-            if (!resultTable.getSourceTables().contains(tablename)) {
-                resultTable = Table.join(resultTable, mQueryTables.get(tablename), Condition.getAlwaysTrueCondition());
+        boolean hasAggregation = parameter.getGroupTargets() != null;
+        for (QueryType queryType : parameter.getQueryTypes()) {
+            if (queryType != QueryType.NORMAL) {
+                hasAggregation = true;
             }
         }
-        ArrayList<DataRecord> allRecords;
+        int rowLimitation = hasAggregation ? -1 : parameter.getShowRowLimitation();
+        Iterable<DataRecord> allRecords;
         if (parameter.getAttributeNames() != null) {
             ArrayList<Integer> sortIndices = new ArrayList<>();
             for (String target : parameter.getAttributeNames()) {
-                int sortIndex = resultTable.getAttributeNames().indexOf(target);
+                int sortIndex = resultTable.getAttributeIndex(target);
                 sortIndices.add(sortIndex);
             }
-            allRecords = resultTable.getAllRecords(sortIndices, parameter.getShowSortTypes());
+            if (rowLimitation != -1) {
+                allRecords = recordTable.getTopRecords(sortIndices, parameter.getShowSortTypes(), rowLimitation);
+            } else {
+                allRecords = recordTable.getSortedRecords(sortIndices, parameter.getShowSortTypes());
+            }
         } else {
-            allRecords = resultTable.getAllRecords();
+            allRecords = recordTable.getRecordView();
         }
+        try {
+            outputSelect(parameter, tableVersions, resultTable, recordTable, allRecords, hasAggregation, rowLimitation);
+        } finally {
+            ExternalSorter.release(allRecords);
+        }
+    }
+
+    /**
+     * Project, aggregate and output records read by SELECT.
+     * Separate function to let innerSelect() release sorted records.
+     *
+     * @param parameter parse result of SELECT.
+     * @param tableVersions versions of tables read, null if result should not be cached.
+     * @param resultTable empty table with columns of records.
+     * @param recordTable table records are read from.
+     * @param allRecords records to output, in order.
+     * @param hasAggregation true if SELECT has aggregation or GROUP BY.
+     * @param rowLimitation max number of records to output, -1 if no limitation.
+     */
+    private void outputSelect(SQLParseResult parameter, HashMap<String, Long> tableVersions, Table resultTable, Table recordTable,
+                              Iterable<DataRecord> allRecords, boolean hasAggregation, int rowLimitation) {
         ArrayList<String> targetAttributeNames = new ArrayList<>();
         ArrayList<DataType> targetAttributeTypes = new ArrayList<>();
         ArrayList<Integer> targetIndices = new ArrayList<>();
         ArrayList<QueryType> targetQueryTypes = new ArrayList<>();
+        resolveTargets(parameter, resultTable, targetAttributeNames, targetAttributeTypes, targetIndices, targetQueryTypes);
+        if (!hasAggregation && parameter.getOutfile() != null) {
+            // stream records to file without collecting them.
+            exportResult(parameter, targetAttributeNames, targetAttributeTypes, allRecords.iterator(), targetIndices, rowLimitation);
+            return;
+        }
+        if (!hasAggregation && tableVersions == null) {
+            // print records as they are read, without collecting them.
+            printTable(targetAttributeNames, targetAttributeTypes, project(allRecords, targetIndices, rowLimitation));
+            return;
+        }
+        ArrayList<DataRecord> finalResult;
+        if (hasAggregation) {
+            if (!postCheckGroupBy(targetAttributeNames, targetQueryTypes, parameter.getGroupTargets())) {
+                return;
+            }
+            ArrayList<Integer> groupIndices = new ArrayList<>();
+            if (parameter.getGroupTargets() != null) {
+                for (String groupTarget : parameter.getGroupTargets()) {
+                    groupIndices.add(resultTable.getAttributeIndex(groupTarget));
+                }
+            }
+            HashAggregator aggregator = new HashAggregator(groupIndices, targetIndices, targetQueryTypes);
+            if (parameter.getAttributeNames() == null) {
+                aggregator.addAll(recordTable.getRecordView());
+            } else {
+                aggregator.addAll(allRecords.iterator());
+            }
+            finalResult = aggregator.getResult();
+        } else {
+            finalResult = new ArrayList<>();
+            project(allRecords, targetIndices, rowLimitation).forEach(finalResult::add);
+        }
+        finishSelect(parameter, tableVersions, targetAttributeNames, targetAttributeTypes, finalResult);
+    }
+
+    /**
+     * Get records projected to target columns, projecting each record when it is read.
+     *
+     * @param records records to project.
+     * @param targetIndices column of record for each result column.
+     * @param rowLimitation max number of records to read, -1 if no limitation.
+     * @return projected records, which can be read more than once if records can.
+     */
+    private static Iterable<DataRecord> project(Iterable<DataRecord> records, ArrayList<Integer> targetIndices, int rowLimitation) {
+        return () -> new Iterator<DataRecord>() {
+            private Iterator<DataRecord> mIterator = records.iterator();
+            private int mCount = 0;
+
+            @Override
+            public boolean hasNext() {
+                return (rowLimitation == -1 || mCount < rowLimitation) && mIterator.hasNext();
+            }
+
+            @Override
+            public DataRecord next() {
+                DataRecord record = mIterator.next();
+                DataRecord result = new DataRecord();
+                for (int index : targetIndices) {
+                    result.append(record.get(index));
+                }
+                ++mCount;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Apply LIMIT to result of SELECT, cache and print it.
+     *
+     * @param parameter parse result of SELECT.
+     * @param tableVersions versions of tables read, null if result should not be cached.
+     * @param targetAttributeNames result column names.
+     * @param targetAttributeTypes result column types.
+     * @param finalResult result records.
+     */
+    private void finishSelect(SQLParseResult parameter, HashMap<String, Long> tableVersions, ArrayList<String> targetAttributeNames,
+                              ArrayList<DataType> targetAttributeTypes, ArrayList<DataRecord> finalResult) {
+        if (parameter.getShowRowLimitation() != -1) {
+            int limitation = Math.min(parameter.getShowRowLimitation(), finalResult.size());
+            finalResult.subList(limitation, finalResult.size()).clear();
+        }
+        if (tableVersions != null) {
+            mResultCache.put(parameter.getQueryText(), tableVersions, targetAttributeNames, targetAttributeTypes, finalResult);
+        }
+        if (parameter.getOutfile() != null) {
+            exportResult(parameter, targetAttributeNames, targetAttributeTypes, finalResult.iterator(), null, -1);
+            return;
+        }
+        printTable(targetAttributeNames, targetAttributeTypes, finalResult);
+    }
+
+    /**
+     * Write result of SELECT ... INTO OUTFILE, one record at a time.
+     *
+     * @param parameter parse result of SELECT.
+     * @param targetAttributeNames result column names.
+     * @param targetAttributeTypes result column types.
+     * @param records records to write.
+     * @param targetIndices column of record for each result column, null if records are already projected.
+     * @param rowLimitation max number of records to write, -1 if no limitation.
+     */
+    private void exportResult(SQLParseResult parameter, ArrayList<String> targetAttributeNames, ArrayList<DataType> targetAttributeTypes,
+                              Iterator<DataRecord> records, ArrayList<Integer> targetIndices, int rowLimitation) {
+        RecordExporter exporter = new RecordExporter(parameter.getOutfile(), parameter.getOutfileFormat());
+        if (!exporter.open(targetAttributeNames, targetAttributeTypes)) {
+            return;
+        }
+        boolean succeed = true;
+        while (succeed && records.hasNext() && (rowLimitation == -1 || exporter.getRecordCount() < rowLimitation)) {
+            succeed = exporter.write(records.next(), targetIndices);
+        }
+        succeed &= exporter.close();
+        if (!succeed) {
+            return;
+        }
+        if (exporter.getRecordCount() == 1) {
+            System.out.println("Query OK, 1 row written to '" + parameter.getOutfile() + "'.");
+        } else {
+            System.out.println("Query OK, " + exporter.getRecordCount() + " rows written to '" + parameter.getOutfile() + "'.");
+        }
+    }
+
+    /**
+     * Answer an unfiltered aggregate SELECT from table metadata, without reading records.
+     * Supported when it reads one table without WHERE, GROUP BY and ORDER BY, and its
+     * targets are COUNT(*), COUNT(attribute) of columns with maintained non-null counts,
+     * or MIN() / MAX() of columns with a B+ tree index (first and last key).
+     *
+     * @param parameter parse result of SELECT, already resolved.
+     * @param table alias table to read.
+     * @param targetAttributeNames list to put result column names into.
+     * @param targetAttributeTypes list to put result column types into.
+     * @return result records, null if not supported.
+     */
+    private ArrayList<DataRecord> metadataSelect(SQLParseResult parameter, Table table, ArrayList<String> targetAttributeNames,
+                                                 ArrayList<DataType> targetAttributeTypes) {
+        if (parameter.getTableAliases().size() != 1 || !parameter.getConditions().isEmpty()
+                || parameter.getGroupTargets() != null || parameter.getAttributeNames() != null) {
+            return null;
+        }
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<DataType> types = new ArrayList<>();
+        ArrayList<Integer> targetIndices = new ArrayList<>();
+        ArrayList<QueryType> targetQueryTypes = new ArrayList<>();
+        resolveTargets(parameter, table.generateEmptyResultTable(), names, types, targetIndices, targetQueryTypes);
+        DataRecord record = new DataRecord();
+        for (int i = 0; i < targetIndices.size(); ++i) {
+            int index = targetIndices.get(i);
+            QueryType queryType = targetQueryTypes.get(i);
+            if (queryType == QueryType.COUNT && index == -1) {
+                record.append(table.getRecordCount());
+            } else if (queryType == QueryType.COUNT && table.getNonNullCount(index) != -1) {
+                record.append(table.getNonNullCount(index));
+            } else if (queryType == QueryType.MIN && table.hasOrderedIndex(index)) {
+                record.append(table.getMinKey(index));
+            } else if (queryType == QueryType.MAX && table.hasOrderedIndex(index)) {
+                record.append(table.getMaxKey(index));
+            } else {
+                return null;
+            }
+        }
+        ArrayList<DataRecord> result = new ArrayList<>();
+        if (table.getRecordCount() > 0) {
+            result.add(record);
+        }
+        targetAttributeNames.addAll(names);
+        targetAttributeTypes.addAll(types);
+        return result;
+    }
+
+    /**
+     * Answer a SELECT from the index of its only condition, without reading records.
+     * Supported when it reads one table with one condition comparing an indexed
+     * attribute with a constant, has no GROUP BY and ORDER BY, and its targets are
+     * either all COUNT(*) / COUNT(attribute), or all the attribute itself.
+     *
+     * @param parameter parse result of SELECT, already resolved.
+     * @param table alias table to read.
+     * @param targetAttributeNames list to put result column names into.
+     * @param targetAttributeTypes list to put result column types into.
+     * @return result records, null if not supported.
+     */
+    private ArrayList<DataRecord> indexOnlySelect(SQLParseResult parameter, Table table, ArrayList<String> targetAttributeNames,
+                                                  ArrayList<DataType> targetAttributeTypes) {
+        if (parameter.getTableAliases().size() != 1 || parameter.getConditions().size() != 1
+                || parameter.getGroupTargets() != null || parameter.getAttributeNames() != null) {
+            return null;
+        }
+        Condition condition = parameter.getConditions().get(0);
+        String attribute;
+        Object key;
+        BinaryOperator operator;
+        if (condition.getLeftConstant() == null && condition.getRightConstant() != null) {
+            attribute = condition.getLeftAttribute();
+            key = Condition.getConstant(condition.getRightConstant());
+            operator = condition.getOperator();
+        } else if (condition.getLeftConstant() != null && condition.getRightConstant() == null) {
+            attribute = condition.getRightAttribute();
+            key = Condition.getConstant(condition.getLeftConstant());
+            operator = Condition.reverseOperator(condition.getOperator());
+        } else {
+            return null;
+        }
+        int columnIndex = table.getAttributeIndex(attribute);
+        if (columnIndex == -1) {
+            return null;
+        }
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<DataType> types = new ArrayList<>();
+        ArrayList<Integer> targetIndices = new ArrayList<>();
+        ArrayList<QueryType> targetQueryTypes = new ArrayList<>();
+        resolveTargets(parameter, table.generateEmptyResultTable(), names, types, targetIndices, targetQueryTypes);
+        boolean countOnly = true;
+        boolean keyOnly = true;
+        for (int i = 0; i < targetIndices.size(); ++i) {
+            int index = targetIndices.get(i);
+            QueryType queryType = targetQueryTypes.get(i);
+            if (queryType != QueryType.COUNT || (index != -1 && index != columnIndex)) {
+                countOnly = false;
+            }
+            if (queryType != QueryType.NORMAL || index != columnIndex) {
+                keyOnly = false;
+            }
+        }
+        ArrayList<DataRecord> result = null;
+        if (countOnly) {
+            int count = table.countQuery(columnIndex, key, operator);
+            int nullCount = 0;
+            if (Condition.calculateResult(null, key, operator)) {
+                nullCount = table.countQuery(columnIndex, null, BinaryOperator.EQUAL);
+            }
+            if (count == -1 || nullCount == -1) {
+                return null;
+            }
+            result = new ArrayList<>();
+            if (count > 0) {
+                DataRecord record = new DataRecord();
+                for (int index : targetIndices) {
+                    record.append((index == -1) ? count : count - nullCount);
+                }
+                result.add(record);
+            }
+        } else if (keyOnly) {
+            ArrayList<Object> keys = table.queryKeys(columnIndex, key, operator);
+            if (keys == null) {
+                return null;
+            }
+            result = new ArrayList<>(keys.size());
+            for (Object keyValue : keys) {
+                DataRecord record = new DataRecord();
+                for (int i = 0; i < targetIndices.size(); ++i) {
+                    record.append(keyValue);
+                }
+                result.add(record);
+            }
+        }
+        if (result != null) {
+            targetAttributeNames.addAll(names);
+            targetAttributeTypes.addAll(types);
+        }
+        return result;
+    }
+
+    /**
+     * Resolve all attribute names in a SELECT against mQueryTables,
+     * and check GROUP BY.
+     *
+     * @param parameter parse result of SELECT, will be modified.
+     * @return true if valid, false if not.
+     */
+    private boolean resolveSelect(SQLParseResult parameter) {
+        if (parameter.getConditions() == null) {
+            parameter.setConditions(new ArrayList<>());
+        }
+        for (Condition condition : parameter.getConditions()) {
+            if (condition.getOperator() == BinaryOperator.AND || condition.getOperator() == BinaryOperator.OR) {
+                continue;
+            }
+            if (!setConditionParameters(condition, parameter)) {
+                return false;
+            }
+        }
+        if (!setTargetsParameters(parameter)) {
+            return false;
+        }
+        if (!setGroupTarget(parameter)) {
+            return false;
+        }
+        if (!setSortingTarget(parameter)) {
+            return false;
+        }
+        return checkGroupBy(parameter);
+    }
+
+    /**
+     * Expand targets of a SELECT into result columns.
+     *
+     * @param parameter parse result of SELECT, already resolved.
+     * @param resultTable table with "alias.attr" column names.
+     * @param targetAttributeNames list to put column names into.
+     * @param targetAttributeTypes list to put column types into.
+     * @param targetIndices list to put column indices of resultTable into, -1 for count(*).
+     * @param targetQueryTypes list to put query types into.
+     */
+    private void resolveTargets(SQLParseResult parameter, Table resultTable, ArrayList<String> targetAttributeNames,
+                                ArrayList<DataType> targetAttributeTypes, ArrayList<Integer> targetIndices,
+                                ArrayList<QueryType> targetQueryTypes) {
         for (int i = 0; i < parameter.getTargets().size(); ++i) {
             Target target = parameter.getTargets().get(i);
             String targetAttributeName = "";
@@ -250,13 +991,16 @@ public class DBManager implements DiskWritable {
                     }
                 }
             } else {
-                int index = resultTable.getAttributeNames().indexOf(targetAttributeName);
+                int index = resultTable.getAttributeIndex(targetAttributeName);
                 if (parameter.getQueryTypes().get(i) == QueryType.NORMAL) {
                     targetAttributeNames.add(targetAttributeName);
                     targetAttributeTypes.add(resultTable.getAttributeTypes().get(index));
                 } else if (parameter.getQueryTypes().get(i) == QueryType.COUNT) {
                     targetAttributeNames.add("count(" + targetAttributeName + ")");
                     targetAttributeTypes.add(new DataType(DataTypeIdentifier.INT, -1));
+                } else if (parameter.getQueryTypes().get(i) != QueryType.SUM) {
+                    targetAttributeNames.add(parameter.getQueryTypes().get(i).name().toLowerCase() + "(" + targetAttributeName + ")");
+                    targetAttributeTypes.add(resultTable.getAttributeTypes().get(index));
                 } else {
                     targetAttributeNames.add("sum(" + targetAttributeName + ")");
                     targetAttributeTypes.add(new DataType(DataTypeIdentifier.INT, -1));
@@ -265,80 +1009,76 @@ public class DBManager implements DiskWritable {
                 targetQueryTypes.add(parameter.getQueryTypes().get(i));
             }
         }
-        ArrayList<DataRecord> finalResult = new ArrayList<>();
-        for (DataRecord record : allRecords) {
-            DataRecord result = new DataRecord();
-            for (int i = 0; i < targetIndices.size(); ++i) {
-                int index = targetIndices.get(i);
-                QueryType type = targetQueryTypes.get(i);
-                if (type != QueryType.NORMAL) {
-                    result.append(0);
-                } else {
-                    result.append(record.get(index));
-                }
-            }
-            finalResult.add(result);
-        }
-        boolean targetHasFunction = false;
-        for (QueryType queryType : targetQueryTypes) {
-            if (queryType != QueryType.NORMAL) {
-                targetHasFunction = true;
+    }
+
+    /**
+     * Evaluate a condition tree into a table.
+     * For AND, if one side only references tables which the other side
+     * already has, the other side is evaluated and then filtered record
+     * by record, so no cartesian product is built for that side.
+     *
+     * @param node root of condition tree.
+     * @param randomTablename a table name used for constant conditions.
+     * @return a table as result.
+     */
+    private Table evaluateCondition(ConditionNode node, String randomTablename) {
+        Condition condition = node.getCondition();
+        if (node.isLeaf()) {
+            if (condition.getLeftConstant() != null && condition.getRightConstant() != null) {
+                return mQueryTables.get().get(randomTablename).query(condition);
+            } else if (condition.getLeftConstant() != null && condition.getRightConstant() == null) {
+                return mQueryTables.get().get(condition.getRightTableName()).query(condition);
+            } else if (condition.getLeftConstant() == null && condition.getRightConstant() != null) {
+                return mQueryTables.get().get(condition.getLeftTableName()).query(condition);
+            } else if (!condition.getLeftTableName().equals(condition.getRightTableName())) {
+                return Table.join(mQueryTables.get().get(condition.getLeftTableName()), mQueryTables.get().get(condition.getRightTableName()), condition);
+            } else {
+                return mQueryTables.get().get(condition.getLeftTableName()).query(condition);
             }
         }
-        if (targetHasFunction || parameter.getGroupTargets() != null) {
-            if (!postCheckGroupBy(targetAttributeNames, targetQueryTypes, parameter.getGroupTargets())) {
-                return;
-            }
-            ArrayList<Integer> groupIndices = new ArrayList<>();
-            ArrayList<Integer> functionIndices = new ArrayList<>();
-            if (parameter.getGroupTargets() != null) {
-                for (String groupTarget : parameter.getGroupTargets()) {
-                    groupIndices.add(resultTable.getAttributeNames().indexOf(groupTarget));
+        ConditionNode left = node.getLeft();
+        ConditionNode right = node.getRight();
+        if (condition.getOperator() == BinaryOperator.AND) {
+            ArrayList<Condition> leaves = new ArrayList<>();
+            if (node.getSourceTables().size() == 1 && collectConjunction(node, leaves)) {
+                Table indexed = mQueryTables.get().get(node.getSourceTables().iterator().next()).queryConjunction(leaves);
+                if (indexed != null) {
+                    return Table.filter(indexed, node);
                 }
             }
-            for (int i = 0; i < targetQueryTypes.size(); ++i) {
-                if (targetQueryTypes.get(i) != QueryType.NORMAL) {
-                    functionIndices.add(i);
-                }
+            boolean rightInLeft = left.getSourceTables().containsAll(right.getSourceTables());
+            boolean leftInRight = right.getSourceTables().containsAll(left.getSourceTables());
+            if (rightInLeft && !(left.needsCrossProduct() && leftInRight && !right.needsCrossProduct())) {
+                return Table.filter(evaluateCondition(left, randomTablename), right);
+            } else if (leftInRight) {
+                return Table.filter(evaluateCondition(right, randomTablename), left);
             }
-            HashMap<DataRecord, DataRecord> groupMap = new HashMap<>();
-            ArrayList<DataRecord> groupedRecords = new ArrayList<>();
-            for (int i = 0; i < finalResult.size(); ++i) {
-                DataRecord record = finalResult.get(i);
-                DataRecord origin = allRecords.get(i);
-                DataRecord key = new DataRecord();
-                for (int index : groupIndices) {
-                    key.append(origin.get(index));
-                }
-                if (!groupMap.containsKey(key)) {
-                    groupMap.put(key, record);
-                    groupedRecords.add(record);
-                }
-                for (int index : functionIndices) {
-                    if (targetQueryTypes.get(index) == QueryType.COUNT) {
-                        int targetIndex = targetIndices.get(index);
-                        if (targetIndex == -1 || origin.get(targetIndex) != null) {
-                            Integer counter = (Integer) groupMap.get(key).get(index);
-                            counter = counter + 1;
-                            groupMap.get(key).set(index, counter);
-                        }
-                    } else {
-                        int targetIndex = targetIndices.get(index);
-                        if (origin.get(targetIndex) != null) {
-                            Integer adder = (Integer) groupMap.get(key).get(index);
-                            adder = adder + (Integer) origin.get(targetIndex);
-                            groupMap.get(key).set(index, adder);
-                        }
-                    }
-                }
-            }
-            finalResult = groupedRecords;
+            Table first = evaluateCondition(left, randomTablename);
+            Table second = evaluateCondition(right, randomTablename);
+            return Table.intersect(first, second, mQueryTables.get());
+        } else {
+            Table first = evaluateCondition(left, randomTablename);
+            Table second = evaluateCondition(right, randomTablename);
+            return Table.union(first, left, second, mQueryTables.get());
         }
-        if (parameter.getShowRowLimitation() != -1) {
-            int limitation = Math.min(parameter.getShowRowLimitation(), finalResult.size());
-            finalResult.subList(limitation, finalResult.size()).clear();
+    }
+
+    /**
+     * Collect leaves of a condition tree made only of AND, where each leaf
+     * compares an attribute with a constant.
+     *
+     * @param node root of condition tree.
+     * @param leaves list to put leaf conditions into.
+     * @return true if whole tree is such a conjunction.
+     */
+    private boolean collectConjunction(ConditionNode node, ArrayList<Condition> leaves) {
+        Condition condition = node.getCondition();
+        if (node.isLeaf()) {
+            leaves.add(condition);
+            return (condition.getLeftConstant() == null) != (condition.getRightConstant() == null);
         }
-        printTable(targetAttributeNames, targetAttributeTypes, finalResult);
+        return condition.getOperator() == BinaryOperator.AND
+                && collectConjunction(node.getLeft(), leaves) && collectConjunction(node.getRight(), leaves);
     }
 
     /**
@@ -347,61 +1087,83 @@ public class DBManager implements DiskWritable {
      * @param parameter parse result generated by parser.
      */
     public void drop(SQLParseResult parameter) {
-        ArrayList<String> tablenames = parameter.getTablenames();
-        if (tablenames.get(0) == null) {
-            Set<String> keys = mTables.keySet();
-            int counts = 0;
-            for (String key : keys) {
-                File tableFile = new File("./" + DIRNAME + "/" + key + ".tlctable");
-                if (tableFile.exists()) {
-                    if (!tableFile.delete()) {
-                        System.err.println("Error occurred when deleting table file " + key);
-                    }
+        mCatalogLock.writeLock().lock();
+        try {
+            ArrayList<String> tablenames = parameter.getTablenames();
+            if (tablenames.get(0) == null) {
+                ArrayList<String> keys = new ArrayList<>(mTables.keySet());
+                int counts = 0;
+                for (String key : keys) {
+                    removeTable(key);
+                    ++counts;
                 }
-                System.out.println("Table '" + key + "' dropped.");
-                ++counts;
-                mTables.remove(key);
-            }
-            System.out.println("Query OK, " + counts + " rows affected.");
-        } else {
-            int counts = 0;
-            for (String tablename : tablenames) {
-                if (!mTables.containsKey(tablename)) {
-                    System.out.println("Table '" + tablename + "' not exists.");
-                } else {
-                    File tableFile = new File("./" + DIRNAME + "/" + tablename + ".tlctable");
-                    if (tableFile.exists()) {
-                        if (!tableFile.delete()) {
-                            System.err.println("Error occurred when deleting table file " + tablename);
-                        }
+                System.out.println("Query OK, " + counts + " rows affected.");
+            } else {
+                int counts = 0;
+                for (String tablename : tablenames) {
+                    if (!mTables.containsKey(tablename)) {
+                        System.out.println("Table '" + tablename + "' not exists.");
+                    } else if (mTables.get(tablename) instanceof MultiIndexTable
+                            && !((MultiIndexTable) mTables.get(tablename)).getViews().isEmpty()) {
+                        String viewname = ((MultiIndexTable) mTables.get(tablename)).getViews().get(0).getTablename();
+                        System.out.println("Cannot drop table '" + tablename + "': materialized view '" + viewname + "' depends on it.");
+                    } else {
+                        removeTable(tablename);
+                        ++counts;
                     }
-                    System.out.println("Table '" + tablename + "' dropped.");
-                    ++counts;
-                    mTables.remove(tablename);
                 }
+                System.out.println("Query OK, " + counts + " rows affected.");
             }
-            System.out.println("Query OK, " + counts + " rows affected.");
+        } finally {
+            mCatalogLock.writeLock().unlock();
         }
     }
 
+    /**
+     * Remove a table (or view) and its file.
+     *
+     * @param tablename name of table.
+     */
+    private void removeTable(String tablename) {
+        File tableFile = new File("./" + DIRNAME + "/" + tablename + ".tlctable");
+        if (tableFile.exists()) {
+            if (!tableFile.delete()) {
+                System.err.println("Error occurred when deleting table file " + tablename);
+            }
+        }
+        Table table = mTables.remove(tablename);
+        if (table instanceof MaterializedView) {
+            Table baseTable = mTables.get(((MaterializedView) table).getBaseTablename());
+            if (baseTable instanceof MultiIndexTable) {
+                ((MultiIndexTable) baseTable).removeView((MaterializedView) table);
+            }
+        }
+        System.out.println("Table '" + tablename + "' dropped.");
+    }
+
     /**
      * Do SHOW table lists.
      *
      * @param parameter parse result generated by parser.
      */
     public void showTableList(SQLParseResult parameter) {
-        ArrayList<String> showAttr = new ArrayList<>();
-        ArrayList<DataType> showType = new ArrayList<>();
-        showAttr.add("Tablename");
-        showType.add(new DataType(DataTypeIdentifier.VARCHAR, 40));
-        Object[] tablenames = mTables.keySet().toArray();
-        ArrayList<DataRecord> records = new ArrayList<>();
-        for (int i = 0; i < tablenames.length; ++i) {
-            DataRecord record = new DataRecord();
-            record.append(tablenames[i].toString());
-            records.add(record);
-        }
-        printTable(showAttr, showType, records);
+        mCatalogLock.readLock().lock();
+        try {
+            ArrayList<String> showAttr = new ArrayList<>();
+            ArrayList<DataType> showType = new ArrayList<>();
+            showAttr.add("Tablename");
+            showType.add(new DataType(DataTypeIdentifier.VARCHAR, 40));
+            Object[] tablenames = mTables.keySet().toArray();
+            ArrayList<DataRecord> records = new ArrayList<>();
+            for (int i = 0; i < tablenames.length; ++i) {
+                DataRecord record = new DataRecord();
+                record.append(tablenames[i].toString());
+                records.add(record);
+            }
+            printTable(showAttr, showType, records);
+        } finally {
+            mCatalogLock.readLock().unlock();
+        }
     }
 
     /**
@@ -410,33 +1172,45 @@ public class DBManager implements DiskWritable {
      * @param parameter parse result generated by parser.
      */
     public void showTableContent(SQLParseResult parameter) {
-        String tablename = parameter.getTablename();
-        if (!mTables.containsKey(tablename)) {
-            System.out.println("Table '" + tablename + "' not exists.");
-            return;
-        }
-        ArrayList<String> attributeNames = mTables.get(tablename).getAttributeNames();
-        ArrayList<DataType> attributeTypes = mTables.get(tablename).getAttributeTypes();
-        ArrayList<DataRecord> allRecords;
-        if (parameter.getAttributeNames() != null) {
-            ArrayList<Integer> sortIndices = new ArrayList<>();
-            for (String sortAttributeName : parameter.getAttributeNames()) {
-                final int sortIndex = attributeNames.indexOf(sortAttributeName);
-                if (sortIndex == -1) {
-                    System.out.println("Attribute " + sortAttributeName + " not exists in table " + tablename);
-                    return;
+        mCatalogLock.readLock().lock();
+        long snapshot = VersionClock.openSnapshot();
+        try {
+            String tablename = parameter.getTablename();
+            if (!mTables.containsKey(tablename)) {
+                System.out.println("Table '" + tablename + "' not exists.");
+                return;
+            }
+            Table table = mTables.get(tablename).generateSnapshotTable(tablename, snapshot);
+            ArrayList<String> attributeNames = table.getAttributeNames();
+            ArrayList<DataType> attributeTypes = table.getAttributeTypes();
+            ArrayList<DataRecord> allRecords;
+            int rowLimitation = parameter.getShowRowLimitation();
+            if (parameter.getAttributeNames() != null) {
+                ArrayList<Integer> sortIndices = new ArrayList<>();
+                for (String sortAttributeName : parameter.getAttributeNames()) {
+                    final int sortIndex = attributeNames.indexOf(sortAttributeName);
+                    if (sortIndex == -1) {
+                        System.out.println("Attribute " + sortAttributeName + " not exists in table " + tablename);
+                        return;
+                    }
+                    sortIndices.add(sortIndex);
+                }
+                if (rowLimitation != -1) {
+                    allRecords = table.getTopRecords(sortIndices, parameter.getShowSortTypes(), rowLimitation);
+                } else {
+                    allRecords = table.getAllRecords(sortIndices, parameter.getShowSortTypes());
+                }
+            } else {
+                allRecords = table.getAllRecords();
+                if (rowLimitation != -1) {
+                    allRecords = new ArrayList<>(allRecords.subList(0, Math.min(rowLimitation, allRecords.size())));
                 }
-                sortIndices.add(sortIndex);
             }
-            allRecords = mTables.get(tablename).getAllRecords(sortIndices, parameter.getShowSortTypes());
-        } else {
-            allRecords = mTables.get(tablename).getAllRecords();
-        }
-        if (parameter.getShowRowLimitation() != -1) {
-            int startIndex = Math.min(parameter.getShowRowLimitation(), allRecords.size());
-            allRecords.subList(startIndex, allRecords.size()).clear();
+            printTable(attributeNames, attributeTypes, allRecords);
+        } finally {
+            VersionClock.closeSnapshot(snapshot);
+            mCatalogLock.readLock().unlock();
         }
-        printTable(attributeNames, attributeTypes, allRecords);
     }
 
     /**
@@ -445,37 +1219,44 @@ public class DBManager implements DiskWritable {
      * @param parameter parse result generated by parser.
      */
     public void desc(SQLParseResult parameter) {
-        String tablename = parameter.getTablename();
-        if (!mTables.containsKey(tablename)) {
-            System.out.println("Table '" + tablename + "' not exists.");
-            return;
-        }
-        ArrayList<String> attributeNames = mTables.get(tablename).getAttributeNames();
-        ArrayList<DataType> attributeTypes = mTables.get(tablename).getAttributeTypes();
-        ArrayList<String> showAttr = new ArrayList<>();
-        ArrayList<DataType> showType = new ArrayList<>();
-        showAttr.add("Name");
-        showAttr.add("Type");
-        showAttr.add("Key");
-        showType.add(new DataType(DataTypeIdentifier.VARCHAR, 40));
-        showType.add(new DataType(DataTypeIdentifier.VARCHAR, 40));
-        showType.add(new DataType(DataTypeIdentifier.VARCHAR, 40));
-        ArrayList<DataRecord> records = new ArrayList<>();
-        for (int i = 0; i < attributeNames.size(); ++i) {
-            DataRecord record = new DataRecord();
-            record.append(attributeNames.get(i));
-            record.append(attributeTypes.get(i));
-            TableFieldType fieldType = mTables.get(tablename).getFieldType(i);
-            if (fieldType == TableFieldType.PRIMARY_KEY) {
-                record.append("PRI");
-            } else if (fieldType == TableFieldType.KEY) {
-                record.append("KEY");
-            } else {
-                record.append("");
+        mCatalogLock.readLock().lock();
+        try {
+            String tablename = parameter.getTablename();
+            if (!mTables.containsKey(tablename)) {
+                System.out.println("Table '" + tablename + "' not exists.");
+                return;
             }
-            records.add(record);
+            ArrayList<String> attributeNames = mTables.get(tablename).getAttributeNames();
+            ArrayList<DataType> attributeTypes = mTables.get(tablename).getAttributeTypes();
+            ArrayList<String> showAttr = new ArrayList<>();
+            ArrayList<DataType> showType = new ArrayList<>();
+            showAttr.add("Name");
+            showAttr.add("Type");
+            showAttr.add("Key");
+            showType.add(new DataType(DataTypeIdentifier.VARCHAR, 40));
+            showType.add(new DataType(DataTypeIdentifier.VARCHAR, 40));
+            showType.add(new DataType(DataTypeIdentifier.VARCHAR, 40));
+            ArrayList<DataRecord> records = new ArrayList<>();
+            for (int i = 0; i < attributeNames.size(); ++i) {
+                DataRecord record = new DataRecord();
+                record.append(attributeNames.get(i));
+                record.append(attributeTypes.get(i));
+                TableFieldType fieldType = mTables.get(tablename).getFieldType(i);
+                if (fieldType == TableFieldType.PRIMARY_KEY) {
+                    record.append("PRI");
+                } else if (fieldType == TableFieldType.KEY) {
+                    record.append("KEY");
+                } else if (fieldType == TableFieldType.MULTIPLE_KEY) {
+                    record.append("MUL");
+                } else {
+                    record.append("");
+                }
+                records.add(record);
+            }
+            printTable(showAttr, showType, records);
+        } finally {
+            mCatalogLock.readLock().unlock();
         }
-        printTable(showAttr, showType, records);
     }
 
     /**
@@ -484,16 +1265,116 @@ public class DBManager implements DiskWritable {
      * @param parameter parse result generated by parser.
      */
     public void load(SQLParseResult parameter) {
-        PrintStream originStdout = System.out;
+        PrintStream originStdout = SessionPrintStream.getTarget();
         if (!parameter.getShowFullInfo()) {
-            System.setOut(new NullOutputStream());
+            SessionPrintStream.setTarget(new NullOutputStream());
+        }
+        try {
+            FileInterpreter fileInterpreter = new FileInterpreter(parameter.getFilename(), this);
+            fileInterpreter.start();
+        } finally {
+            SessionPrintStream.setTarget(originStdout);
         }
-        FileInterpreter fileInterpreter = new FileInterpreter(parameter.getFilename(), this);
-        fileInterpreter.start();
-        System.setOut(originStdout);
         System.out.println("Script file '" + parameter.getFilename() + "' loaded successfully.");
     }
 
+    /**
+     * Do LOAD DATA, bulk insert records parsed from a CSV file.
+     * Lines which cannot be parsed or inserted are reported and skipped.
+     *
+     * @param parameter parse result generated by parser.
+     */
+    public void loadData(SQLParseResult parameter) {
+        lockForWrite();
+        try {
+            String tablename = parameter.getTablename();
+            if (!mTables.containsKey(tablename)) {
+                System.out.println("Table '" + tablename + "' not exists.");
+                return;
+            }
+            if (!(mTables.get(tablename) instanceof MultiIndexTable)) {
+                System.out.println("Cannot insert into materialized view '" + tablename + "'.");
+                return;
+            }
+            MultiIndexTable table = (MultiIndexTable) mTables.get(tablename);
+            CsvParser parser = new CsvParser(table.getAttributeNames(), table.getAttributeTypes(), parameter.getFieldTerminator());
+            if (!parser.open(parameter.getFilename())) {
+                return;
+            }
+            int succeed = 0;
+            int failed = 0;
+            ArrayList<DataRecord> dataRecords;
+            while ((dataRecords = parser.readBatch()) != null) {
+                TreeMap<Integer, String> errors = parser.getErrors();
+                ArrayList<InsertionResult> checkResults = table.checkInputData(dataRecords);
+                ArrayList<DataRecord> accepted = new ArrayList<>();
+                for (int i = 0; i < dataRecords.size(); ++i) {
+                    if (checkResults.get(i) == InsertionResult.SUCCESS) {
+                        accepted.add(dataRecords.get(i));
+                    } else {
+                        errors.put(parser.getLineNumbers().get(i), getInsertionMessage(table, dataRecords.get(i), checkResults.get(i)));
+                    }
+                }
+                if (!accepted.isEmpty()) {
+                    table.insertBatch(accepted);
+                }
+                for (Map.Entry<Integer, String> error : errors.entrySet()) {
+                    if (failed < MAX_REPORTED_LOAD_ERRORS) {
+                        System.out.println("Line " + error.getKey() + ": " + error.getValue());
+                    }
+                    ++failed;
+                }
+                succeed += accepted.size();
+            }
+            parser.close();
+            if (failed > MAX_REPORTED_LOAD_ERRORS) {
+                System.out.println("... " + (failed - MAX_REPORTED_LOAD_ERRORS) + " more lines failed.");
+            }
+            if (succeed == 0) {
+                System.out.println("Query OK, table '" + tablename + "': 0 rows added.");
+            }
+            printInsertSummary(tablename, succeed, failed);
+        } finally {
+            unlockForWrite();
+        }
+    }
+
+    /**
+     * Do SET, change a setting of current session.
+     *
+     * @param parameter parse result generated by parser.
+     */
+    public void set(SQLParseResult parameter) {
+        int value = parameter.getSettingValue();
+        switch (parameter.getSettingName()) {
+            case "PARALLELISM":
+                if (value <= 0) {
+                    System.out.println("Invalid parallelism (needs > 0).");
+                    return;
+                }
+                ParallelScanner.setParallelism(value);
+                break;
+            case "RESULT_CACHE":
+                if (value < 0) {
+                    System.out.println("Invalid result cache size (needs >= 0).");
+                    return;
+                }
+                mResultCache.setCapacity(value);
+                break;
+            case "SORT_BUFFER":
+                if (value <= 0) {
+                    System.out.println("Invalid sort buffer (needs > 0).");
+                    return;
+                }
+                ExternalSorter.setSortBuffer(value);
+                break;
+            default:
+                System.out.println("Unknown setting '" + parameter.getSettingName() + "'.");
+                return;
+        }
+        System.out.println("Query OK, " + parameter.getSettingName() + " = " + value + ".");
+    }
+
     private boolean appendTableToTableList(String filename, String newTablename) {
         File parentDirectory = new File(DIRNAME);
         if (!parentDirectory.exists()) {
@@ -616,13 +1497,13 @@ public class DBManager implements DiskWritable {
             if (condition.getLeftTableName() == null) {
                 int found = -1;
                 for (String tableName : parameter.getTableAliases().keySet()) {
-                    int index = mQueryTables.get(tableName).getAttributeNames().indexOf(condition.getLeftAttribute());
+                    int index = mQueryTables.get().get(tableName).getAttributeIndex(condition.getLeftAttribute());
                     if (index != -1 && found != -1) {
                         System.out.println("Attribute '" + condition.getLeftAttribute() + "' is ambiguous.");
                         return false;
                     }
                     if (index != -1) {
-                    	leftType = mQueryTables.get(tableName).getAttributeTypes().get(index).getType();
+                    	leftType = mQueryTables.get().get(tableName).getAttributeTypes().get(index).getType();
                         condition.setLeftTableName(tableName);
                         found = index;
                     }
@@ -633,17 +1514,17 @@ public class DBManager implements DiskWritable {
                 }
             }
             else {
-                if (!mQueryTables.containsKey(condition.getLeftTableName())) {
+                if (!mQueryTables.get().containsKey(condition.getLeftTableName())) {
                     System.out.println("Table '" + condition.getLeftTableName() + "' doesn't exist.");
                     return false;
                 }
-                int index = mQueryTables.get(condition.getLeftTableName()).getAttributeNames().indexOf(condition.getLeftAttribute());
+                int index = mQueryTables.get().get(condition.getLeftTableName()).getAttributeIndex(condition.getLeftAttribute());
                 if (index == -1) {
                     System.out.println("Attribute '" + condition.getLeftAttribute() + "' of Table " +
                                                condition.getLeftTableName() + " doesn't exist.");
                     return false;
                 }
-                leftType = mQueryTables.get(condition.getLeftTableName()).getAttributeTypes().get(index).getType();
+                leftType = mQueryTables.get().get(condition.getLeftTableName()).getAttributeTypes().get(index).getType();
             }
         }
         else {
@@ -654,13 +1535,13 @@ public class DBManager implements DiskWritable {
             if (condition.getRightTableName() == null) {
                 int found = -1;
                 for (String tableName : parameter.getTableAliases().keySet()) {
-                    int index = mQueryTables.get(tableName).getAttributeNames().indexOf(condition.getRightAttribute());
+                    int index = mQueryTables.get().get(tableName).getAttributeIndex(condition.getRightAttribute());
                     if (index != -1 && found != -1) {
                         System.out.println("Attribute '" + condition.getRightAttribute() + "' is ambiguous.");
                         return false;
                     }
                     if (index != -1) {
-                        rightType = mQueryTables.get(tableName).getAttributeTypes().get(index).getType();
+                        rightType = mQueryTables.get().get(tableName).getAttributeTypes().get(index).getType();
                         condition.setRightTableName(tableName);
                         found = index;
                     }
@@ -671,17 +1552,17 @@ public class DBManager implements DiskWritable {
                 }
             }
             else {
-                if (!mQueryTables.containsKey(condition.getRightTableName())) {
+                if (!mQueryTables.get().containsKey(condition.getRightTableName())) {
                     System.out.println("Table '" + condition.getRightTableName() + "' doesn't exist.");
                     return false;
                 }
-                int index = mQueryTables.get(condition.getRightTableName()).getAttributeNames().indexOf(condition.getRightAttribute());
+                int index = mQueryTables.get().get(condition.getRightTableName()).getAttributeIndex(condition.getRightAttribute());
                 if (index == -1) {
                     System.out.println("Attribute '" + condition.getRightAttribute() + "' of Table " +
                                                condition.getRightTableName() + " doesn't exist.");
                     return false;
                 }
-                rightType = mQueryTables.get(condition.getRightTableName()).getAttributeTypes().get(index).getType();
+                rightType = mQueryTables.get().get(condition.getRightTableName()).getAttributeTypes().get(index).getType();
             }
         }
         else {
@@ -726,7 +1607,7 @@ public class DBManager implements DiskWritable {
             if (tablename == null) {
                 int found = -1;
                 for (String table : parameter.getTableAliases().keySet()) {
-                    int index = mQueryTables.get(table).getAttributeNames().indexOf(attribute);
+                    int index = mQueryTables.get().get(table).getAttributeIndex(attribute);
                     if (index != -1 && found != -1) {
                         System.out.println("Group attribute '" + target + "' is ambiguous.");
                         return false;
@@ -741,7 +1622,7 @@ public class DBManager implements DiskWritable {
                     System.out.println("Table '" + tablename + "' not exists.");
                     return false;
                 }
-                if (mQueryTables.get(tablename).getAttributeNames().indexOf(attribute) == -1) {
+                if (mQueryTables.get().get(tablename).getAttributeIndex(attribute) == -1) {
                     System.out.println("Group Attribute '" + attribute + "' not exists in table " + tablename);
                     return false;
                 }
@@ -775,7 +1656,7 @@ public class DBManager implements DiskWritable {
             if (tablename == null) {
                 int found = -1;
                 for (String table : parameter.getTableAliases().keySet()) {
-                    int index = mQueryTables.get(table).getAttributeNames().indexOf(attribute);
+                    int index = mQueryTables.get().get(table).getAttributeIndex(attribute);
                     if (index != -1 && found != -1) {
                         System.out.println("Sort attribute '" + target + "' is ambiguous.");
                         return false;
@@ -790,7 +1671,7 @@ public class DBManager implements DiskWritable {
                     System.out.println("Table '" + tablename + "' not exists.");
                     return false;
                 }
-                if (mQueryTables.get(tablename).getAttributeNames().indexOf(attribute) == -1) {
+                if (mQueryTables.get().get(tablename).getAttributeIndex(attribute) == -1) {
                     System.out.println("Sort Attribute '" + attribute + "' not exists in table " + tablename);
                     return false;
                 }
@@ -823,15 +1704,15 @@ public class DBManager implements DiskWritable {
                     continue;
                 }
                 for (String tableName : parameter.getTableAliases().keySet()) {
-                    if (mQueryTables.get(tableName).getAttributeNames().contains(target.getAttribute())) {
+                    if (mQueryTables.get().get(tableName).getAttributeIndex(target.getAttribute()) != -1) {
                         if (found) {
                             System.out.println("Attribute '" + target.getAttribute() + "' is ambiguous.");
                             return false;
                         }
                         target.setTableName(tableName);
                         found = true;
-                        int index = mQueryTables.get(tableName).getAttributeNames().indexOf(target.getAttribute());
-                        if (parameter.getQueryTypes().get(scanIndex) == QueryType.SUM && mQueryTables.get(tableName).getAttributeTypes().get(index).getType() != DataTypeIdentifier.INT) {
+                        int index = mQueryTables.get().get(tableName).getAttributeIndex(target.getAttribute());
+                        if (parameter.getQueryTypes().get(scanIndex) == QueryType.SUM && mQueryTables.get().get(tableName).getAttributeTypes().get(index).getType() != DataTypeIdentifier.INT) {
                             System.out.println("Aggregation function SUM() cannot be applied to type VARCHAR.");
                             return false;
                         }
@@ -847,11 +1728,11 @@ public class DBManager implements DiskWritable {
                 	selectPart = true;
                     continue;
                 }
-                if (!mQueryTables.containsKey(target.getTableName())) {
+                if (!mQueryTables.get().containsKey(target.getTableName())) {
                     System.out.println("Table '" + target.getTableName() + "' doesn't exist.");
                     return false;
                 }
-                if (!mQueryTables.get(target.getTableName()).getAttributeNames().contains(target.getAttribute())) {
+                if (mQueryTables.get().get(target.getTableName()).getAttributeIndex(target.getAttribute()) == -1) {
                     System.out.println("Attribute '" + target.getAttribute() + "' of Table " + target.getTableName() + " doesn't exist.");
                     return false;
                 }
@@ -930,25 +1811,28 @@ public class DBManager implements DiskWritable {
 
     /**
      * Print a table (output related function).
+     * Records are read twice, first to find column widths.
      *
      * @param attribute attribute names.
      * @param type attribute types.
      * @param records data to print.
      */
-    private void printTable(ArrayList<String> attribute, ArrayList<DataType> type, ArrayList<DataRecord> records) {
-        if (records.isEmpty()) {
-            System.out.println("Empty set.");
-            return;
-        }
+    private void printTable(ArrayList<String> attribute, ArrayList<DataType> type, Iterable<DataRecord> records) {
         ArrayList<Integer> columnMaxLength = new ArrayList<>();
         for (String anAttribute : attribute) {
             columnMaxLength.add(anAttribute.length() + 1);
         }
+        int recordCount = 0;
         for (DataRecord record : records) {
             ArrayList<Object> blocks = record.getAllFieldsForOutput();
             for (int i = 0; i < blocks.size(); ++i) {
                 columnMaxLength.set(i, Math.max(columnMaxLength.get(i), blocks.get(i).toString().length() + 1));
             }
+            ++recordCount;
+        }
+        if (recordCount == 0) {
+            System.out.println("Empty set.");
+            return;
         }
         String attrOutput = "";
         for (int i = 0; i < attribute.size(); ++i) {
@@ -992,10 +1876,10 @@ public class DBManager implements DiskWritable {
             System.out.println();
         }
         printSeparateLine(attrOutput);
-        if (records.size() == 1) {
-            System.out.println(records.size() + " row in set.");
+        if (recordCount == 1) {
+            System.out.println(recordCount + " row in set.");
         } else {
-            System.out.println(records.size() + " rows in set.");
+            System.out.println(recordCount + " rows in set.");
         }
     }
 
@@ -1020,31 +1904,61 @@ public class DBManager implements DiskWritable {
         return true;
     }
 
+    /**
+     * Restore a materialized view by parsing its definition again.
+     * Base table should have been restored already.
+     *
+     * @param viewname name of view.
+     */
+    private void restoreView(String viewname) {
+        String definition = MaterializedView.readDefinition("./" + DIRNAME + "/" + viewname + ".tlctable");
+        if (definition == null) {
+            return;
+        }
+        SQLParseResult statement = new SQLParser().parse(definition);
+        if (statement == null || statement.getCommandType() != CommandType.SELECT) {
+            System.err.println("Invalid definition of materialized view " + viewname + ".");
+            return;
+        }
+        mQueryTables.set(new HashMap<>());
+        if (buildView(viewname, statement, definition) == null) {
+            System.err.println("Cannot restore materialized view " + viewname + ".");
+        }
+        mQueryTables.set(new HashMap<>());
+    }
+
     @Override
     public boolean restoreFromDisk(String filename) {
-        File dbFile = new File("./" + DIRNAME + "/" + filename);
-        if (!dbFile.exists()) {
-            return true;
-        }
+        mCatalogLock.writeLock().lock();
         try {
-            BufferedReader reader = new BufferedReader(new FileReader("./" + DIRNAME + "/" + filename));
-            String input;
-            while ((input = reader.readLine()) != null) {
-                String[] tableAttr = input.split("\0");
-                if (tableAttr[1].equalsIgnoreCase("MULTI")) {
-                    Table multiIndexTable = new MultiIndexTable();
-                    multiIndexTable.restoreFromDisk("./" + DIRNAME + "/" + tableAttr[0] + ".tlctable");
-                    mTables.put(tableAttr[0], multiIndexTable);
-                } else {
-                    System.err.println("Unsupported table type " + tableAttr[1] + ".");
+            File dbFile = new File("./" + DIRNAME + "/" + filename);
+            if (!dbFile.exists()) {
+                return true;
+            }
+            try {
+                BufferedReader reader = new BufferedReader(new FileReader("./" + DIRNAME + "/" + filename));
+                String input;
+                while ((input = reader.readLine()) != null) {
+                    String[] tableAttr = input.split("\0");
+                    if (tableAttr[1].equalsIgnoreCase("MULTI")) {
+                        Table multiIndexTable = new MultiIndexTable();
+                        multiIndexTable.restoreFromDisk("./" + DIRNAME + "/" + tableAttr[0] + ".tlctable");
+                        mTables.put(tableAttr[0], multiIndexTable);
+                    } else if (tableAttr[1].equalsIgnoreCase("VIEW")) {
+                        restoreView(tableAttr[0]);
+                    } else {
+                        System.err.println("Unsupported table type " + tableAttr[1] + ".");
+                    }
                 }
+                reader.close();
+            } catch (FileNotFoundException e) {
+                System.err.println("./" + DIRNAME + "/" + filename + ": no such file or directory.");
+            } catch (IOException e) {
+                System.err.println("./" + DIRNAME + "/" + filename + ": file I/O error.");
             }
-            reader.close();
-        } catch (FileNotFoundException e) {
-            System.err.println("./" + DIRNAME + "/" + filename + ": no such file or directory.");
-        } catch (IOException e) {
-            System.err.println("./" + DIRNAME + "/" + filename + ": file I/O error.");
+            return false;
+        } finally {
+            mCatalogLock.writeLock().unlock();
         }
-        return false;
     }
 }
@@ -0,0 +1,48 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * TCP server of database.
+ *
+ * Each client connection is served by a ServerSession on its own thread,
+ * all sessions share one DBManager. Tables are saved to disk as they change.
+ */
+public class DBServer {
+    public static final int DEFAULT_PORT = 4710;
+
+    private int mPort;
+    private DBManager mManager;
+
+    /**
+     * Initialize.
+     *
+     * @param port port to listen on.
+     */
+    public DBServer(int port) {
+        mPort = port;
+        mManager = new DBManager();
+    }
+
+    /**
+     * Restore tables and accept connections (block IO).
+     */
+    public void start() {
+        mManager.restoreFromDisk(DBManager.FILENAME);
+        SessionPrintStream.install();
+        try (ServerSocket serverSocket = new ServerSocket(mPort)) {
+            System.out.println("TLC Database listening on port " + mPort + ".");
+            int sessionCount = 0;
+            while (true) {
+                Socket socket = serverSocket.accept();
+                ++sessionCount;
+                Thread thread = new Thread(new ServerSession(socket, mManager), "session-" + sessionCount);
+                thread.start();
+            }
+        } catch (IOException e) {
+            System.err.println("Port " + mPort + ": network I/O error.");
+        }
+    }
+}
@@ -12,6 +12,8 @@ import java.util.ArrayList;
  */
 public class DataRecord implements DiskWritable, StringWritable {
     private ArrayList<Object> mDataList;
+    private long mBeginVersion;
+    private volatile long mEndVersion;
 
     /**
      * Initialize a new data record.
@@ -103,6 +105,47 @@ public class DataRecord implements DiskWritable, StringWritable {
         return mDataList.size();
     }
 
+    /**
+     * Set the version of the write which inserted this record into a table.
+     * Should be called before the record is published to readers.
+     *
+     * @param version version of write, 0 if restored from disk.
+     */
+    public void setBeginVersion(long version) {
+        mBeginVersion = version;
+    }
+
+    /**
+     * Set the version of the write which deleted this record from its table.
+     *
+     * @param version version of write.
+     */
+    public void setEndVersion(long version) {
+        mEndVersion = version;
+    }
+
+    /**
+     * End version getter.
+     *
+     * @return version of the write which deleted this record, 0 if not deleted.
+     */
+    public long getEndVersion() {
+        return mEndVersion;
+    }
+
+    /**
+     * Check whether a snapshot can see this record, i.e. it was inserted at
+     * or before the snapshot, and not deleted at or before it.
+     * Versions are not part of equals().
+     *
+     * @param snapshot version of snapshot.
+     * @return true if visible.
+     */
+    public boolean isVisible(long snapshot) {
+        long endVersion = mEndVersion;
+        return mBeginVersion <= snapshot && (endVersion == 0 || endVersion > snapshot);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -259,7 +302,7 @@ public class DataRecord implements DiskWritable, StringWritable {
     }
 
     @SuppressWarnings("unchecked")
-    private static int compare(Object a, Object b) {
+    static int compare(Object a, Object b) {
         if (a == null && b == null) {
             return 0;
         } else if (a != null && b == null) {
@@ -0,0 +1,11 @@
+package com.github.taffy128s.tlcdbms;
+
+/**
+ * File format of SELECT ... INTO OUTFILE.
+ * CSV or TSV (readable by LOAD DATA) or BINARY.
+ */
+public enum ExportFormat {
+    CSV,
+    TSV,
+    BINARY
+}
@@ -0,0 +1,248 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * External merge sort with bounded memory.
+ *
+ * Row ids of records are sorted instead of copies of records. Inputs larger
+ * than the sort buffer are cut into runs of at most sort buffer records, row
+ * ids of each run are sorted in memory and spilled to a temporary file under
+ * ./dbtlc/, then all runs are merged with a k-way merge while the caller
+ * reads the output, looking records up by row id. So besides the input list,
+ * memory used is bounded by the sort buffer and the number of runs.
+ * The sort buffer size is a per-session (per-thread) setting.
+ */
+public class ExternalSorter {
+    /**
+     * Default sort buffer size, in records.
+     */
+    public static final int DEFAULT_SORT_BUFFER = 1 << 18;
+
+    private static final ThreadLocal<Integer> SORT_BUFFER = ThreadLocal.withInitial(() -> DEFAULT_SORT_BUFFER);
+
+    /**
+     * Set sort buffer size of current session.
+     *
+     * @param sortBuffer max number of records sorted in memory at once.
+     */
+    public static void setSortBuffer(int sortBuffer) {
+        SORT_BUFFER.set(Math.max(sortBuffer, 1));
+    }
+
+    /**
+     * Get sort buffer size of current session.
+     *
+     * @return sort buffer size, in records.
+     */
+    public static int getSortBuffer() {
+        return SORT_BUFFER.get();
+    }
+
+    /**
+     * Sort records. The input list is never modified, and should not be
+     * modified until the output is released, since spilled runs refer to it.
+     * Records which compare equal keep their original order.
+     * The output can be read more than once, call release() when done.
+     *
+     * @param records records to sort.
+     * @param comparator order of records.
+     * @return sorted records.
+     */
+    public static Iterable<DataRecord> sort(List<DataRecord> records, Comparator<DataRecord> comparator) {
+        int sortBuffer = getSortBuffer();
+        if (records.size() <= sortBuffer) {
+            return RecordSorter.sort(records, comparator);
+        }
+        ArrayList<File> runs = new ArrayList<>();
+        ArrayList<Integer> runSizes = new ArrayList<>();
+        try {
+            File directory = new File(DBManager.DIRNAME);
+            if (!directory.exists() && !directory.mkdir()) {
+                System.err.println("./" + DBManager.DIRNAME + "/: creation error.");
+                return RecordSorter.sort(records, comparator);
+            }
+            for (int from = 0; from < records.size(); from += sortBuffer) {
+                int to = Math.min(from + sortBuffer, records.size());
+                int[] rowIds = RecordSorter.sortRowIds(records.subList(from, to), comparator);
+                File file = File.createTempFile("sort", ".tlcspill", directory);
+                file.deleteOnExit();
+                runs.add(file);
+                runSizes.add(rowIds.length);
+                DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+                for (int rowId : rowIds) {
+                    writer.writeInt(from + rowId);
+                }
+                writer.close();
+            }
+            return new SpilledRuns(records, runs, runSizes, comparator);
+        } catch (IOException e) {
+            System.err.println("./" + DBManager.DIRNAME + "/: spill file I/O error.");
+            deleteFiles(runs);
+        }
+        return RecordSorter.sort(records, comparator);
+    }
+
+    /**
+     * Close spill files of output of sort(), which may not have been read to
+     * the end, and delete them. Does nothing if nothing was spilled.
+     *
+     * @param records output of sort().
+     */
+    public static void release(Iterable<DataRecord> records) {
+        if (records instanceof SpilledRuns) {
+            ((SpilledRuns) records).release();
+        }
+    }
+
+    /**
+     * Delete temporary files.
+     *
+     * @param files files to delete.
+     */
+    private static void deleteFiles(ArrayList<File> files) {
+        for (File file : files) {
+            if (file.exists() && !file.delete()) {
+                System.err.println("Error occurred when deleting spill file " + file.getPath());
+            }
+        }
+    }
+
+    /**
+     * Sorted runs of row ids spilled to files. Each iterator merges the runs again.
+     */
+    private static class SpilledRuns implements Iterable<DataRecord> {
+        private List<DataRecord> mRecords;
+        private ArrayList<File> mFiles;
+        private ArrayList<Integer> mRunSizes;
+        private Comparator<DataRecord> mComparator;
+        private ArrayList<MergeIterator> mIterators;
+
+        SpilledRuns(List<DataRecord> records, ArrayList<File> files, ArrayList<Integer> runSizes, Comparator<DataRecord> comparator) {
+            mRecords = records;
+            mFiles = files;
+            mRunSizes = runSizes;
+            mComparator = comparator;
+            mIterators = new ArrayList<>();
+        }
+
+        @Override
+        public Iterator<DataRecord> iterator() {
+            try {
+                MergeIterator iterator = new MergeIterator(mRecords, mFiles, mRunSizes, mComparator);
+                mIterators.add(iterator);
+                return iterator;
+            } catch (IOException e) {
+                System.err.println("./" + DBManager.DIRNAME + "/: spill file I/O error.");
+                return RecordSorter.sort(mRecords, mComparator).iterator();
+            }
+        }
+
+        /**
+         * Close all iterators and delete run files.
+         */
+        void release() {
+            for (MergeIterator iterator : mIterators) {
+                iterator.close();
+            }
+            mIterators.clear();
+            deleteFiles(mFiles);
+        }
+    }
+
+    /**
+     * K-way merge of sorted run files of row ids.
+     * Ties are broken by run number, so that the merge is stable.
+     * Run files are closed once all records are read.
+     */
+    private static class MergeIterator implements Iterator<DataRecord> {
+        private List<DataRecord> mRecords;
+        private ArrayList<File> mFiles;
+        private ArrayList<DataInputStream> mReaders;
+        private int[] mRemaining;
+        private int[] mHeads;
+        private PriorityQueue<Integer> mQueue;
+
+        MergeIterator(List<DataRecord> records, ArrayList<File> files, ArrayList<Integer> runSizes,
+                      Comparator<DataRecord> comparator) throws IOException {
+            mRecords = records;
+            mFiles = files;
+            mReaders = new ArrayList<>();
+            mRemaining = new int[files.size()];
+            mHeads = new int[files.size()];
+            mQueue = new PriorityQueue<>(Math.max(files.size(), 1), (a, b) -> {
+                int cmp = comparator.compare(records.get(mHeads[a]), records.get(mHeads[b]));
+                return (cmp != 0) ? cmp : Integer.compare(a, b);
+            });
+            try {
+                for (int i = 0; i < files.size(); ++i) {
+                    mReaders.add(new DataInputStream(new BufferedInputStream(new FileInputStream(files.get(i)), 1 << 13)));
+                    mRemaining[i] = runSizes.get(i);
+                    advance(i);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !mQueue.isEmpty();
+        }
+
+        @Override
+        public DataRecord next() {
+            if (mQueue.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            int run = mQueue.poll();
+            DataRecord record = mRecords.get(mHeads[run]);
+            try {
+                advance(run);
+            } catch (IOException e) {
+                System.err.println(mFiles.get(run).getPath() + ": file I/O error.");
+            }
+            if (mQueue.isEmpty()) {
+                close();
+            }
+            return record;
+        }
+
+        /**
+         * Read next row id of a run into heads.
+         *
+         * @param run run number.
+         * @throws IOException if failed to read run file.
+         */
+        private void advance(int run) throws IOException {
+            if (mRemaining[run] == 0) {
+                return;
+            }
+            mHeads[run] = mReaders.get(run).readInt();
+            --mRemaining[run];
+            mQueue.add(run);
+        }
+
+        /**
+         * Close all run files, records not read yet are dropped.
+         */
+        void close() {
+            for (DataInputStream reader : mReaders) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // nothing to do.
+                }
+            }
+            mReaders.clear();
+            mQueue.clear();
+        }
+    }
+}
@@ -1,14 +1,13 @@
 package com.github.taffy128s.tlcdbms;
 
-import com.github.taffy128s.tlcdbms.sqlparsers.SQLParser;
-
+import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 
 public class FileInterpreter extends Interpreter {
 
-    private FileReader inputStream = null;
+    private BufferedReader inputStream = null;
     private String mFilename;
     private boolean mIsValid;
     private boolean mFromLoad;
@@ -21,7 +20,7 @@ public class FileInterpreter extends Interpreter {
             System.out.println("SQL file expected, but executed anyway...");
         }
         try {
-            inputStream = new FileReader(filename);
+            inputStream = new BufferedReader(new FileReader(filename));
             mIsValid = true;
         } catch (Exception e) {
             System.out.println(mFilename + ": no such file or directory.");
@@ -31,12 +30,11 @@ public class FileInterpreter extends Interpreter {
     }
 
     public FileInterpreter(String filename, DBManager manager) {
-        mParser = new SQLParser();
-        mManager = manager;
+        super(manager);
         mFilename = filename;
         mFromLoad = true;
         try {
-            inputStream = new FileReader(filename);
+            inputStream = new BufferedReader(new FileReader(filename));
             mIsValid = true;
         } catch (FileNotFoundException e) {
             System.out.println(mFilename + ": no such file or directory.");
@@ -49,56 +47,75 @@ public class FileInterpreter extends Interpreter {
             return;
         }
         try {
-            String singleIns = "";
+            StringBuilder singleIns = new StringBuilder();
             int temp;
             boolean haveOneQuote = false;
-            while ((temp = inputStream.read()) != -1) {
+            while (!mQuit && (temp = inputStream.read()) != -1) {
                 char c = (char) temp;
                 if (haveOneQuote) {
                     if (c == '\'') haveOneQuote = false;
-                    singleIns += c;
+                    singleIns.append(c);
                 } else {
                     if (c == '#') {
                         ignoreTillNewLine();
-                        singleIns += ' ';
+                        singleIns.append(' ');
                     } else if (c == ';') {
-                        singleIns = noSpaceAtBeginning(singleIns);
-                        System.out.println("~> " + singleIns);
-                        if (!singleIns.equals("")) {
-                            execute(singleIns);
-                            singleIns = "";
+                        String instruction = noSpaceAtBeginning(singleIns.toString());
+                        System.out.println("~> " + instruction);
+                        if (!instruction.equals("")) {
+                            execute(instruction);
+                            singleIns.setLength(0);
                         }
                     } else if (c == '\'') {
-                        singleIns += c;
+                        singleIns.append(c);
                         haveOneQuote = true;
-                    } else singleIns += c;
+                    } else singleIns.append(c);
                 }
             }
-            singleIns = noSpaceAtBeginning(singleIns);
-            if (haveOneQuote) {
+            String instruction = noSpaceAtBeginning(singleIns.toString());
+            if (mQuit) {
+                return;
+            } else if (haveOneQuote) {
                 System.out.println("Quotes not matched, file: " + mFilename);
-            } else if (!singleIns.equals("")) {
+            } else if (!instruction.equals("")) {
                 System.out.println("Missing semicolon in the end, file: " + mFilename);
             }
         } catch (IOException e) {
             System.out.println(mFilename + ": read file error.");
-            System.exit(0);
+            if (!mFromLoad) {
+                System.exit(0);
+            }
+            return;
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                // nothing to do.
+            }
         }
         if (!mFromLoad) {
             execute("quit");
         }
     }
 
-    private void ignoreTillNewLine() {
-        try {
-            int temp;
-            while ((temp = inputStream.read()) != -1)
-                if (temp == '\n')
-                    break;
-        } catch (Exception e) {
-            System.out.println(mFilename + ": read file error.");
-            System.exit(0);
+    /**
+     * End script on QUIT or EXIT. A script run by LOAD SCRIPT only stops
+     * itself, the session which loaded it goes on.
+     */
+    @Override
+    protected void quit() {
+        if (mFromLoad) {
+            mQuit = true;
+        } else {
+            super.quit();
         }
     }
 
+    private void ignoreTillNewLine() throws IOException {
+        int temp;
+        while ((temp = inputStream.read()) != -1)
+            if (temp == '\n')
+                break;
+    }
+
 }
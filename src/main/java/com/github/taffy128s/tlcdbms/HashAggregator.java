@@ -0,0 +1,342 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Hash aggregation operator for GROUP BY, COUNT(), SUM(), MIN() and MAX().
+ *
+ * Each group gets an id in order of first appearance, and accumulators
+ * of all groups are kept in primitive arrays indexed by group id,
+ * so adding a record neither projects it nor boxes any counter.
+ * Large inputs are aggregated in parallel: each contiguous range gets its
+ * own partial aggregator on the shared pool of ParallelScanner, and the
+ * partials are merged in range order, which keeps first-appearance order.
+ */
+public class HashAggregator {
+    private ArrayList<Integer> mGroupIndices;
+    private ArrayList<Integer> mTargetIndices;
+    private ArrayList<QueryType> mTargetQueryTypes;
+    private int[] mFunctionColumns;
+    private QueryType[] mFunctionTypes;
+    private int mFunctionCount;
+
+    private HashMap<Object, Integer> mGroupIds;
+    private DataRecord mProbeKey;
+    private ArrayList<DataRecord> mFirstRecords;
+    private int[] mGroupSizes;
+    private long[] mSums;
+    private int[] mCounts;
+    private Object[] mExtremes;
+
+    /**
+     * Initialize an aggregator.
+     *
+     * @param groupIndices column indices to group by, empty if no GROUP BY.
+     * @param targetIndices column index of each target, -1 for count(*).
+     * @param targetQueryTypes query type of each target.
+     */
+    public HashAggregator(ArrayList<Integer> groupIndices, ArrayList<Integer> targetIndices, ArrayList<QueryType> targetQueryTypes) {
+        mGroupIndices = groupIndices;
+        mTargetIndices = targetIndices;
+        mTargetQueryTypes = targetQueryTypes;
+        ArrayList<Integer> functionColumns = new ArrayList<>();
+        ArrayList<QueryType> functionTypes = new ArrayList<>();
+        for (int i = 0; i < targetQueryTypes.size(); ++i) {
+            if (targetQueryTypes.get(i) != QueryType.NORMAL) {
+                functionColumns.add(targetIndices.get(i));
+                functionTypes.add(targetQueryTypes.get(i));
+            }
+        }
+        mFunctionCount = functionColumns.size();
+        mFunctionColumns = new int[mFunctionCount];
+        mFunctionTypes = new QueryType[mFunctionCount];
+        for (int i = 0; i < mFunctionCount; ++i) {
+            mFunctionColumns[i] = functionColumns.get(i);
+            mFunctionTypes[i] = functionTypes.get(i);
+        }
+        mGroupIds = new HashMap<>();
+        mProbeKey = new DataRecord();
+        for (int i = 0; i < groupIndices.size(); ++i) {
+            mProbeKey.append(null);
+        }
+        mFirstRecords = new ArrayList<>();
+        mGroupSizes = new int[16];
+        mSums = new long[16 * Math.max(mFunctionCount, 1)];
+        mCounts = new int[16 * Math.max(mFunctionCount, 1)];
+        mExtremes = new Object[16 * Math.max(mFunctionCount, 1)];
+    }
+
+    /**
+     * Add a record into its group.
+     *
+     * @param record a record of source table (not projected).
+     */
+    public void add(DataRecord record) {
+        int groupId = getGroupId(record);
+        ++mGroupSizes[groupId];
+        int base = groupId * mFunctionCount;
+        for (int i = 0; i < mFunctionCount; ++i) {
+            int targetIndex = mFunctionColumns[i];
+            if (targetIndex == -1) {
+                ++mCounts[base + i];
+                continue;
+            }
+            Object value = record.get(targetIndex);
+            if (value == null) {
+                continue;
+            }
+            ++mCounts[base + i];
+            if (mFunctionTypes[i] == QueryType.SUM) {
+                if (value instanceof Integer) {
+                    mSums[base + i] += (Integer) value;
+                }
+            } else if (mFunctionTypes[i] != QueryType.COUNT) {
+                mExtremes[base + i] = extreme(mFunctionTypes[i], mExtremes[base + i], value);
+            }
+        }
+    }
+
+    /**
+     * Check whether remove() is supported, i.e. there is no MIN() or MAX(),
+     * which cannot be recomputed without the remaining records.
+     *
+     * @return true if records can be removed.
+     */
+    public boolean isRemovable() {
+        for (QueryType queryType : mFunctionTypes) {
+            if (queryType == QueryType.MIN || queryType == QueryType.MAX) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove a record added before from its group.
+     * A group left empty is no longer in result.
+     * Should only be called if isRemovable().
+     *
+     * @param record a record of source table (not projected).
+     */
+    public void remove(DataRecord record) {
+        int groupId = getGroupId(record);
+        --mGroupSizes[groupId];
+        int base = groupId * mFunctionCount;
+        for (int i = 0; i < mFunctionCount; ++i) {
+            int targetIndex = mFunctionColumns[i];
+            if (targetIndex == -1) {
+                --mCounts[base + i];
+                continue;
+            }
+            Object value = record.get(targetIndex);
+            if (value == null) {
+                continue;
+            }
+            --mCounts[base + i];
+            if (mFunctionTypes[i] == QueryType.SUM && value instanceof Integer) {
+                mSums[base + i] -= (Integer) value;
+            }
+        }
+    }
+
+    /**
+     * Get the smaller (MIN) or larger (MAX) of two values, ignoring null.
+     *
+     * @param queryType MIN or MAX.
+     * @param current current extreme, null if none.
+     * @param value value to compare.
+     * @return new extreme.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object extreme(QueryType queryType, Object current, Object value) {
+        if (current == null) {
+            return value;
+        }
+        if (value == null) {
+            return current;
+        }
+        int compare = ((Comparable) value).compareTo(current);
+        if (queryType == QueryType.MIN) {
+            return (compare < 0) ? value : current;
+        } else {
+            return (compare > 0) ? value : current;
+        }
+    }
+
+    /**
+     * Add all records.
+     *
+     * @param records records of source table.
+     */
+    public void addAll(List<DataRecord> records) {
+        int parallelism = ParallelScanner.getParallelism();
+        int size = records.size();
+        if (parallelism <= 1 || size < ParallelScanner.MIN_PARALLEL_SIZE) {
+            for (DataRecord record : records) {
+                add(record);
+            }
+            return;
+        }
+        int ranges = Math.min(parallelism, size / (ParallelScanner.MIN_PARALLEL_SIZE / 4));
+        ArrayList<ForkJoinTask<HashAggregator>> tasks = new ArrayList<>();
+        for (int i = 0; i < ranges; ++i) {
+            final int from = (int) ((long) size * i / ranges);
+            final int to = (int) ((long) size * (i + 1) / ranges);
+            tasks.add(ParallelScanner.getPool().submit(() -> {
+                HashAggregator partial = new HashAggregator(mGroupIndices, mTargetIndices, mTargetQueryTypes);
+                for (int row = from; row < to; ++row) {
+                    partial.add(records.get(row));
+                }
+                return partial;
+            }));
+        }
+        for (ForkJoinTask<HashAggregator> task : tasks) {
+            merge(task.join());
+        }
+    }
+
+    /**
+     * Add all records of an iterator.
+     *
+     * @param records iterator of records of source table.
+     */
+    public void addAll(Iterator<DataRecord> records) {
+        while (records.hasNext()) {
+            add(records.next());
+        }
+    }
+
+    /**
+     * Merge a partial aggregator with the same targets into this one.
+     * Groups new to this aggregator are appended in order of the partial.
+     *
+     * @param partial aggregator of records which come after all records added.
+     */
+    public void merge(HashAggregator partial) {
+        for (int partialId = 0; partialId < partial.mFirstRecords.size(); ++partialId) {
+            int groupId = getGroupId(partial.mFirstRecords.get(partialId));
+            mGroupSizes[groupId] += partial.mGroupSizes[partialId];
+            int base = groupId * mFunctionCount;
+            int partialBase = partialId * mFunctionCount;
+            for (int i = 0; i < mFunctionCount; ++i) {
+                mSums[base + i] += partial.mSums[partialBase + i];
+                mCounts[base + i] += partial.mCounts[partialBase + i];
+                if (mFunctionTypes[i] == QueryType.MIN || mFunctionTypes[i] == QueryType.MAX) {
+                    mExtremes[base + i] = extreme(mFunctionTypes[i], mExtremes[base + i], partial.mExtremes[partialBase + i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get number of groups, including groups left empty by remove().
+     *
+     * @return number of groups.
+     */
+    public int size() {
+        return mFirstRecords.size();
+    }
+
+    /**
+     * Get result records, one per group in order of first appearance.
+     * Each record has one field per target: the grouped value for
+     * normal targets, the count, sum, min or max for function targets.
+     *
+     * @return a list of result records.
+     */
+    public ArrayList<DataRecord> getResult() {
+        ArrayList<DataRecord> result = new ArrayList<>(mFirstRecords.size());
+        for (int groupId = 0; groupId < mFirstRecords.size(); ++groupId) {
+            if (mGroupSizes[groupId] == 0) {
+                continue;
+            }
+            DataRecord first = mFirstRecords.get(groupId);
+            DataRecord record = new DataRecord();
+            int function = 0;
+            for (int i = 0; i < mTargetQueryTypes.size(); ++i) {
+                if (mTargetQueryTypes.get(i) == QueryType.NORMAL) {
+                    record.append(first.get(mTargetIndices.get(i)));
+                    continue;
+                }
+                int slot = groupId * mFunctionCount + function;
+                if (mTargetQueryTypes.get(i) == QueryType.COUNT) {
+                    record.append(mCounts[slot]);
+                } else if (mTargetQueryTypes.get(i) != QueryType.SUM) {
+                    record.append(mExtremes[slot]);
+                } else {
+                    record.append(toNumber(mSums[slot]));
+                }
+                ++function;
+            }
+            result.add(record);
+        }
+        return result;
+    }
+
+    /**
+     * Find group id of a record, create a new group if not exists.
+     *
+     * @param record record to find.
+     * @return group id.
+     */
+    private int getGroupId(DataRecord record) {
+        Object key;
+        if (mGroupIndices.isEmpty()) {
+            key = mProbeKey;
+        } else if (mGroupIndices.size() == 1) {
+            key = record.get(mGroupIndices.get(0));
+        } else {
+            for (int i = 0; i < mGroupIndices.size(); ++i) {
+                mProbeKey.set(i, record.get(mGroupIndices.get(i)));
+            }
+            key = mProbeKey;
+        }
+        Integer groupId = mGroupIds.get(key);
+        if (groupId != null) {
+            return groupId;
+        }
+        if (key == mProbeKey && !mGroupIndices.isEmpty()) {
+            DataRecord newKey = new DataRecord();
+            newKey.appendAll(mProbeKey.getAllFields());
+            key = newKey;
+        }
+        groupId = mFirstRecords.size();
+        mGroupIds.put(key, groupId);
+        mFirstRecords.add(record);
+        if (groupId >= mGroupSizes.length) {
+            mGroupSizes = Arrays.copyOf(mGroupSizes, mGroupSizes.length * 2);
+        }
+        int required = (groupId + 1) * mFunctionCount;
+        if (required > mSums.length) {
+            int capacity = Math.max(required, mSums.length * 2);
+            long[] sums = new long[capacity];
+            int[] counts = new int[capacity];
+            Object[] extremes = new Object[capacity];
+            System.arraycopy(mSums, 0, sums, 0, mSums.length);
+            System.arraycopy(mCounts, 0, counts, 0, mCounts.length);
+            System.arraycopy(mExtremes, 0, extremes, 0, mExtremes.length);
+            mSums = sums;
+            mCounts = counts;
+            mExtremes = extremes;
+        }
+        return groupId;
+    }
+
+    /**
+     * Convert a sum to Integer if it fits, Long otherwise.
+     *
+     * @param sum sum to convert.
+     * @return a number object.
+     */
+    static Object toNumber(long sum) {
+        if (sum >= Integer.MIN_VALUE && sum <= Integer.MAX_VALUE) {
+            return (int) sum;
+        }
+        return sum;
+    }
+}
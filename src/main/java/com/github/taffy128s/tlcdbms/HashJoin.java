@@ -0,0 +1,485 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Hash join operator for equality join conditions.
+ *
+ * Build a hash table on the smaller input and probe it with the other one.
+ * When the build side exceeds the memory budget, both inputs are partitioned
+ * by key hash and spilled to temporary files under ./dbtlc/ (Grace hash join),
+ * then each pair of partitions is joined separately.
+ * In-memory joins over large inputs run on the shared pool of ParallelScanner:
+ * the build side is radix partitioned in parallel, one hash table is built
+ * per partition, and contiguous ranges of the probe side are probed in
+ * parallel, so the output has the same order as a serial join.
+ * A bloom filter of build side keys is pushed into the probe side: probe
+ * records it rejects are skipped before the hash table lookup (large
+ * builds only) and are never written to probe partitions when spilling.
+ */
+public class HashJoin {
+    /**
+     * Default memory budget, in rows of the build side.
+     */
+    public static final int DEFAULT_MEMORY_BUDGET = 1 << 20;
+
+    private static final int PARTITION_BITS = 4;
+    private static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+    private static final int MAX_PARTITION_LEVEL = 4;
+    private static final int MAX_RADIX_BITS = 8;
+    /**
+     * Min build side size to filter in-memory probes with a bloom filter,
+     * smaller hash tables fit in cache and are probed fast enough.
+     */
+    static final int BLOOM_MIN_BUILD_SIZE = 1 << 16;
+
+    private Table mFirstTable;
+    private Table mSecondTable;
+    private int mLeftKeyIndex;
+    private int mRightKeyIndex;
+    private int mMemoryBudget;
+
+    /**
+     * Initialize a hash join with default memory budget.
+     *
+     * @param firstTable left table.
+     * @param secondTable right table.
+     * @param leftKeyIndex join column index of left table.
+     * @param rightKeyIndex join column index of right table.
+     */
+    public HashJoin(Table firstTable, Table secondTable, int leftKeyIndex, int rightKeyIndex) {
+        this(firstTable, secondTable, leftKeyIndex, rightKeyIndex, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Initialize a hash join.
+     *
+     * @param firstTable left table.
+     * @param secondTable right table.
+     * @param leftKeyIndex join column index of left table.
+     * @param rightKeyIndex join column index of right table.
+     * @param memoryBudget max number of build side rows kept in memory.
+     */
+    public HashJoin(Table firstTable, Table secondTable, int leftKeyIndex, int rightKeyIndex, int memoryBudget) {
+        mFirstTable = firstTable;
+        mSecondTable = secondTable;
+        mLeftKeyIndex = leftKeyIndex;
+        mRightKeyIndex = rightKeyIndex;
+        mMemoryBudget = Math.max(memoryBudget, 1);
+    }
+
+    /**
+     * Do join. Each result record is left fields followed by right fields.
+     * Note that null keys are treated as equal to each other, the same as
+     * Table.queryEqual() does.
+     *
+     * @return a list of joined records.
+     */
+    public ArrayList<DataRecord> join() {
+        ArrayList<DataRecord> firstRecords = mFirstTable.getAllRecords();
+        ArrayList<DataRecord> secondRecords = mSecondTable.getAllRecords();
+        ArrayList<DataRecord> result = new ArrayList<>();
+        if (firstRecords.isEmpty() || secondRecords.isEmpty()) {
+            return result;
+        }
+        boolean buildFirst = firstRecords.size() < secondRecords.size();
+        ArrayList<DataRecord> build = buildFirst ? firstRecords : secondRecords;
+        ArrayList<DataRecord> probe = buildFirst ? secondRecords : firstRecords;
+        int buildKey = buildFirst ? mLeftKeyIndex : mRightKeyIndex;
+        int probeKey = buildFirst ? mRightKeyIndex : mLeftKeyIndex;
+        if (build.size() <= mMemoryBudget) {
+            joinInMemory(build, buildKey, probe, probeKey, buildFirst, result);
+            return result;
+        }
+        ArrayList<File> buildFiles = partition(build, buildKey, 0, null);
+        ArrayList<File> probeFiles = (buildFiles == null) ? null : partition(probe, probeKey, 0, buildBloomFilter(build, buildKey));
+        if (probeFiles == null) {
+            deleteFiles(buildFiles);
+            joinInMemory(build, buildKey, probe, probeKey, buildFirst, result);
+            return result;
+        }
+        for (int i = 0; i < PARTITION_COUNT; ++i) {
+            if (!joinPartition(buildFiles.get(i), buildKey, probeFiles.get(i), probeKey, buildFirst, 1, result)) {
+                deleteFiles(buildFiles);
+                deleteFiles(probeFiles);
+                result.clear();
+                joinInMemory(build, buildKey, probe, probeKey, buildFirst, result);
+                return result;
+            }
+        }
+        deleteFiles(buildFiles);
+        deleteFiles(probeFiles);
+        return result;
+    }
+
+    /**
+     * Build a hash table on build side and probe it with every record of probe side.
+     *
+     * @param build build side records.
+     * @param buildKey key index of build side.
+     * @param probe probe side records.
+     * @param probeKey key index of probe side.
+     * @param buildFirst true if build side is the left table.
+     * @param result list to append joined records to.
+     */
+    private void joinInMemory(ArrayList<DataRecord> build, int buildKey, ArrayList<DataRecord> probe, int probeKey,
+                              boolean buildFirst, ArrayList<DataRecord> result) {
+        int parallelism = ParallelScanner.getParallelism();
+        if (parallelism > 1 && build.size() + probe.size() >= ParallelScanner.MIN_PARALLEL_SIZE) {
+            joinInMemoryParallel(build, buildKey, probe, probeKey, buildFirst, parallelism, result);
+            return;
+        }
+        HashMap<Object, ArrayList<DataRecord>> hashTable = buildHashTable(build, buildKey);
+        BloomFilter bloomFilter = (build.size() >= BLOOM_MIN_BUILD_SIZE) ? buildBloomFilter(build, buildKey) : null;
+        for (DataRecord probeRecord : probe) {
+            if (bloomFilter != null && !bloomFilter.mightContain(probeRecord.get(probeKey))) {
+                continue;
+            }
+            ArrayList<DataRecord> matches = hashTable.get(probeRecord.get(probeKey));
+            if (matches == null) {
+                continue;
+            }
+            for (DataRecord buildRecord : matches) {
+                if (buildFirst) {
+                    result.add(concatenate(buildRecord, probeRecord));
+                } else {
+                    result.add(concatenate(probeRecord, buildRecord));
+                }
+            }
+        }
+    }
+
+    /**
+     * Parallel version of joinInMemory().
+     * Radix partition build side by key hash, build hash tables of all
+     * partitions independently, then probe contiguous ranges of probe side
+     * and concatenate matches in range order.
+     *
+     * @param build build side records.
+     * @param buildKey key index of build side.
+     * @param probe probe side records.
+     * @param probeKey key index of probe side.
+     * @param buildFirst true if build side is the left table.
+     * @param parallelism number of tasks per phase.
+     * @param result list to append joined records to.
+     */
+    private void joinInMemoryParallel(ArrayList<DataRecord> build, int buildKey, ArrayList<DataRecord> probe, int probeKey,
+                                      boolean buildFirst, int parallelism, ArrayList<DataRecord> result) {
+        ForkJoinPool pool = ParallelScanner.getPool();
+        // a few partitions per task to balance skewed keys.
+        final int bits = Math.min(32 - Integer.numberOfLeadingZeros(parallelism - 1) + 2, MAX_RADIX_BITS);
+        final int partitionCount = 1 << bits;
+        int buildRanges = rangeCount(build.size(), parallelism);
+        ArrayList<ForkJoinTask<ArrayList<ArrayList<DataRecord>>>> partitionTasks = new ArrayList<>();
+        for (int i = 0; i < buildRanges; ++i) {
+            final int from = (int) ((long) build.size() * i / buildRanges);
+            final int to = (int) ((long) build.size() * (i + 1) / buildRanges);
+            partitionTasks.add(pool.submit(() -> {
+                ArrayList<ArrayList<DataRecord>> parts = new ArrayList<>(partitionCount);
+                for (int p = 0; p < partitionCount; ++p) {
+                    parts.add(new ArrayList<>());
+                }
+                for (int row = from; row < to; ++row) {
+                    DataRecord record = build.get(row);
+                    parts.get(radixOf(record.get(buildKey), bits)).add(record);
+                }
+                return parts;
+            }));
+        }
+        ArrayList<ArrayList<ArrayList<DataRecord>>> rangeParts = new ArrayList<>();
+        for (ForkJoinTask<ArrayList<ArrayList<DataRecord>>> task : partitionTasks) {
+            rangeParts.add(task.join());
+        }
+        ArrayList<ForkJoinTask<HashMap<Object, ArrayList<DataRecord>>>> buildTasks = new ArrayList<>();
+        for (int p = 0; p < partitionCount; ++p) {
+            final int partition = p;
+            buildTasks.add(pool.submit(() -> {
+                ArrayList<DataRecord> records = new ArrayList<>();
+                for (ArrayList<ArrayList<DataRecord>> parts : rangeParts) {
+                    records.addAll(parts.get(partition));
+                }
+                return buildHashTable(records, buildKey);
+            }));
+        }
+        ArrayList<HashMap<Object, ArrayList<DataRecord>>> hashTables = new ArrayList<>();
+        for (ForkJoinTask<HashMap<Object, ArrayList<DataRecord>>> task : buildTasks) {
+            hashTables.add(task.join());
+        }
+        rangeParts.clear();
+        BloomFilter bloomFilter = (build.size() >= BLOOM_MIN_BUILD_SIZE) ? buildBloomFilter(build, buildKey) : null;
+        int probeRanges = rangeCount(probe.size(), parallelism);
+        ArrayList<ForkJoinTask<ArrayList<DataRecord>>> probeTasks = new ArrayList<>();
+        for (int i = 0; i < probeRanges; ++i) {
+            final int from = (int) ((long) probe.size() * i / probeRanges);
+            final int to = (int) ((long) probe.size() * (i + 1) / probeRanges);
+            probeTasks.add(pool.submit(() -> {
+                ArrayList<DataRecord> matched = new ArrayList<>();
+                for (int row = from; row < to; ++row) {
+                    DataRecord probeRecord = probe.get(row);
+                    Object key = probeRecord.get(probeKey);
+                    if (bloomFilter != null && !bloomFilter.mightContain(key)) {
+                        continue;
+                    }
+                    ArrayList<DataRecord> matches = hashTables.get(radixOf(key, bits)).get(key);
+                    if (matches == null) {
+                        continue;
+                    }
+                    for (DataRecord buildRecord : matches) {
+                        if (buildFirst) {
+                            matched.add(concatenate(buildRecord, probeRecord));
+                        } else {
+                            matched.add(concatenate(probeRecord, buildRecord));
+                        }
+                    }
+                }
+                return matched;
+            }));
+        }
+        for (ForkJoinTask<ArrayList<DataRecord>> task : probeTasks) {
+            result.addAll(task.join());
+        }
+    }
+
+    /**
+     * Get number of ranges to split records into for parallel tasks.
+     *
+     * @param size number of records.
+     * @param parallelism degree of parallelism.
+     * @return number of ranges, at least 1.
+     */
+    private static int rangeCount(int size, int parallelism) {
+        return Math.max(Math.min(parallelism, size / (ParallelScanner.MIN_PARALLEL_SIZE / 4)), 1);
+    }
+
+    /**
+     * Join a pair of spilled partitions. Partitions whose build side still
+     * exceeds the memory budget are partitioned again with another hash level.
+     *
+     * @return true if succeed, false if file I/O failed.
+     */
+    private boolean joinPartition(File buildFile, int buildKey, File probeFile, int probeKey,
+                                  boolean buildFirst, int level, ArrayList<DataRecord> result) {
+        ArrayList<DataRecord> build = readPartition(buildFile);
+        if (build == null) {
+            return false;
+        }
+        if (build.isEmpty()) {
+            return true;
+        }
+        if (build.size() > mMemoryBudget && level < MAX_PARTITION_LEVEL) {
+            ArrayList<File> buildFiles = partition(build, buildKey, level, null);
+            if (buildFiles == null) {
+                return false;
+            }
+            BloomFilter bloomFilter = buildBloomFilter(build, buildKey);
+            build = null;
+            ArrayList<DataRecord> probe = readPartition(probeFile);
+            ArrayList<File> probeFiles = (probe == null) ? null : partition(probe, probeKey, level, bloomFilter);
+            if (probeFiles == null) {
+                deleteFiles(buildFiles);
+                return false;
+            }
+            boolean status = true;
+            for (int i = 0; i < PARTITION_COUNT && status; ++i) {
+                status = joinPartition(buildFiles.get(i), buildKey, probeFiles.get(i), probeKey, buildFirst, level + 1, result);
+            }
+            deleteFiles(buildFiles);
+            deleteFiles(probeFiles);
+            return status;
+        }
+        HashMap<Object, ArrayList<DataRecord>> hashTable = buildHashTable(build, buildKey);
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(probeFile));
+            String input;
+            while ((input = reader.readLine()) != null) {
+                DataRecord probeRecord = new DataRecord();
+                probeRecord.restoreFromString(input);
+                ArrayList<DataRecord> matches = hashTable.get(probeRecord.get(probeKey));
+                if (matches == null) {
+                    continue;
+                }
+                for (DataRecord buildRecord : matches) {
+                    if (buildFirst) {
+                        result.add(concatenate(buildRecord, probeRecord));
+                    } else {
+                        result.add(concatenate(probeRecord, buildRecord));
+                    }
+                }
+            }
+            reader.close();
+            return true;
+        } catch (IOException e) {
+            System.err.println(probeFile.getPath() + ": file I/O error.");
+        }
+        return false;
+    }
+
+    /**
+     * Build a hash table with key column given.
+     *
+     * @param records records to put into hash table.
+     * @param keyIndex key column index.
+     * @return a hash table from key to records.
+     */
+    private static HashMap<Object, ArrayList<DataRecord>> buildHashTable(ArrayList<DataRecord> records, int keyIndex) {
+        HashMap<Object, ArrayList<DataRecord>> hashTable = new HashMap<>(records.size() * 4 / 3 + 1);
+        for (DataRecord record : records) {
+            Object key = record.get(keyIndex);
+            ArrayList<DataRecord> bucket = hashTable.get(key);
+            if (bucket == null) {
+                bucket = new ArrayList<>(1);
+                hashTable.put(key, bucket);
+            }
+            bucket.add(record);
+        }
+        return hashTable;
+    }
+
+    /**
+     * Build a bloom filter of keys.
+     *
+     * @param records records to get keys from.
+     * @param keyIndex key column index.
+     * @return a bloom filter with all keys.
+     */
+    static BloomFilter buildBloomFilter(ArrayList<DataRecord> records, int keyIndex) {
+        BloomFilter bloomFilter = new BloomFilter(records.size());
+        for (DataRecord record : records) {
+            bloomFilter.add(record.get(keyIndex));
+        }
+        return bloomFilter;
+    }
+
+    /**
+     * Split records into PARTITION_COUNT temporary files by key hash.
+     *
+     * @param records records to split.
+     * @param keyIndex key column index.
+     * @param level partition level, different level uses different hash bits.
+     * @param bloomFilter records whose key it rejects are dropped, null to keep all.
+     * @return a list of partition files, null if failed.
+     */
+    private static ArrayList<File> partition(ArrayList<DataRecord> records, int keyIndex, int level, BloomFilter bloomFilter) {
+        ArrayList<File> files = new ArrayList<>();
+        ArrayList<BufferedWriter> writers = new ArrayList<>();
+        try {
+            File directory = new File(DBManager.DIRNAME);
+            if (!directory.exists() && !directory.mkdir()) {
+                System.err.println("./" + DBManager.DIRNAME + "/: creation error.");
+                return null;
+            }
+            for (int i = 0; i < PARTITION_COUNT; ++i) {
+                File file = File.createTempFile("hashjoin", ".tlcspill", directory);
+                file.deleteOnExit();
+                files.add(file);
+                writers.add(new BufferedWriter(new FileWriter(file)));
+            }
+            for (DataRecord record : records) {
+                if (bloomFilter != null && !bloomFilter.mightContain(record.get(keyIndex))) {
+                    continue;
+                }
+                BufferedWriter writer = writers.get(partitionOf(record.get(keyIndex), level));
+                writer.write(record.writeToString());
+                writer.write("\n");
+            }
+            for (BufferedWriter writer : writers) {
+                writer.close();
+            }
+            return files;
+        } catch (IOException e) {
+            System.err.println("./" + DBManager.DIRNAME + "/: spill file I/O error.");
+            for (BufferedWriter writer : writers) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+            deleteFiles(files);
+        }
+        return null;
+    }
+
+    /**
+     * Read all records in a partition file.
+     *
+     * @param file file to read.
+     * @return a list of records, null if failed.
+     */
+    private static ArrayList<DataRecord> readPartition(File file) {
+        ArrayList<DataRecord> records = new ArrayList<>();
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            String input;
+            while ((input = reader.readLine()) != null) {
+                DataRecord record = new DataRecord();
+                record.restoreFromString(input);
+                records.add(record);
+            }
+            reader.close();
+            return records;
+        } catch (IOException e) {
+            System.err.println(file.getPath() + ": file I/O error.");
+        }
+        return null;
+    }
+
+    /**
+     * Delete temporary files.
+     *
+     * @param files files to delete.
+     */
+    private static void deleteFiles(ArrayList<File> files) {
+        for (File file : files) {
+            if (file.exists() && !file.delete()) {
+                System.err.println("Error occurred when deleting spill file " + file.getPath());
+            }
+        }
+    }
+
+    /**
+     * Get partition number of key in specified partition level.
+     *
+     * @param key key to hash, null-able.
+     * @param level partition level.
+     * @return partition number in [0, PARTITION_COUNT).
+     */
+    static int partitionOf(Object key, int level) {
+        int hash = (key == null) ? 0 : key.hashCode();
+        hash *= 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return (hash >>> (level * PARTITION_BITS)) & (PARTITION_COUNT - 1);
+    }
+
+    /**
+     * Get radix partition number of key for parallel join.
+     * Use high bits of hash, unlike partitionOf() which uses low bits.
+     *
+     * @param key key to hash, null-able.
+     * @param bits number of radix bits.
+     * @return partition number in [0, 2^bits).
+     */
+    static int radixOf(Object key, int bits) {
+        int hash = (key == null) ? 0 : key.hashCode();
+        hash *= 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return hash >>> (32 - bits);
+    }
+
+    /**
+     * Concatenate two records into a new one.
+     *
+     * @param first left record.
+     * @param second right record.
+     * @return a new record with all fields of first and second.
+     */
+    static DataRecord concatenate(DataRecord first, DataRecord second) {
+        DataRecord newRecord = new DataRecord();
+        newRecord.appendAll(first.getAllFields());
+        newRecord.appendAll(second.getAllFields());
+        return newRecord;
+    }
+}
@@ -5,6 +5,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Hash Table.
@@ -13,8 +17,10 @@ public class HashTable extends Table {
     private HashMap<Object, ArrayList<DataRecord>> mTable;
     private ArrayList<DataRecord> mNullTable;
     private ArrayList<DataRecord> mAllRecords;
+    private Set<DataRecord> mDeletedRecords;
     private DataTypeIdentifier mIndexDataType;
     private int mKeyIndex;
+    private BloomFilter mBloomFilter;
 
     /**
      * Initialize a HashTable.
@@ -25,6 +31,7 @@ public class HashTable extends Table {
         mTable = new HashMap<>();
         mNullTable = new ArrayList<>();
         mAllRecords = new ArrayList<>();
+        mDeletedRecords = Collections.newSetFromMap(new IdentityHashMap<>());
         mIndexDataType = DataTypeIdentifier.INT;
         mKeyIndex = 0;
     }
@@ -43,6 +50,7 @@ public class HashTable extends Table {
         mTable = new HashMap<>();
         mNullTable = new ArrayList<>();
         mAllRecords = new ArrayList<>();
+        mDeletedRecords = Collections.newSetFromMap(new IdentityHashMap<>());
         if (keyIndex == -1) {
             keyIndex = (primaryKey == -1) ? 0 : primaryKey;
         }
@@ -57,6 +65,9 @@ public class HashTable extends Table {
      * @return true if exists, false otherwise.
      */
     private boolean isDuplicatedData(DataRecord dataRecord) {
+        if (mBloomFilter != null && !mBloomFilter.mightContain(dataRecord.get(mKeyIndex))) {
+            return false;
+        }
         ArrayList<DataRecord> results;
         results = mTable.get(dataRecord.get(mKeyIndex));
         if (results == null) {
@@ -77,7 +88,40 @@ public class HashTable extends Table {
      * @return true if valid, false otherwise.
      */
     private boolean checkPrimaryKey(DataRecord dataRecord) {
-        return mKeyIndex != mPrimaryKey || mPrimaryKey == -1 || !mTable.containsKey(dataRecord.get(mPrimaryKey));
+        return mKeyIndex != mPrimaryKey || mPrimaryKey == -1
+                || (mBloomFilter != null && !mBloomFilter.mightContain(dataRecord.get(mPrimaryKey)))
+                || !mTable.containsKey(dataRecord.get(mPrimaryKey));
+    }
+
+    @Override
+    public boolean enableBloomFilter() {
+        rebuildBloomFilter();
+        return true;
+    }
+
+    /**
+     * Rebuild bloom filter with all keys, leaving room for as many new keys.
+     */
+    private void rebuildBloomFilter() {
+        mBloomFilter = new BloomFilter(mTable.size() * 2);
+        for (Object key : mTable.keySet()) {
+            mBloomFilter.add(key);
+        }
+    }
+
+    /**
+     * Add a new key into bloom filter if enabled, rebuild it when full.
+     *
+     * @param key key not in index yet.
+     */
+    private void addToBloomFilter(Object key) {
+        if (mBloomFilter == null) {
+            return;
+        }
+        if (mBloomFilter.isFull()) {
+            rebuildBloomFilter();
+        }
+        mBloomFilter.add(key);
     }
 
     /**
@@ -128,17 +172,18 @@ public class HashTable extends Table {
     @Override
     public boolean insert(DataRecord dataRecord) {
         if (dataRecord.get(mKeyIndex) == null) {
-            mAllRecords.add(dataRecord);
+            addToAllRecords(dataRecord);
             return insertNull(dataRecord);
         }
         if (!mTable.containsKey(dataRecord.get(mKeyIndex))) {
+            addToBloomFilter(dataRecord.get(mKeyIndex));
             ArrayList<DataRecord> newData = new ArrayList<>();
             newData.add(dataRecord);
             mTable.put(dataRecord.get(mKeyIndex), newData);
         } else {
             mTable.get(dataRecord.get(mKeyIndex)).add(dataRecord);
         }
-        mAllRecords.add(dataRecord);
+        addToAllRecords(dataRecord);
         appendToDisk(mFilename, dataRecord);
         return true;
     }
@@ -148,7 +193,7 @@ public class HashTable extends Table {
         if (dataRecords.isEmpty()) {
             return true;
         }
-        mAllRecords.addAll(dataRecords);
+        addAllToAllRecords(dataRecords);
         ArrayList<DataRecord> nullDataRecords = new ArrayList<>();
         ArrayList<DataRecord> notNullDataRecords = new ArrayList<>();
         for (DataRecord record : dataRecords) {
@@ -161,6 +206,7 @@ public class HashTable extends Table {
         mNullTable.addAll(nullDataRecords);
         for (DataRecord record : notNullDataRecords) {
             if (!mTable.containsKey(record.get(mKeyIndex))) {
+                addToBloomFilter(record.get(mKeyIndex));
                 ArrayList<DataRecord> newData = new ArrayList<>();
                 newData.add(record);
                 mTable.put(record.get(mKeyIndex), newData);
@@ -213,22 +259,134 @@ public class HashTable extends Table {
     }
 
     @Override
-    public ArrayList<DataRecord> getAllRecords() {
-        return mAllRecords;
+    @SuppressWarnings("unchecked")
+    public int countQuery(int columnIndex, Object key, BinaryOperator operator) {
+        if (mKeyIndex != columnIndex) {
+            return -1;
+        }
+        if (operator == BinaryOperator.EQUAL) {
+            if (key == null) {
+                return mNullTable.size();
+            }
+            ArrayList<DataRecord> records = mTable.get(key);
+            return (records == null) ? 0 : records.size();
+        } else if (operator == BinaryOperator.NOT_EQUAL) {
+            return getRecordCount() - countQuery(columnIndex, key, BinaryOperator.EQUAL);
+        }
+        if (key == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Map.Entry<Object, ArrayList<DataRecord>> entry : mTable.entrySet()) {
+            if (Condition.calculateResult(entry.getKey(), key, operator)) {
+                count += entry.getValue().size();
+            }
+        }
+        return count;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public ArrayList<DataRecord> getAllRecords(int sortIndex, SortingType sortingType) {
-        if (sortIndex == mKeyIndex) {
-            ArrayList<DataRecord> allRecords = getAllRecords();
-            if (sortingType == SortingType.DESCENDING) {
-                Collections.reverse(allRecords);
+    public ArrayList<Object> queryKeys(int columnIndex, Object key, BinaryOperator operator) {
+        if (mKeyIndex != columnIndex) {
+            return null;
+        }
+        ArrayList<Object> keys = new ArrayList<>();
+        if (operator == BinaryOperator.EQUAL) {
+            int count = countQuery(columnIndex, key, operator);
+            for (int i = 0; i < count; ++i) {
+                keys.add(key);
+            }
+        } else if (operator == BinaryOperator.NOT_EQUAL) {
+            if (key != null) {
+                for (int i = 0; i < mNullTable.size(); ++i) {
+                    keys.add(null);
+                }
+            }
+            for (Map.Entry<Object, ArrayList<DataRecord>> entry : mTable.entrySet()) {
+                if (!entry.getKey().equals(key)) {
+                    for (int i = 0; i < entry.getValue().size(); ++i) {
+                        keys.add(entry.getKey());
+                    }
+                }
             }
-            return allRecords;
         } else {
-            return super.getAllRecords(sortIndex, sortingType);
+            // range queries on a hash index scan records in insertion order.
+            return null;
         }
+        return keys;
+    }
+
+    @Override
+    public boolean deleteAll(ArrayList<DataRecord> dataRecords) {
+        Set<DataRecord> deleted = Collections.newSetFromMap(new IdentityHashMap<>());
+        deleted.addAll(dataRecords);
+        HashSet<Object> visitedKeys = new HashSet<>();
+        boolean hasNull = false;
+        for (DataRecord record : dataRecords) {
+            Object key = record.get(mKeyIndex);
+            if (key == null) {
+                hasNull = true;
+            } else if (visitedKeys.add(key)) {
+                ArrayList<DataRecord> bucket = mTable.get(key);
+                if (bucket != null && bucket.removeIf(deleted::contains) && bucket.isEmpty()) {
+                    mTable.remove(key);
+                }
+            }
+        }
+        if (hasNull) {
+            mNullTable.removeIf(deleted::contains);
+        }
+        // removed from mAllRecords by the next getAllRecords(), so deleting
+        // rows one statement at a time does not scan all records each time.
+        mDeletedRecords.addAll(deleted);
+        return true;
+    }
+
+    /**
+     * Add a record to list of all records. A deleted record inserted again
+     * (e.g. when an UPDATE is rolled back) is still in the list, so its
+     * deletion is cancelled instead.
+     *
+     * @param dataRecord record to add.
+     */
+    private void addToAllRecords(DataRecord dataRecord) {
+        if (mDeletedRecords.isEmpty() || !mDeletedRecords.remove(dataRecord)) {
+            mAllRecords.add(dataRecord);
+        }
+    }
+
+    /**
+     * Add records to list of all records, see addToAllRecords().
+     *
+     * @param dataRecords records to add.
+     */
+    private void addAllToAllRecords(ArrayList<DataRecord> dataRecords) {
+        if (mDeletedRecords.isEmpty()) {
+            mAllRecords.addAll(dataRecords);
+            return;
+        }
+        for (DataRecord record : dataRecords) {
+            addToAllRecords(record);
+        }
+    }
+
+    @Override
+    public int getRecordCount() {
+        synchronized (mDeletedRecords) {
+            return mAllRecords.size() - mDeletedRecords.size();
+        }
+    }
+
+    @Override
+    public ArrayList<DataRecord> getAllRecords() {
+        // snapshot readers may call this concurrently, one of them compacts.
+        synchronized (mDeletedRecords) {
+            if (!mDeletedRecords.isEmpty()) {
+                mAllRecords.removeIf(mDeletedRecords::contains);
+                mDeletedRecords.clear();
+            }
+        }
+        return mAllRecords;
     }
 
     @Override
@@ -237,6 +395,7 @@ public class HashTable extends Table {
         table.mTable = this.mTable;
         table.mNullTable = this.mNullTable;
         table.mAllRecords = this.mAllRecords;
+        table.mDeletedRecords = this.mDeletedRecords;
         return table;
     }
 
@@ -6,6 +6,7 @@ import com.github.taffy128s.tlcdbms.sqlparsers.SQLParser;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.HashMap;
 
 /**
  * Interpreter, read command from stdin and pass it to DBManager.
@@ -13,65 +14,101 @@ import java.io.Reader;
 public class Interpreter {
     protected SQLParser mParser;
     protected DBManager mManager;
+    protected HashMap<String, SQLParseResult> mPreparedStatements;
+    protected boolean mQuit;
 
     /**
      * Initialize.
      */
     public Interpreter() {
-        mParser = new SQLParser();
-        mManager = new DBManager();
+        this(new DBManager());
         mManager.restoreFromDisk(DBManager.FILENAME);
     }
 
+    /**
+     * Initialize a session on a manager, which may be shared with other sessions.
+     *
+     * @param manager manager to pass commands to.
+     */
+    protected Interpreter(DBManager manager) {
+        mParser = new SQLParser();
+        mManager = manager;
+        mPreparedStatements = new HashMap<>();
+        mQuit = false;
+    }
+
     /**
      * Start reading command (block IO).
      */
     public void start() {
+        printWelcome();
+        try {
+            read(new InputStreamReader(System.in));
+        } catch (IOException e) {
+            // same as end of input.
+        }
+        quit();
+    }
+
+    /**
+     * Print welcome message and the first prompt.
+     */
+    protected void printWelcome() {
         System.out.println("Welcome to TLC Database!  Command ends with ';'.");
         System.out.println();
         System.out.println("For more information, please visit:");
         System.out.println("        https://github.com/taffy128s/TLC_DBMS");
         System.out.println();
         System.out.print(">> ");
+        System.out.flush();
+    }
+
+    /**
+     * Read and execute commands until end of input or QUIT.
+     *
+     * @param reader input of commands.
+     * @throws IOException if failed to read.
+     */
+    protected void read(Reader reader) throws IOException {
         String singleIns = "";
-        Reader reader = new InputStreamReader(System.in);
         int temp;
         boolean justExecuted = false;
         boolean haveOneQuote = false;
-        try {
-            while ((temp = reader.read()) != -1) {
-                char c = (char) temp;
-                if (justExecuted && !(c == '\t' || c == '\n' || c == '\r' || c == ' ')) {
-                    justExecuted = false;
-                }
-                if (haveOneQuote) {
-                    if (c == '\'') haveOneQuote = false;
+        while (!mQuit && (temp = reader.read()) != -1) {
+            char c = (char) temp;
+            if (justExecuted && !(c == '\t' || c == '\n' || c == '\r' || c == ' ')) {
+                justExecuted = false;
+            }
+            if (haveOneQuote) {
+                if (c == '\'') haveOneQuote = false;
+                singleIns += c;
+            } else {
+                if (c == ';') {
+                    singleIns = noSpaceAtBeginning(singleIns);
+                    if (!singleIns.equals("")) {
+                        execute(singleIns);
+                        singleIns = "";
+                    }
+                    justExecuted = true;
+                } else if (c == '\n') {
                     singleIns += c;
-                } else {
-                    if (c == ';') {
-                        singleIns = noSpaceAtBeginning(singleIns);
-                        if (!singleIns.equals("")) {
-                            execute(singleIns);
-                            singleIns = "";
-                        }
-                        justExecuted = true;
-                    } else if (c == '\n') {
-                        singleIns += c;
-                        if (justExecuted) {
-                            System.out.print(">> ");
-                            justExecuted = false;
-                        } else System.out.print("-> ");
-                    } else if (c == '\'') {
-                        haveOneQuote = !haveOneQuote;
-                        singleIns += c;
-                    } else singleIns += c;
-                }
+                    if (justExecuted) {
+                        System.out.print(">> ");
+                        justExecuted = false;
+                    } else System.out.print("-> ");
+                    System.out.flush();
+                } else if (c == '\'') {
+                    haveOneQuote = !haveOneQuote;
+                    singleIns += c;
+                } else singleIns += c;
             }
-        } catch (IOException e) {
-            System.out.println("Goodbye...");
-            mManager.writeToDisk(DBManager.FILENAME);
-            System.exit(0);
         }
+    }
+
+    /**
+     * End session on QUIT, EXIT or end of input: save table list and exit.
+     */
+    protected void quit() {
         System.out.println("Goodbye...");
         mManager.writeToDisk(DBManager.FILENAME);
         System.exit(0);
@@ -91,41 +128,88 @@ public class Interpreter {
         }
         if (sqlParseResult.getCommandType() == CommandType.QUIT ||
                 sqlParseResult.getCommandType() == CommandType.EXIT) {
-            System.out.println("Goodbye...");
-            mManager.writeToDisk(DBManager.FILENAME);
-            System.exit(0);
+            quit();
+            return;
         }
-        switch (sqlParseResult.getCommandType()) {
+        dispatch(sqlParseResult);
+        long endTime = System.currentTimeMillis();
+        float deltaTime = ((float) (endTime - startTime)) / 1000;
+        System.out.printf("(%.3f seconds.)\n", deltaTime);
+        System.out.println();
+    }
+
+    /**
+     * Pass a parse result to DBManager by its command type.
+     * Prepared statements are kept in this interpreter (session).
+     *
+     * @param parameter parse result generated by parser.
+     */
+    protected void dispatch(SQLParseResult parameter) {
+        switch (parameter.getCommandType()) {
             case CREATE:
-                mManager.create(sqlParseResult);
+                mManager.create(parameter);
+                break;
+            case CREATE_VIEW:
+                mManager.createView(parameter);
                 break;
             case INSERT:
-                mManager.insert(sqlParseResult);
+                mManager.insert(parameter);
                 break;
             case SELECT:
-                mManager.select(sqlParseResult);
+                mManager.select(parameter);
+                break;
+            case DELETE:
+                mManager.delete(parameter);
+                break;
+            case UPDATE:
+                mManager.update(parameter);
                 break;
             case DROP:
-                mManager.drop(sqlParseResult);
+                mManager.drop(parameter);
                 break;
             case SHOW_TABLE_LIST:
-                mManager.showTableList(sqlParseResult);
+                mManager.showTableList(parameter);
                 break;
             case SHOW_TABLE_CONTENT:
-                mManager.showTableContent(sqlParseResult);
+                mManager.showTableContent(parameter);
                 break;
             case DESC:
-                mManager.desc(sqlParseResult);
+                mManager.desc(parameter);
                 break;
             case LOAD:
-                mManager.load(sqlParseResult);
+                mManager.load(parameter);
+                break;
+            case LOAD_DATA:
+                mManager.loadData(parameter);
+                break;
+            case SET:
+                mManager.set(parameter);
+                break;
+            case PREPARE:
+                mPreparedStatements.put(parameter.getStatementName(), parameter.getStatement());
+                System.out.println("Query OK, statement '" + parameter.getStatementName() + "' prepared.");
+                break;
+            case EXECUTE:
+                SQLParseResult statement = mPreparedStatements.get(parameter.getStatementName());
+                if (statement == null) {
+                    System.out.println("Prepared statement '" + parameter.getStatementName() + "' not exists.");
+                    break;
+                }
+                statement = statement.bind(parameter.getParameters());
+                if (statement != null) {
+                    dispatch(statement);
+                }
+                break;
+            case DEALLOCATE:
+                if (mPreparedStatements.remove(parameter.getStatementName()) == null) {
+                    System.out.println("Prepared statement '" + parameter.getStatementName() + "' not exists.");
+                } else {
+                    System.out.println("Query OK, statement '" + parameter.getStatementName() + "' deallocated.");
+                }
+                break;
             default:
                 break;
         }
-        long endTime = System.currentTimeMillis();
-        float deltaTime = ((float) (endTime - startTime)) / 1000;
-        System.out.printf("(%.3f seconds.)\n", deltaTime);
-        System.out.println();
     }
 
     /**
@@ -135,19 +219,15 @@ public class Interpreter {
      * @return a string processed.
      */
     protected String noSpaceAtBeginning(String input) {
-        boolean firstValidEncountered = false;
-        String temp = "";
-        for (int i = 0; i < input.length(); i++) {
-            if (!firstValidEncountered
-                    && input.charAt(i) != ' '
-                    && input.charAt(i) != '\r'
-                    && input.charAt(i) != '\n'
-                    && input.charAt(i) != '\t') {
-                firstValidEncountered = true;
-            }
-            if (firstValidEncountered) temp += input.charAt(i);
+        int begin = 0;
+        while (begin < input.length()
+                && (input.charAt(begin) == ' '
+                || input.charAt(begin) == '\r'
+                || input.charAt(begin) == '\n'
+                || input.charAt(begin) == '\t')) {
+            ++begin;
         }
-        return temp;
+        return input.substring(begin);
     }
 
 }
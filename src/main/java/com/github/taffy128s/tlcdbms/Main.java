@@ -7,12 +7,24 @@ public class Main {
     /**
      * Program entry.
      *
-     * @param args commandline arguments
+     * @param args commandline arguments: script files to run, or --server [port]
      */
     public static void main(String[] args) {
         if (args.length == 0) {
             Interpreter interpreter = new Interpreter();
             interpreter.start();
+        } else if (args[0].equals("--server")) {
+            int port = DBServer.DEFAULT_PORT;
+            if (args.length > 1) {
+                try {
+                    port = Integer.parseInt(args[1]);
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid port '" + args[1] + "'.");
+                    return;
+                }
+            }
+            DBServer server = new DBServer(port);
+            server.start();
         } else {
             for (String arg : args) {
                 FileInterpreter fileInterpreter = new FileInterpreter(arg);
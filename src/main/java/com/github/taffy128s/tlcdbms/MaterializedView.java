@@ -0,0 +1,273 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Predicate;
+
+/**
+ * Materialized view over a single base table.
+ *
+ * Defined by a SELECT with optional WHERE, and either plain targets
+ * (filter-project view) or COUNT() / SUM() with optional GROUP BY
+ * (aggregate view). The base table calls onInsert() for each inserted
+ * record and onDelete() for deleted records, so the view is maintained
+ * incrementally: an aggregate view only updates accumulators of one group
+ * and reading it costs O(groups). Views with MIN() or MAX() are rebuilt
+ * when base records are deleted.
+ * Only the definition is written to disk, contents are rebuilt from the
+ * base table when restoring.
+ * Views are not versioned: SELECT reads the latest state of a view, copied
+ * while no write is applying changes to it.
+ */
+public class MaterializedView extends Table {
+    private String mBaseTablename;
+    private String mDefinition;
+    private Predicate<DataRecord> mPredicate;
+    private ArrayList<Integer> mGroupIndices;
+    private ArrayList<Integer> mTargetIndices;
+    private ArrayList<QueryType> mTargetQueryTypes;
+    private HashAggregator mAggregator;
+    private ArrayList<DataRecord> mRecords;
+    private boolean mDirty;
+
+    /**
+     * Initialize a materialized view.
+     *
+     * @param tablename name of view.
+     * @param attributeNames column names of view.
+     * @param attributeTypes column types of view.
+     * @param baseTablename name of base table.
+     * @param definition SELECT statement defining this view.
+     * @param predicate WHERE condition on base records, null if none.
+     * @param groupIndices base column indices to group by, null if not an aggregate view.
+     * @param targetIndices base column index of each column, -1 for count(*).
+     * @param targetQueryTypes query type of each column.
+     */
+    public MaterializedView(String tablename, ArrayList<String> attributeNames, ArrayList<DataType> attributeTypes,
+                            String baseTablename, String definition, Predicate<DataRecord> predicate,
+                            ArrayList<Integer> groupIndices, ArrayList<Integer> targetIndices, ArrayList<QueryType> targetQueryTypes) {
+        super(tablename, attributeNames, attributeTypes, -1);
+        mBaseTablename = baseTablename;
+        mDefinition = definition;
+        mPredicate = predicate;
+        mGroupIndices = groupIndices;
+        mTargetIndices = targetIndices;
+        mTargetQueryTypes = targetQueryTypes;
+        if (groupIndices != null) {
+            mAggregator = new HashAggregator(groupIndices, targetIndices, targetQueryTypes);
+        }
+        mRecords = new ArrayList<>();
+        mDirty = false;
+        mDiskModifiable = false;
+    }
+
+    /**
+     * Base table name getter.
+     *
+     * @return name of base table.
+     */
+    public String getBaseTablename() {
+        return mBaseTablename;
+    }
+
+    /**
+     * Definition getter.
+     *
+     * @return SELECT statement defining this view.
+     */
+    public String getDefinition() {
+        return mDefinition;
+    }
+
+    /**
+     * Apply a record inserted into base table.
+     *
+     * @param baseRecord record of base table.
+     */
+    public synchronized void onInsert(DataRecord baseRecord) {
+        if (mPredicate != null && !mPredicate.test(baseRecord)) {
+            return;
+        }
+        if (mAggregator != null) {
+            mAggregator.add(baseRecord);
+            mDirty = true;
+        } else {
+            DataRecord record = new DataRecord();
+            for (int index : mTargetIndices) {
+                record.append(baseRecord.get(index));
+            }
+            mRecords.add(record);
+        }
+        touch();
+    }
+
+    /**
+     * Apply a batch of base records, used when creating, restoring
+     * (all records of base table) or bulk inserting.
+     *
+     * @param baseRecords records of base table.
+     */
+    public synchronized void build(ArrayList<DataRecord> baseRecords) {
+        ArrayList<DataRecord> matched = (mPredicate == null) ? baseRecords : ParallelScanner.filter(baseRecords, mPredicate);
+        if (mAggregator != null) {
+            mAggregator.addAll(matched);
+            mDirty = true;
+        } else {
+            for (DataRecord baseRecord : matched) {
+                DataRecord record = new DataRecord();
+                for (int index : mTargetIndices) {
+                    record.append(baseRecord.get(index));
+                }
+                mRecords.add(record);
+            }
+        }
+        touch();
+    }
+
+    /**
+     * Apply records deleted from base table.
+     * A filter-project view removes one equal record per deleted record,
+     * in one pass over the view.
+     *
+     * @param baseRecords deleted records of base table.
+     * @return true if applied, false if this view cannot remove records
+     * (MIN() or MAX()) and should be rebuilt.
+     */
+    public synchronized boolean onDelete(ArrayList<DataRecord> baseRecords) {
+        if (mAggregator != null && !mAggregator.isRemovable()) {
+            return false;
+        }
+        ArrayList<DataRecord> matched = (mPredicate == null) ? baseRecords : ParallelScanner.filter(baseRecords, mPredicate);
+        if (mAggregator != null) {
+            for (DataRecord baseRecord : matched) {
+                mAggregator.remove(baseRecord);
+            }
+            mDirty = true;
+        } else if (!matched.isEmpty()) {
+            HashMap<DataRecord, Integer> remaining = new HashMap<>();
+            for (DataRecord baseRecord : matched) {
+                DataRecord record = new DataRecord();
+                for (int index : mTargetIndices) {
+                    record.append(baseRecord.get(index));
+                }
+                remaining.merge(record, 1, Integer::sum);
+            }
+            mRecords.removeIf(record -> {
+                Integer count = remaining.get(record);
+                if (count == null) {
+                    return false;
+                }
+                if (count == 1) {
+                    remaining.remove(record);
+                } else {
+                    remaining.put(record, count - 1);
+                }
+                return true;
+            });
+        }
+        touch();
+        return true;
+    }
+
+    /**
+     * Discard contents and build again from all records of base table.
+     *
+     * @param baseRecords all records of base table.
+     */
+    public synchronized void rebuild(ArrayList<DataRecord> baseRecords) {
+        if (mAggregator != null) {
+            mAggregator = new HashAggregator(mGroupIndices, mTargetIndices, mTargetQueryTypes);
+        }
+        mRecords = new ArrayList<>();
+        mDirty = false;
+        build(baseRecords);
+    }
+
+    @Override
+    public InsertionResult checkInputData(DataRecord dataRecord) {
+        return InsertionResult.SUCCESS;
+    }
+
+    /**
+     * Views cannot be inserted into directly, use onInsert() of base records.
+     */
+    @Override
+    public boolean insert(DataRecord dataRecord) {
+        return false;
+    }
+
+    @Override
+    protected boolean insertAll(ArrayList<DataRecord> dataRecords) {
+        return false;
+    }
+
+    @Override
+    public synchronized ArrayList<DataRecord> getAllRecords() {
+        if (mDirty) {
+            mRecords = mAggregator.getResult();
+            mDirty = false;
+        }
+        return mRecords;
+    }
+
+    @Override
+    public synchronized Table generateAliasTable(String aliasName) {
+        ArrayListTable table = new ArrayListTable(aliasName, mAttributeNames, mAttributeTypes, -1, -1);
+        table.insertAll(new ArrayList<>(getAllRecords()));
+        return table;
+    }
+
+    @Override
+    public TableFieldType getFieldType(int index) {
+        return TableFieldType.NORMAL;
+    }
+
+    @Override
+    public String getTableType() {
+        return "VIEW";
+    }
+
+    @Override
+    public boolean writeToDisk(String filename) {
+        try {
+            FileWriter writer = new FileWriter(filename);
+            writer.write(mTablename + "\n");
+            writer.write(mDefinition + "\n");
+            writer.close();
+            return true;
+        } catch (IOException e) {
+            System.err.println(filename + ": file I/O error.");
+        }
+        return false;
+    }
+
+    /**
+     * Views are restored by DBManager, which parses definition with readDefinition().
+     */
+    @Override
+    public boolean restoreFromDisk(String filename) {
+        return false;
+    }
+
+    /**
+     * Read definition of a view from its file.
+     *
+     * @param filename file written by writeToDisk().
+     * @return SELECT statement defining the view, null if failed.
+     */
+    public static String readDefinition(String filename) {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(filename));
+            reader.readLine();
+            String definition = reader.readLine();
+            reader.close();
+            return definition;
+        } catch (FileNotFoundException e) {
+            System.err.println(filename + ": no such file or directory.");
+        } catch (IOException e) {
+            System.err.println(filename + ": file I/O error.");
+        }
+        return null;
+    }
+}
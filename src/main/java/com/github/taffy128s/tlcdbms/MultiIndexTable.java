@@ -3,16 +3,42 @@ package com.github.taffy128s.tlcdbms;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Multi-index table.
- * Each key can be indexed by tree, hash or not indexed.
+ * Each key can be indexed by tree, hash or not indexed,
+ * and tuples of columns can have composite indices.
+ *
+ * Writes are stamped with versions from VersionClock and kept in a RecordLog,
+ * so SnapshotTable can read a consistent snapshot while writes go on. Indices
+ * are only changed under the write latch, which is released before the change
+ * is written to disk and views.
  */
 public class MultiIndexTable extends Table {
+    /**
+     * Table file is rewritten without tombstones once it has more of them
+     * than live records, and at least this many.
+     */
+    private static final int MIN_COMPACT_TOMBSTONES = 1024;
+
     private ArrayList<TableStructure> mIndices;
     private ArrayList<Table> mTables;
     private Table mFirstTable;
     private int mKeyIndex;
+    private ArrayList<MaterializedView> mViews;
+    private int[] mNonNullCounts;
+    private ArrayList<CompositeIndex> mComposites;
+    private RowHashSet mRowSet;
+    private int mTombstoneCount;
+    private RecordLog mLog;
+    private ReentrantReadWriteLock mLatch;
 
     /**
      * Initialize a Multi-index Table.
@@ -22,6 +48,12 @@ public class MultiIndexTable extends Table {
         super();
         mIndices = new ArrayList<>();
         mTables = new ArrayList<>();
+        mViews = new ArrayList<>();
+        mNonNullCounts = new int[0];
+        mComposites = new ArrayList<>();
+        mRowSet = new RowHashSet();
+        mLog = new RecordLog();
+        mLatch = new ReentrantReadWriteLock();
         mDiskModifiable = true;
     }
 
@@ -39,6 +71,12 @@ public class MultiIndexTable extends Table {
         super(tablename, attrNames, attrTypes, primaryKey);
         mIndices = attrIndices;
         mTables = new ArrayList<>();
+        mViews = new ArrayList<>();
+        mNonNullCounts = new int[attrNames.size()];
+        mComposites = new ArrayList<>();
+        mRowSet = new RowHashSet();
+        mLog = new RecordLog();
+        mLatch = new ReentrantReadWriteLock();
         if (keyIndex == -1) {
             keyIndex = (primaryKey == -1) ? 0 : primaryKey;
         }
@@ -47,13 +85,18 @@ public class MultiIndexTable extends Table {
             mTables.add(null);
         }
         for (TableStructure tableStructure : attrIndices) {
-            if (tableStructure.getType() == TableStructType.BPLUSTREE) {
+            if (tableStructure.isComposite()) {
+                mComposites.add(new CompositeIndex(tableStructure.getIndices(), tableStructure.getType()));
+            } else if (tableStructure.getType() == TableStructType.BPLUSTREE) {
                 BPlusTreeTable newTable = new BPlusTreeTable(tablename, attrNames, attrTypes, primaryKey, tableStructure.getIndex());
                 mTables.set(tableStructure.getIndex(), newTable);
             } else if (tableStructure.getType() == TableStructType.HASH) {
                 HashTable newTable = new HashTable(tablename, attrNames, attrTypes, primaryKey, tableStructure.getIndex());
                 mTables.set(tableStructure.getIndex(), newTable);
             }
+            if (tableStructure.hasBloomFilter() && mTables.get(tableStructure.getIndex()) != null) {
+                mTables.get(tableStructure.getIndex()).enableBloomFilter();
+            }
         }
         for (Table table : mTables) {
             if (table != null) {
@@ -65,38 +108,351 @@ public class MultiIndexTable extends Table {
 
     @Override
     public InsertionResult checkInputData(DataRecord dataRecord) {
-        for (Table table : mTables) {
-            if (table != null) {
-                InsertionResult singleResult = table.checkInputData(dataRecord);
-                if (singleResult != InsertionResult.SUCCESS) {
-                    return singleResult;
-                }
-            }
+        if (mRowSet.contains(dataRecord)) {
+            return InsertionResult.DUPLICATED_DATA_TUPLE;
+        }
+        // primary key column is always indexed, its buckets hold at most one record.
+        if (mPrimaryKey != -1 && mTables.get(mPrimaryKey) != null) {
+            return mTables.get(mPrimaryKey).checkInputData(dataRecord);
         }
         return InsertionResult.SUCCESS;
     }
 
     @Override
     public boolean insert(DataRecord dataRecord) {
-        boolean result = true;
-        for (Table table : mTables) {
-            if (table != null) {
-                result &= table.insert(dataRecord);
+        long version = VersionClock.beginWrite();
+        try {
+            boolean result = true;
+            mLatch.writeLock().lock();
+            try {
+                dataRecord.setBeginVersion(version);
+                for (Table table : mTables) {
+                    if (table != null) {
+                        result &= table.insert(dataRecord);
+                    }
+                }
+                for (CompositeIndex composite : mComposites) {
+                    composite.insert(dataRecord);
+                }
+                mRowSet.add(dataRecord);
+                countNonNull(dataRecord, 1);
+                mLog.append(Collections.singletonList(dataRecord), version);
+            } finally {
+                mLatch.writeLock().unlock();
             }
+            appendToDisk(mFilename, dataRecord);
+            for (MaterializedView view : mViews) {
+                view.onInsert(dataRecord);
+            }
+            return result;
+        } finally {
+            endWrite();
         }
-        appendToDisk(mFilename, dataRecord);
-        return result;
+    }
+
+    /**
+     * Insert records validated together by checkInputData(ArrayList), e.g. all
+     * rows of one INSERT. Indices are bulk loaded, records are appended to disk
+     * with a single write, and views are updated once.
+     *
+     * @param dataRecords valid records to insert.
+     * @return true if succeed, false if failed.
+     */
+    public boolean insertBatch(ArrayList<DataRecord> dataRecords) {
+        long version = VersionClock.beginWrite();
+        try {
+            boolean result;
+            mLatch.writeLock().lock();
+            try {
+                for (DataRecord dataRecord : dataRecords) {
+                    dataRecord.setBeginVersion(version);
+                }
+                result = insertAll(dataRecords);
+                mLog.append(dataRecords, version);
+            } finally {
+                mLatch.writeLock().unlock();
+            }
+            result &= appendAllToDisk(mFilename, dataRecords);
+            for (MaterializedView view : mViews) {
+                view.build(dataRecords);
+            }
+            return result;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * End a write started by VersionClock.beginWrite(), dropping records
+     * deleted from log which no snapshot can see first.
+     */
+    private void endWrite() {
+        mLog.purge(VersionClock.getOldestSnapshot());
+        VersionClock.endWrite();
+    }
+
+    /**
+     * Record log getter, for snapshot reads.
+     *
+     * @return log of records shared with alias tables.
+     */
+    RecordLog getLog() {
+        return mLog;
+    }
+
+    /**
+     * Latch getter, for snapshot reads. Holding its read lock, indices are
+     * not changed by writers.
+     *
+     * @return latch shared with alias tables.
+     */
+    ReentrantReadWriteLock getLatch() {
+        return mLatch;
+    }
+
+    /**
+     * Register a materialized view, which will be notified on each insert.
+     *
+     * @param view view defined on this table.
+     */
+    public void addView(MaterializedView view) {
+        mViews.add(view);
+    }
+
+    /**
+     * Unregister a materialized view.
+     *
+     * @param view view defined on this table.
+     */
+    public void removeView(MaterializedView view) {
+        mViews.remove(view);
+    }
+
+    /**
+     * Views getter.
+     *
+     * @return materialized views defined on this table.
+     */
+    public ArrayList<MaterializedView> getViews() {
+        return mViews;
     }
 
     @Override
     protected boolean insertAll(ArrayList<DataRecord> dataRecords) {
-        boolean result = true;
+        ArrayList<Callable<Boolean>> loaders = new ArrayList<>();
         for (TableStructure tableStructure : mIndices) {
-            result &= mTables.get(tableStructure.getIndex()).insertAll(dataRecords);
+            if (!tableStructure.isComposite()) {
+                Table table = mTables.get(tableStructure.getIndex());
+                loaders.add(() -> table.insertAll(dataRecords));
+            }
+        }
+        for (CompositeIndex composite : mComposites) {
+            loaders.add(() -> {
+                composite.insertAll(dataRecords);
+                return true;
+            });
+        }
+        loaders.add(() -> {
+            for (DataRecord dataRecord : dataRecords) {
+                mRowSet.add(dataRecord);
+            }
+            return true;
+        });
+        boolean result = runLoaders(loaders, dataRecords.size());
+        for (DataRecord dataRecord : dataRecords) {
+            countNonNull(dataRecord, 1);
+        }
+        return result;
+    }
+
+    /**
+     * Run one task per index, in parallel if the batch is large.
+     *
+     * @param loaders tasks to run, each touching a different index.
+     * @param batchSize number of records inserted or deleted.
+     * @return true if all tasks succeed.
+     */
+    private static boolean runLoaders(ArrayList<Callable<Boolean>> loaders, int batchSize) {
+        boolean result = true;
+        if (ParallelScanner.getParallelism() > 1 && batchSize >= ParallelScanner.MIN_PARALLEL_SIZE) {
+            // indices are independent, so large batches load them in parallel.
+            for (Future<Boolean> future : ParallelScanner.getPool().invokeAll(loaders)) {
+                try {
+                    result &= future.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    result = false;
+                }
+            }
+        } else {
+            for (Callable<Boolean> loader : loaders) {
+                try {
+                    result &= loader.call();
+                } catch (Exception e) {
+                    result = false;
+                }
+            }
         }
         return result;
     }
 
+    @Override
+    public boolean deleteAll(ArrayList<DataRecord> dataRecords) {
+        long version = VersionClock.beginWrite();
+        try {
+            ArrayList<DataRecord> removed;
+            mLatch.writeLock().lock();
+            try {
+                removed = removeRecords(dataRecords);
+                mLog.markDeleted(removed, version);
+            } finally {
+                mLatch.writeLock().unlock();
+            }
+            return applyChanges(removed, new ArrayList<>());
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Replace records. Old records are removed first, so new records may
+     * take their primary keys. If any new record is rejected, old records
+     * are put back and the table is left unchanged.
+     *
+     * @param oldRecords records of this table to replace.
+     * @param newRecords new records, one per old record.
+     * @return check result of each new record, all SUCCESS if replaced.
+     */
+    public ArrayList<InsertionResult> update(ArrayList<DataRecord> oldRecords, ArrayList<DataRecord> newRecords) {
+        long version = VersionClock.beginWrite();
+        try {
+            ArrayList<DataRecord> removed;
+            ArrayList<InsertionResult> results;
+            mLatch.writeLock().lock();
+            try {
+                removed = removeRecords(oldRecords);
+                results = checkInputData(newRecords);
+                for (InsertionResult result : results) {
+                    if (result != InsertionResult.SUCCESS) {
+                        insertAll(removed);
+                        return results;
+                    }
+                }
+                for (DataRecord dataRecord : newRecords) {
+                    dataRecord.setBeginVersion(version);
+                }
+                insertAll(newRecords);
+                mLog.markDeleted(removed, version);
+                mLog.append(newRecords, version);
+            } finally {
+                mLatch.writeLock().unlock();
+            }
+            applyChanges(removed, newRecords);
+            return results;
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Remove records from all indices, without writing to disk or updating views.
+     *
+     * @param dataRecords records equal to the ones to remove.
+     * @return instances removed, records not in table are skipped.
+     */
+    private ArrayList<DataRecord> removeRecords(ArrayList<DataRecord> dataRecords) {
+        ArrayList<DataRecord> removed = new ArrayList<>(dataRecords.size());
+        for (DataRecord dataRecord : dataRecords) {
+            DataRecord stored = mRowSet.remove(dataRecord);
+            if (stored != null) {
+                removed.add(stored);
+            }
+        }
+        if (removed.isEmpty()) {
+            return removed;
+        }
+        ArrayList<Callable<Boolean>> loaders = new ArrayList<>();
+        for (Table table : mTables) {
+            if (table != null) {
+                loaders.add(() -> table.deleteAll(removed));
+            }
+        }
+        for (CompositeIndex composite : mComposites) {
+            loaders.add(() -> {
+                composite.removeAll(removed);
+                return true;
+            });
+        }
+        runLoaders(loaders, removed.size());
+        for (DataRecord dataRecord : removed) {
+            countNonNull(dataRecord, -1);
+        }
+        return removed;
+    }
+
+    /**
+     * Write deleted and inserted records to disk as one append, and update views.
+     * Records should already be removed from and inserted into indices.
+     *
+     * @param deletedRecords records deleted.
+     * @param insertedRecords records inserted.
+     * @return true if succeed, false if failed.
+     */
+    private boolean applyChanges(ArrayList<DataRecord> deletedRecords, ArrayList<DataRecord> insertedRecords) {
+        if (deletedRecords.isEmpty() && insertedRecords.isEmpty()) {
+            return true;
+        }
+        boolean result;
+        mTombstoneCount += deletedRecords.size();
+        if (mTombstoneCount >= MIN_COMPACT_TOMBSTONES && mTombstoneCount > mRowSet.size()) {
+            result = writeToDisk(mFilename);
+            mTombstoneCount = 0;
+        } else {
+            result = appendChangesToDisk(mFilename, deletedRecords, insertedRecords);
+        }
+        for (MaterializedView view : mViews) {
+            if (view.onDelete(deletedRecords)) {
+                view.build(insertedRecords);
+            } else {
+                view.rebuild(getAllRecords());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add non-null fields of a record to non-null counts.
+     *
+     * @param dataRecord record inserted or deleted.
+     * @param delta 1 if inserted, -1 if deleted.
+     */
+    private void countNonNull(DataRecord dataRecord, int delta) {
+        for (int i = 0; i < mNonNullCounts.length; ++i) {
+            if (dataRecord.get(i) != null) {
+                mNonNullCounts[i] += delta;
+            }
+        }
+    }
+
+    @Override
+    public int getRecordCount() {
+        return mRowSet.size();
+    }
+
+    @Override
+    public int getNonNullCount(int columnIndex) {
+        return mNonNullCounts[columnIndex];
+    }
+
+    @Override
+    public Object getMinKey(int columnIndex) {
+        return hasOrderedIndex(columnIndex) ? mTables.get(columnIndex).getMinKey(columnIndex) : null;
+    }
+
+    @Override
+    public Object getMaxKey(int columnIndex) {
+        return hasOrderedIndex(columnIndex) ? mTables.get(columnIndex).getMaxKey(columnIndex) : null;
+    }
+
     @Override
     public Table queryEqual(int columnIndex, Object key) {
         if (mTables.get(columnIndex) != null) {
@@ -151,6 +507,15 @@ public class MultiIndexTable extends Table {
         }
     }
 
+    @Override
+    public Table queryLike(int columnIndex, Object pattern) {
+        if (mTables.get(columnIndex) != null) {
+            return mTables.get(columnIndex).queryLike(columnIndex, pattern);
+        } else {
+            return mFirstTable.queryLike(columnIndex, pattern);
+        }
+    }
+
     @Override
     public Table queryRange(int columnIndex, Object fromKey, Object toKey) {
         if (mTables.get(columnIndex) != null) {
@@ -171,27 +536,221 @@ public class MultiIndexTable extends Table {
 
     @Override
     public ArrayList<DataRecord> getAllRecords() {
-        return mTables.get(mIndices.get(0).getIndex()).getAllRecords();
+        // composite indices may come first, read the first single-column one.
+        for (TableStructure tableStructure : mIndices) {
+            if (!tableStructure.isComposite()) {
+                return mTables.get(tableStructure.getIndex()).getAllRecords();
+            }
+        }
+        return mFirstTable.getAllRecords();
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public ArrayList<DataRecord> getAllRecords(int sortIndex, SortingType sortingType) {
         if (mTables.get(sortIndex) != null) {
-            ArrayList<DataRecord> allRecords = mTables.get(sortIndex).getAllRecords(sortIndex, sortingType);
-            if (sortingType == SortingType.DESCENDING) {
-                Collections.reverse(allRecords);
-            }
-            return allRecords;
+            return mTables.get(sortIndex).getAllRecords(sortIndex, sortingType);
         } else {
             return super.getAllRecords(sortIndex, sortingType);
         }
     }
 
+    @Override
+    public ArrayList<DataRecord> getTopRecords(int sortIndex, SortingType sortingType, int limit) {
+        if (mTables.get(sortIndex) != null) {
+            return mTables.get(sortIndex).getTopRecords(sortIndex, sortingType, limit);
+        } else {
+            return super.getTopRecords(sortIndex, sortingType, limit);
+        }
+    }
+
+    /**
+     * Find a composite B+ tree index on exactly the given columns, which can
+     * serve ORDER BY when all columns are sorted in the same direction.
+     *
+     * @param sortIndices column indices to sort.
+     * @param sortingTypes ascending or descending of each column.
+     * @return the index, null if none.
+     */
+    private CompositeIndex getOrderedComposite(ArrayList<Integer> sortIndices, ArrayList<SortingType> sortingTypes) {
+        for (SortingType sortingType : sortingTypes) {
+            if (sortingType != sortingTypes.get(0)) {
+                return null;
+            }
+        }
+        for (CompositeIndex composite : mComposites) {
+            if (composite.isOrdered() && composite.getColumnIndices().equals(sortIndices)) {
+                return composite;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterable<DataRecord> getSortedRecords(ArrayList<Integer> sortIndices, ArrayList<SortingType> sortingTypes) {
+        CompositeIndex composite = getOrderedComposite(sortIndices, sortingTypes);
+        if (composite != null) {
+            return () -> composite.iterator(sortingTypes.get(0) == SortingType.DESCENDING);
+        }
+        return super.getSortedRecords(sortIndices, sortingTypes);
+    }
+
+    @Override
+    public ArrayList<DataRecord> getTopRecords(ArrayList<Integer> sortIndices, ArrayList<SortingType> sortingTypes, int limit) {
+        CompositeIndex composite = getOrderedComposite(sortIndices, sortingTypes);
+        if (composite == null) {
+            return super.getTopRecords(sortIndices, sortingTypes, limit);
+        }
+        ArrayList<DataRecord> result = new ArrayList<>();
+        Iterator<DataRecord> iterator = composite.iterator(sortingTypes.get(0) == SortingType.DESCENDING);
+        while (result.size() < limit && iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    /**
+     * Check whether records can be read in an order from an index.
+     *
+     * @param sortIndices column indices to sort.
+     * @param sortingTypes ascending or descending of each column.
+     * @return true if getSortedRecords() and getTopRecords() read an index.
+     */
+    public boolean hasOrderedIndex(ArrayList<Integer> sortIndices, ArrayList<SortingType> sortingTypes) {
+        if (sortIndices.size() == 1) {
+            return hasOrderedIndex(sortIndices.get(0));
+        }
+        return getOrderedComposite(sortIndices, sortingTypes) != null;
+    }
+
+    @Override
+    public Table queryConjunction(ArrayList<Condition> conditions) {
+        HashMap<Integer, Object> equals = new HashMap<>();
+        HashMap<Integer, Condition> ranges = new HashMap<>();
+        for (Condition condition : conditions) {
+            if ((condition.getLeftConstant() == null) == (condition.getRightConstant() == null)) {
+                continue;
+            }
+            boolean constantOnRight = condition.getRightConstant() != null;
+            String attribute = constantOnRight ? condition.getLeftAttribute() : condition.getRightAttribute();
+            Object key = Condition.getConstant(constantOnRight ? condition.getRightConstant() : condition.getLeftConstant());
+            BinaryOperator operator = constantOnRight ? condition.getOperator() : Condition.reverseOperator(condition.getOperator());
+            int columnIndex = getAttributeIndex(attribute);
+            if (columnIndex == -1 || key == null) {
+                continue;
+            }
+            if (operator == BinaryOperator.EQUAL) {
+                equals.put(columnIndex, key);
+            } else if (operator != BinaryOperator.NOT_EQUAL && operator != BinaryOperator.LIKE) {
+                ranges.put(columnIndex, condition);
+            }
+        }
+        CompositeIndex best = null;
+        int bestMatched = 0;
+        for (CompositeIndex composite : mComposites) {
+            int matched = 0;
+            for (int columnIndex : composite.getColumnIndices()) {
+                if (!equals.containsKey(columnIndex)) {
+                    break;
+                }
+                ++matched;
+            }
+            if (!composite.isOrdered() && matched != composite.getColumnIndices().size()) {
+                continue;
+            }
+            if (composite.isOrdered() && matched < composite.getColumnIndices().size()
+                    && ranges.containsKey(composite.getColumnIndices().get(matched))) {
+                ++matched;
+            }
+            if (matched > bestMatched) {
+                best = composite;
+                bestMatched = matched;
+            }
+        }
+        if (best == null || (bestMatched == 1 && mTables.get(best.getColumnIndices().get(0)) != null)) {
+            return null;
+        }
+        ArrayList<Object> prefix = new ArrayList<>();
+        for (int columnIndex : best.getColumnIndices()) {
+            if (!equals.containsKey(columnIndex)) {
+                break;
+            }
+            prefix.add(equals.get(columnIndex));
+        }
+        Object lower = null;
+        Object upper = null;
+        boolean lowerInclusive = false;
+        boolean upperInclusive = false;
+        if (prefix.size() < bestMatched) {
+            int rangeIndex = best.getColumnIndices().get(prefix.size());
+            for (Condition condition : conditions) {
+                if ((condition.getLeftConstant() == null) == (condition.getRightConstant() == null)) {
+                    continue;
+                }
+                boolean constantOnRight = condition.getRightConstant() != null;
+                String attribute = constantOnRight ? condition.getLeftAttribute() : condition.getRightAttribute();
+                if (getAttributeIndex(attribute) != rangeIndex) {
+                    continue;
+                }
+                Object key = Condition.getConstant(constantOnRight ? condition.getRightConstant() : condition.getLeftConstant());
+                BinaryOperator operator = constantOnRight ? condition.getOperator() : Condition.reverseOperator(condition.getOperator());
+                if (key == null) {
+                    continue;
+                }
+                if (operator == BinaryOperator.GREATER_THAN || operator == BinaryOperator.GREATER_EQUAL) {
+                    if (lower == null || DataRecord.compare(key, lower) > 0) {
+                        lower = key;
+                        lowerInclusive = operator == BinaryOperator.GREATER_EQUAL;
+                    }
+                } else if (operator == BinaryOperator.LESS_THAN || operator == BinaryOperator.LESS_EQUAL) {
+                    if (upper == null || DataRecord.compare(key, upper) < 0) {
+                        upper = key;
+                        upperInclusive = operator == BinaryOperator.LESS_EQUAL;
+                    }
+                }
+            }
+        }
+        ArrayList<DataRecord> records = best.query(prefix, lower, lowerInclusive, upper, upperInclusive);
+        if (records == null) {
+            return null;
+        }
+        Table table = generateEmptyResultTable();
+        table.insertAll(records);
+        return table;
+    }
+
+    @Override
+    public boolean hasOrderedIndex(int columnIndex) {
+        return mTables.get(columnIndex) != null && mTables.get(columnIndex).hasOrderedIndex(columnIndex);
+    }
+
+    @Override
+    public int countQuery(int columnIndex, Object key, BinaryOperator operator) {
+        if (mTables.get(columnIndex) != null) {
+            return mTables.get(columnIndex).countQuery(columnIndex, key, operator);
+        } else {
+            return -1;
+        }
+    }
+
+    @Override
+    public ArrayList<Object> queryKeys(int columnIndex, Object key, BinaryOperator operator) {
+        if (mTables.get(columnIndex) != null) {
+            return mTables.get(columnIndex).queryKeys(columnIndex, key, operator);
+        } else {
+            return null;
+        }
+    }
+
     @Override
     public Table generateAliasTable(String aliasName) {
         MultiIndexTable table = new MultiIndexTable(aliasName, mAttributeNames, mAttributeTypes, mIndices, mPrimaryKey, mKeyIndex);
         table.mTables = new ArrayList<>();
+        table.mNonNullCounts = mNonNullCounts;
+        table.mComposites = mComposites;
+        table.mRowSet = mRowSet;
+        table.mLog = mLog;
+        table.mLatch = mLatch;
         for (int i = 0; i < mTables.size(); ++i) {
             if (mTables.get(i) != null) {
                 table.mTables.add(mTables.get(i).generateAliasTable(aliasName));
@@ -208,6 +767,11 @@ public class MultiIndexTable extends Table {
         return table;
     }
 
+    @Override
+    public Table generateSnapshotTable(String aliasName, long version) {
+        return new SnapshotTable((MultiIndexTable) generateAliasTable(aliasName), version);
+    }
+
     @Override
     public String getTableType() {
         return "MULTI";
@@ -219,9 +783,13 @@ public class MultiIndexTable extends Table {
             return TableFieldType.PRIMARY_KEY;
         } else if (mTables.get(index) != null) {
             return TableFieldType.KEY;
-        } else {
-            return TableFieldType.NORMAL;
         }
+        for (CompositeIndex composite : mComposites) {
+            if (composite.getColumnIndices().get(0) == index) {
+                return TableFieldType.MULTIPLE_KEY;
+            }
+        }
+        return TableFieldType.NORMAL;
     }
 
     @Override
@@ -237,12 +805,17 @@ public class MultiIndexTable extends Table {
             writer.write(mPrimaryKey + "\n");
             writer.write(mIndices.size() + "\n");
             for (TableStructure tableStructure : mIndices) {
-                writer.write(tableStructure.getIndex() + "\0");
+                ArrayList<String> columns = new ArrayList<>();
+                for (int columnIndex : tableStructure.getIndices()) {
+                    columns.add(String.valueOf(columnIndex));
+                }
+                writer.write(String.join(",", columns) + "\0");
                 if (tableStructure.getType() == TableStructType.BPLUSTREE) {
-                    writer.write("BPLUSTREE\n");
+                    writer.write("BPLUSTREE");
                 } else if (tableStructure.getType() == TableStructType.HASH) {
-                    writer.write("HASH\n");
+                    writer.write("HASH");
                 }
+                writer.write(tableStructure.hasBloomFilter() ? "\0BLOOM\n" : "\n");
             }
             ArrayList<DataRecord> dataRecords = getAllRecords();
             for (DataRecord record : dataRecords) {
@@ -279,12 +852,23 @@ public class MultiIndexTable extends Table {
             for (int i = 0; i < attrSize; ++i) {
                 mTables.add(null);
             }
+            mNonNullCounts = new int[attrSize];
             mSourceTables.add(mTablename);
             mPrimaryKey = Integer.parseInt(reader.readLine());
             int indicesSize = Integer.parseInt(reader.readLine());
             for (int i = 0; i < indicesSize; ++i) {
                 String indexString = reader.readLine();
                 String[] options = indexString.split("\0");
+                if (options[0].contains(",")) {
+                    ArrayList<Integer> columnIndices = new ArrayList<>();
+                    for (String column : options[0].split(",")) {
+                        columnIndices.add(Integer.parseInt(column));
+                    }
+                    TableStructType type = options[1].equalsIgnoreCase("hash") ? TableStructType.HASH : TableStructType.BPLUSTREE;
+                    mIndices.add(new TableStructure(columnIndices, type));
+                    mComposites.add(new CompositeIndex(columnIndices, type));
+                    continue;
+                }
                 int columnIndex = Integer.parseInt(options[0]);
                 if (options[1].equalsIgnoreCase("bplustree")) {
                     mIndices.add(new TableStructure(columnIndex, TableStructType.BPLUSTREE));
@@ -293,21 +877,38 @@ public class MultiIndexTable extends Table {
                     mIndices.add(new TableStructure(columnIndex, TableStructType.HASH));
                     mTables.set(columnIndex, new HashTable(mTablename, mAttributeNames, mAttributeTypes, mPrimaryKey, columnIndex));
                 }
+                if (options.length > 2 && options[2].equalsIgnoreCase("bloom") && mTables.get(columnIndex) != null) {
+                    mIndices.get(mIndices.size() - 1).setBloomFilter(true);
+                    mTables.get(columnIndex).enableBloomFilter();
+                }
             }
-            ArrayList<DataRecord> records = new ArrayList<>();
+            // replay appended changes: a tombstone deletes an earlier equal record.
+            LinkedHashSet<DataRecord> records = new LinkedHashSet<>();
+            int tombstones = 0;
             while ((input = reader.readLine()) != null) {
                 DataRecord record = new DataRecord();
-                record.restoreFromString(input);
-                records.add(record);
+                if (input.startsWith(TOMBSTONE_PREFIX)) {
+                    record.restoreFromString(input.substring(TOMBSTONE_PREFIX.length()));
+                    records.remove(record);
+                    ++tombstones;
+                } else {
+                    record.restoreFromString(input);
+                    records.add(record);
+                }
             }
-            insertAll(records);
+            reader.close();
+            ArrayList<DataRecord> restored = new ArrayList<>(records);
+            insertAll(restored);
+            mLog.append(restored, 0);
             for (Table table : mTables) {
                 if (table != null) {
                     mFirstTable = table;
                     break;
                 }
             }
-            reader.close();
+            if (tombstones > 0) {
+                return writeToDisk(mFilename);
+            }
             return true;
         } catch (FileNotFoundException e) {
             System.err.println(filename + ": no such file or directory.");
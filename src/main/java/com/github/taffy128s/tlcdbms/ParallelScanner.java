@@ -0,0 +1,101 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+/**
+ * Parallel table scan.
+ *
+ * Split a record list into contiguous ranges, filter each range on a
+ * shared ForkJoinPool and concatenate matches in range order, so the
+ * result has the same order as a sequential scan.
+ * Degree of parallelism is a per-session (per-thread) setting.
+ */
+public class ParallelScanner {
+    /**
+     * Scans over fewer records than this run on the calling thread.
+     */
+    public static final int MIN_PARALLEL_SIZE = 1 << 14;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private static final ThreadLocal<Integer> PARALLELISM =
+            ThreadLocal.withInitial(() -> Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Get the shared pool for parallel operators.
+     *
+     * @return a ForkJoinPool.
+     */
+    public static ForkJoinPool getPool() {
+        return POOL;
+    }
+
+    /**
+     * Set degree of parallelism of current session.
+     *
+     * @param parallelism number of ranges to scan in parallel, 1 to disable.
+     */
+    public static void setParallelism(int parallelism) {
+        PARALLELISM.set(Math.max(parallelism, 1));
+    }
+
+    /**
+     * Get degree of parallelism of current session.
+     *
+     * @return degree of parallelism.
+     */
+    public static int getParallelism() {
+        return PARALLELISM.get();
+    }
+
+    /**
+     * Get all records which satisfy predicate given.
+     *
+     * @param records records to scan, will not be modified.
+     * @param predicate filter. Must be safe to call from multiple threads.
+     * @return a new list of matched records, in original order.
+     */
+    public static ArrayList<DataRecord> filter(List<DataRecord> records, Predicate<DataRecord> predicate) {
+        int parallelism = getParallelism();
+        int size = records.size();
+        if (parallelism <= 1 || size < MIN_PARALLEL_SIZE) {
+            return filterRange(records, predicate, 0, size);
+        }
+        int ranges = Math.min(parallelism, size / (MIN_PARALLEL_SIZE / 4));
+        ArrayList<ForkJoinTask<ArrayList<DataRecord>>> tasks = new ArrayList<>();
+        for (int i = 0; i < ranges; ++i) {
+            final int from = (int) ((long) size * i / ranges);
+            final int to = (int) ((long) size * (i + 1) / ranges);
+            tasks.add(POOL.submit(() -> filterRange(records, predicate, from, to)));
+        }
+        ArrayList<ArrayList<DataRecord>> parts = new ArrayList<>();
+        int total = 0;
+        for (ForkJoinTask<ArrayList<DataRecord>> task : tasks) {
+            ArrayList<DataRecord> part = task.join();
+            parts.add(part);
+            total += part.size();
+        }
+        ArrayList<DataRecord> result = new ArrayList<>(total);
+        for (ArrayList<DataRecord> part : parts) {
+            result.addAll(part);
+        }
+        return result;
+    }
+
+    /**
+     * Filter records in range [from, to).
+     */
+    private static ArrayList<DataRecord> filterRange(List<DataRecord> records, Predicate<DataRecord> predicate, int from, int to) {
+        ArrayList<DataRecord> result = new ArrayList<>();
+        for (int i = from; i < to; ++i) {
+            DataRecord record = records.get(i);
+            if (predicate.test(record)) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+}
@@ -5,9 +5,13 @@ package com.github.taffy128s.tlcdbms;
  * NORMAL: normal cases.
  * SUM: sum() function.
  * COUNT: count() function.
+ * MIN: min() function.
+ * MAX: max() function.
  */
 public enum QueryType {
     NORMAL,
     SUM,
-    COUNT
+    COUNT,
+    MIN,
+    MAX
 }
@@ -0,0 +1,304 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writer of SELECT ... INTO OUTFILE.
+ *
+ * Records are encoded one at a time into a fixed size buffer, so exporting
+ * takes constant memory however many records are written.
+ * CSV and TSV write one line per record in the format LOAD DATA reads:
+ * null is \N, and strings are double-quoted only if needed.
+ * BINARY writes a header of column names and types, then each field as a
+ * tag byte (0 null, 1 INT, 2 VARCHAR) followed by an int or a UTF-8 string
+ * as DataOutputStream.writeUTF() does.
+ */
+public class RecordExporter {
+    /**
+     * Magic number at the beginning of a BINARY file.
+     */
+    public static final int BINARY_MAGIC = 0x544c4331;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte[] NULL_FIELD = {'\\', 'N'};
+
+    private String mFilename;
+    private ExportFormat mFormat;
+    private byte mTerminator;
+    private OutputStream mStream;
+    private DataOutputStream mDataStream;
+    private byte[] mBuffer;
+    private int mBufferSize;
+    private long mRecordCount;
+
+    /**
+     * Initialize an exporter.
+     *
+     * @param filename file to write, should not exist.
+     * @param format file format.
+     */
+    public RecordExporter(String filename, ExportFormat format) {
+        mFilename = filename;
+        mFormat = format;
+        mTerminator = (byte) ((format == ExportFormat.TSV) ? '\t' : ',');
+        mRecordCount = 0;
+        mBuffer = new byte[BUFFER_SIZE];
+        mBufferSize = 0;
+    }
+
+    /**
+     * Create the file and write header (BINARY only).
+     * An existing file is never overwritten.
+     *
+     * @param attributeNames result column names.
+     * @param attributeTypes result column types.
+     * @return true if succeed, false if failed.
+     */
+    public boolean open(ArrayList<String> attributeNames, ArrayList<DataType> attributeTypes) {
+        File file = new File(mFilename);
+        if (file.exists()) {
+            System.out.println("File '" + mFilename + "' already exists.");
+            return false;
+        }
+        try {
+            mStream = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+            if (mFormat == ExportFormat.BINARY) {
+                mDataStream = new DataOutputStream(mStream);
+                mDataStream.writeInt(BINARY_MAGIC);
+                mDataStream.writeInt(attributeNames.size());
+                for (int i = 0; i < attributeNames.size(); ++i) {
+                    mDataStream.writeUTF(attributeNames.get(i));
+                    mDataStream.writeUTF(attributeTypes.get(i).toString());
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println(mFilename + ": file I/O error.");
+        }
+        return false;
+    }
+
+    /**
+     * Write a record.
+     *
+     * @param record record to write.
+     * @param indices fields of record to write in order, null to write all fields.
+     * @return true if succeed, false if failed.
+     */
+    public boolean write(DataRecord record, List<Integer> indices) {
+        try {
+            if (mFormat == ExportFormat.BINARY) {
+                writeBinary(record, indices);
+            } else {
+                writeText(record, indices);
+            }
+            ++mRecordCount;
+            return true;
+        } catch (IOException e) {
+            System.err.println(mFilename + ": file I/O error.");
+        }
+        return false;
+    }
+
+    /**
+     * Flush and close the file.
+     *
+     * @return true if succeed, false if failed.
+     */
+    public boolean close() {
+        try {
+            flushBuffer();
+            mStream.close();
+            return true;
+        } catch (IOException e) {
+            System.err.println(mFilename + ": file I/O error.");
+        }
+        return false;
+    }
+
+    /**
+     * Get number of records written.
+     *
+     * @return number of records.
+     */
+    public long getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * Write a record as a CSV or TSV line.
+     *
+     * @param record record to write.
+     * @param indices fields of record to write in order, null to write all fields.
+     * @throws IOException if write failed.
+     */
+    private void writeText(DataRecord record, List<Integer> indices) throws IOException {
+        int length = (indices == null) ? record.length() : indices.size();
+        for (int i = 0; i < length; ++i) {
+            if (i > 0) {
+                writeByte(mTerminator);
+            }
+            Object field = record.get((indices == null) ? i : indices.get(i));
+            if (field == null) {
+                writeByte(NULL_FIELD[0]);
+                writeByte(NULL_FIELD[1]);
+            } else if (field instanceof Integer) {
+                writeInteger((Integer) field);
+            } else if (field instanceof String) {
+                String value = (String) field;
+                if (value.length() >= 2 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'') {
+                    writeTextString(value, 1, value.length() - 1);
+                } else {
+                    writeTextString(value, 0, value.length());
+                }
+            } else {
+                String value = field.toString();
+                writeTextString(value, 0, value.length());
+            }
+        }
+        writeByte((byte) '\n');
+    }
+
+    /**
+     * Write a string field, double-quoted if it would not be read back as itself.
+     *
+     * @param value string holding the field.
+     * @param from start of field.
+     * @param to end of field, exclusive.
+     * @throws IOException if write failed.
+     */
+    private void writeTextString(String value, int from, int to) throws IOException {
+        boolean ascii = true;
+        boolean needQuotes = from == to || value.charAt(from) == '"'
+                || (to - from == 4 && value.regionMatches(true, from, "null", 0, 4))
+                || (to - from == 2 && value.startsWith("\\N", from));
+        for (int i = from; i < to; ++i) {
+            char c = value.charAt(i);
+            needQuotes |= c == mTerminator || c == '\n' || c == '\r';
+            ascii &= c < 128;
+        }
+        if (needQuotes) {
+            String quoted = "\"" + value.substring(from, to).replace("\"", "\"\"") + "\"";
+            writeChars(quoted, 0, quoted.length(), false);
+        } else {
+            writeChars(value, from, to, ascii);
+        }
+    }
+
+    /**
+     * Write characters of a string as they are.
+     *
+     * @param value string to write.
+     * @param from start of characters.
+     * @param to end of characters, exclusive.
+     * @param ascii true if all characters are ASCII, which are copied without encoding.
+     * @throws IOException if write failed.
+     */
+    private void writeChars(String value, int from, int to, boolean ascii) throws IOException {
+        if (!ascii) {
+            byte[] bytes = value.substring(from, to).getBytes(StandardCharsets.UTF_8);
+            for (byte b : bytes) {
+                writeByte(b);
+            }
+            return;
+        }
+        for (int i = from; i < to; ++i) {
+            writeByte((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Write an INT in decimal.
+     *
+     * @param value value to write.
+     * @throws IOException if write failed.
+     */
+    private void writeInteger(int value) throws IOException {
+        if (mBufferSize + 11 > mBuffer.length) {
+            flushBuffer();
+        }
+        long remaining = value;
+        if (remaining < 0) {
+            mBuffer[mBufferSize++] = '-';
+            remaining = -remaining;
+        }
+        int end = mBufferSize;
+        do {
+            mBuffer[end++] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        for (int i = mBufferSize, j = end - 1; i < j; ++i, --j) {
+            byte temp = mBuffer[i];
+            mBuffer[i] = mBuffer[j];
+            mBuffer[j] = temp;
+        }
+        mBufferSize = end;
+    }
+
+    /**
+     * Write a byte into buffer.
+     *
+     * @param value byte to write.
+     * @throws IOException if write failed.
+     */
+    private void writeByte(byte value) throws IOException {
+        if (mBufferSize == mBuffer.length) {
+            flushBuffer();
+        }
+        mBuffer[mBufferSize++] = value;
+    }
+
+    /**
+     * Write buffered bytes of text formats to file.
+     *
+     * @throws IOException if write failed.
+     */
+    private void flushBuffer() throws IOException {
+        mStream.write(mBuffer, 0, mBufferSize);
+        mBufferSize = 0;
+    }
+
+    /**
+     * Write a record in BINARY format.
+     *
+     * @param record record to write.
+     * @param indices fields of record to write in order, null to write all fields.
+     * @throws IOException if write failed.
+     */
+    private void writeBinary(DataRecord record, List<Integer> indices) throws IOException {
+        int length = (indices == null) ? record.length() : indices.size();
+        for (int i = 0; i < length; ++i) {
+            Object field = record.get((indices == null) ? i : indices.get(i));
+            if (field == null) {
+                mDataStream.writeByte(0);
+            } else if (field instanceof String) {
+                mDataStream.writeByte(2);
+                mDataStream.writeUTF(unquote((String) field));
+            } else {
+                mDataStream.writeByte(1);
+                mDataStream.writeInt(((Number) field).intValue());
+            }
+        }
+    }
+
+    /**
+     * Remove quotes of a stored VARCHAR value.
+     *
+     * @param value value like 'abc'.
+     * @return value without quotes.
+     */
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("'") && value.endsWith("'")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+}
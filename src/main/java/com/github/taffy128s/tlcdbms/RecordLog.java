@@ -0,0 +1,165 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Versioned list of records of a table, in insertion order, which snapshot
+ * readers scan without locking.
+ *
+ * Only one writer modifies the log at a time (see VersionClock). It copies
+ * new records into spare capacity of the array, then publishes a new state
+ * holding the new size, so a reader only reads the prefix published when it
+ * started, which is never modified. A deleted record stays in the log with
+ * its end version until no snapshot can see it, and deleted records are
+ * dropped by copying the others into a new array once they are the majority.
+ */
+public class RecordLog {
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Immutable published state of log.
+     */
+    private static class State {
+        private final DataRecord[] mRecords;
+        private final int mSize;
+        private final long mMaxBeginVersion;
+        private final long mMinEndVersion;
+        private final int mDeletedCount;
+
+        private State(DataRecord[] records, int size, long maxBeginVersion, long minEndVersion, int deletedCount) {
+            mRecords = records;
+            mSize = size;
+            mMaxBeginVersion = maxBeginVersion;
+            mMinEndVersion = minEndVersion;
+            mDeletedCount = deletedCount;
+        }
+    }
+
+    private volatile State mState;
+    private volatile long mLastWriteVersion;
+    private int mNextPurgeCount;
+
+    /**
+     * Initialize an empty log.
+     */
+    public RecordLog() {
+        mState = new State(new DataRecord[MIN_CAPACITY], 0, 0, Long.MAX_VALUE, 0);
+        mLastWriteVersion = 0;
+        mNextPurgeCount = 0;
+    }
+
+    /**
+     * Append records inserted by a write. Records should already be stamped
+     * with begin version.
+     *
+     * @param records records inserted.
+     * @param version version of write.
+     */
+    public void append(List<DataRecord> records, long version) {
+        if (!records.isEmpty()) {
+            State state = mState;
+            DataRecord[] array = state.mRecords;
+            int size = state.mSize + records.size();
+            if (size > array.length) {
+                array = Arrays.copyOf(array, Math.max(size, array.length * 2));
+            }
+            int index = state.mSize;
+            for (DataRecord record : records) {
+                array[index++] = record;
+            }
+            mState = new State(array, size, Math.max(state.mMaxBeginVersion, version), state.mMinEndVersion, state.mDeletedCount);
+        }
+        mLastWriteVersion = Math.max(mLastWriteVersion, version);
+    }
+
+    /**
+     * Mark records deleted by a write. Snapshots older than version still see them.
+     *
+     * @param records records deleted, which should be in log.
+     * @param version version of write.
+     */
+    public void markDeleted(List<DataRecord> records, long version) {
+        if (!records.isEmpty()) {
+            State state = mState;
+            for (DataRecord record : records) {
+                record.setEndVersion(version);
+            }
+            mState = new State(state.mRecords, state.mSize, state.mMaxBeginVersion,
+                    Math.min(state.mMinEndVersion, version), state.mDeletedCount + records.size());
+        }
+        mLastWriteVersion = Math.max(mLastWriteVersion, version);
+    }
+
+    /**
+     * Drop deleted records no snapshot can see, if they are the majority.
+     * Deleted records kept for a snapshot are not rescanned until their
+     * count doubles.
+     *
+     * @param oldestSnapshot version of the oldest open snapshot.
+     */
+    public void purge(long oldestSnapshot) {
+        State state = mState;
+        if (state.mDeletedCount * 2 <= state.mSize || state.mDeletedCount < mNextPurgeCount
+                || state.mMinEndVersion > oldestSnapshot) {
+            return;
+        }
+        DataRecord[] array = new DataRecord[Math.max(MIN_CAPACITY, state.mSize - state.mDeletedCount)];
+        int size = 0;
+        long minEndVersion = Long.MAX_VALUE;
+        int deletedCount = 0;
+        for (int i = 0; i < state.mSize; ++i) {
+            DataRecord record = state.mRecords[i];
+            long endVersion = record.getEndVersion();
+            if (endVersion != 0 && endVersion <= oldestSnapshot) {
+                continue;
+            }
+            if (endVersion != 0) {
+                minEndVersion = Math.min(minEndVersion, endVersion);
+                ++deletedCount;
+            }
+            if (size == array.length) {
+                array = Arrays.copyOf(array, array.length * 2);
+            }
+            array[size++] = record;
+        }
+        mNextPurgeCount = deletedCount * 2;
+        mState = new State(array, size, state.mMaxBeginVersion, minEndVersion, deletedCount);
+    }
+
+    /**
+     * Get records a snapshot can see, in insertion order. If it can see all
+     * records in log, the published prefix is returned without copying.
+     *
+     * @param snapshot version of snapshot.
+     * @return a read-only list of records.
+     */
+    public List<DataRecord> read(long snapshot) {
+        State state = mState;
+        List<DataRecord> records = Arrays.asList(state.mRecords).subList(0, state.mSize);
+        if (state.mMaxBeginVersion <= snapshot && (state.mDeletedCount == 0 || state.mMinEndVersion > snapshot)) {
+            return Collections.unmodifiableList(records);
+        }
+        return ParallelScanner.filter(records, record -> record.isVisible(snapshot));
+    }
+
+    /**
+     * Get version of the last write which changed this log.
+     *
+     * @return version of write, 0 if none.
+     */
+    public long getLastWriteVersion() {
+        return mLastWriteVersion;
+    }
+
+    /**
+     * Get number of records in log, including deleted ones kept for snapshots.
+     *
+     * @return number of records.
+     */
+    public int size() {
+        return mState.mSize;
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stable sort of records for ORDER BY.
+ *
+ * Large inputs are sorted by a parallel merge sort over a permutation of
+ * row ids on the shared pool of ParallelScanner, using the session's
+ * degree of parallelism. The input list is never modified.
+ */
+public class RecordSorter {
+    /**
+     * Inputs smaller than this are sorted on the calling thread.
+     */
+    public static final int MIN_PARALLEL_SIZE = 1 << 13;
+
+    private static final int INSERTION_SORT_SIZE = 16;
+
+    /**
+     * Sort records into a new list.
+     *
+     * @param records records to sort, will not be modified.
+     * @param comparator order of records.
+     * @return a new sorted list.
+     */
+    public static ArrayList<DataRecord> sort(List<DataRecord> records, Comparator<DataRecord> comparator) {
+        int parallelism = ParallelScanner.getParallelism();
+        if (parallelism <= 1 || records.size() < MIN_PARALLEL_SIZE) {
+            ArrayList<DataRecord> result = new ArrayList<>(records);
+            result.sort(comparator);
+            return result;
+        }
+        int[] indices = sortRowIds(records, comparator);
+        ArrayList<DataRecord> result = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            result.add(records.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Sort row ids of records, without copying records.
+     *
+     * @param records records to sort, will not be modified.
+     * @param comparator order of records.
+     * @return row ids (indices in records) in sorted order.
+     */
+    public static int[] sortRowIds(List<DataRecord> records, Comparator<DataRecord> comparator) {
+        DataRecord[] rows = records.toArray(new DataRecord[records.size()]);
+        int[] indices = new int[rows.length];
+        for (int i = 0; i < indices.length; ++i) {
+            indices[i] = i;
+        }
+        int parallelism = ParallelScanner.getParallelism();
+        MergeSortTask task;
+        if (parallelism <= 1 || rows.length < MIN_PARALLEL_SIZE) {
+            task = new MergeSortTask(rows, comparator, indices, new int[rows.length], 0, rows.length, 0);
+            task.compute();
+        } else {
+            int depth = 32 - Integer.numberOfLeadingZeros(parallelism - 1);
+            task = new MergeSortTask(rows, comparator, indices, new int[rows.length], 0, rows.length, depth);
+            ParallelScanner.getPool().invoke(task);
+        }
+        return indices;
+    }
+
+    /**
+     * Merge sort task on range [from, to) of row id permutation.
+     */
+    private static class MergeSortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final DataRecord[] mRows;
+        private final Comparator<DataRecord> mComparator;
+        private final int[] mIndices;
+        private final int[] mBuffer;
+        private final int mFrom;
+        private final int mTo;
+        private final int mDepth;
+
+        MergeSortTask(DataRecord[] rows, Comparator<DataRecord> comparator, int[] indices, int[] buffer, int from, int to, int depth) {
+            mRows = rows;
+            mComparator = comparator;
+            mIndices = indices;
+            mBuffer = buffer;
+            mFrom = from;
+            mTo = to;
+            mDepth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (mDepth <= 0 || mTo - mFrom < MIN_PARALLEL_SIZE) {
+                sortRange(mFrom, mTo);
+                return;
+            }
+            int mid = (mFrom + mTo) >>> 1;
+            invokeAll(new MergeSortTask(mRows, mComparator, mIndices, mBuffer, mFrom, mid, mDepth - 1),
+                    new MergeSortTask(mRows, mComparator, mIndices, mBuffer, mid, mTo, mDepth - 1));
+            merge(mFrom, mid, mTo);
+        }
+
+        /**
+         * Sequential merge sort on [from, to).
+         */
+        private void sortRange(int from, int to) {
+            if (to - from <= INSERTION_SORT_SIZE) {
+                for (int i = from + 1; i < to; ++i) {
+                    int index = mIndices[i];
+                    int j = i - 1;
+                    while (j >= from && compare(mIndices[j], index) > 0) {
+                        mIndices[j + 1] = mIndices[j];
+                        --j;
+                    }
+                    mIndices[j + 1] = index;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            sortRange(from, mid);
+            sortRange(mid, to);
+            merge(from, mid, to);
+        }
+
+        /**
+         * Merge two sorted ranges [from, mid) and [mid, to).
+         * Left side wins ties to keep the sort stable.
+         */
+        private void merge(int from, int mid, int to) {
+            if (compare(mIndices[mid - 1], mIndices[mid]) <= 0) {
+                return;
+            }
+            System.arraycopy(mIndices, from, mBuffer, from, to - from);
+            int left = from;
+            int right = mid;
+            int target = from;
+            while (left < mid && right < to) {
+                if (compare(mBuffer[left], mBuffer[right]) <= 0) {
+                    mIndices[target++] = mBuffer[left++];
+                } else {
+                    mIndices[target++] = mBuffer[right++];
+                }
+            }
+            while (left < mid) {
+                mIndices[target++] = mBuffer[left++];
+            }
+            while (right < to) {
+                mIndices[target++] = mBuffer[right++];
+            }
+        }
+
+        private int compare(int a, int b) {
+            return mComparator.compare(mRows[a], mRows[b]);
+        }
+    }
+}
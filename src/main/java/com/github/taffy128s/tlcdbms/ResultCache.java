@@ -0,0 +1,177 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Query result cache, keyed by normalized query text.
+ *
+ * Each entry remembers versions of all tables it reads. An entry is only
+ * returned while every one of those tables still exists with the same
+ * version, so any INSERT into (or DROP of) a referenced table invalidates it.
+ * Total size of entries is bounded by an estimated byte size, the least
+ * recently used entries are evicted first. Capacity 0 disables the cache.
+ */
+public class ResultCache {
+    /**
+     * A cached result.
+     */
+    private static class Entry {
+        private ArrayList<String> mAttributeNames;
+        private ArrayList<DataType> mAttributeTypes;
+        private ArrayList<DataRecord> mRecords;
+        private HashMap<String, Long> mTableVersions;
+        private long mSize;
+    }
+
+    private LinkedHashMap<String, Entry> mEntries;
+    private long mCapacity;
+    private long mSize;
+
+    /**
+     * Initialize a disabled cache.
+     */
+    public ResultCache() {
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+        mCapacity = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Set capacity, evict entries if needed.
+     *
+     * @param capacity max estimated size in bytes, 0 to disable.
+     */
+    public synchronized void setCapacity(long capacity) {
+        mCapacity = Math.max(capacity, 0);
+        evict();
+    }
+
+    /**
+     * Check whether cache is enabled.
+     *
+     * @return true if capacity > 0.
+     */
+    public synchronized boolean isEnabled() {
+        return mCapacity > 0;
+    }
+
+    /**
+     * Get estimated size of all entries.
+     *
+     * @return size in bytes.
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Get number of entries.
+     *
+     * @return number of entries.
+     */
+    public synchronized int getEntryCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * Get a cached result. Entry will be removed if any table it reads has changed.
+     *
+     * @param key normalized query text.
+     * @param tables all tables in database.
+     * @param attributeNames list to put result attribute names into.
+     * @param attributeTypes list to put result attribute types into.
+     * @return result records, null if not cached. Must not be modified.
+     */
+    public synchronized ArrayList<DataRecord> get(String key, Map<String, Table> tables,
+                                                  ArrayList<String> attributeNames, ArrayList<DataType> attributeTypes) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        for (Map.Entry<String, Long> tableVersion : entry.mTableVersions.entrySet()) {
+            Table table = tables.get(tableVersion.getKey());
+            if (table == null || table.getVersion() != tableVersion.getValue()) {
+                mEntries.remove(key);
+                mSize -= entry.mSize;
+                return null;
+            }
+        }
+        attributeNames.addAll(entry.mAttributeNames);
+        attributeTypes.addAll(entry.mAttributeTypes);
+        return entry.mRecords;
+    }
+
+    /**
+     * Cache a result. Results larger than capacity are not cached.
+     *
+     * @param key normalized query text.
+     * @param tableVersions versions of tables read, taken before running the query.
+     * @param attributeNames result attribute names.
+     * @param attributeTypes result attribute types.
+     * @param records result records, must not be modified afterwards.
+     */
+    public synchronized void put(String key, HashMap<String, Long> tableVersions, ArrayList<String> attributeNames,
+                                 ArrayList<DataType> attributeTypes, ArrayList<DataRecord> records) {
+        if (mCapacity <= 0) {
+            return;
+        }
+        long size = estimateSize(key, attributeNames, records);
+        if (size > mCapacity) {
+            return;
+        }
+        Entry entry = new Entry();
+        entry.mAttributeNames = attributeNames;
+        entry.mAttributeTypes = attributeTypes;
+        entry.mRecords = records;
+        entry.mTableVersions = tableVersions;
+        entry.mSize = size;
+        Entry old = mEntries.put(key, entry);
+        if (old != null) {
+            mSize -= old.mSize;
+        }
+        mSize += size;
+        evict();
+    }
+
+    /**
+     * Remove least recently used entries until size fits capacity.
+     */
+    private void evict() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mSize > mCapacity && iterator.hasNext()) {
+            mSize -= iterator.next().mSize;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Estimate heap size of a result.
+     *
+     * @param key query text.
+     * @param attributeNames result attribute names.
+     * @param records result records.
+     * @return estimated size in bytes.
+     */
+    static long estimateSize(String key, ArrayList<String> attributeNames, ArrayList<DataRecord> records) {
+        long size = 64 + 40 + 2L * key.length();
+        for (String name : attributeNames) {
+            size += 48 + 2L * name.length();
+        }
+        for (DataRecord record : records) {
+            size += 48;
+            for (Object field : record.getAllFields()) {
+                size += 8;
+                if (field instanceof String) {
+                    size += 40 + 2L * ((String) field).length();
+                } else if (field != null) {
+                    size += 16;
+                }
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.taffy128s.tlcdbms;
+
+/**
+ * Set of whole records, used to detect duplicated tuples.
+ *
+ * Open addressing with linear probing. Each slot keeps a 64-bit hash of
+ * all fields of its record, and equals() is only called when hashes match,
+ * so a lookup costs one probe sequence of long comparisons regardless of
+ * how records are distributed over any key (or how many keys are null).
+ */
+public class RowHashSet {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mHashes;
+    private DataRecord[] mRows;
+    private int mMask;
+    private int mSize;
+
+    /**
+     * Initialize an empty set.
+     */
+    public RowHashSet() {
+        this(0);
+    }
+
+    /**
+     * Initialize an empty set.
+     *
+     * @param expectedSize number of records to hold without resizing.
+     */
+    public RowHashSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < (long) expectedSize * 3 / 2 + 1) {
+            capacity <<= 1;
+        }
+        mHashes = new long[capacity];
+        mRows = new DataRecord[capacity];
+        mMask = capacity - 1;
+        mSize = 0;
+    }
+
+    /**
+     * Add a record.
+     *
+     * @param row record to add.
+     * @return true if added, false if an equal record already exists.
+     */
+    public boolean add(DataRecord row) {
+        long hash = hash(row);
+        int slot = find(row, hash);
+        if (mRows[slot] != null) {
+            return false;
+        }
+        mRows[slot] = row;
+        mHashes[slot] = hash;
+        ++mSize;
+        if (mSize * 3L > mRows.length * 2L) {
+            resize(mRows.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Remove a record. Records after it in the same probe sequence are
+     * shifted back into the hole, so no deleted marker is left behind.
+     *
+     * @param row record equal to the one to remove.
+     * @return the record removed, null if not found.
+     */
+    public DataRecord remove(DataRecord row) {
+        int hole = find(row, hash(row));
+        DataRecord removed = mRows[hole];
+        if (removed == null) {
+            return null;
+        }
+        mRows[hole] = null;
+        --mSize;
+        for (int slot = (hole + 1) & mMask; mRows[slot] != null; slot = (slot + 1) & mMask) {
+            int home = (int) mHashes[slot] & mMask;
+            if (((slot - home) & mMask) >= ((slot - hole) & mMask)) {
+                mRows[hole] = mRows[slot];
+                mHashes[hole] = mHashes[slot];
+                mRows[slot] = null;
+                hole = slot;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Check whether an equal record exists.
+     *
+     * @param row record to check.
+     * @return true if exists.
+     */
+    public boolean contains(DataRecord row) {
+        return mRows[find(row, hash(row))] != null;
+    }
+
+    /**
+     * Get number of records.
+     *
+     * @return number of records.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Find slot of a record.
+     *
+     * @param row record to find.
+     * @param hash hash of record.
+     * @return slot holding an equal record, or the empty slot ending its probe sequence.
+     */
+    private int find(DataRecord row, long hash) {
+        int slot = (int) hash & mMask;
+        while (mRows[slot] != null && (mHashes[slot] != hash || !mRows[slot].equals(row))) {
+            slot = (slot + 1) & mMask;
+        }
+        return slot;
+    }
+
+    /**
+     * Move all records into a table of new capacity.
+     *
+     * @param capacity new capacity, a power of two.
+     */
+    private void resize(int capacity) {
+        long[] hashes = mHashes;
+        DataRecord[] rows = mRows;
+        mHashes = new long[capacity];
+        mRows = new DataRecord[capacity];
+        mMask = capacity - 1;
+        for (int i = 0; i < rows.length; ++i) {
+            if (rows[i] != null) {
+                int slot = (int) hashes[i] & mMask;
+                while (mRows[slot] != null) {
+                    slot = (slot + 1) & mMask;
+                }
+                mRows[slot] = rows[i];
+                mHashes[slot] = hashes[i];
+            }
+        }
+    }
+
+    /**
+     * Hash all fields of a record into 64 bits.
+     * Strings are hashed by characters rather than by 32-bit hashCode().
+     *
+     * @param row record to hash.
+     * @return hash of record.
+     */
+    static long hash(DataRecord row) {
+        long hash = row.length();
+        for (int i = 0; i < row.length(); ++i) {
+            Object field = row.get(i);
+            long fieldHash;
+            if (field == null) {
+                fieldHash = 0x9e3779b97f4a7c15L;
+            } else if (field instanceof String) {
+                String string = (String) field;
+                fieldHash = 0xcbf29ce484222325L;
+                for (int j = 0; j < string.length(); ++j) {
+                    fieldHash = (fieldHash ^ string.charAt(j)) * 0x100000001b3L;
+                }
+            } else {
+                fieldHash = field.hashCode();
+            }
+            hash = mix(hash * 0x9e3779b97f4a7c15L + fieldHash);
+        }
+        return hash;
+    }
+
+    /**
+     * Finalization mix of MurmurHash3.
+     *
+     * @param hash value to mix.
+     * @return mixed value.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
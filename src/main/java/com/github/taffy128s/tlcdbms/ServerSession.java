@@ -0,0 +1,62 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.Socket;
+
+/**
+ * Session of a client connected to DBServer.
+ *
+ * Reads commands from the connection like Interpreter reads stdin, and sends
+ * back everything printed on its thread. Prepared statements and settings
+ * belong to the session, tables are shared by all sessions.
+ */
+public class ServerSession extends Interpreter implements Runnable {
+    private Socket mSocket;
+
+    /**
+     * Initialize.
+     *
+     * @param socket connection of client.
+     * @param manager manager shared by sessions.
+     */
+    public ServerSession(Socket socket, DBManager manager) {
+        super(manager);
+        mSocket = socket;
+    }
+
+    /**
+     * Serve client until QUIT or connection closed.
+     */
+    @Override
+    public void run() {
+        try {
+            PrintStream output = new PrintStream(new BufferedOutputStream(mSocket.getOutputStream()), false, "UTF-8");
+            SessionPrintStream.setTarget(output);
+            printWelcome();
+            read(new InputStreamReader(mSocket.getInputStream(), "UTF-8"));
+            System.out.flush();
+        } catch (IOException e) {
+            // connection closed by client.
+        } finally {
+            SessionPrintStream.setTarget(null);
+            try {
+                mSocket.close();
+            } catch (IOException e) {
+                // already closed.
+            }
+        }
+    }
+
+    /**
+     * End session on QUIT or EXIT, the server keeps running.
+     */
+    @Override
+    protected void quit() {
+        System.out.println("Goodbye...");
+        System.out.flush();
+        mQuit = true;
+    }
+}
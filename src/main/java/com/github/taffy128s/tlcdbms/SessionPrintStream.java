@@ -0,0 +1,229 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * Standard output of sessions.
+ *
+ * Installed as System.out, it passes everything printed to the output of
+ * the session running on current thread, so messages of DBManager reach
+ * the client which sent the command. Threads without a session print to
+ * the original standard output. Each call is passed on as a whole, so
+ * sessions never wait for each other to print.
+ */
+public class SessionPrintStream extends PrintStream {
+    private static final ThreadLocal<PrintStream> TARGET = new ThreadLocal<>();
+
+    private PrintStream mDefault;
+
+    /**
+     * Initialize.
+     *
+     * @param defaultTarget output of threads without a session.
+     */
+    private SessionPrintStream(PrintStream defaultTarget) {
+        super(defaultTarget);
+        mDefault = defaultTarget;
+    }
+
+    /**
+     * Replace System.out with a SessionPrintStream, if not yet.
+     */
+    public static synchronized void install() {
+        if (!(System.out instanceof SessionPrintStream)) {
+            System.setOut(new SessionPrintStream(System.out));
+        }
+    }
+
+    /**
+     * Get output of current thread.
+     *
+     * @return output set by setTarget(), null if none.
+     */
+    public static PrintStream getTarget() {
+        return TARGET.get();
+    }
+
+    /**
+     * Set output of current thread. Installs SessionPrintStream if not yet.
+     *
+     * @param target output of session, null to print to the original standard output.
+     */
+    public static void setTarget(PrintStream target) {
+        install();
+        TARGET.set(target);
+    }
+
+    /**
+     * Get output to print to.
+     *
+     * @return output of current thread.
+     */
+    private PrintStream target() {
+        PrintStream target = TARGET.get();
+        return (target != null) ? target : mDefault;
+    }
+
+    @Override
+    public void flush() {
+        target().flush();
+    }
+
+    @Override
+    public void close() {
+        target().close();
+    }
+
+    @Override
+    public boolean checkError() {
+        return target().checkError();
+    }
+
+    @Override
+    public void write(int b) {
+        target().write(b);
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        target().write(buf, off, len);
+    }
+
+    @Override
+    public void print(boolean b) {
+        target().print(b);
+    }
+
+    @Override
+    public void print(char c) {
+        target().print(c);
+    }
+
+    @Override
+    public void print(int i) {
+        target().print(i);
+    }
+
+    @Override
+    public void print(long l) {
+        target().print(l);
+    }
+
+    @Override
+    public void print(float f) {
+        target().print(f);
+    }
+
+    @Override
+    public void print(double d) {
+        target().print(d);
+    }
+
+    @Override
+    public void print(char[] s) {
+        target().print(s);
+    }
+
+    @Override
+    public void print(String s) {
+        target().print(s);
+    }
+
+    @Override
+    public void print(Object obj) {
+        target().print(obj);
+    }
+
+    @Override
+    public void println() {
+        target().println();
+    }
+
+    @Override
+    public void println(boolean x) {
+        target().println(x);
+    }
+
+    @Override
+    public void println(char x) {
+        target().println(x);
+    }
+
+    @Override
+    public void println(int x) {
+        target().println(x);
+    }
+
+    @Override
+    public void println(long x) {
+        target().println(x);
+    }
+
+    @Override
+    public void println(float x) {
+        target().println(x);
+    }
+
+    @Override
+    public void println(double x) {
+        target().println(x);
+    }
+
+    @Override
+    public void println(char[] x) {
+        target().println(x);
+    }
+
+    @Override
+    public void println(String x) {
+        target().println(x);
+    }
+
+    @Override
+    public void println(Object x) {
+        target().println(x);
+    }
+
+    @Override
+    public PrintStream printf(String format, Object... args) {
+        target().printf(format, args);
+        return this;
+    }
+
+    @Override
+    public PrintStream printf(Locale l, String format, Object... args) {
+        target().printf(l, format, args);
+        return this;
+    }
+
+    @Override
+    public PrintStream format(String format, Object... args) {
+        target().format(format, args);
+        return this;
+    }
+
+    @Override
+    public PrintStream format(Locale l, String format, Object... args) {
+        target().format(l, format, args);
+        return this;
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq) {
+        target().append(csq);
+        return this;
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq, int start, int end) {
+        target().append(csq, start, end);
+        return this;
+    }
+
+    @Override
+    public PrintStream append(char c) {
+        target().append(c);
+        return this;
+    }
+}
@@ -0,0 +1,256 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Read-only view of a MultiIndexTable at a snapshot version (see VersionClock).
+ * Used by SELECT, so a long query reads a consistent table while other
+ * sessions keep inserting.
+ *
+ * Full scans read the RecordLog of table without locking. Indices are only
+ * used while no write newer than the snapshot has changed the table, checked
+ * under the read latch of table. The latch is never waited for: if a writer
+ * holds it or the table has changed, the query scans the snapshot instead.
+ */
+public class SnapshotTable extends Table {
+    private MultiIndexTable mTable;
+    private long mSnapshot;
+    private List<DataRecord> mRecords;
+    private ArrayList<DataRecord> mRecordList;
+
+    /**
+     * Initialize a snapshot of a table.
+     *
+     * @param table table to read, usually an alias table.
+     * @param snapshot version of snapshot.
+     */
+    public SnapshotTable(MultiIndexTable table, long snapshot) {
+        super(table.getTablename(), table.getAttributeNames(), table.getAttributeTypes(), table.getPrimaryKey());
+        mTable = table;
+        mSnapshot = snapshot;
+        mRecords = null;
+        mRecordList = null;
+    }
+
+    /**
+     * Read from indices of table if it has not changed since snapshot,
+     * otherwise (or if a writer is changing it) read from snapshot.
+     *
+     * @param current reads indices of table, called under the read latch.
+     * @param fallback reads snapshot.
+     * @return result of current or fallback.
+     */
+    private <T> T read(Supplier<T> current, Supplier<T> fallback) {
+        ReentrantReadWriteLock latch = mTable.getLatch();
+        if (latch.readLock().tryLock()) {
+            try {
+                if (mTable.getLog().getLastWriteVersion() <= mSnapshot) {
+                    return current.get();
+                }
+            } finally {
+                latch.readLock().unlock();
+            }
+        }
+        return fallback.get();
+    }
+
+    /**
+     * Find the smallest or largest non-null value of a column in snapshot.
+     *
+     * @param columnIndex column index.
+     * @param sign 1 for smallest, -1 for largest.
+     * @return value found, null if no non-null values.
+     */
+    private Object findKey(int columnIndex, int sign) {
+        Object result = null;
+        for (DataRecord record : getRecordView()) {
+            Object value = record.get(columnIndex);
+            if (value != null && (result == null || sign * DataRecord.compare(value, result) < 0)) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String getTableType() {
+        return mTable.getTableType();
+    }
+
+    @Override
+    public TableFieldType getFieldType(int index) {
+        return mTable.getFieldType(index);
+    }
+
+    @Override
+    public InsertionResult checkInputData(DataRecord dataRecord) {
+        return InsertionResult.SUCCESS;
+    }
+
+    @Override
+    public boolean insert(DataRecord dataRecord) {
+        return false;
+    }
+
+    @Override
+    protected boolean insertAll(ArrayList<DataRecord> dataRecords) {
+        return false;
+    }
+
+    @Override
+    public ArrayList<DataRecord> getAllRecords() {
+        if (mRecordList == null) {
+            List<DataRecord> records = getRecordView();
+            mRecordList = (records instanceof ArrayList) ? (ArrayList<DataRecord>) records : new ArrayList<>(records);
+        }
+        return mRecordList;
+    }
+
+    @Override
+    public List<DataRecord> getRecordView() {
+        if (mRecords == null) {
+            mRecords = mTable.getLog().read(mSnapshot);
+        }
+        return mRecords;
+    }
+
+    @Override
+    public int getRecordCount() {
+        return read(mTable::getRecordCount, () -> getRecordView().size());
+    }
+
+    @Override
+    public int getNonNullCount(int columnIndex) {
+        return read(() -> mTable.getNonNullCount(columnIndex), () -> -1);
+    }
+
+    @Override
+    public boolean hasOrderedIndex(int columnIndex) {
+        return read(() -> mTable.hasOrderedIndex(columnIndex), () -> false);
+    }
+
+    @Override
+    public Object getMinKey(int columnIndex) {
+        return read(() -> mTable.getMinKey(columnIndex), () -> findKey(columnIndex, 1));
+    }
+
+    @Override
+    public Object getMaxKey(int columnIndex) {
+        return read(() -> mTable.getMaxKey(columnIndex), () -> findKey(columnIndex, -1));
+    }
+
+    @Override
+    public int countQuery(int columnIndex, Object key, BinaryOperator operator) {
+        return read(() -> mTable.countQuery(columnIndex, key, operator), () -> -1);
+    }
+
+    @Override
+    public ArrayList<Object> queryKeys(int columnIndex, Object key, BinaryOperator operator) {
+        return read(() -> mTable.queryKeys(columnIndex, key, operator), () -> null);
+    }
+
+    @Override
+    public Table queryEqual(int columnIndex, Object key) {
+        return read(() -> mTable.queryEqual(columnIndex, key), () -> super.queryEqual(columnIndex, key));
+    }
+
+    @Override
+    public Table queryNotEqual(int columnIndex, Object key) {
+        return read(() -> mTable.queryNotEqual(columnIndex, key), () -> super.queryNotEqual(columnIndex, key));
+    }
+
+    @Override
+    public Table queryLess(int columnIndex, Object key) {
+        return read(() -> mTable.queryLess(columnIndex, key), () -> super.queryLess(columnIndex, key));
+    }
+
+    @Override
+    public Table queryLessEqual(int columnIndex, Object key) {
+        return read(() -> mTable.queryLessEqual(columnIndex, key), () -> super.queryLessEqual(columnIndex, key));
+    }
+
+    @Override
+    public Table queryGreater(int columnIndex, Object key) {
+        return read(() -> mTable.queryGreater(columnIndex, key), () -> super.queryGreater(columnIndex, key));
+    }
+
+    @Override
+    public Table queryGreaterEqual(int columnIndex, Object key) {
+        return read(() -> mTable.queryGreaterEqual(columnIndex, key), () -> super.queryGreaterEqual(columnIndex, key));
+    }
+
+    @Override
+    public Table queryLike(int columnIndex, Object pattern) {
+        return read(() -> mTable.queryLike(columnIndex, pattern), () -> super.queryLike(columnIndex, pattern));
+    }
+
+    @Override
+    public Table queryRange(int columnIndex, Object fromKey, Object toKey) {
+        return read(() -> mTable.queryRange(columnIndex, fromKey, toKey),
+                () -> super.queryRange(columnIndex, fromKey, toKey));
+    }
+
+    @Override
+    public Table queryRange(int columnIndex, Object fromKey, boolean fromInclusive, Object toKey, boolean toInclusive) {
+        return read(() -> mTable.queryRange(columnIndex, fromKey, fromInclusive, toKey, toInclusive),
+                () -> super.queryRange(columnIndex, fromKey, fromInclusive, toKey, toInclusive));
+    }
+
+    @Override
+    public Table queryConjunction(ArrayList<Condition> conditions) {
+        return read(() -> mTable.queryConjunction(conditions), () -> null);
+    }
+
+    @Override
+    public ArrayList<DataRecord> getAllRecords(int sortIndex, SortingType sortingType) {
+        ArrayList<DataRecord> result = read(() ->
+                mTable.hasOrderedIndex(sortIndex) ? mTable.getAllRecords(sortIndex, sortingType) : null, () -> null);
+        return (result != null) ? result : super.getAllRecords(sortIndex, sortingType);
+    }
+
+    @Override
+    public ArrayList<DataRecord> getTopRecords(int sortIndex, SortingType sortingType, int limit) {
+        ArrayList<DataRecord> result = read(() ->
+                mTable.hasOrderedIndex(sortIndex) ? mTable.getTopRecords(sortIndex, sortingType, limit) : null, () -> null);
+        return (result != null) ? result : super.getTopRecords(sortIndex, sortingType, limit);
+    }
+
+    @Override
+    public ArrayList<DataRecord> getTopRecords(ArrayList<Integer> sortIndices, ArrayList<SortingType> sortingTypes, int limit) {
+        ArrayList<DataRecord> result = read(() -> mTable.hasOrderedIndex(sortIndices, sortingTypes)
+                ? mTable.getTopRecords(sortIndices, sortingTypes, limit) : null, () -> null);
+        return (result != null) ? result : super.getTopRecords(sortIndices, sortingTypes, limit);
+    }
+
+    @Override
+    public Iterable<DataRecord> getSortedRecords(ArrayList<Integer> sortIndices, ArrayList<SortingType> sortingTypes) {
+        // records are copied under the latch, an index iterator is not valid after it.
+        ArrayList<DataRecord> result = read(() -> {
+            if (!mTable.hasOrderedIndex(sortIndices, sortingTypes)) {
+                return null;
+            }
+            ArrayList<DataRecord> records = new ArrayList<>();
+            mTable.getSortedRecords(sortIndices, sortingTypes).forEach(records::add);
+            return records;
+        }, () -> null);
+        return (result != null) ? result : super.getSortedRecords(sortIndices, sortingTypes);
+    }
+
+    @Override
+    public Table generateAliasTable(String aliasName) {
+        return new SnapshotTable((MultiIndexTable) mTable.generateAliasTable(aliasName), mSnapshot);
+    }
+
+    @Override
+    public boolean writeToDisk(String filename) {
+        return false;
+    }
+
+    @Override
+    public boolean restoreFromDisk(String filename) {
+        return false;
+    }
+}
@@ -0,0 +1,159 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.util.ArrayList;
+
+/**
+ * Sort-merge join operator.
+ *
+ * Read both tables in ascending key order (directly from the B+ tree
+ * leaves when the join column is indexed) and merge them in one linear
+ * pass. Supports equality and inequality (band) join conditions,
+ * i.e. left.key OP right.key where OP is one of =, <, <=, >, >=.
+ */
+public class SortMergeJoin {
+    private Table mFirstTable;
+    private Table mSecondTable;
+    private int mLeftKeyIndex;
+    private int mRightKeyIndex;
+    private BinaryOperator mOperator;
+
+    /**
+     * Initialize a sort-merge join.
+     *
+     * @param firstTable left table.
+     * @param secondTable right table.
+     * @param leftKeyIndex join column index of left table.
+     * @param rightKeyIndex join column index of right table.
+     * @param operator join operator, NOT_EQUAL is not supported.
+     */
+    public SortMergeJoin(Table firstTable, Table secondTable, int leftKeyIndex, int rightKeyIndex, BinaryOperator operator) {
+        mFirstTable = firstTable;
+        mSecondTable = secondTable;
+        mLeftKeyIndex = leftKeyIndex;
+        mRightKeyIndex = rightKeyIndex;
+        mOperator = operator;
+    }
+
+    /**
+     * Check whether the operator can be handled by sort-merge join.
+     *
+     * @param operator operator to check.
+     * @return true if supported.
+     */
+    public static boolean isSupported(BinaryOperator operator) {
+        switch (operator) {
+            case EQUAL:
+            case LESS_THAN:
+            case LESS_EQUAL:
+            case GREATER_THAN:
+            case GREATER_EQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Do join. Each result record is left fields followed by right fields.
+     * Null keys never satisfy an inequality, while for equality null matches
+     * null, the same as Table.queryEqual() does.
+     *
+     * @return a list of joined records.
+     */
+    public ArrayList<DataRecord> join() {
+        ArrayList<DataRecord> result = new ArrayList<>();
+        ArrayList<DataRecord> left = mFirstTable.getAllRecords(mLeftKeyIndex, SortingType.ASCENDING);
+        ArrayList<DataRecord> right = mSecondTable.getAllRecords(mRightKeyIndex, SortingType.ASCENDING);
+        int leftStart = countNullKeys(left, mLeftKeyIndex);
+        int rightStart = countNullKeys(right, mRightKeyIndex);
+        int rightEnd = right.size();
+        if (mOperator == BinaryOperator.EQUAL) {
+            for (int i = 0; i < leftStart; ++i) {
+                emit(left.get(i), right, 0, rightStart, result);
+            }
+        }
+        // [low, high) is the window of matching right records for current left key,
+        // both ends only move forward since left keys are ascending.
+        int low = rightStart;
+        int high = rightStart;
+        for (int i = leftStart; i < left.size(); ++i) {
+            DataRecord leftRecord = left.get(i);
+            Object key = leftRecord.get(mLeftKeyIndex);
+            switch (mOperator) {
+                case EQUAL:
+                    while (low < rightEnd && compareRight(right, low, key) < 0) {
+                        ++low;
+                    }
+                    high = Math.max(high, low);
+                    while (high < rightEnd && compareRight(right, high, key) <= 0) {
+                        ++high;
+                    }
+                    emit(leftRecord, right, low, high, result);
+                    break;
+                case LESS_THAN:
+                    while (low < rightEnd && compareRight(right, low, key) <= 0) {
+                        ++low;
+                    }
+                    emit(leftRecord, right, low, rightEnd, result);
+                    break;
+                case LESS_EQUAL:
+                    while (low < rightEnd && compareRight(right, low, key) < 0) {
+                        ++low;
+                    }
+                    emit(leftRecord, right, low, rightEnd, result);
+                    break;
+                case GREATER_THAN:
+                    while (high < rightEnd && compareRight(right, high, key) < 0) {
+                        ++high;
+                    }
+                    emit(leftRecord, right, rightStart, high, result);
+                    break;
+                case GREATER_EQUAL:
+                    while (high < rightEnd && compareRight(right, high, key) <= 0) {
+                        ++high;
+                    }
+                    emit(leftRecord, right, rightStart, high, result);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compare key of a right record with a left key.
+     *
+     * @param right right records.
+     * @param index index of right record.
+     * @param key left key.
+     * @return same as Comparable.compareTo().
+     */
+    private int compareRight(ArrayList<DataRecord> right, int index, Object key) {
+        return DataRecord.compare(right.get(index).get(mRightKeyIndex), key);
+    }
+
+    /**
+     * Append left record joined with right records in [from, to) to result.
+     */
+    private static void emit(DataRecord leftRecord, ArrayList<DataRecord> right, int from, int to, ArrayList<DataRecord> result) {
+        for (int i = from; i < to; ++i) {
+            result.add(HashJoin.concatenate(leftRecord, right.get(i)));
+        }
+    }
+
+    /**
+     * Count records with null key, which are at the front of ascending sorted records.
+     *
+     * @param records sorted records.
+     * @param keyIndex key column index.
+     * @return number of null keys.
+     */
+    private static int countNullKeys(ArrayList<DataRecord> records, int keyIndex) {
+        int count = 0;
+        while (count < records.size() && records.get(count).get(keyIndex) == null) {
+            ++count;
+        }
+        return count;
+    }
+}
@@ -1,9 +1,14 @@
 package com.github.taffy128s.tlcdbms;
 
 import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.util.*;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
  * Database Table.
@@ -12,15 +17,23 @@ import java.util.*;
  * including CREATE, INSERT, SELECT...
  */
 public abstract class Table implements DiskWritable {
+    private static final AtomicLong VERSION_COUNTER = new AtomicLong();
+    /**
+     * Prefix of a line in table file which deletes the record written after it.
+     */
+    protected static final String TOMBSTONE_PREFIX = "DELETE\0";
+
     protected String mTablename;
     protected ArrayList<String> mAttributeNames;
     protected ArrayList<DataType> mAttributeTypes;
     protected int mPrimaryKey;
+    private volatile AttributeIndexMap mAttributeIndexMap;
 
     protected ArrayList<String> mSourceTables;
 
     protected String mFilename;
     protected boolean mDiskModifiable;
+    private volatile long mVersion;
 
     /**
      * Initialize a Table.
@@ -34,6 +47,7 @@ public abstract class Table implements DiskWritable {
         mSourceTables = new ArrayList<>();
         mFilename = "";
         mDiskModifiable = false;
+        mVersion = VERSION_COUNTER.incrementAndGet();
     }
 
     /**
@@ -91,6 +105,24 @@ public abstract class Table implements DiskWritable {
         return mPrimaryKey;
     }
 
+    /**
+     * Get version of this table. Versions are unique among all tables,
+     * a table gets a new version when created and whenever it changes.
+     *
+     * @return version.
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Mark this table as changed by giving it a new version.
+     * Should be called after records are modified.
+     */
+    public void touch() {
+        mVersion = VERSION_COUNTER.incrementAndGet();
+    }
+
     /**
      * Set all attribute names of this table.
      *
@@ -98,6 +130,7 @@ public abstract class Table implements DiskWritable {
      */
     public void setAttributeNames(ArrayList<String> attributeNames) {
         mAttributeNames = attributeNames;
+        mAttributeIndexMap = null;
     }
 
     /**
@@ -109,6 +142,40 @@ public abstract class Table implements DiskWritable {
         return mAttributeNames;
     }
 
+    /**
+     * Get column index of an attribute name by a hash lookup,
+     * same as getAttributeNames().indexOf(attributeName).
+     *
+     * @param attributeName attribute name to find.
+     * @return column index of its first occurrence, -1 if not found.
+     */
+    public int getAttributeIndex(String attributeName) {
+        AttributeIndexMap indexMap = mAttributeIndexMap;
+        if (indexMap == null || indexMap.mAttributeCount != mAttributeNames.size()) {
+            indexMap = new AttributeIndexMap(mAttributeNames);
+            mAttributeIndexMap = indexMap;
+        }
+        Integer index = indexMap.mIndices.get(attributeName);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Cached column indices of attribute names, built from the names when
+     * there were mAttributeCount of them (names are appended on restore).
+     */
+    private static class AttributeIndexMap {
+        private final int mAttributeCount;
+        private final HashMap<String, Integer> mIndices;
+
+        private AttributeIndexMap(ArrayList<String> attributeNames) {
+            mAttributeCount = attributeNames.size();
+            mIndices = new HashMap<>();
+            for (int i = 0; i < attributeNames.size(); ++i) {
+                mIndices.putIfAbsent(attributeNames.get(i), i);
+            }
+        }
+    }
+
     /**
      * Set all attribute types of this table.
      *
@@ -161,6 +228,57 @@ public abstract class Table implements DiskWritable {
      */
     public abstract InsertionResult checkInputData(DataRecord dataRecord);
 
+    /**
+     * Check a batch of data records to be inserted together, in order.
+     * Result of each record is the same as calling checkInputData() and
+     * inserting it if valid, one by one. Records are checked against the
+     * table in parallel, and against earlier records of batch by hashing.
+     *
+     * @param dataRecords data to check.
+     * @return check result of each record.
+     */
+    public ArrayList<InsertionResult> checkInputData(ArrayList<DataRecord> dataRecords) {
+        InsertionResult[] tableResults = new InsertionResult[dataRecords.size()];
+        int parallelism = ParallelScanner.getParallelism();
+        int ranges = Math.max(Math.min(parallelism, dataRecords.size() / (ParallelScanner.MIN_PARALLEL_SIZE / 4)), 1);
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < ranges; ++i) {
+            final int from = (int) ((long) dataRecords.size() * i / ranges);
+            final int to = (int) ((long) dataRecords.size() * (i + 1) / ranges);
+            Runnable task = () -> {
+                for (int row = from; row < to; ++row) {
+                    tableResults[row] = checkInputData(dataRecords.get(row));
+                }
+            };
+            if (ranges == 1) {
+                task.run();
+            } else {
+                tasks.add(ParallelScanner.getPool().submit(task));
+            }
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        ArrayList<InsertionResult> results = new ArrayList<>(dataRecords.size());
+        RowHashSet accepted = new RowHashSet(dataRecords.size());
+        HashSet<Object> primaryKeys = new HashSet<>();
+        for (int i = 0; i < dataRecords.size(); ++i) {
+            DataRecord dataRecord = dataRecords.get(i);
+            InsertionResult result = tableResults[i];
+            if (result == InsertionResult.SUCCESS) {
+                if (accepted.contains(dataRecord)) {
+                    result = InsertionResult.DUPLICATED_DATA_TUPLE;
+                } else if (mPrimaryKey != -1 && !primaryKeys.add(dataRecord.get(mPrimaryKey))) {
+                    result = InsertionResult.DUPLICATED_PRIMARY_KEY;
+                } else {
+                    accepted.add(dataRecord);
+                }
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
     /**
      * Insert a data record into table.
      * Assume that data is valid, i.e.<br>
@@ -181,6 +299,18 @@ public abstract class Table implements DiskWritable {
      */
     protected abstract boolean insertAll(ArrayList<DataRecord> dataRecords);
 
+    /**
+     * Delete data records from table.
+     * Records should be the ones stored in this table, e.g. returned by
+     * getAllRecords(), not copies of them.
+     *
+     * @param dataRecords data records to be deleted.
+     * @return true if succeed, false if not supported.
+     */
+    public boolean deleteAll(ArrayList<DataRecord> dataRecords) {
+        return false;
+    }
+
     /**
      * Get all data which satisfy the condition given in parameter.
      * Note that the condition should be set correctly in DBManager.
@@ -206,7 +336,7 @@ public abstract class Table implements DiskWritable {
             if (isResultTable) {
                 target = condition.getRightTableName() + "." + target;
             }
-            int columnIndex = mAttributeNames.indexOf(target);
+            int columnIndex = getAttributeIndex(target);
             Object right = Condition.getConstant(condition.getLeftConstant());
             BinaryOperator operator = Condition.reverseOperator(condition.getOperator());
             return query(columnIndex, right, operator);
@@ -215,7 +345,7 @@ public abstract class Table implements DiskWritable {
             if (isResultTable) {
                 target = condition.getLeftTableName() + "." + target;
             }
-            int columnIndex = mAttributeNames.indexOf(target);
+            int columnIndex = getAttributeIndex(target);
             Object right = Condition.getConstant(condition.getRightConstant());
             BinaryOperator operator = condition.getOperator();
             return query(columnIndex, right, operator);
@@ -230,17 +360,14 @@ public abstract class Table implements DiskWritable {
                 leftTarget = condition.getLeftTableName() + "." + leftTarget;
                 rightTarget = condition.getRightTableName() + "." + rightTarget;
             }
-            ArrayList<DataRecord> allRecords = getAllRecords();
-            int leftIndex = mAttributeNames.indexOf(leftTarget);
-            int rightIndex = mAttributeNames.indexOf(rightTarget);
+            int leftIndex = getAttributeIndex(leftTarget);
+            int rightIndex = getAttributeIndex(rightTarget);
             if (leftIndex == -1 || rightIndex == -1) {
                 return table;
             }
-            for (DataRecord record : allRecords) {
-                if (Condition.calculateResult(record.get(leftIndex), record.get(rightIndex), condition.getOperator())) {
-                    table.insert(record);
-                }
-            }
+            BinaryOperator operator = condition.getOperator();
+            table.insertAll(ParallelScanner.filter(getRecordView(), record ->
+                    Condition.calculateResult(record.get(leftIndex), record.get(rightIndex), operator)));
             return table;
         }
     }
@@ -267,6 +394,8 @@ public abstract class Table implements DiskWritable {
                 return queryGreater(columnIndex, key);
             case GREATER_EQUAL:
                 return queryGreaterEqual(columnIndex, key);
+            case LIKE:
+                return queryLike(columnIndex, key);
         }
         return generateEmptyResultTable();
     }
@@ -280,24 +409,12 @@ public abstract class Table implements DiskWritable {
      * @return a table with all DataRecords as result.
      */
     public Table queryEqual(int columnIndex, Object key) {
-        ArrayList<DataRecord> result = new ArrayList<>();
-        ArrayList<DataRecord> allRecords = getAllRecords();
         Table table = generateEmptyResultTable();
         if (key == null) {
-            for (DataRecord record : allRecords) {
-                if (record.get(columnIndex) == null) {
-                    result.add(record);
-                }
-            }
-            table.insertAll(result);
-            return table;
-        }
-        for (DataRecord record : allRecords) {
-            if (key.equals(record.get(columnIndex))) {
-                result.add(record);
-            }
+            table.insertAll(ParallelScanner.filter(getRecordView(), record -> record.get(columnIndex) == null));
+        } else {
+            table.insertAll(ParallelScanner.filter(getRecordView(), record -> key.equals(record.get(columnIndex))));
         }
-        table.insertAll(result);
         return table;
     }
 
@@ -310,24 +427,12 @@ public abstract class Table implements DiskWritable {
      * @return a table with all DataRecords as result.
      */
     public Table queryNotEqual(int columnIndex, Object key) {
-        ArrayList<DataRecord> result = new ArrayList<>();
-        ArrayList<DataRecord> allRecords = getAllRecords();
         Table table = generateEmptyResultTable();
         if (key == null) {
-            for (DataRecord record : allRecords) {
-                if (record.get(columnIndex) != null) {
-                    result.add(record);
-                }
-            }
-            table.insertAll(result);
-            return table;
-        }
-        for (DataRecord record : allRecords) {
-            if (!key.equals(record.get(columnIndex))) {
-                result.add(record);
-            }
+            table.insertAll(ParallelScanner.filter(getRecordView(), record -> record.get(columnIndex) != null));
+        } else {
+            table.insertAll(ParallelScanner.filter(getRecordView(), record -> !key.equals(record.get(columnIndex))));
         }
-        table.insertAll(result);
         return table;
     }
 
@@ -345,14 +450,8 @@ public abstract class Table implements DiskWritable {
         if (key == null) {
             return table;
         }
-        ArrayList<DataRecord> allRecords = getAllRecords();
-        ArrayList<DataRecord> result = new ArrayList<>();
-        for (DataRecord record : allRecords) {
-            if (record.get(columnIndex) != null && ((Comparable) record.get(columnIndex)).compareTo(key) < 0) {
-                result.add(record);
-            }
-        }
-        table.insertAll(result);
+        table.insertAll(ParallelScanner.filter(getRecordView(), record ->
+                record.get(columnIndex) != null && ((Comparable) record.get(columnIndex)).compareTo(key) < 0));
         return table;
     }
 
@@ -370,14 +469,8 @@ public abstract class Table implements DiskWritable {
         if (key == null) {
             return table;
         }
-        ArrayList<DataRecord> allRecords = getAllRecords();
-        ArrayList<DataRecord> result = new ArrayList<>();
-        for (DataRecord record : allRecords) {
-            if (record.get(columnIndex) != null && ((Comparable) record.get(columnIndex)).compareTo(key) <= 0) {
-                result.add(record);
-            }
-        }
-        table.insertAll(result);
+        table.insertAll(ParallelScanner.filter(getRecordView(), record ->
+                record.get(columnIndex) != null && ((Comparable) record.get(columnIndex)).compareTo(key) <= 0));
         return table;
     }
 
@@ -395,14 +488,8 @@ public abstract class Table implements DiskWritable {
         if (key == null) {
             return table;
         }
-        ArrayList<DataRecord> allRecords = getAllRecords();
-        ArrayList<DataRecord> result = new ArrayList<>();
-        for (DataRecord record : allRecords) {
-            if (record.get(columnIndex) != null && ((Comparable) record.get(columnIndex)).compareTo(key) > 0) {
-                result.add(record);
-            }
-        }
-        table.insertAll(result);
+        table.insertAll(ParallelScanner.filter(getRecordView(), record ->
+                record.get(columnIndex) != null && ((Comparable) record.get(columnIndex)).compareTo(key) > 0));
         return table;
     }
 
@@ -420,14 +507,26 @@ public abstract class Table implements DiskWritable {
         if (key == null) {
             return table;
         }
-        ArrayList<DataRecord> allRecords = getAllRecords();
-        ArrayList<DataRecord> result = new ArrayList<>();
-        for (DataRecord record : allRecords) {
-            if (record.get(columnIndex) != null && ((Comparable) record.get(columnIndex)).compareTo(key) >= 0) {
-                result.add(record);
-            }
+        table.insertAll(ParallelScanner.filter(getRecordView(), record ->
+                record.get(columnIndex) != null && ((Comparable) record.get(columnIndex)).compareTo(key) >= 0));
+        return table;
+    }
+
+    /**
+     * Get all data which matches LIKE pattern in specified column index.
+     * (i.e. LIKE ).
+     *
+     * @param columnIndex column (or field) index to check.
+     * @param pattern quoted LIKE pattern.
+     * @return a table with all DataRecords as result.
+     */
+    public Table queryLike(int columnIndex, Object pattern) {
+        Table table = generateEmptyResultTable();
+        if (!(pattern instanceof String)) {
+            return table;
         }
-        table.insertAll(result);
+        table.insertAll(ParallelScanner.filter(getRecordView(), record ->
+                Condition.calculateResult(record.get(columnIndex), pattern, BinaryOperator.LIKE)));
         return table;
     }
 
@@ -445,18 +544,10 @@ public abstract class Table implements DiskWritable {
         if (fromKey == null || toKey == null) {
             return table;
         }
-        ArrayList<DataRecord> allRecords = getAllRecords();
-        ArrayList<DataRecord> result = new ArrayList<>();
-        for (DataRecord record : allRecords) {
-            if (record.get(columnIndex) == null) {
-                continue;
-            }
-            if (((Comparable) record.get(columnIndex)).compareTo(fromKey) >= 0 &&
-                        ((Comparable) record.get(columnIndex)).compareTo(toKey) < 0) {
-                result.add(record);
-            }
-        }
-        table.insertAll(result);
+        table.insertAll(ParallelScanner.filter(getRecordView(), record ->
+                record.get(columnIndex) != null &&
+                        ((Comparable) record.get(columnIndex)).compareTo(fromKey) >= 0 &&
+                        ((Comparable) record.get(columnIndex)).compareTo(toKey) < 0));
         return table;
     }
 
@@ -477,35 +568,17 @@ public abstract class Table implements DiskWritable {
         if (fromKey == null || toKey == null) {
             return table;
         }
-        ArrayList<DataRecord> allRecords = getAllRecords();
-        ArrayList<DataRecord> result = new ArrayList<>();
-        for (DataRecord record : allRecords) {
+        table.insertAll(ParallelScanner.filter(getRecordView(), record -> {
             if (record.get(columnIndex) == null) {
-                continue;
+                return false;
             }
             int compareToFrom = ((Comparable) record.get(columnIndex)).compareTo(fromKey);
             int compareToTo = ((Comparable) record.get(columnIndex)).compareTo(toKey);
-            if (fromInclusive) {
-                if (compareToFrom < 0) {
-                    continue;
-                }
-            } else {
-                if (compareToFrom <= 0) {
-                    continue;
-                }
-            }
-            if (toInclusive) {
-                if (compareToTo > 0) {
-                    continue;
-                }
-            } else {
-                if (compareToTo >= 0) {
-                    continue;
-                }
+            if (fromInclusive ? compareToFrom < 0 : compareToFrom <= 0) {
+                return false;
             }
-            result.add(record);
-        }
-        table.insertAll(result);
+            return toInclusive ? compareToTo <= 0 : compareToTo < 0;
+        }));
         return table;
     }
 
@@ -518,6 +591,18 @@ public abstract class Table implements DiskWritable {
      */
     public abstract Table generateAliasTable(String aliasName);
 
+    /**
+     * Generate an alias table which reads records at a snapshot version
+     * (see VersionClock). Tables without versioned records are read as they are.
+     *
+     * @param aliasName alias name.
+     * @param version version of snapshot.
+     * @return a table with alias name.
+     */
+    public Table generateSnapshotTable(String aliasName, long version) {
+        return generateAliasTable(aliasName);
+    }
+
     /**
      * Generate an empty table to be used as return table.
      * Set its tablename to "$result", and add tablename prefix
@@ -551,6 +636,104 @@ public abstract class Table implements DiskWritable {
      */
     public abstract ArrayList<DataRecord> getAllRecords();
 
+    /**
+     * Get all records in the table for reading only. Unlike getAllRecords(),
+     * the list may be a view of table instead of a copy.
+     *
+     * @return a read-only list of all records.
+     */
+    public List<DataRecord> getRecordView() {
+        return getAllRecords();
+    }
+
+    /**
+     * Keep a bloom filter of index keys, so that a new key is checked
+     * for duplicates without an index lookup in most cases.
+     *
+     * @return true if supported by this table.
+     */
+    public boolean enableBloomFilter() {
+        return false;
+    }
+
+    /**
+     * Check whether records can be read in key order of a column
+     * without sorting, e.g. from leaves of a B+ tree index.
+     *
+     * @param columnIndex column index to check.
+     * @return true if this table keeps column in order.
+     */
+    public boolean hasOrderedIndex(int columnIndex) {
+        return false;
+    }
+
+    /**
+     * Get number of records.
+     *
+     * @return number of records.
+     */
+    public int getRecordCount() {
+        return getAllRecords().size();
+    }
+
+    /**
+     * Get number of non-null values of a column, if maintained by this table.
+     *
+     * @param columnIndex column index.
+     * @return number of non-null values, -1 if not maintained.
+     */
+    public int getNonNullCount(int columnIndex) {
+        return -1;
+    }
+
+    /**
+     * Get the smallest non-null value of a column from its ordered index.
+     * Only valid when hasOrderedIndex(columnIndex) is true.
+     *
+     * @param columnIndex column index.
+     * @return smallest value, null if no non-null values.
+     */
+    public Object getMinKey(int columnIndex) {
+        return null;
+    }
+
+    /**
+     * Get the largest non-null value of a column from its ordered index.
+     * Only valid when hasOrderedIndex(columnIndex) is true.
+     *
+     * @param columnIndex column index.
+     * @return largest value, null if no non-null values.
+     */
+    public Object getMaxKey(int columnIndex) {
+        return null;
+    }
+
+    /**
+     * Count records which satisfy (column operator key) using an index only,
+     * i.e. from bucket sizes, without reading records.
+     *
+     * @param columnIndex column (or field) index to check.
+     * @param key key to be compared.
+     * @param operator a binary operator (like EQUAL).
+     * @return number of matched records, -1 if column is not indexed.
+     */
+    public int countQuery(int columnIndex, Object key, BinaryOperator operator) {
+        return -1;
+    }
+
+    /**
+     * Get key values of records which satisfy (column operator key) using an index only,
+     * one key per matched record, in the same order as query() returns records.
+     *
+     * @param columnIndex column (or field) index to check.
+     * @param key key to be compared.
+     * @param operator a binary operator (like EQUAL).
+     * @return list of keys, null if column is not indexed.
+     */
+    public ArrayList<Object> queryKeys(int columnIndex, Object key, BinaryOperator operator) {
+        return null;
+    }
+
     /**
      * Get all records in the table.
      * Sorted by column index given in parameter.
@@ -560,12 +743,8 @@ public abstract class Table implements DiskWritable {
      * @return an array list of all records.
      */
     public ArrayList<DataRecord> getAllRecords(int sortIndex, SortingType sortingType) {
-        ArrayList<DataRecord> allRecords = getAllRecords();
-        ArrayList<Integer> sortIndices = new ArrayList<>();
-        sortIndices.add(sortIndex);
         final int coefficient = (sortingType == SortingType.ASCENDING) ? 1 : -1;
-        allRecords.sort((o1, o2) -> coefficient * DataRecord.compare(o1, o2, sortIndices));
-        return allRecords;
+        return RecordSorter.sort(getAllRecords(), (o1, o2) -> coefficient * DataRecord.compare(o1, o2, sortIndex));
     }
 
     /**
@@ -580,10 +759,8 @@ public abstract class Table implements DiskWritable {
         if (sortIndices.size() == 1) {
             return getAllRecords(sortIndices.get(0), sortingType);
         } else {
-            ArrayList<DataRecord> allRecords = getAllRecords();
             final int coefficient = (sortingType == SortingType.ASCENDING) ? 1 : -1;
-            allRecords.sort((o1, o2) -> coefficient * DataRecord.compare(o1, o2, sortIndices));
-            return allRecords;
+            return RecordSorter.sort(getAllRecords(), (o1, o2) -> coefficient * DataRecord.compare(o1, o2, sortIndices));
         }
     }
 
@@ -600,12 +777,69 @@ public abstract class Table implements DiskWritable {
         if (sortIndices.size() == 1) {
             return getAllRecords(sortIndices.get(0), sortingTypes.get(0));
         } else {
-            ArrayList<DataRecord> allRecords = getAllRecords();
-            allRecords.sort((o1, o2) -> DataRecord.compare(o1, o2, sortIndices, sortingTypes));
-            return allRecords;
+            return RecordSorter.sort(getAllRecords(), (o1, o2) -> DataRecord.compare(o1, o2, sortIndices, sortingTypes));
         }
     }
 
+    /**
+     * Query records matching all conditions given, using a composite index.
+     * Each condition compares an attribute of this table with a constant.
+     *
+     * @param conditions conditions to be matched together.
+     * @return a table containing a superset of matched records, null if no suitable index.
+     */
+    public Table queryConjunction(ArrayList<Condition> conditions) {
+        return null;
+    }
+
+    /**
+     * Get all records in the table, which can be read more than once.
+     * Sorted by column indices given in parameter. Inputs larger than
+     * the sort buffer are sorted externally by ExternalSorter, reading
+     * records of table while the result is read, so table should not be
+     * changed until then. Pass result to ExternalSorter.release() when done.
+     *
+     * @param sortIndices column (field) indices to sort.
+     * @param sortingTypes ascending or descending of each column.
+     * @return sorted records.
+     */
+    public Iterable<DataRecord> getSortedRecords(ArrayList<Integer> sortIndices, ArrayList<SortingType> sortingTypes) {
+        if (sortIndices.size() == 1 && hasOrderedIndex(sortIndices.get(0))) {
+            return getAllRecords(sortIndices, sortingTypes);
+        }
+        return ExternalSorter.sort(getRecordView(), (o1, o2) -> DataRecord.compare(o1, o2, sortIndices, sortingTypes));
+    }
+
+    /**
+     * Get first limit records in the table.
+     * Sorted by column index given in parameter.
+     *
+     * @param sortIndex column (field) index to sort.
+     * @param sortingType ascending or descending.
+     * @param limit max number of records to get.
+     * @return an array list of records.
+     */
+    public ArrayList<DataRecord> getTopRecords(int sortIndex, SortingType sortingType, int limit) {
+        final int coefficient = (sortingType == SortingType.ASCENDING) ? 1 : -1;
+        return TopN.select(getAllRecords(), (o1, o2) -> coefficient * DataRecord.compare(o1, o2, sortIndex), limit);
+    }
+
+    /**
+     * Get first limit records in the table.
+     * Sorted by column indices given in parameter.
+     *
+     * @param sortIndices column (field) indices to sort.
+     * @param sortingTypes ascending or descending for each column.
+     * @param limit max number of records to get.
+     * @return an array list of records.
+     */
+    public ArrayList<DataRecord> getTopRecords(ArrayList<Integer> sortIndices, ArrayList<SortingType> sortingTypes, int limit) {
+        if (sortIndices.size() == 1) {
+            return getTopRecords(sortIndices.get(0), sortingTypes.get(0), limit);
+        }
+        return TopN.select(getAllRecords(), (o1, o2) -> DataRecord.compare(o1, o2, sortIndices, sortingTypes), limit);
+    }
+
     /**
      * Join two table given in parameter. Condition in parameter should be set correctly,
      * that is, left value and right value should not be null, and tablename of them should
@@ -641,8 +875,8 @@ public abstract class Table implements DiskWritable {
             }
         }
         Table table = new ArrayListTable("$result", newAttrNames, newAttrTypes, -1, -1);
-        int leftKeyIndex = firstTable.getAttributeNames().indexOf(condition.getLeftAttribute());
-        int rightKeyIndex = secondTable.getAttributeNames().indexOf(condition.getRightAttribute());
+        int leftKeyIndex = firstTable.getAttributeIndex(condition.getLeftAttribute());
+        int rightKeyIndex = secondTable.getAttributeIndex(condition.getRightAttribute());
         if (Condition.getAlwaysTrueCondition().equals(condition)) {
             ArrayList<DataRecord> firstRecords = firstTable.getAllRecords();
             ArrayList<DataRecord> secondRecords = secondTable.getAllRecords();
@@ -654,6 +888,13 @@ public abstract class Table implements DiskWritable {
                     table.insert(newRecord);
                 }
             }
+        } else if (condition.getOperator() == BinaryOperator.EQUAL
+                && !(firstTable.hasOrderedIndex(leftKeyIndex) && secondTable.hasOrderedIndex(rightKeyIndex))) {
+            HashJoin hashJoin = new HashJoin(firstTable, secondTable, leftKeyIndex, rightKeyIndex);
+            table.insertAll(hashJoin.join());
+        } else if (SortMergeJoin.isSupported(condition.getOperator())) {
+            SortMergeJoin sortMergeJoin = new SortMergeJoin(firstTable, secondTable, leftKeyIndex, rightKeyIndex, condition.getOperator());
+            table.insertAll(sortMergeJoin.join());
         } else {
             ArrayList<DataRecord> firstRecords = firstTable.getAllRecords(leftKeyIndex, SortingType.ASCENDING);
             Object lastKey = null;
@@ -699,7 +940,7 @@ public abstract class Table implements DiskWritable {
         ArrayList<DataRecord> another = second.getAllRecords();
         ArrayList<Integer> indices = new ArrayList<>();
         for (String attr : second.getAttributeNames()) {
-            indices.add(first.getAttributeNames().indexOf(attr));
+            indices.add(first.getAttributeIndex(attr));
         }
         HashSet<DataRecord> recordHashSet = new HashSet<>(records);
         for (DataRecord record : another) {
@@ -719,6 +960,65 @@ public abstract class Table implements DiskWritable {
         return table;
     }
 
+    /**
+     * Get union (OR) of two tables, where first table is the result of
+     * firstCondition. If two tables come from different source tables,
+     * each side is extended with tables it doesn't have, and records of
+     * second side which also satisfy firstCondition are dropped, so that
+     * both sides are disjoint and no hashing over the product is needed.
+     *
+     * @param first first table.
+     * @param firstCondition condition which first table satisfies.
+     * @param second second table.
+     * @param tables all tables.
+     * @return a table of result.
+     */
+    public static Table union(Table first, ConditionNode firstCondition, Table second, Map<String, Table> tables) {
+        if (new HashSet<>(first.getSourceTables()).equals(new HashSet<>(second.getSourceTables()))) {
+            return union(first, second, tables);
+        }
+        ArrayList<Table> joinResult = preProcessTables(first, second, tables);
+        first = joinResult.get(0);
+        second = joinResult.get(1);
+        Table table = new ArrayListTable("$result", first.getAttributeNames(), first.getAttributeTypes(), -1, -1);
+        ArrayList<Integer> indices = new ArrayList<>();
+        for (String attr : first.getAttributeNames()) {
+            indices.add(second.getAttributeIndex(attr));
+        }
+        Predicate<DataRecord> inFirst = firstCondition.toPredicate(second);
+        ArrayList<DataRecord> result = new ArrayList<>(first.getAllRecords());
+        for (DataRecord record : second.getAllRecords()) {
+            if (inFirst.test(record)) {
+                continue;
+            }
+            DataRecord newRecord = new DataRecord();
+            for (int index : indices) {
+                newRecord.append(record.get(index));
+            }
+            result.add(newRecord);
+        }
+        table.insertAll(result);
+        table.mSourceTables = new ArrayList<>();
+        table.mSourceTables.addAll(first.getSourceTables());
+        return table;
+    }
+
+    /**
+     * Get all records in table which satisfy conditions in condition tree given.
+     * Used instead of intersect() when the table already contains every
+     * attribute referenced by the conditions.
+     *
+     * @param table table to filter.
+     * @param condition root of condition tree.
+     * @return a table of result.
+     */
+    public static Table filter(Table table, ConditionNode condition) {
+        Table result = table.generateEmptyResultTable();
+        result.mSourceTables = new ArrayList<>(table.getSourceTables());
+        result.insertAll(ParallelScanner.filter(table.getRecordView(), condition.toPredicate(table)));
+        return result;
+    }
+
     /**
      * Get intersection (AND) of two tables.
      * Set intersection.
@@ -744,7 +1044,7 @@ public abstract class Table implements DiskWritable {
         HashSet<DataRecord> recordHashSet = new HashSet<>(second.getAllRecords());
         ArrayList<Integer> indices = new ArrayList<>();
         for (String attr : second.getAttributeNames()) {
-            indices.add(first.getAttributeNames().indexOf(attr));
+            indices.add(first.getAttributeIndex(attr));
         }
         ArrayList<DataRecord> result = new ArrayList<>();
         for (DataRecord record : first.getAllRecords()) {
@@ -816,6 +1116,53 @@ public abstract class Table implements DiskWritable {
         return false;
     }
 
+    /**
+     * Append DataRecords to the end of the file with a single write,
+     * and wait until they reach the disk.
+     *
+     * @param filename filename to append.
+     * @param records records to append.
+     * @return true if succeed, false if failed.
+     */
+    public boolean appendAllToDisk(String filename, List<DataRecord> records) {
+        return appendChangesToDisk(filename, Collections.emptyList(), records);
+    }
+
+    /**
+     * Append a tombstone for each deleted DataRecord, then new DataRecords,
+     * to the end of the file with a single write, and wait until they reach the disk.
+     *
+     * @param filename filename to append.
+     * @param deletedRecords records deleted.
+     * @param records records inserted.
+     * @return true if succeed, false if failed.
+     */
+    public boolean appendChangesToDisk(String filename, List<DataRecord> deletedRecords, List<DataRecord> records) {
+        if (!mDiskModifiable) {
+            return true;
+        }
+        try {
+            FileOutputStream stream = new FileOutputStream(filename, true);
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream), 1 << 16);
+            for (DataRecord record : deletedRecords) {
+                writer.write(TOMBSTONE_PREFIX);
+                writer.write(record.writeToString());
+                writer.write("\n");
+            }
+            for (DataRecord record : records) {
+                writer.write(record.writeToString());
+                writer.write("\n");
+            }
+            writer.flush();
+            stream.getFD().sync();
+            writer.close();
+            return true;
+        } catch (IOException e) {
+            System.err.println(filename + ": file I/O error.");
+        }
+        return false;
+    }
+
     @Override
     public abstract boolean writeToDisk(String filename);
 
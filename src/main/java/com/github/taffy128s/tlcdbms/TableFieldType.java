@@ -6,5 +6,6 @@ package com.github.taffy128s.tlcdbms;
 public enum TableFieldType {
     NORMAL,
     KEY,
+    MULTIPLE_KEY,
     PRIMARY_KEY
 }
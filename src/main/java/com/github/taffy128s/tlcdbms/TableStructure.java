@@ -1,11 +1,15 @@
 package com.github.taffy128s.tlcdbms;
 
+import java.util.ArrayList;
+
 /**
  * Table structure. Record index type of column.
  */
 public class TableStructure {
     private int mColumnIndex;
+    private ArrayList<Integer> mColumnIndices;
     private TableStructType mIndexType;
+    private boolean mBloomFilter;
 
     /**
      * Constructor.
@@ -15,18 +19,50 @@ public class TableStructure {
      */
     public TableStructure(int columnIndex, TableStructType indexType) {
         mColumnIndex = columnIndex;
+        mColumnIndices = new ArrayList<>();
+        mColumnIndices.add(columnIndex);
+        mIndexType = indexType;
+    }
+
+    /**
+     * Constructor of a composite index.
+     *
+     * @param columnIndices column indices, in key order.
+     * @param indexType index type (tree or hash).
+     */
+    public TableStructure(ArrayList<Integer> columnIndices, TableStructType indexType) {
+        mColumnIndex = columnIndices.get(0);
+        mColumnIndices = columnIndices;
         mIndexType = indexType;
     }
 
     /**
      * Index getter.
      *
-     * @return column index.
+     * @return column index, the first column for a composite index.
      */
     public int getIndex() {
         return mColumnIndex;
     }
 
+    /**
+     * Indices getter.
+     *
+     * @return all column indices, in key order.
+     */
+    public ArrayList<Integer> getIndices() {
+        return mColumnIndices;
+    }
+
+    /**
+     * Check whether this index is on more than one column.
+     *
+     * @return true if composite.
+     */
+    public boolean isComposite() {
+        return mColumnIndices.size() > 1;
+    }
+
     /**
      * Index type getter.
      *
@@ -35,4 +71,22 @@ public class TableStructure {
     public TableStructType getType() {
         return mIndexType;
     }
+
+    /**
+     * Set whether index keeps a bloom filter of its keys.
+     *
+     * @param bloomFilter true to keep one.
+     */
+    public void setBloomFilter(boolean bloomFilter) {
+        mBloomFilter = bloomFilter;
+    }
+
+    /**
+     * Check whether index keeps a bloom filter of its keys.
+     *
+     * @return true if it does.
+     */
+    public boolean hasBloomFilter() {
+        return mBloomFilter;
+    }
 }
@@ -0,0 +1,56 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Top-N operator for ORDER BY ... LIMIT N.
+ *
+ * Keep the best N records seen so far in a bounded heap, so selecting
+ * N records out of M costs O(M log N) instead of sorting all M records.
+ * Records which compare equal keep their original order, the same as
+ * a stable sort followed by truncation.
+ */
+public class TopN {
+    /**
+     * Select first limit records of records in order given by comparator.
+     *
+     * @param records records to select from, will not be modified.
+     * @param comparator order of records.
+     * @param limit max number of records to select.
+     * @return a new list of selected records in order.
+     */
+    public static ArrayList<DataRecord> select(List<DataRecord> records, Comparator<DataRecord> comparator, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        if (limit >= records.size()) {
+            return RecordSorter.sort(records, comparator);
+        }
+        // worst record on top, ties broken by position so later records are worse.
+        Comparator<Integer> worstFirst = (a, b) -> {
+            int cmp = comparator.compare(records.get(b), records.get(a));
+            return (cmp != 0) ? cmp : Integer.compare(b, a);
+        };
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit, worstFirst);
+        for (int i = 0; i < records.size(); ++i) {
+            if (heap.size() < limit) {
+                heap.add(i);
+            } else if (comparator.compare(records.get(i), records.get(heap.peek())) < 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        DataRecord[] selected = new DataRecord[heap.size()];
+        for (int i = selected.length - 1; i >= 0; --i) {
+            selected[i] = records.get(heap.poll());
+        }
+        ArrayList<DataRecord> result = new ArrayList<>(selected.length);
+        for (DataRecord record : selected) {
+            result.add(record);
+        }
+        return result;
+    }
+}
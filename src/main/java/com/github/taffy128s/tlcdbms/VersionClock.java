@@ -0,0 +1,89 @@
+package com.github.taffy128s.tlcdbms;
+
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Global commit version of all tables, used for snapshot reads.
+ *
+ * Writes are serialized: a writer takes the next version in beginWrite(),
+ * stamps the records it inserts or deletes with it, and publishes it in
+ * endWrite(). Nested writes (e.g. a statement calling table methods which
+ * also write) join the outermost one and share its version.
+ * A reader opens a snapshot of the committed version, and sees exactly the
+ * records inserted at or before it and not deleted at or before it.
+ */
+public class VersionClock {
+    private static final ReentrantLock WRITE_LOCK = new ReentrantLock();
+    private static final AtomicLong COMMITTED_VERSION = new AtomicLong(0);
+    private static final TreeMap<Long, Integer> SNAPSHOTS = new TreeMap<>();
+
+    /**
+     * Start a write, waiting for the current writer (if any) to finish.
+     *
+     * @return version of this write.
+     */
+    public static long beginWrite() {
+        WRITE_LOCK.lock();
+        return COMMITTED_VERSION.get() + 1;
+    }
+
+    /**
+     * End a write. The outermost call publishes its version.
+     */
+    public static void endWrite() {
+        if (WRITE_LOCK.getHoldCount() == 1) {
+            COMMITTED_VERSION.incrementAndGet();
+        }
+        WRITE_LOCK.unlock();
+    }
+
+    /**
+     * Committed version getter.
+     *
+     * @return version of the last finished write.
+     */
+    public static long getCommittedVersion() {
+        return COMMITTED_VERSION.get();
+    }
+
+    /**
+     * Open a snapshot of the committed version.
+     * Records it can see are kept until it is closed.
+     *
+     * @return version of snapshot.
+     */
+    public static long openSnapshot() {
+        synchronized (SNAPSHOTS) {
+            long version = COMMITTED_VERSION.get();
+            SNAPSHOTS.merge(version, 1, Integer::sum);
+            return version;
+        }
+    }
+
+    /**
+     * Close a snapshot opened by openSnapshot().
+     *
+     * @param version version of snapshot.
+     */
+    public static void closeSnapshot(long version) {
+        synchronized (SNAPSHOTS) {
+            if (SNAPSHOTS.merge(version, -1, Integer::sum) == 0) {
+                SNAPSHOTS.remove(version);
+            }
+        }
+    }
+
+    /**
+     * Get the oldest version any snapshot may read, i.e. records deleted
+     * at or before it can be dropped.
+     *
+     * @return version of the oldest open snapshot, committed version if none.
+     */
+    public static long getOldestSnapshot() {
+        synchronized (SNAPSHOTS) {
+            return SNAPSHOTS.isEmpty() ? COMMITTED_VERSION.get() : SNAPSHOTS.firstKey();
+        }
+    }
+}
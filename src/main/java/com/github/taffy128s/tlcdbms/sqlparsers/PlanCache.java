@@ -0,0 +1,71 @@
+package com.github.taffy128s.tlcdbms.sqlparsers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of parse results, keyed by normalized SQL text
+ * (tokens joined by a single space).
+ * Cached results are never executed directly, callers get a copy.
+ */
+public class PlanCache {
+    /**
+     * Default max number of cached parse results.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private LinkedHashMap<String, SQLParseResult> mPlans;
+    private int mCapacity;
+
+    /**
+     * Initialize a cache with default capacity.
+     */
+    public PlanCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initialize a cache.
+     *
+     * @param capacity max number of cached parse results.
+     */
+    public PlanCache(int capacity) {
+        mCapacity = capacity;
+        mPlans = new LinkedHashMap<String, SQLParseResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLParseResult> eldest) {
+                return size() > mCapacity;
+            }
+        };
+    }
+
+    /**
+     * Get a copy of cached parse result.
+     *
+     * @param key normalized SQL text.
+     * @return a copy of parse result, null if not cached.
+     */
+    public SQLParseResult get(String key) {
+        SQLParseResult plan = mPlans.get(key);
+        return (plan == null) ? null : plan.copy();
+    }
+
+    /**
+     * Cache a copy of parse result.
+     *
+     * @param key normalized SQL text.
+     * @param plan parse result to cache.
+     */
+    public void put(String key, SQLParseResult plan) {
+        mPlans.put(key, plan.copy());
+    }
+
+    /**
+     * Get number of cached parse results.
+     *
+     * @return size of cache.
+     */
+    public int size() {
+        return mPlans.size();
+    }
+}
@@ -8,6 +8,8 @@ public class SQLKeyWords {
             "CREATE",
             "INSERT",
             "SELECT",
+            "DELETE",
+            "UPDATE",
             "TABLE",
             "TABLES",
             "INTO",
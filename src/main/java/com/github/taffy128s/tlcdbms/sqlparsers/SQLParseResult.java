@@ -28,6 +28,16 @@ public class SQLParseResult {
     private ArrayList<String> mGroupTargets;
     private HashMap<String, String> mTableAliases;
     private String mFilename;
+    private char mFieldTerminator;
+    private String mOutfile;
+    private ExportFormat mOutfileFormat;
+    private String mSettingName;
+    private int mSettingValue;
+    private String mStatementName;
+    private SQLParseResult mStatement;
+    private ArrayList<String> mParameters;
+    private int mParameterCount;
+    private String mQueryText;
 
     /**
      * Constructor. Initialize all members.
@@ -51,6 +61,15 @@ public class SQLParseResult {
         mConditions = null;
         mGroupTargets = null;
         mTableAliases = null;
+        mSettingName = null;
+        mSettingValue = -1;
+        mStatementName = null;
+        mStatement = null;
+        mParameters = null;
+        mParameterCount = 0;
+        mQueryText = null;
+        mOutfile = null;
+        mOutfileFormat = ExportFormat.CSV;
     }
 
     /**
@@ -407,6 +426,318 @@ public class SQLParseResult {
         mFilename = filename;
     }
 
+    /**
+     * Field terminator getter, used by LOAD DATA.
+     *
+     * @return character separating fields of a line.
+     */
+    public char getFieldTerminator() {
+        return mFieldTerminator;
+    }
+
+    /**
+     * Field terminator setter.
+     *
+     * @param fieldTerminator character separating fields of a line.
+     */
+    public void setFieldTerminator(char fieldTerminator) {
+        mFieldTerminator = fieldTerminator;
+    }
+
+    /**
+     * Outfile getter, used by SELECT ... INTO OUTFILE.
+     *
+     * @return name of file to write result into, null to print result.
+     */
+    public String getOutfile() {
+        return mOutfile;
+    }
+
+    /**
+     * Outfile setter.
+     *
+     * @param outfile name of file to write result into, null to print result.
+     */
+    public void setOutfile(String outfile) {
+        mOutfile = outfile;
+    }
+
+    /**
+     * Outfile format getter.
+     *
+     * @return format of outfile.
+     */
+    public ExportFormat getOutfileFormat() {
+        return mOutfileFormat;
+    }
+
+    /**
+     * Outfile format setter.
+     *
+     * @param outfileFormat format of outfile.
+     */
+    public void setOutfileFormat(ExportFormat outfileFormat) {
+        mOutfileFormat = outfileFormat;
+    }
+
+    /**
+     * Setting name getter.
+     *
+     * @return name of setting in SET, upper case.
+     */
+    public String getSettingName() {
+        return mSettingName;
+    }
+
+    /**
+     * Setting name setter.
+     *
+     * @param settingName name of setting to set.
+     */
+    public void setSettingName(String settingName) {
+        mSettingName = settingName;
+    }
+
+    /**
+     * Setting value getter.
+     *
+     * @return value of setting in SET.
+     */
+    public int getSettingValue() {
+        return mSettingValue;
+    }
+
+    /**
+     * Setting value setter.
+     *
+     * @param settingValue value of setting to set.
+     */
+    public void setSettingValue(int settingValue) {
+        mSettingValue = settingValue;
+    }
+
+    /**
+     * Prepared statement name getter.
+     *
+     * @return name in PREPARE, EXECUTE or DEALLOCATE.
+     */
+    public String getStatementName() {
+        return mStatementName;
+    }
+
+    /**
+     * Prepared statement name setter.
+     *
+     * @param statementName name of prepared statement.
+     */
+    public void setStatementName(String statementName) {
+        mStatementName = statementName;
+    }
+
+    /**
+     * Prepared statement getter.
+     *
+     * @return parse result of statement in PREPARE, may contain parameters.
+     */
+    public SQLParseResult getStatement() {
+        return mStatement;
+    }
+
+    /**
+     * Prepared statement setter.
+     *
+     * @param statement parse result of statement to prepare.
+     */
+    public void setStatement(SQLParseResult statement) {
+        mStatement = statement;
+    }
+
+    /**
+     * Parameters getter.
+     *
+     * @return parameter values in EXECUTE, "null" for null.
+     */
+    public ArrayList<String> getParameters() {
+        return mParameters;
+    }
+
+    /**
+     * Parameters setter.
+     *
+     * @param parameters parameter values to set.
+     */
+    public void setParameters(ArrayList<String> parameters) {
+        mParameters = parameters;
+    }
+
+    /**
+     * Parameter count getter.
+     *
+     * @return number of '?' parameters in this statement.
+     */
+    public int getParameterCount() {
+        return mParameterCount;
+    }
+
+    /**
+     * Parameter count setter.
+     *
+     * @param parameterCount number of '?' parameters.
+     */
+    public void setParameterCount(int parameterCount) {
+        mParameterCount = parameterCount;
+    }
+
+    /**
+     * Query text getter.
+     *
+     * @return normalized text of this statement, null if unknown.
+     */
+    public String getQueryText() {
+        return mQueryText;
+    }
+
+    /**
+     * Query text setter.
+     *
+     * @param queryText normalized text of this statement.
+     */
+    public void setQueryText(String queryText) {
+        mQueryText = queryText;
+    }
+
+    /**
+     * Copy this parse result. Fields which DBManager modifies while
+     * executing (targets, conditions and data blocks) are copied deeply,
+     * so a cached parse result can be executed many times.
+     *
+     * @return a new parse result.
+     */
+    public SQLParseResult copy() {
+        SQLParseResult result = new SQLParseResult();
+        result.mCommandType = mCommandType;
+        result.mTablename = mTablename;
+        result.mTablenames = mTablenames;
+        result.mAttributeNames = (mAttributeNames == null) ? null : new ArrayList<>(mAttributeNames);
+        result.mAttributeTypes = mAttributeTypes;
+        result.mAttributeIndices = mAttributeIndices;
+        if (mBlocks != null) {
+            result.mBlocks = new ArrayList<>();
+            for (ArrayList<String> block : mBlocks) {
+                result.mBlocks.add(new ArrayList<>(block));
+            }
+        }
+        result.mUpdateOrder = mUpdateOrder;
+        result.mPrimaryKeyIndex = mPrimaryKeyIndex;
+        result.mShowRowLimitation = mShowRowLimitation;
+        result.mCustomOrder = mCustomOrder;
+        result.mShowFullInfo = mShowFullInfo;
+        result.mShowSortTypes = mShowSortTypes;
+        result.mQueryTypes = mQueryTypes;
+        if (mTargets != null) {
+            result.mTargets = new ArrayList<>();
+            for (Target target : mTargets) {
+                result.mTargets.add(new Target(target.getTableName(), target.getAttribute()));
+            }
+        }
+        if (mConditions != null) {
+            result.mConditions = new ArrayList<>();
+            for (Condition condition : mConditions) {
+                result.mConditions.add(new Condition(condition.getLeftConstant(), condition.getLeftTableName(),
+                        condition.getLeftAttribute(), condition.getRightConstant(), condition.getRightTableName(),
+                        condition.getRightAttribute(), condition.getOperator()));
+            }
+        }
+        result.mGroupTargets = (mGroupTargets == null) ? null : new ArrayList<>(mGroupTargets);
+        result.mTableAliases = mTableAliases;
+        result.mFilename = mFilename;
+        result.mFieldTerminator = mFieldTerminator;
+        result.mOutfile = mOutfile;
+        result.mOutfileFormat = mOutfileFormat;
+        result.mSettingName = mSettingName;
+        result.mSettingValue = mSettingValue;
+        result.mStatementName = mStatementName;
+        result.mStatement = mStatement;
+        result.mParameters = mParameters;
+        result.mParameterCount = mParameterCount;
+        result.mQueryText = mQueryText;
+        return result;
+    }
+
+    /**
+     * Bind parameter values to a prepared statement.
+     * Parameters are numbered as "?1", "?2"... in order of appearance.
+     *
+     * @param parameters parameter values, "null" for null.
+     * @return a new parse result without parameters, null if failed.
+     */
+    public SQLParseResult bind(ArrayList<String> parameters) {
+        if (parameters.size() != mParameterCount) {
+            System.out.println("Parameter numbers not matched.");
+            System.out.println("Expected: " + mParameterCount + ".");
+            System.out.println("Given: " + parameters.size() + ".");
+            return null;
+        }
+        SQLParseResult result = copy();
+        result.mParameterCount = 0;
+        if (mQueryText != null) {
+            result.mQueryText = mQueryText + " USING " + String.join(" , ", parameters);
+        }
+        if (result.mBlocks != null) {
+            for (ArrayList<String> block : result.mBlocks) {
+                for (int i = 0; i < block.size(); ++i) {
+                    int number = parameterNumber(block.get(i));
+                    if (number != -1) {
+                        String value = parameters.get(number);
+                        block.set(i, DataChecker.isStringNull(value) ? null : value);
+                    }
+                }
+            }
+        }
+        if (result.mConditions != null) {
+            for (int i = 0; i < result.mConditions.size(); ++i) {
+                Condition condition = result.mConditions.get(i);
+                int leftNumber = parameterNumber(condition.getLeftConstant());
+                int rightNumber = parameterNumber(condition.getRightConstant());
+                if (leftNumber == -1 && rightNumber == -1) {
+                    continue;
+                }
+                String left = (leftNumber == -1) ? condition.getLeftConstant() : parameters.get(leftNumber);
+                String right = (rightNumber == -1) ? condition.getRightConstant() : parameters.get(rightNumber);
+                BinaryOperator operator = condition.getOperator();
+                if (operator == BinaryOperator.LIKE) {
+                    if (!DataChecker.isValidQuotedVarChar(right)) {
+                        System.out.println("Invalid parameter " + right + " for LIKE.");
+                        return null;
+                    }
+                } else if (operator != BinaryOperator.EQUAL && operator != BinaryOperator.NOT_EQUAL) {
+                    for (String value : new String[] {left, right}) {
+                        if (value != null && (DataChecker.isValidQuotedVarChar(value) || DataChecker.isStringNull(value))) {
+                            System.out.println("Invalid parameter " + value + " for comparison.");
+                            return null;
+                        }
+                    }
+                }
+                result.mConditions.set(i, new Condition(left, condition.getLeftTableName(), condition.getLeftAttribute(),
+                        right, condition.getRightTableName(), condition.getRightAttribute(), operator));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get 0-based parameter number of a placeholder.
+     *
+     * @param value constant to check, null-able.
+     * @return parameter number, -1 if value is not a placeholder.
+     */
+    private static int parameterNumber(String value) {
+        if (value == null || value.length() < 2 || value.charAt(0) != '?') {
+            return -1;
+        }
+        return Integer.parseInt(value.substring(1)) - 1;
+    }
+
     /**
      * Transform this class to a string.
      */
@@ -18,6 +18,9 @@ public class SQLParser {
     private boolean mIsValid;
     private boolean mTokenEnded;
     private int mIndex;
+    private boolean mAllowParameters;
+    private int mParameterCount;
+    private PlanCache mPlanCache;
 
     /**
      * SQL Block. Return type of getBlock().
@@ -60,7 +63,7 @@ public class SQLParser {
      * Constructor.
      */
     public SQLParser() {
-
+        mPlanCache = new PlanCache();
     }
 
     /**
@@ -75,15 +78,26 @@ public class SQLParser {
         mPositions = new ArrayList<>();
         mIndex = -1;
         mTokenEnded = false;
+        mAllowParameters = false;
         splitTokens();
         if (!mIsValid) {
             return null;
         }
-        return parseCommand();
+        String key = String.join(" ", mTokens);
+        SQLParseResult cached = mPlanCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        SQLParseResult result = parseCommand();
+        if (result != null && result.getCommandType() == CommandType.SELECT) {
+            result.setQueryText(key);
+            mPlanCache.put(key, result);
+        }
+        return result;
     }
 
     /**
-     * Parse Command (CREATE or INSERT or SELECT) and call
+     * Parse Command (CREATE, INSERT, SELECT, DELETE, UPDATE, ...) and call
      * corresponding function for further processing.
      *
      * @return parse result, null if failed.
@@ -99,6 +113,10 @@ public class SQLParser {
             return parseInsert();
         } else if (command.equalsIgnoreCase("select")) {
             return parseSelect();
+        } else if (command.equalsIgnoreCase("delete")) {
+            return parseDelete();
+        } else if (command.equalsIgnoreCase("update")) {
+            return parseUpdate();
         } else if (command.equalsIgnoreCase("drop")) {
             return parseDrop();
         } else if (command.equalsIgnoreCase("show")) {
@@ -107,6 +125,14 @@ public class SQLParser {
             return parseDesc();
         } else if (command.equalsIgnoreCase("load")) {
             return parseLoad();
+        } else if (command.equalsIgnoreCase("set")) {
+            return parseSet();
+        } else if (command.equalsIgnoreCase("prepare")) {
+            return parsePrepare();
+        } else if (command.equalsIgnoreCase("execute")) {
+            return parseExecute();
+        } else if (command.equalsIgnoreCase("deallocate")) {
+            return parseDeallocate();
         } else if (command.equalsIgnoreCase("quit")) {
             return parseQuit();
         } else if (command.equalsIgnoreCase("exit")) {
@@ -123,6 +149,10 @@ public class SQLParser {
      * @return parse result, null if failed.
      */
     private SQLParseResult parseCreate() {
+        if (checkTokenIgnoreCase("materialized", false)) {
+            nextToken(true);
+            return parseCreateView();
+        }
         SQLParseResult result = new SQLParseResult();
         result.setCommandType(CommandType.CREATE);
         if (!checkTokenIgnoreCase("table", true)) {
@@ -144,10 +174,52 @@ public class SQLParser {
         int index = 0;
         boolean hasComma = false;
         HashSet<String> attrNameSet = new HashSet<>();
+        ArrayList<ArrayList<String>> compositeKeys = new ArrayList<>();
+        ArrayList<TableStructType> compositeTypes = new ArrayList<>();
         while (true) {
             if (nextToken(false).equalsIgnoreCase(")") && !hasComma) {
                 break;
             }
+            if (checkTokenIgnoreCase("key", false) && checkNextNextTokenIgnoreCase("(")) {
+                nextToken(true);
+                nextToken(true);
+                ArrayList<String> keyNames = new ArrayList<>();
+                while (true) {
+                    String keyName = getAttributeName();
+                    if (keyName == null) {
+                        return null;
+                    }
+                    if (keyNames.contains(keyName)) {
+                        printErrorMessage("Duplicate attribute name in KEY.");
+                        return null;
+                    }
+                    keyNames.add(keyName);
+                    if (!checkTokenIgnoreCase(",", false)) {
+                        break;
+                    }
+                    nextToken(true);
+                }
+                if (!checkTokenIgnoreCase(")", true)) {
+                    printErrorMessage("Right parenthesis ')' expected after KEY attributes.");
+                    return null;
+                }
+                if (checkTokenIgnoreCase("hash", false)) {
+                    nextToken(true);
+                    compositeTypes.add(TableStructType.HASH);
+                } else {
+                    if (checkTokenIgnoreCase("bplustree", false)) {
+                        nextToken(true);
+                    }
+                    compositeTypes.add(TableStructType.BPLUSTREE);
+                }
+                compositeKeys.add(keyNames);
+                if (!checkTokenIgnoreCase(",", false)) {
+                    break;
+                }
+                checkTokenIgnoreCase(",", true);
+                hasComma = true;
+                continue;
+            }
             String attributeName = getAttributeName();
             if (attributeName == null) {
                 return null;
@@ -208,6 +280,15 @@ public class SQLParser {
                     }
                 }
             }
+            if (checkTokenIgnoreCase("bloom", false)) {
+                TableStructure last = attributeIndices.isEmpty() ? null : attributeIndices.get(attributeIndices.size() - 1);
+                if (last == null || last.isComposite() || last.getIndex() != index) {
+                    printErrorMessage("BLOOM needs a KEY or PRIMARY KEY.");
+                    return null;
+                }
+                checkTokenIgnoreCase("bloom", true);
+                last.setBloomFilter(true);
+            }
             if (!checkTokenIgnoreCase(",", false)) {
                 break;
             }
@@ -227,8 +308,33 @@ public class SQLParser {
             printErrorMessage("No attributes specified for this new table.", 2, mTokens.get(2).length());
             return null;
         }
-        if (attributeIndices.isEmpty()) {
-            attributeIndices.add(new TableStructure(0, TableStructType.HASH));
+        for (int i = 0; i < compositeKeys.size(); ++i) {
+            ArrayList<Integer> columnIndices = new ArrayList<>();
+            for (String keyName : compositeKeys.get(i)) {
+                if (!attributeNames.contains(keyName)) {
+                    System.out.println("Unknown attribute '" + keyName + "' in KEY.");
+                    return null;
+                }
+                columnIndices.add(attributeNames.indexOf(keyName));
+            }
+            if (columnIndices.size() > 1) {
+                attributeIndices.add(new TableStructure(columnIndices, compositeTypes.get(i)));
+                continue;
+            }
+            boolean indexed = false;
+            for (TableStructure tableStructure : attributeIndices) {
+                indexed |= !tableStructure.isComposite() && tableStructure.getIndex() == columnIndices.get(0);
+            }
+            if (!indexed) {
+                attributeIndices.add(new TableStructure(columnIndices.get(0), compositeTypes.get(i)));
+            }
+        }
+        boolean hasSingleIndex = false;
+        for (TableStructure tableStructure : attributeIndices) {
+            hasSingleIndex |= !tableStructure.isComposite();
+        }
+        if (!hasSingleIndex) {
+            attributeIndices.add(0, new TableStructure(0, TableStructType.HASH));
         }
         result.setAttributeNames(attributeNames);
         result.setAttributeTypes(attributeTypes);
@@ -236,6 +342,47 @@ public class SQLParser {
         return result;
     }
 
+    /**
+     * Parse CREATE MATERIALIZED VIEW.
+     * Definition of view is kept as query text of the SELECT statement.
+     *
+     * @return parse result, null if failed.
+     */
+    private SQLParseResult parseCreateView() {
+        if (!checkTokenIgnoreCase("view", true)) {
+            printErrorMessage("Expect keyword VIEW after MATERIALIZED.");
+            return null;
+        }
+        String viewname = getTableName();
+        if (viewname == null) {
+            return null;
+        }
+        if (!checkTokenIgnoreCase("as", true)) {
+            printErrorMessage("Expect keyword AS after view name.");
+            return null;
+        }
+        if (!checkTokenIgnoreCase("select", false)) {
+            nextToken(true);
+            printErrorMessage("Expect SELECT after AS.");
+            return null;
+        }
+        int start = mIndex + 1;
+        SQLParseResult statement = parseCommand();
+        if (statement == null) {
+            return null;
+        }
+        if (statement.getOutfile() != null) {
+            System.out.println("Materialized view cannot be defined by SELECT ... INTO OUTFILE.");
+            return null;
+        }
+        statement.setQueryText(String.join(" ", mTokens.subList(start, mTokens.size())));
+        SQLParseResult result = new SQLParseResult();
+        result.setCommandType(CommandType.CREATE_VIEW);
+        result.setTablename(viewname);
+        result.setStatement(statement);
+        return result;
+    }
+
     /**
      * Parse INSERT.
      *
@@ -336,6 +483,115 @@ public class SQLParser {
         return result;
     }
 
+    /**
+     * Parse DELETE.
+     *
+     * @return parse result, null if failed.
+     */
+    private SQLParseResult parseDelete() {
+        SQLParseResult result = new SQLParseResult();
+        result.setCommandType(CommandType.DELETE);
+        if (!checkTokenIgnoreCase("from", true)) {
+            printErrorMessage("Expect keyword FROM after DELETE.");
+            return null;
+        }
+        String tablename = getTableName();
+        if (tablename == null) {
+            return null;
+        }
+        if (!parseTableConditions(result, tablename)) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Parse UPDATE.
+     * New values are stored like INSERT with custom order:
+     * attribute names in update order and one block of values.
+     *
+     * @return parse result, null if failed.
+     */
+    private SQLParseResult parseUpdate() {
+        SQLParseResult result = new SQLParseResult();
+        result.setCommandType(CommandType.UPDATE);
+        String tablename = getTableName();
+        if (tablename == null) {
+            return null;
+        }
+        if (!checkTokenIgnoreCase("set", true)) {
+            printErrorMessage("Expect keyword SET after table name.");
+            return null;
+        }
+        ArrayList<String> updateOrder = new ArrayList<>();
+        ArrayList<String> values = new ArrayList<>();
+        HashSet<String> attrNameSet = new HashSet<>();
+        while (true) {
+            String attrName = getAttributeName();
+            if (attrName == null) {
+                return null;
+            }
+            if (!attrNameSet.add(attrName)) {
+                printErrorMessage("Duplicate attribute name.");
+                return null;
+            }
+            if (!checkTokenIgnoreCase("=", true)) {
+                printErrorMessage("Expect '=' after attribute name.");
+                return null;
+            }
+            SQLBlock block = getBlock();
+            if (!block.isValid()) {
+                return null;
+            }
+            updateOrder.add(attrName);
+            values.add(block.getData());
+            if (!checkTokenIgnoreCase(",", false)) {
+                break;
+            }
+            nextToken(true);
+        }
+        ArrayList<ArrayList<String>> blocks = new ArrayList<>();
+        blocks.add(values);
+        result.setCustomOrder(true);
+        result.setUpdateOrder(updateOrder);
+        result.setBlocks(blocks);
+        if (!parseTableConditions(result, tablename)) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Set the only table of DELETE or UPDATE, and parse the optional
+     * WHERE clause which should end the command.
+     *
+     * @param result parse result to fill.
+     * @param tablename table name.
+     * @return true if succeed, false if failed.
+     */
+    private boolean parseTableConditions(SQLParseResult result, String tablename) {
+        ArrayList<String> tableNameList = new ArrayList<>();
+        HashMap<String, String> aliasMap = new HashMap<>();
+        tableNameList.add(tablename);
+        aliasMap.put(tablename, tablename);
+        result.setTablename(tablename);
+        result.setTablenames(tableNameList);
+        result.setTableAliases(aliasMap);
+        if (checkTokenIgnoreCase("where", false)) {
+            nextToken(true);
+            ArrayList<Condition> conditions = getConditions(tableNameList, aliasMap);
+            if (conditions == null) {
+                return false;
+            }
+            result.setConditions(conditions.isEmpty() ? null : conditions);
+        }
+        if (!isEnded()) {
+            printErrorMessage("Unexpected tokens.");
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Parse SELECT.
      *
@@ -348,8 +604,9 @@ public class SQLParser {
         ArrayList<QueryType> queryTypes = new ArrayList<>();
         boolean containsQueryAll = false;
         while (true) {
-            if (checkTokenIgnoreCase("sum", false) && checkNextNextTokenIgnoreCase("(")) {
-                nextToken(true);
+            if ((checkTokenIgnoreCase("sum", false) || checkTokenIgnoreCase("min", false) || checkTokenIgnoreCase("max", false))
+                    && checkNextNextTokenIgnoreCase("(")) {
+                String function = nextToken(true).toUpperCase();
                 if (!checkTokenIgnoreCase("(", true)) {
                     printErrorMessage("Missing left parenthesis.");
                     return null;
@@ -359,7 +616,7 @@ public class SQLParser {
                     return null;
                 }
                 if (attributeName.contains("*")) {
-                    printErrorMessage("Invalid usage of '*' in SUM().");
+                    printErrorMessage("Invalid usage of '*' in " + function + "().");
                     return null;
                 }
                 if (!checkTokenIgnoreCase(")", true)) {
@@ -367,7 +624,7 @@ public class SQLParser {
                     return null;
                 }
                 targets.add(attributeName);
-                queryTypes.add(QueryType.SUM);
+                queryTypes.add(QueryType.valueOf(function));
             } else if (checkTokenIgnoreCase("count", false) && checkNextNextTokenIgnoreCase("(")) {
                 nextToken(true);
                 if (!checkTokenIgnoreCase("(", true)) {
@@ -444,89 +701,11 @@ public class SQLParser {
         result.setTableAliases(aliasMap);
         if (checkTokenIgnoreCase("where", false)) {
             nextToken(true);
-            ArrayList<Condition> conditions = new ArrayList<>();
-            Stack<Condition> stack = new Stack<>();
-            boolean operandExpect = true;
-            boolean emptyParenthesisBody = false;
-            int parenthesisCounter = 0;
-            do {
-                if (checkTokenIgnoreCase("GROUP", false) ||
-                        checkTokenIgnoreCase("ORDER", false) ||
-                        checkTokenIgnoreCase("LIMIT", false)) {
-                    break;
-                }
-                if (checkTokenIgnoreCase("(", false)) {
-                    operandExpect = true;
-                    emptyParenthesisBody = true;
-                    nextToken(true);
-                    ++parenthesisCounter;
-                    stack.push(null);
-
-                } else if (checkTokenIgnoreCase(")", false)) {
-                    operandExpect = false;
-                    nextToken(true);
-                    --parenthesisCounter;
-                    if (parenthesisCounter < 0) {
-                        printErrorMessage("Missing corresponding left parenthesis '('.");
-                        return null;
-                    }
-                    if (emptyParenthesisBody) {
-                        printErrorMessage("Empty Body in this parenthesis pair.");
-                        return null;
-                    }
-                    while (stack.peek() != null) {
-                        conditions.add(stack.pop());
-                    }
-                    stack.pop();
-                    emptyParenthesisBody = false;
-                } else if (operandExpect) {
-                    operandExpect = false;
-                    emptyParenthesisBody = false;
-                    Condition operand = getCondition(tableNameList, aliasMap);
-                    if (operand == null) {
-                        return null;
-                    }
-                    conditions.add(operand);
-                } else {
-                    operandExpect = true;
-                    emptyParenthesisBody = false;
-                    String operator = nextToken(true);
-                    if (!operator.equalsIgnoreCase("and") && !operator.equalsIgnoreCase("or")) {
-                        printErrorMessage("Invalid operator. AND / OR expected.");
-                        return null;
-                    }
-                    while (stackNeedPop(operator, stack)) {
-                        conditions.add(stack.pop());
-                    }
-                    Condition opCon = new Condition(null, null, null, null, null, null, toBinaryOperator(operator));
-                    stack.push(opCon);
-                }
-            } while (!isEnded(false));
-            if (parenthesisCounter != 0) {
-                System.out.println("Parenthesis mismatched in WHERE clause.");
+            ArrayList<Condition> conditions = getConditions(tableNameList, aliasMap);
+            if (conditions == null) {
                 return null;
             }
-            while (!stack.empty()) {
-                conditions.add(stack.pop());
-            }
-            int counterOfOperator = 0;
-            int counterOfOperand = 0;
-            for (Condition condition : conditions) {
-                if (condition.getOperator() == BinaryOperator.AND || condition.getOperator() == BinaryOperator.OR) {
-                    ++counterOfOperator;
-                } else {
-                    ++counterOfOperand;
-                }
-            }
-            if (counterOfOperand != 0 && counterOfOperator != 0 && counterOfOperand != counterOfOperator + 1) {
-                System.out.println("Invalid WHERE clauses. Check whether there are something missing.");
-                return null;
-            }
-            if (conditions.isEmpty()) {
-                result.setConditions(null);
-            } else {
-                result.setConditions(conditions);
-            }
+            result.setConditions(conditions.isEmpty() ? null : conditions);
         }
         if (checkTokenIgnoreCase("GROUP", false)) {
             nextToken(true);
@@ -622,6 +801,37 @@ public class SQLParser {
             }
             result.setShowRowLimitation(limit);
         }
+        if (checkTokenIgnoreCase("INTO", false)) {
+            nextToken(true);
+            if (!checkTokenIgnoreCase("OUTFILE", true)) {
+                printErrorMessage("Expect keyword OUTFILE after INTO.");
+                return null;
+            }
+            String filename = nextToken(true);
+            if (filename.startsWith("'") && filename.length() >= 2) {
+                filename = filename.substring(1, filename.length() - 1);
+            }
+            if (!filename.matches("[ ._/a-zA-Z0-9]+")) {
+                printErrorMessage("Invalid file name.");
+                return null;
+            }
+            result.setOutfile(filename);
+            result.setOutfileFormat(ExportFormat.CSV);
+            if (checkTokenIgnoreCase("FORMAT", false)) {
+                nextToken(true);
+                String format = nextToken(true);
+                if (format.equalsIgnoreCase("CSV")) {
+                    result.setOutfileFormat(ExportFormat.CSV);
+                } else if (format.equalsIgnoreCase("TSV")) {
+                    result.setOutfileFormat(ExportFormat.TSV);
+                } else if (format.equalsIgnoreCase("BINARY")) {
+                    result.setOutfileFormat(ExportFormat.BINARY);
+                } else {
+                    printErrorMessage("Expect CSV, TSV or BINARY after FORMAT.");
+                    return null;
+                }
+            }
+        }
         if (!isEnded()) {
             printErrorMessage("Unexpected tokens.");
             return null;
@@ -816,8 +1026,12 @@ public class SQLParser {
      */
     private SQLParseResult parseLoad() {
         SQLParseResult result = new SQLParseResult();
+        if (checkTokenIgnoreCase("data", false)) {
+            nextToken(true);
+            return parseLoadData();
+        }
         if (!checkTokenIgnoreCase("script", true)) {
-            printErrorMessage("Expect keyword SCRIPT after LOAD.");
+            printErrorMessage("Expect keyword SCRIPT or DATA after LOAD.");
             return null;
         }
         if (checkTokenIgnoreCase("silent", false)) {
@@ -834,9 +1048,92 @@ public class SQLParser {
             }
             return null;
         }
-        String filename = nextToken(true);
+        String filename = getInfileName();
         if (filename == null) {
-            printErrorMessage("A filename expected after keyword LOAD.");
+            return null;
+        }
+        if (!isEnded()) {
+            printErrorMessage("Unexpected tokens.");
+            return null;
+        }
+        result.setCommandType(CommandType.LOAD);
+        result.setFilename(filename);
+        return result;
+    }
+
+    /**
+     * Parse LOAD DATA, after keyword DATA.
+     *
+     * @return parse result, null if failed.
+     */
+    private SQLParseResult parseLoadData() {
+        SQLParseResult result = new SQLParseResult();
+        if (!checkTokenIgnoreCase("infile", true)) {
+            printErrorMessage("Expect keyword INFILE after DATA.");
+            return null;
+        }
+        String filename = getInfileName();
+        if (filename == null) {
+            return null;
+        }
+        if (!checkTokenIgnoreCase("into", true)) {
+            printErrorMessage("Expect keyword INTO after file name.");
+            return null;
+        }
+        if (!checkTokenIgnoreCase("table", true)) {
+            printErrorMessage("Expect keyword TABLE after INTO.");
+            return null;
+        }
+        String tablename = getTableName();
+        if (tablename == null) {
+            return null;
+        }
+        String terminator = ",";
+        if (checkTokenIgnoreCase("fields", false)) {
+            nextToken(true);
+            if (!checkTokenIgnoreCase("terminated", true)) {
+                printErrorMessage("Expect keyword TERMINATED after FIELDS.");
+                return null;
+            }
+            if (!checkTokenIgnoreCase("by", true)) {
+                printErrorMessage("Expect keyword BY after TERMINATED.");
+                return null;
+            }
+            String token = nextToken(true);
+            if (token.length() >= 2 && token.startsWith("'") && token.endsWith("'")) {
+                terminator = token.substring(1, token.length() - 1);
+            } else {
+                terminator = "";
+            }
+            if (terminator.equals("\\t")) {
+                terminator = "\t";
+            }
+            if (terminator.length() != 1 || terminator.charAt(0) >= 128 || "\"'\\\r\n".indexOf(terminator.charAt(0)) != -1) {
+                printErrorMessage("Field terminator should be a quoted single character, like ',' or '\\t'.");
+                return null;
+            }
+        }
+        if (!isEnded()) {
+            printErrorMessage("Unexpected tokens.");
+            return null;
+        }
+        result.setCommandType(CommandType.LOAD_DATA);
+        result.setFilename(filename);
+        result.setTablename(tablename);
+        result.setFieldTerminator(terminator.charAt(0));
+        return result;
+    }
+
+    /**
+     * Get name of an existing file from next token, quotes are removed.
+     * <br>** WILL INCREASE TOKEN INDEX **
+     *
+     * @return file name if valid, null if invalid.
+     */
+    private String getInfileName() {
+        String filename = nextToken(true);
+        if (filename.equals("")) {
+            printErrorMessage("A filename expected after keyword INFILE.");
             return null;
         }
         if (filename.startsWith("'")) {
@@ -851,12 +1148,140 @@ public class SQLParser {
             printErrorMessage(filename + ": no such file or directory.");
             return null;
         }
+        return filename;
+    }
+
+    /**
+     * Parse SET.
+     *
+     * @return parse result, null if failed.
+     */
+    private SQLParseResult parseSet() {
+        String settingName = nextToken(true);
+        if (settingName.isEmpty() || !settingName.matches("[a-zA-Z_]+")) {
+            printErrorMessage("A setting name expected after keyword SET.");
+            return null;
+        }
+        if (!checkTokenIgnoreCase("=", true)) {
+            printErrorMessage("Expect '=' after setting name.");
+            return null;
+        }
+        String valueString = nextToken(true);
+        if (!DataChecker.isValidInteger(valueString)) {
+            printErrorMessage("Invalid setting value (needs an integer).");
+            return null;
+        }
         if (!isEnded()) {
             printErrorMessage("Unexpected tokens.");
             return null;
         }
-        result.setCommandType(CommandType.LOAD);
-        result.setFilename(filename);
+        SQLParseResult result = new SQLParseResult();
+        result.setCommandType(CommandType.SET);
+        result.setSettingName(settingName.toUpperCase());
+        result.setSettingValue(Integer.parseInt(valueString));
+        return result;
+    }
+
+    /**
+     * Parse PREPARE.
+     * Statement after FROM may contain '?' parameters in place of constants.
+     *
+     * @return parse result, null if failed.
+     */
+    private SQLParseResult parsePrepare() {
+        String statementName = getStatementName();
+        if (statementName == null) {
+            return null;
+        }
+        if (!checkTokenIgnoreCase("from", true)) {
+            printErrorMessage("Expect keyword FROM after statement name.");
+            return null;
+        }
+        if (!checkTokenIgnoreCase("select", false) && !checkTokenIgnoreCase("insert", false)
+                && !checkTokenIgnoreCase("delete", false) && !checkTokenIgnoreCase("update", false)) {
+            nextToken(true);
+            printErrorMessage("Only SELECT, INSERT, DELETE and UPDATE can be prepared.");
+            return null;
+        }
+        mAllowParameters = true;
+        mParameterCount = 0;
+        int start = mIndex + 1;
+        SQLParseResult statement = parseCommand();
+        mAllowParameters = false;
+        if (statement == null) {
+            return null;
+        }
+        statement.setParameterCount(mParameterCount);
+        if (statement.getCommandType() == CommandType.SELECT) {
+            statement.setQueryText(String.join(" ", mTokens.subList(start, mTokens.size())));
+        }
+        SQLParseResult result = new SQLParseResult();
+        result.setCommandType(CommandType.PREPARE);
+        result.setStatementName(statementName);
+        result.setStatement(statement);
+        return result;
+    }
+
+    /**
+     * Parse EXECUTE.
+     *
+     * @return parse result, null if failed.
+     */
+    private SQLParseResult parseExecute() {
+        String statementName = getStatementName();
+        if (statementName == null) {
+            return null;
+        }
+        ArrayList<String> parameters = new ArrayList<>();
+        if (checkTokenIgnoreCase("using", false)) {
+            nextToken(true);
+            while (true) {
+                String value = nextToken(true);
+                if (!DataChecker.isValidInteger(value)
+                        && !DataChecker.isValidQuotedVarChar(value)
+                        && !DataChecker.isStringNull(value)) {
+                    printErrorMessage("Invalid parameter value.");
+                    return null;
+                }
+                parameters.add(value);
+                if (!checkTokenIgnoreCase(",", false)) {
+                    break;
+                }
+                nextToken(true);
+            }
+        }
+        if (!isEnded()) {
+            printErrorMessage("Unexpected tokens.");
+            return null;
+        }
+        SQLParseResult result = new SQLParseResult();
+        result.setCommandType(CommandType.EXECUTE);
+        result.setStatementName(statementName);
+        result.setParameters(parameters);
+        return result;
+    }
+
+    /**
+     * Parse DEALLOCATE.
+     *
+     * @return parse result, null if failed.
+     */
+    private SQLParseResult parseDeallocate() {
+        if (!checkTokenIgnoreCase("prepare", true)) {
+            printErrorMessage("Expect keyword PREPARE after DEALLOCATE.");
+            return null;
+        }
+        String statementName = getStatementName();
+        if (statementName == null) {
+            return null;
+        }
+        if (!isEnded()) {
+            printErrorMessage("Unexpected tokens.");
+            return null;
+        }
+        SQLParseResult result = new SQLParseResult();
+        result.setCommandType(CommandType.DEALLOCATE);
+        result.setStatementName(statementName);
         return result;
     }
 
@@ -1052,18 +1477,109 @@ public class SQLParser {
         }
     }
 
+    /**
+     * Get conditions of a WHERE clause, in postfix order.
+     * Stops before GROUP, ORDER, LIMIT or INTO.
+     *
+     * @param tableNameList table names in FROM.
+     * @param aliasMap map from alias to table name.
+     * @return conditions, null if failed.
+     */
+    private ArrayList<Condition> getConditions(ArrayList<String> tableNameList, HashMap<String, String> aliasMap) {
+        ArrayList<Condition> conditions = new ArrayList<>();
+        Stack<Condition> stack = new Stack<>();
+        boolean operandExpect = true;
+        boolean emptyParenthesisBody = false;
+        int parenthesisCounter = 0;
+        do {
+            if (checkTokenIgnoreCase("GROUP", false) ||
+                    checkTokenIgnoreCase("ORDER", false) ||
+                    checkTokenIgnoreCase("LIMIT", false) ||
+                    checkTokenIgnoreCase("INTO", false)) {
+                break;
+            }
+            if (checkTokenIgnoreCase("(", false)) {
+                operandExpect = true;
+                emptyParenthesisBody = true;
+                nextToken(true);
+                ++parenthesisCounter;
+                stack.push(null);
+
+            } else if (checkTokenIgnoreCase(")", false)) {
+                operandExpect = false;
+                nextToken(true);
+                --parenthesisCounter;
+                if (parenthesisCounter < 0) {
+                    printErrorMessage("Missing corresponding left parenthesis '('.");
+                    return null;
+                }
+                if (emptyParenthesisBody) {
+                    printErrorMessage("Empty Body in this parenthesis pair.");
+                    return null;
+                }
+                while (stack.peek() != null) {
+                    conditions.add(stack.pop());
+                }
+                stack.pop();
+                emptyParenthesisBody = false;
+            } else if (operandExpect) {
+                operandExpect = false;
+                emptyParenthesisBody = false;
+                Condition operand = getCondition(tableNameList, aliasMap);
+                if (operand == null) {
+                    return null;
+                }
+                conditions.add(operand);
+            } else {
+                operandExpect = true;
+                emptyParenthesisBody = false;
+                String operator = nextToken(true);
+                if (!operator.equalsIgnoreCase("and") && !operator.equalsIgnoreCase("or")) {
+                    printErrorMessage("Invalid operator. AND / OR expected.");
+                    return null;
+                }
+                while (stackNeedPop(operator, stack)) {
+                    conditions.add(stack.pop());
+                }
+                Condition opCon = new Condition(null, null, null, null, null, null, toBinaryOperator(operator));
+                stack.push(opCon);
+            }
+        } while (!isEnded(false));
+        if (parenthesisCounter != 0) {
+            System.out.println("Parenthesis mismatched in WHERE clause.");
+            return null;
+        }
+        while (!stack.empty()) {
+            conditions.add(stack.pop());
+        }
+        int counterOfOperator = 0;
+        int counterOfOperand = 0;
+        for (Condition condition : conditions) {
+            if (condition.getOperator() == BinaryOperator.AND || condition.getOperator() == BinaryOperator.OR) {
+                ++counterOfOperator;
+            } else {
+                ++counterOfOperand;
+            }
+        }
+        if (counterOfOperand != 0 && counterOfOperator != 0 && counterOfOperand != counterOfOperator + 1) {
+            System.out.println("Invalid WHERE clauses. Check whether there are something missing.");
+            return null;
+        }
+        return conditions;
+    }
+
     /**
      * Get a data block.
      *
      * @return a string of data block, null if failed.
      */
     private SQLBlock getBlock() {
-        String block = nextToken(true);
+        String block = toParameter(nextToken(true));
         if (DataChecker.isStringNull(block)) {
             return new SQLBlock(null, true);
         } else if (DataChecker.isValidInteger(block)) {
             return new SQLBlock(block, true);
-        } else if (DataChecker.isValidQuotedVarChar(block)) {
+        } else if (isConstant(block)) {
             return new SQLBlock(block, true);
         } else {
             printErrorMessage("Invalid data format.");
@@ -1113,7 +1629,7 @@ public class SQLParser {
         leftOperand = nextToken(true);
         String temp = nextToken(false);
         if (mTokenEnded || temp.equalsIgnoreCase("AND") || temp.equalsIgnoreCase("OR")
-                || temp.equalsIgnoreCase("ORDER") || temp.equalsIgnoreCase("LIMIT")) {
+                || temp.equalsIgnoreCase("ORDER") || temp.equalsIgnoreCase("LIMIT") || temp.equalsIgnoreCase("INTO")) {
             if (DataChecker.isValidInteger(leftOperand)) {
                 return new Condition(leftOperand, null, null, "0", null, null, BinaryOperator.NOT_EQUAL);
             } else {
@@ -1121,12 +1637,20 @@ public class SQLParser {
                 return null;
             }
         }
+        leftOperand = toParameter(leftOperand);
         operator = nextToken(true);
-        rightOperand = nextToken(true);
+        rightOperand = toParameter(nextToken(true));
         if (!isValidOp(operator)) {
             printErrorMessage("Invalid statement: " + leftOperand + " " + operator + " " + rightOperand);
             return null;
         }
+        if (operator.equalsIgnoreCase("like")) {
+            if (isConstant(leftOperand) || !isConstant(rightOperand)
+                    || DataChecker.isValidInteger(rightOperand) || DataChecker.isStringNull(rightOperand)) {
+                printErrorMessage("Invalid statement: " + leftOperand + " " + operator + " " + rightOperand);
+                return null;
+            }
+        }
         if (isCompareOp(operator)) {
             if (DataChecker.isValidQuotedVarChar(leftOperand)
                     || DataChecker.isValidQuotedVarChar(rightOperand)
@@ -1136,8 +1660,8 @@ public class SQLParser {
                 return null;
             }
         }
-        if (DataChecker.isValidInteger(leftOperand) || DataChecker.isValidQuotedVarChar(leftOperand) || DataChecker.isStringNull(leftOperand)) {
-            if (DataChecker.isValidInteger(rightOperand) || DataChecker.isValidQuotedVarChar(rightOperand) || DataChecker.isStringNull(rightOperand)) {
+        if (isConstant(leftOperand)) {
+            if (isConstant(rightOperand)) {
                 Condition retCon = new Condition(leftOperand, null, null, rightOperand, null, null, toBinaryOperator(operator));
                 return retCon;
             } else if (rightOperand.matches("[a-zA-Z_][0-9a-zA-Z_]*")
@@ -1161,7 +1685,7 @@ public class SQLParser {
             }
         } else if (leftOperand.matches("[a-zA-Z_][0-9a-zA-Z_]*")
                    || leftOperand.matches("[a-zA-Z_][0-9a-zA-Z_]*[.][a-zA-Z_][0-9a-zA-Z_]*")) {
-            if (DataChecker.isValidInteger(rightOperand) || DataChecker.isValidQuotedVarChar(rightOperand) || DataChecker.isStringNull(rightOperand)) {
+            if (isConstant(rightOperand)) {
                 leftOperand = handlePrefixUsingMap(leftOperand, tableNameList, aliasMap);
                 if (leftOperand == null) {
                     return null;
@@ -1234,6 +1758,8 @@ public class SQLParser {
             return BinaryOperator.NOT_EQUAL;
         } else if (input.equalsIgnoreCase("=")) {
             return BinaryOperator.EQUAL;
+        } else if (input.equalsIgnoreCase("LIKE")) {
+            return BinaryOperator.LIKE;
         } else if (input.equalsIgnoreCase("AND")) {
             return BinaryOperator.AND;
         } else {
@@ -1262,7 +1788,7 @@ public class SQLParser {
      */
     private boolean isValidOp(String input) {
         if (input.equals("<>") || input.equals("=") || input.equals(">")
-                || input.equals(">=") || input.equals("<") || input.equals("<=")) {
+                || input.equals(">=") || input.equals("<") || input.equals("<=") || input.equalsIgnoreCase("like")) {
             return true;
         }
         return false;
@@ -1355,6 +1881,47 @@ public class SQLParser {
         return true;
     }
 
+    /**
+     * Get prepared statement name.
+     *
+     * @return name if succeed, null if fail.
+     */
+    private String getStatementName() {
+        String name = nextToken(true);
+        if (!name.matches("[a-zA-Z_][0-9a-zA-Z_]*") || SQLKeyWords.isSQLKeyword(name)) {
+            printErrorMessage("Invalid statement name '" + name + "'.");
+            return null;
+        }
+        return name;
+    }
+
+    /**
+     * Get a placeholder for '?' parameter if parameters are allowed.
+     * Placeholders are numbered as "?1", "?2"... in order of appearance.
+     *
+     * @param token token to check.
+     * @return a placeholder if token is '?', token itself otherwise.
+     */
+    private String toParameter(String token) {
+        if (mAllowParameters && token.equals("?")) {
+            return "?" + (++mParameterCount);
+        }
+        return token;
+    }
+
+    /**
+     * Check whether a token is a constant (integer, quoted string, null or placeholder).
+     *
+     * @param token token to check.
+     * @return true if constant, false if not.
+     */
+    private boolean isConstant(String token) {
+        return DataChecker.isValidInteger(token)
+                || DataChecker.isValidQuotedVarChar(token)
+                || DataChecker.isStringNull(token)
+                || (mAllowParameters && token.matches("[?][0-9]+"));
+    }
+
     /**
      * Get alias.
      *
@@ -1468,75 +2035,57 @@ public class SQLParser {
      * Split tokens.
      */
     private void splitTokens() {
-        mCommand = mCommand.replaceAll("\n", " ");
-        mCommand = mCommand.replaceAll("\t", "    ");
-        mCommand = mCommand.replaceAll("\r", "");
-        String preProcessCommand = "";
+        mCommand = mCommand.replace("\n", " ");
+        mCommand = mCommand.replace("\t", "    ");
+        mCommand = mCommand.replace("\r", "");
+        StringBuilder preProcessCommand = new StringBuilder(mCommand.length() * 2);
         boolean quoteFlag = false;
         for (int i = 0; i < mCommand.length(); ++i) {
-            if (quoteFlag && mCommand.charAt(i) != '\'') {
-                preProcessCommand += mCommand.charAt(i);
+            char c = mCommand.charAt(i);
+            if (quoteFlag && c != '\'') {
+                preProcessCommand.append(c);
                 continue;
             }
-            switch (mCommand.charAt(i)) {
+            switch (c) {
                 case '\'':
                     if (quoteFlag) {
-                        preProcessCommand += "'\0";
+                        preProcessCommand.append("'\0");
                     } else {
-                        preProcessCommand += "\0'";
+                        preProcessCommand.append("\0'");
                     }
                     quoteFlag = !quoteFlag;
                     break;
                 case ' ':
-                    preProcessCommand += "\0";
-                    break;
                 case '\n':
-                    preProcessCommand += "\0";
-                    break;
                 case '\t':
-                    preProcessCommand += "\0";
+                    preProcessCommand.append('\0');
                     break;
                 case '<':
-                    if (i + 1 < mCommand.length()) {
-                        if (mCommand.charAt(i + 1) == '>' || mCommand.charAt(i + 1) == '=') {
-                            preProcessCommand += "\0<" + mCommand.charAt(i + 1) + "\0";
-                            i++;
-                        } else {
-                            preProcessCommand += "\0<\0";
-                        }
+                    if (i + 1 < mCommand.length() && (mCommand.charAt(i + 1) == '>' || mCommand.charAt(i + 1) == '=')) {
+                        preProcessCommand.append("\0<").append(mCommand.charAt(i + 1)).append('\0');
+                        i++;
                     } else {
-                        preProcessCommand += "\0<\0";
+                        preProcessCommand.append("\0<\0");
                     }
                     break;
                 case '>':
-                    if (i + 1 < mCommand.length()) {
-                        if (mCommand.charAt(i + 1) == '=') {
-                            preProcessCommand += "\0>" + mCommand.charAt(i + 1) + "\0";
-                            i++;
-                        } else {
-                            preProcessCommand += "\0>\0";
-                        }
+                    if (i + 1 < mCommand.length() && mCommand.charAt(i + 1) == '=') {
+                        preProcessCommand.append("\0>=\0");
+                        i++;
                     } else {
-                        preProcessCommand += "\0>\0";
+                        preProcessCommand.append("\0>\0");
                     }
                     break;
                 case '=':
-                    preProcessCommand += "\0=\0";
-                    break;
                 case '(':
-                    preProcessCommand += "\0(\0";
-                    break;
                 case ')':
-                    preProcessCommand += "\0)\0";
-                    break;
                 case ',':
-                    preProcessCommand += "\0,\0";
-                    break;
                 case ';':
-                    preProcessCommand += "\0;\0";
+                case '?':
+                    preProcessCommand.append('\0').append(c).append('\0');
                     break;
                 default:
-                    preProcessCommand += mCommand.charAt(i);
+                    preProcessCommand.append(c);
                     break;
             }
         }
@@ -1545,7 +2094,7 @@ public class SQLParser {
             mIsValid = false;
             return;
         }
-        String[] splitTokens = preProcessCommand.split("\0");
+        String[] splitTokens = preProcessCommand.toString().split("\0");
         int startLocation = 0;
         for (String token : splitTokens) {
             if (token.length() > 0) {
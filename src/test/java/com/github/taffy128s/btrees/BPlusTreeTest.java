@@ -263,4 +263,66 @@ public class BPlusTreeTest {
             assertEquals(50000, bt.size());
         }
     }
+
+    @Test
+    public void valueIterator() throws Exception {
+        BPlusTree<Integer, Integer> bt = new BPlusTree<>(3, 3);
+        TreeMap<Integer, Integer> tm = new TreeMap<>();
+        Random random = new Random();
+        for (int i = 0; i < 5000; ++i) {
+            int key = random.nextInt(3000);
+            bt.put(key, i);
+            tm.put(key, i);
+        }
+        Iterator<Integer> iterator = bt.valueIterator();
+        for (int value : tm.values()) {
+            assertEquals(value, (int) iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+        iterator = bt.descendingValueIterator();
+        for (int value : tm.descendingMap().values()) {
+            assertEquals(value, (int) iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void remove() throws Exception {
+        Random random = new Random(7);
+        for (int capacity : new int[]{3, 4, 10}) {
+            BPlusTree<Integer, Integer> bt = new BPlusTree<>(capacity, capacity);
+            TreeMap<Integer, Integer> tm = new TreeMap<>();
+            ArrayList<Integer> keys = new ArrayList<>();
+            ArrayList<Integer> values = new ArrayList<>();
+            for (int i = 0; i < 2000; i += 2) {
+                keys.add(i);
+                values.add(i);
+                tm.put(i, i);
+            }
+            bt.construct(keys, values);
+            for (int i = 0; i < 20000; ++i) {
+                int key = random.nextInt(3000);
+                if (random.nextInt(3) == 0) {
+                    bt.put(key, i);
+                    tm.put(key, i);
+                } else {
+                    assertEquals(tm.remove(key), bt.remove(key));
+                }
+                assertEquals(tm.size(), bt.size());
+            }
+            assertEquals(new ArrayList<>(tm.keySet()), bt.getKeys());
+            assertEquals(new ArrayList<>(tm.subMap(500, 1500).values()), bt.getValues(500, 1500));
+            assertEquals(new ArrayList<>(tm.headMap(700).keySet()), bt.getKeysLess(700));
+            for (int key : new ArrayList<>(tm.keySet())) {
+                assertEquals(tm.get(key), bt.get(key));
+                assertEquals(tm.remove(key), bt.remove(key));
+            }
+            assertTrue(bt.isEmpty());
+            assertNull(bt.firstKey());
+            assertTrue(bt.getKeysLess(100).isEmpty());
+            assertFalse(bt.valueIterator().hasNext());
+            bt.put(1, 1);
+            assertEquals(1, (int) bt.lastKey());
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * BloomFilter JUnit Test
+ */
+public class BloomFilterTest {
+    @Test
+    public void mightContain() throws Exception {
+        BloomFilter bloomFilter = new BloomFilter(10000);
+        for (int i = 0; i < 10000; ++i) {
+            bloomFilter.add(i * 3);
+        }
+        bloomFilter.add(null);
+        bloomFilter.add("'key'");
+        for (int i = 0; i < 10000; ++i) {
+            assertTrue(bloomFilter.mightContain(i * 3));
+        }
+        assertTrue(bloomFilter.mightContain(null));
+        assertTrue(bloomFilter.mightContain("'key'"));
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; ++i) {
+            if (bloomFilter.mightContain(i * 3 + 1)) {
+                ++falsePositives;
+            }
+        }
+        assertTrue(falsePositives < 300);
+        assertTrue(bloomFilter.isFull());
+    }
+}
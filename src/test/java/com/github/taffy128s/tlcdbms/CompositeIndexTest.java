@@ -0,0 +1,79 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * CompositeIndex JUnit Test
+ */
+public class CompositeIndexTest {
+    private ArrayList<DataRecord> generateRecords() {
+        Random random = new Random();
+        ArrayList<DataRecord> records = new ArrayList<>();
+        for (int i = 0; i < 2000; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(i);
+            record.append(random.nextInt(8) == 0 ? null : random.nextInt(10));
+            record.append(random.nextInt(8) == 0 ? null : random.nextInt(50));
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    public void query() throws Exception {
+        ArrayList<DataRecord> records = generateRecords();
+        CompositeIndex index = new CompositeIndex(new ArrayList<>(Arrays.asList(1, 2)), TableStructType.BPLUSTREE);
+        index.insertAll(new ArrayList<>(records.subList(0, 1000)));
+        for (DataRecord record : records.subList(1000, records.size())) {
+            index.insert(record);
+        }
+        for (int a = 0; a < 10; ++a) {
+            int count = 0;
+            int rangeCount = 0;
+            for (DataRecord record : records) {
+                if (Integer.valueOf(a).equals(record.get(1))) {
+                    ++count;
+                    Object b = record.get(2);
+                    if (b != null && (Integer) b > 10 && (Integer) b <= 20) {
+                        ++rangeCount;
+                    }
+                }
+            }
+            ArrayList<Object> prefix = new ArrayList<>(Arrays.asList(a));
+            assertEquals(count, index.query(prefix, null, false, null, false).size());
+            assertEquals(rangeCount, index.query(prefix, 10, false, 20, true).size());
+            assertEquals(0, index.query(prefix, 20, false, 10, false).size());
+        }
+        CompositeIndex hash = new CompositeIndex(new ArrayList<>(Arrays.asList(1, 2)), TableStructType.HASH);
+        hash.insertAll(records);
+        assertNull(hash.query(new ArrayList<>(Arrays.asList(1)), null, false, null, false));
+        assertEquals(index.query(new ArrayList<>(Arrays.asList(3, 7)), null, false, null, false),
+                hash.query(new ArrayList<>(Arrays.asList(3, 7)), null, false, null, false));
+    }
+
+    @Test
+    public void iterator() throws Exception {
+        ArrayList<DataRecord> records = generateRecords();
+        CompositeIndex index = new CompositeIndex(new ArrayList<>(Arrays.asList(1, 2)), TableStructType.BPLUSTREE);
+        index.insertAll(records);
+        ArrayList<Integer> sortIndices = new ArrayList<>(Arrays.asList(1, 2));
+        ArrayList<SortingType> ascending = new ArrayList<>(Arrays.asList(SortingType.ASCENDING, SortingType.ASCENDING));
+        ArrayList<SortingType> descending = new ArrayList<>(Arrays.asList(SortingType.DESCENDING, SortingType.DESCENDING));
+        ArrayList<DataRecord> expected = RecordSorter.sort(records, (o1, o2) -> DataRecord.compare(o1, o2, sortIndices, ascending));
+        ArrayList<DataRecord> actual = new ArrayList<>();
+        index.iterator(false).forEachRemaining(actual::add);
+        assertEquals(expected, actual);
+        expected = RecordSorter.sort(records, (o1, o2) -> DataRecord.compare(o1, o2, sortIndices, descending));
+        actual.clear();
+        Iterator<DataRecord> iterator = index.iterator(true);
+        iterator.forEachRemaining(actual::add);
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+/**
+ * ConditionNode JUnit Test
+ */
+public class ConditionNodeTest {
+    private Condition join;
+    private Condition left;
+    private Condition right;
+    private Condition and;
+    private Condition or;
+
+    @Before
+    public void setUp() throws Exception {
+        join = new Condition(null, "a", "id", null, "b", "aid", BinaryOperator.EQUAL);
+        left = new Condition(null, "a", "x", "10", null, null, BinaryOperator.EQUAL);
+        right = new Condition(null, "b", "y", "7", null, null, BinaryOperator.GREATER_EQUAL);
+        and = new Condition(null, null, null, null, null, null, BinaryOperator.AND);
+        or = new Condition(null, null, null, null, null, null, BinaryOperator.OR);
+    }
+
+    @Test
+    public void build() throws Exception {
+        // a.id = b.aid AND (a.x = 10 OR b.y >= 7)
+        ArrayList<Condition> conditions = new ArrayList<>();
+        conditions.add(join);
+        conditions.add(left);
+        conditions.add(right);
+        conditions.add(or);
+        conditions.add(and);
+        ConditionNode root = ConditionNode.build(conditions);
+        assertEquals(BinaryOperator.AND, root.getCondition().getOperator());
+        assertTrue(root.getLeft().isLeaf());
+        assertTrue(root.getRight().needsCrossProduct());
+        assertFalse(root.needsCrossProduct());
+        assertEquals(2, root.getSourceTables().size());
+    }
+
+    @Test
+    public void toPredicate() throws Exception {
+        ArrayList<String> attributeNames = new ArrayList<>();
+        ArrayList<DataType> attributeTypes = new ArrayList<>();
+        attributeNames.add("a.id");
+        attributeNames.add("a.x");
+        attributeNames.add("b.aid");
+        attributeNames.add("b.y");
+        for (int i = 0; i < 4; ++i) {
+            attributeTypes.add(new DataType(DataTypeIdentifier.INT, -1));
+        }
+        Table table = new ArrayListTable("$result", attributeNames, attributeTypes, -1, -1);
+        ArrayList<Condition> conditions = new ArrayList<>();
+        conditions.add(left);
+        conditions.add(right);
+        conditions.add(or);
+        Predicate<DataRecord> predicate = ConditionNode.build(conditions).toPredicate(table);
+        DataRecord record = new DataRecord();
+        record.append(1);
+        record.append(10);
+        record.append(1);
+        record.append(null);
+        assertTrue(predicate.test(record));
+        record.set(1, 20);
+        assertFalse(predicate.test(record));
+        record.set(3, 8);
+        assertTrue(predicate.test(record));
+    }
+}
@@ -37,4 +37,17 @@ public class ConditionTest {
         boolean result = Condition.calculateResult(a, b, BinaryOperator.LESS_EQUAL);
         assertEquals(true, result);
     }
+
+    @Test
+    public void matchLike() throws Exception {
+        assertTrue(Condition.calculateResult("'apple'", "'ap%'", BinaryOperator.LIKE));
+        assertTrue(Condition.calculateResult("'apple'", "'_pp%e'", BinaryOperator.LIKE));
+        assertFalse(Condition.calculateResult("'apple'", "'ap_'", BinaryOperator.LIKE));
+        assertFalse(Condition.calculateResult(null, "'%'", BinaryOperator.LIKE));
+        assertTrue(Condition.calculateResult("'a_b'", "'a\\_b'", BinaryOperator.LIKE));
+        assertFalse(Condition.calculateResult("'axb'", "'a\\_b'", BinaryOperator.LIKE));
+        assertTrue(Condition.calculateResult("'a.*'", "'a.*'", BinaryOperator.LIKE));
+        assertEquals("'ab_c", Condition.getLikePrefix("'ab\\_c%d'"));
+        assertEquals("'ac", Condition.getPrefixUpperBound("'ab"));
+    }
 }
@@ -0,0 +1,58 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * CsvParser JUnit Test
+ */
+public class CsvParserTest {
+    @Test
+    public void parseInteger() throws Exception {
+        byte[] data = "12,-2147483648,2147483648,+7,1a,".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Integer.valueOf(12), CsvParser.parseInteger(data, 0, 2));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), CsvParser.parseInteger(data, 3, 11));
+        assertNull(CsvParser.parseInteger(data, 15, 10));
+        assertEquals(Integer.valueOf(7), CsvParser.parseInteger(data, 26, 2));
+        assertNull(CsvParser.parseInteger(data, 29, 2));
+        assertNull(CsvParser.parseInteger(data, 32, 0));
+    }
+
+    @Test
+    public void readBatch() throws Exception {
+        File file = File.createTempFile("csvparser", ".csv");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+        writer.write("1,\"a,\"\"b\"\"\"\r\n\n2,\\N\nx,c\n3,\n4,d,e\n5,toolong");
+        writer.close();
+        ArrayList<String> attributeNames = new ArrayList<>();
+        ArrayList<DataType> attributeTypes = new ArrayList<>();
+        attributeNames.add("id");
+        attributeNames.add("name");
+        attributeTypes.add(new DataType(DataTypeIdentifier.INT, -1));
+        attributeTypes.add(new DataType(DataTypeIdentifier.VARCHAR, 6));
+        CsvParser parser = new CsvParser(attributeNames, attributeTypes, ',');
+        assertTrue(parser.open(file.getPath()));
+        ArrayList<DataRecord> records = parser.readBatch();
+        assertEquals(3, records.size());
+        assertEquals("'a,\"b\"'", records.get(0).get(1));
+        assertNull(records.get(1).get(1));
+        assertNull(records.get(2).get(1));
+        assertEquals(3, records.get(2).get(0));
+        assertEquals(1, (int) parser.getLineNumbers().get(0));
+        assertEquals(3, (int) parser.getLineNumbers().get(1));
+        assertEquals(5, (int) parser.getLineNumbers().get(2));
+        assertEquals(3, parser.getErrors().size());
+        assertTrue(parser.getErrors().containsKey(4));
+        assertTrue(parser.getErrors().containsKey(6));
+        assertTrue(parser.getErrors().containsKey(7));
+        assertNull(parser.readBatch());
+        parser.close();
+    }
+}
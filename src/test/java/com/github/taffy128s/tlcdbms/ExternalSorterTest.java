@@ -0,0 +1,64 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * ExternalSorter JUnit Test
+ */
+public class ExternalSorterTest {
+    @After
+    public void tearDown() throws Exception {
+        ExternalSorter.setSortBuffer(ExternalSorter.DEFAULT_SORT_BUFFER);
+    }
+
+    @Test
+    public void sort() throws Exception {
+        Random random = new Random();
+        ArrayList<DataRecord> records = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(random.nextInt(20) == 0 ? null : random.nextInt(100));
+            record.append("'" + i + "'");
+            records.add(record);
+        }
+        Comparator<DataRecord> comparator = (o1, o2) -> -DataRecord.compare(o1, o2, 0);
+        ArrayList<DataRecord> expected = new ArrayList<>(records);
+        expected.sort(comparator);
+        ExternalSorter.setSortBuffer(777);
+        int spillFileCount = countSpillFiles();
+        Iterable<DataRecord> sorted = ExternalSorter.sort(records, comparator);
+        assertEquals(spillFileCount + 13, countSpillFiles());
+        // records are not copied, and can be read again.
+        for (int i = 0; i < 2; ++i) {
+            ArrayList<DataRecord> result = new ArrayList<>();
+            Iterator<DataRecord> iterator = sorted.iterator();
+            while (iterator.hasNext()) {
+                result.add(iterator.next());
+            }
+            assertEquals(expected, result);
+            for (int j = 0; j < result.size(); ++j) {
+                assertSame(expected.get(j), result.get(j));
+            }
+        }
+        // an iterator left unfinished is closed by release().
+        Iterator<DataRecord> iterator = sorted.iterator();
+        assertSame(expected.get(0), iterator.next());
+        ExternalSorter.release(sorted);
+        assertFalse(iterator.hasNext());
+        assertEquals(spillFileCount, countSpillFiles());
+    }
+
+    private static int countSpillFiles() {
+        File[] files = new File(DBManager.DIRNAME).listFiles((dir, name) -> name.endsWith(".tlcspill"));
+        return (files == null) ? 0 : files.length;
+    }
+}
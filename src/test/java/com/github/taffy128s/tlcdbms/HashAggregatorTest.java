@@ -0,0 +1,90 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * HashAggregator JUnit Test
+ */
+public class HashAggregatorTest {
+    @After
+    public void tearDown() throws Exception {
+        ParallelScanner.setParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    public void addAllParallel() throws Exception {
+        Random random = new Random();
+        ArrayList<DataRecord> records = new ArrayList<>();
+        for (int i = 0; i < ParallelScanner.MIN_PARALLEL_SIZE * 3; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(random.nextInt(10) == 0 ? null : random.nextInt(500));
+            record.append(random.nextInt(3));
+            record.append(random.nextInt(7) == 0 ? null : random.nextInt(1000000));
+            records.add(record);
+        }
+        ArrayList<Integer> groupIndices = new ArrayList<>(Arrays.asList(0, 1));
+        ArrayList<Integer> targetIndices = new ArrayList<>(Arrays.asList(1, 0, -1, 2, 2));
+        ArrayList<QueryType> queryTypes = new ArrayList<>(Arrays.asList(
+                QueryType.NORMAL, QueryType.NORMAL, QueryType.COUNT, QueryType.COUNT, QueryType.SUM));
+        ParallelScanner.setParallelism(1);
+        HashAggregator serial = new HashAggregator(groupIndices, targetIndices, queryTypes);
+        serial.addAll(records);
+        ParallelScanner.setParallelism(5);
+        HashAggregator parallel = new HashAggregator(groupIndices, targetIndices, queryTypes);
+        parallel.addAll(records);
+        assertEquals(serial.size(), parallel.size());
+        assertEquals(serial.getResult(), parallel.getResult());
+    }
+
+    @Test
+    public void minMax() throws Exception {
+        Random random = new Random();
+        ArrayList<DataRecord> records = new ArrayList<>();
+        for (int i = 0; i < ParallelScanner.MIN_PARALLEL_SIZE * 2; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(random.nextInt(5));
+            record.append(random.nextInt(9) == 0 ? null : random.nextInt(100000) - 50000);
+            record.append(random.nextInt(9) == 0 ? null : "s" + random.nextInt(1000));
+            records.add(record);
+        }
+        ArrayList<Integer> groupIndices = new ArrayList<>(Arrays.asList(0));
+        ArrayList<Integer> targetIndices = new ArrayList<>(Arrays.asList(0, 1, 1, 2, 2));
+        ArrayList<QueryType> queryTypes = new ArrayList<>(Arrays.asList(
+                QueryType.NORMAL, QueryType.MIN, QueryType.MAX, QueryType.MIN, QueryType.MAX));
+        ParallelScanner.setParallelism(4);
+        HashAggregator aggregator = new HashAggregator(groupIndices, targetIndices, queryTypes);
+        aggregator.addAll(records);
+        for (DataRecord result : aggregator.getResult()) {
+            Integer minInt = null;
+            Integer maxInt = null;
+            String minString = null;
+            String maxString = null;
+            for (DataRecord record : records) {
+                if (!record.get(0).equals(result.get(0))) {
+                    continue;
+                }
+                Integer intValue = (Integer) record.get(1);
+                String stringValue = (String) record.get(2);
+                if (intValue != null) {
+                    minInt = (minInt == null || intValue < minInt) ? intValue : minInt;
+                    maxInt = (maxInt == null || intValue > maxInt) ? intValue : maxInt;
+                }
+                if (stringValue != null) {
+                    minString = (minString == null || stringValue.compareTo(minString) < 0) ? stringValue : minString;
+                    maxString = (maxString == null || stringValue.compareTo(maxString) > 0) ? stringValue : maxString;
+                }
+            }
+            assertEquals(minInt, result.get(1));
+            assertEquals(maxInt, result.get(2));
+            assertEquals(minString, result.get(3));
+            assertEquals(maxString, result.get(4));
+        }
+    }
+}
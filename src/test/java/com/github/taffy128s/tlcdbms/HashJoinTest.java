@@ -0,0 +1,99 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * HashJoin JUnit Test
+ */
+public class HashJoinTest {
+    private Table first;
+    private Table second;
+
+    @Before
+    public void setUp() throws Exception {
+        ArrayList<String> attributeNames = new ArrayList<>();
+        ArrayList<DataType> attributeTypes = new ArrayList<>();
+        attributeNames.add("id");
+        attributeNames.add("name");
+        attributeTypes.add(new DataType(DataTypeIdentifier.INT, -1));
+        attributeTypes.add(new DataType(DataTypeIdentifier.VARCHAR, 40));
+        first = new ArrayListTable("first", attributeNames, attributeTypes, -1, -1);
+        second = new ArrayListTable("second", attributeNames, attributeTypes, -1, -1);
+        for (int i = 0; i < 300; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(i % 50 == 0 ? null : i % 97);
+            record.append("'f" + i + "'");
+            first.insert(record);
+        }
+        for (int i = 0; i < 200; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(i % 40 == 0 ? null : i % 131);
+            record.append("'s" + i + "'");
+            second.insert(record);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ParallelScanner.setParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
+    private HashMap<DataRecord, Integer> nestedLoopJoin() {
+        HashMap<DataRecord, Integer> expected = new HashMap<>();
+        for (DataRecord a : first.getAllRecords()) {
+            for (DataRecord b : second.getAllRecords()) {
+                Object left = a.get(0);
+                Object right = b.get(0);
+                if (left == null ? right == null : left.equals(right)) {
+                    expected.merge(HashJoin.concatenate(a, b), 1, Integer::sum);
+                }
+            }
+        }
+        return expected;
+    }
+
+    private HashMap<DataRecord, Integer> count(ArrayList<DataRecord> records) {
+        HashMap<DataRecord, Integer> counts = new HashMap<>();
+        for (DataRecord record : records) {
+            counts.merge(record, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    public void joinInMemory() throws Exception {
+        HashJoin hashJoin = new HashJoin(first, second, 0, 0);
+        assertEquals(nestedLoopJoin(), count(hashJoin.join()));
+    }
+
+    @Test
+    public void joinWithSpill() throws Exception {
+        HashJoin hashJoin = new HashJoin(first, second, 0, 0, 4);
+        assertEquals(nestedLoopJoin(), count(hashJoin.join()));
+        HashJoin reversed = new HashJoin(second, first, 0, 0, 4);
+        assertEquals(nestedLoopJoin().size(), count(reversed.join()).size());
+    }
+
+    @Test
+    public void joinParallel() throws Exception {
+        for (int i = 0; i < ParallelScanner.MIN_PARALLEL_SIZE; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(i % 3000 == 0 ? null : i % 7919);
+            record.append("'f" + i + "'");
+            first.insert(record);
+        }
+        ParallelScanner.setParallelism(1);
+        ArrayList<DataRecord> expected = new HashJoin(first, second, 0, 0).join();
+        ArrayList<DataRecord> expectedReversed = new HashJoin(second, first, 0, 0).join();
+        ParallelScanner.setParallelism(6);
+        assertEquals(expected, new HashJoin(first, second, 0, 0).join());
+        assertEquals(expectedReversed, new HashJoin(second, first, 0, 0).join());
+    }
+}
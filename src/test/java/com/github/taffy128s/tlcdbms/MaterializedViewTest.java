@@ -0,0 +1,107 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * MaterializedView JUnit Test
+ */
+public class MaterializedViewTest {
+    private static DataRecord record(Object... fields) {
+        DataRecord record = new DataRecord();
+        for (Object field : fields) {
+            record.append(field);
+        }
+        return record;
+    }
+
+    @Test
+    public void onInsert() throws Exception {
+        ArrayList<DataRecord> baseRecords = new ArrayList<>();
+        baseRecords.add(record(1, 1, 10));
+        baseRecords.add(record(2, 2, 5));
+        baseRecords.add(record(3, 1, 20));
+        ArrayList<DataRecord> inserted = new ArrayList<>();
+        inserted.add(record(4, 2, 7));
+        inserted.add(record(5, 3, 1));
+        inserted.add(record(6, 1, null));
+
+        ArrayList<Integer> groupIndices = new ArrayList<>(Arrays.asList(1));
+        ArrayList<Integer> targetIndices = new ArrayList<>(Arrays.asList(1, -1, 2));
+        ArrayList<QueryType> queryTypes = new ArrayList<>(Arrays.asList(QueryType.NORMAL, QueryType.COUNT, QueryType.SUM));
+        ArrayList<String> names = new ArrayList<>(Arrays.asList("g", "count", "sum_v"));
+        ArrayList<DataType> types = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            types.add(new DataType(DataTypeIdentifier.INT, -1));
+        }
+        MaterializedView view = new MaterializedView("v", names, types, "t", "", record -> !record.get(0).equals(2),
+                groupIndices, targetIndices, queryTypes);
+        view.build(baseRecords);
+        long version = view.getVersion();
+        for (DataRecord dataRecord : inserted) {
+            view.onInsert(dataRecord);
+        }
+        assertFalse(version == view.getVersion());
+
+        ArrayList<DataRecord> all = new ArrayList<>(baseRecords);
+        all.addAll(inserted);
+        all.remove(1);
+        HashAggregator expected = new HashAggregator(groupIndices, targetIndices, queryTypes);
+        expected.addAll(all);
+        assertEquals(expected.getResult(), view.getAllRecords());
+        assertFalse(view.insert(record(1, 1, 1)));
+    }
+
+    @Test
+    public void onDelete() throws Exception {
+        ArrayList<DataRecord> baseRecords = new ArrayList<>();
+        baseRecords.add(record(1, 1, 10));
+        baseRecords.add(record(2, 2, 5));
+        baseRecords.add(record(3, 1, 20));
+        baseRecords.add(record(4, 3, 7));
+        baseRecords.add(record(5, 1, null));
+        ArrayList<DataRecord> deleted = new ArrayList<>();
+        deleted.add(baseRecords.get(2));
+        deleted.add(baseRecords.get(3));
+        ArrayList<DataRecord> remaining = new ArrayList<>(baseRecords);
+        remaining.removeAll(deleted);
+
+        ArrayList<Integer> groupIndices = new ArrayList<>(Arrays.asList(1));
+        ArrayList<Integer> targetIndices = new ArrayList<>(Arrays.asList(1, -1, 2));
+        ArrayList<QueryType> queryTypes = new ArrayList<>(Arrays.asList(QueryType.NORMAL, QueryType.COUNT, QueryType.SUM));
+        ArrayList<DataType> types = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            types.add(new DataType(DataTypeIdentifier.INT, -1));
+        }
+        MaterializedView view = new MaterializedView("v", new ArrayList<>(Arrays.asList("g", "count", "sum_v")), types,
+                "t", "", null, groupIndices, targetIndices, queryTypes);
+        view.build(baseRecords);
+        assertTrue(view.onDelete(deleted));
+        HashAggregator expected = new HashAggregator(groupIndices, targetIndices, queryTypes);
+        expected.addAll(remaining);
+        assertEquals(expected.getResult(), view.getAllRecords());
+
+        // filter-project view removes one equal row per deleted record.
+        ArrayList<Integer> projectIndices = new ArrayList<>(Arrays.asList(1));
+        ArrayList<QueryType> normalTypes = new ArrayList<>(Arrays.asList(QueryType.NORMAL));
+        MaterializedView projection = new MaterializedView("p", new ArrayList<>(Arrays.asList("g")),
+                new ArrayList<>(types.subList(0, 1)), "t", "", null, null, projectIndices, normalTypes);
+        projection.build(baseRecords);
+        assertTrue(projection.onDelete(deleted));
+        assertEquals(Arrays.asList(record(2), record(1), record(1)), projection.getAllRecords());
+
+        ArrayList<QueryType> maxTypes = new ArrayList<>(Arrays.asList(QueryType.NORMAL, QueryType.COUNT, QueryType.MAX));
+        MaterializedView maxView = new MaterializedView("m", new ArrayList<>(Arrays.asList("g", "count", "max_v")), types,
+                "t", "", null, groupIndices, targetIndices, maxTypes);
+        maxView.build(baseRecords);
+        assertFalse(maxView.onDelete(deleted));
+        maxView.rebuild(remaining);
+        expected = new HashAggregator(groupIndices, targetIndices, maxTypes);
+        expected.addAll(remaining);
+        assertEquals(expected.getResult(), maxView.getAllRecords());
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.taffy128s.tlcdbms;
+
+import com.github.taffy128s.tlcdbms.sqlparsers.SQLParseResult;
+import com.github.taffy128s.tlcdbms.sqlparsers.SQLParser;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * MultiIndexTable JUnit Test
+ */
+public class MultiIndexTableTest {
+    @Test
+    public void compositeIndexFirst() throws Exception {
+        SQLParseResult result = new SQLParser().parse("create table t (a int, b int, c int, key (a, b), key (c));");
+        assertTrue(result.getAttributeIndices().get(0).isComposite());
+        MultiIndexTable table = new MultiIndexTable(result.getTablename(), result.getAttributeNames(), result.getAttributeTypes(),
+                result.getAttributeIndices(), result.getPrimaryKeyIndex(), -1);
+        table.mDiskModifiable = false;
+        ArrayList<DataRecord> dataRecords = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(i % 4);
+            record.append(i);
+            record.append(i % 5);
+            dataRecords.add(record);
+        }
+        assertTrue(table.insertBatch(new ArrayList<>(dataRecords)));
+        assertEquals(dataRecords, table.getAllRecords());
+        assertEquals(4, table.queryEqual(2, 3).getRecordCount());
+        File file = File.createTempFile("multiindex", ".tlctable");
+        try {
+            assertTrue(table.writeToDisk(file.getPath()));
+            MultiIndexTable restored = new MultiIndexTable();
+            assertTrue(restored.restoreFromDisk(file.getPath()));
+            assertEquals(dataRecords, restored.getAllRecords());
+            assertEquals(4, restored.queryEqual(2, 3).getRecordCount());
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * RecordExporter JUnit Test
+ */
+public class RecordExporterTest {
+    @Test
+    public void writeCsv() throws Exception {
+        ArrayList<String> attributeNames = new ArrayList<>();
+        ArrayList<DataType> attributeTypes = new ArrayList<>();
+        attributeNames.add("id");
+        attributeNames.add("name");
+        attributeTypes.add(new DataType(DataTypeIdentifier.INT, -1));
+        attributeTypes.add(new DataType(DataTypeIdentifier.VARCHAR, 20));
+        ArrayList<DataRecord> records = new ArrayList<>();
+        String[] names = {"'plain'", "'a,\"b\"'", "''", "'NULL'", "'\\N'", null, "'\u00e9t\u00e9'"};
+        for (int i = 0; i < names.length; ++i) {
+            DataRecord record = new DataRecord();
+            record.append((i == 1) ? null : i - 3);
+            record.append(names[i]);
+            records.add(record);
+        }
+        File file = File.createTempFile("exporter", ".csv");
+        file.deleteOnExit();
+        RecordExporter exporter = new RecordExporter(file.getPath(), ExportFormat.CSV);
+        assertFalse(exporter.open(attributeNames, attributeTypes));
+        assertTrue(file.delete());
+        assertTrue(exporter.open(attributeNames, attributeTypes));
+        for (DataRecord record : records) {
+            assertTrue(exporter.write(record, null));
+        }
+        assertTrue(exporter.close());
+        assertEquals(names.length, exporter.getRecordCount());
+        CsvParser parser = new CsvParser(attributeNames, attributeTypes, ',');
+        assertTrue(parser.open(file.getPath()));
+        assertEquals(records, parser.readBatch());
+        parser.close();
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * RecordLog JUnit Test
+ */
+public class RecordLogTest {
+    private static DataRecord record(int value, long version) {
+        DataRecord record = new DataRecord();
+        record.append(value);
+        record.setBeginVersion(version);
+        return record;
+    }
+
+    @Test
+    public void read() throws Exception {
+        RecordLog log = new RecordLog();
+        ArrayList<DataRecord> records = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            records.add(record(i, 1));
+        }
+        log.append(records, 1);
+        DataRecord updated = record(10, 2);
+        log.markDeleted(records.subList(0, 3), 2);
+        log.append(Collections.singletonList(updated), 2);
+        assertEquals(2, log.getLastWriteVersion());
+        assertTrue(log.read(0).isEmpty());
+        assertEquals(records, log.read(1));
+        ArrayList<DataRecord> expected = new ArrayList<>();
+        expected.add(records.get(3));
+        expected.add(updated);
+        assertEquals(expected, log.read(2));
+        // deleted records are kept while a snapshot at version 1 is open.
+        log.purge(1);
+        assertEquals(5, log.size());
+        assertEquals(records, log.read(1));
+        log.purge(2);
+        assertEquals(2, log.size());
+        assertEquals(expected, log.read(2));
+    }
+
+    @Test
+    public void readWhileAppending() throws Exception {
+        RecordLog log = new RecordLog();
+        AtomicLong committed = new AtomicLong(0);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 100000; ++i) {
+                log.append(Collections.singletonList(record(i, i + 1)), i + 1);
+                committed.set(i + 1);
+            }
+        });
+        writer.start();
+        while (committed.get() < 100000) {
+            int snapshot = (int) committed.get();
+            List<DataRecord> records = log.read(snapshot);
+            assertEquals(snapshot, records.size());
+            for (int i = 0; i < records.size(); ++i) {
+                assertEquals(i, records.get(i).get(0));
+            }
+        }
+        writer.join();
+        assertEquals(100000, log.read(100000).size());
+    }
+}
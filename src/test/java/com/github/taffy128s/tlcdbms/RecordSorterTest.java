@@ -0,0 +1,41 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * RecordSorter JUnit Test
+ */
+public class RecordSorterTest {
+    @After
+    public void tearDown() throws Exception {
+        ParallelScanner.setParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Test
+    public void sort() throws Exception {
+        Random random = new Random();
+        ArrayList<DataRecord> records = new ArrayList<>();
+        for (int i = 0; i < RecordSorter.MIN_PARALLEL_SIZE * 5; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(random.nextInt(20) == 0 ? null : random.nextInt(1000));
+            record.append(i);
+            records.add(record);
+        }
+        ArrayList<DataRecord> origin = new ArrayList<>(records);
+        Comparator<DataRecord> comparator = (o1, o2) -> DataRecord.compare(o1, o2, 0);
+        ArrayList<DataRecord> expected = new ArrayList<>(records);
+        expected.sort(comparator);
+        for (int parallelism : new int[] {1, 3, 8}) {
+            ParallelScanner.setParallelism(parallelism);
+            assertEquals(expected, RecordSorter.sort(records, comparator));
+        }
+        assertEquals(origin, records);
+    }
+}
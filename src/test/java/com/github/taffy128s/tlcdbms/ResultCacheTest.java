@@ -0,0 +1,74 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * ResultCache JUnit Test
+ */
+public class ResultCacheTest {
+    private HashMap<String, Table> tables;
+    private ArrayList<String> attributeNames;
+    private ArrayList<DataType> attributeTypes;
+    private ArrayList<DataRecord> records;
+
+    @Before
+    public void setUp() throws Exception {
+        attributeNames = new ArrayList<>();
+        attributeTypes = new ArrayList<>();
+        attributeNames.add("id");
+        attributeTypes.add(new DataType(DataTypeIdentifier.INT, -1));
+        tables = new HashMap<>();
+        tables.put("t", new ArrayListTable("t", attributeNames, attributeTypes, -1, -1));
+        records = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(i);
+            records.add(record);
+        }
+    }
+
+    private HashMap<String, Long> versions() {
+        HashMap<String, Long> versions = new HashMap<>();
+        versions.put("t", tables.get("t").getVersion());
+        return versions;
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        ResultCache cache = new ResultCache();
+        cache.put("q", versions(), attributeNames, attributeTypes, records);
+        assertNull(cache.get("q", tables, new ArrayList<>(), new ArrayList<>()));
+        cache.setCapacity(1 << 20);
+        cache.put("q", versions(), attributeNames, attributeTypes, records);
+        ArrayList<String> names = new ArrayList<>();
+        assertEquals(records, cache.get("q", tables, names, new ArrayList<>()));
+        assertEquals(attributeNames, names);
+        tables.get("t").touch();
+        assertNull(cache.get("q", tables, new ArrayList<>(), new ArrayList<>()));
+        assertEquals(0, cache.getSize());
+        cache.put("q", versions(), attributeNames, attributeTypes, records);
+        tables.remove("t");
+        assertNull(cache.get("q", tables, new ArrayList<>(), new ArrayList<>()));
+    }
+
+    @Test
+    public void evict() throws Exception {
+        ResultCache cache = new ResultCache();
+        long size = ResultCache.estimateSize("q0", attributeNames, records);
+        cache.setCapacity(size * 2);
+        cache.put("q0", versions(), attributeNames, attributeTypes, records);
+        cache.put("q1", versions(), attributeNames, attributeTypes, records);
+        assertNotNull(cache.get("q0", tables, new ArrayList<>(), new ArrayList<>()));
+        cache.put("q2", versions(), attributeNames, attributeTypes, records);
+        assertEquals(2, cache.getEntryCount());
+        assertNull(cache.get("q1", tables, new ArrayList<>(), new ArrayList<>()));
+        assertNotNull(cache.get("q0", tables, new ArrayList<>(), new ArrayList<>()));
+        assertTrue(cache.getSize() <= size * 2);
+    }
+}
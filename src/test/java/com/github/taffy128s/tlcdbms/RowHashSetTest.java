@@ -0,0 +1,58 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * RowHashSet JUnit Test
+ */
+public class RowHashSetTest {
+    @Test
+    public void add() throws Exception {
+        Random random = new Random(7);
+        RowHashSet rowHashSet = new RowHashSet();
+        HashSet<DataRecord> expected = new HashSet<>();
+        for (int i = 0; i < 20000; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(random.nextInt(10) == 0 ? null : random.nextInt(100));
+            record.append(random.nextInt(10) == 0 ? null : "'" + random.nextInt(100) + "'");
+            assertEquals(expected.add(record), rowHashSet.add(record));
+        }
+        assertEquals(expected.size(), rowHashSet.size());
+        for (DataRecord record : expected) {
+            assertTrue(rowHashSet.contains(record));
+        }
+        DataRecord record = new DataRecord();
+        record.append(1000);
+        record.append(null);
+        assertFalse(rowHashSet.contains(record));
+    }
+
+    @Test
+    public void remove() throws Exception {
+        Random random = new Random(7);
+        RowHashSet rowHashSet = new RowHashSet();
+        HashSet<DataRecord> expected = new HashSet<>();
+        for (int i = 0; i < 50000; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(random.nextInt(300));
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(record), rowHashSet.add(record));
+            } else {
+                DataRecord removed = rowHashSet.remove(record);
+                assertEquals(expected.remove(record), removed != null);
+                assertTrue(removed == null || removed.equals(record));
+            }
+        }
+        assertEquals(expected.size(), rowHashSet.size());
+        for (int i = 0; i < 300; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(i);
+            assertEquals(expected.contains(record), rowHashSet.contains(record));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * SessionPrintStream JUnit Test
+ */
+public class SessionPrintStreamTest {
+    @Test
+    public void setTarget() throws Exception {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        Thread thread = new Thread(() -> {
+            SessionPrintStream.setTarget(new PrintStream(second, true));
+            System.out.println("second");
+            System.out.printf("%d%n", 2);
+            SessionPrintStream.setTarget(null);
+        });
+        SessionPrintStream.setTarget(new PrintStream(first, true));
+        try {
+            System.out.print("first");
+            thread.start();
+            thread.join();
+            System.out.println();
+            assertTrue(SessionPrintStream.getTarget() != null);
+        } finally {
+            SessionPrintStream.setTarget(null);
+        }
+        assertNull(SessionPrintStream.getTarget());
+        String separator = System.lineSeparator();
+        assertEquals("first" + separator, first.toString());
+        assertEquals("second" + separator + "2" + separator, second.toString());
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * SnapshotTable JUnit Test
+ */
+public class SnapshotTableTest {
+    private MultiIndexTable table;
+    private ArrayList<DataRecord> dataRecords;
+
+    private static DataRecord record(int a, int b) {
+        DataRecord record = new DataRecord();
+        record.append(a);
+        record.append(b);
+        return record;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        ArrayList<String> attributeNames = new ArrayList<>(Arrays.asList("a", "b"));
+        ArrayList<DataType> attributeTypes = new ArrayList<>(Arrays.asList(
+                new DataType(DataTypeIdentifier.INT, -1), new DataType(DataTypeIdentifier.INT, -1)));
+        ArrayList<TableStructure> attributeIndices = new ArrayList<>(Arrays.asList(
+                new TableStructure(0, TableStructType.BPLUSTREE), new TableStructure(1, TableStructType.HASH)));
+        table = new MultiIndexTable("t", attributeNames, attributeTypes, attributeIndices, 0, 0);
+        table.mDiskModifiable = false;
+        dataRecords = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            dataRecords.add(record(i, i % 3));
+        }
+        table.insertBatch(new ArrayList<>(dataRecords));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+    }
+
+    /**
+     * Check a snapshot still reads the 10 records inserted in setUp().
+     */
+    private void checkInitialState(Table snapshotTable) {
+        assertEquals(10, snapshotTable.getRecordCount());
+        assertEquals(dataRecords, snapshotTable.getAllRecords());
+        assertEquals(1, snapshotTable.queryEqual(0, 1).getRecordCount());
+        assertEquals(0, snapshotTable.queryEqual(0, 50).getRecordCount());
+        assertEquals(4, snapshotTable.queryEqual(1, 0).getRecordCount());
+        assertEquals(5, snapshotTable.queryRange(0, 0, 5).getRecordCount());
+        assertEquals(0, snapshotTable.getMinKey(0));
+        assertEquals(9, snapshotTable.getMaxKey(0));
+        assertEquals(Arrays.asList(dataRecords.get(9), dataRecords.get(8)),
+                snapshotTable.getTopRecords(0, SortingType.DESCENDING, 2));
+    }
+
+    @Test
+    public void readAfterWrites() throws Exception {
+        long snapshot = VersionClock.openSnapshot();
+        try {
+            Table snapshotTable = table.generateSnapshotTable("t", snapshot);
+            // unchanged table is read by indices.
+            assertEquals(4, snapshotTable.countQuery(1, 0, BinaryOperator.EQUAL));
+            assertEquals(10, snapshotTable.getNonNullCount(0));
+            assertTrue(snapshotTable.hasOrderedIndex(0));
+            checkInitialState(snapshotTable);
+
+            table.insert(record(100, 1));
+            table.deleteAll(new ArrayList<>(dataRecords.subList(0, 3)));
+            table.update(new ArrayList<>(dataRecords.subList(5, 6)), new ArrayList<>(Arrays.asList(record(50, 2))));
+            assertEquals(8, table.getRecordCount());
+            assertEquals(0, table.queryEqual(0, 1).getRecordCount());
+            assertEquals(1, table.queryEqual(0, 50).getRecordCount());
+
+            // changed table is read from snapshot, index-only answers are unknown.
+            snapshotTable = table.generateSnapshotTable("t", snapshot);
+            checkInitialState(snapshotTable);
+            assertEquals(-1, snapshotTable.countQuery(1, 0, BinaryOperator.EQUAL));
+            assertEquals(-1, snapshotTable.getNonNullCount(0));
+            assertNull(snapshotTable.queryKeys(0, 5, BinaryOperator.LESS_THAN));
+            assertNull(snapshotTable.queryConjunction(new ArrayList<>()));
+            assertFalse(snapshotTable.hasOrderedIndex(0));
+        } finally {
+            VersionClock.closeSnapshot(snapshot);
+        }
+    }
+
+    @Test
+    public void readWhileLatched() throws Exception {
+        long snapshot = VersionClock.openSnapshot();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            table.getLatch().writeLock().lock();
+            try {
+                locked.countDown();
+                done.await();
+            } catch (InterruptedException e) {
+                // end test.
+            } finally {
+                table.getLatch().writeLock().unlock();
+            }
+        });
+        try {
+            writer.start();
+            locked.await();
+            // indices may be changing, so the snapshot is scanned without waiting.
+            Table snapshotTable = table.generateSnapshotTable("t", snapshot);
+            checkInitialState(snapshotTable);
+            assertEquals(-1, snapshotTable.countQuery(1, 0, BinaryOperator.EQUAL));
+            assertFalse(snapshotTable.hasOrderedIndex(0));
+        } finally {
+            done.countDown();
+            writer.join();
+            VersionClock.closeSnapshot(snapshot);
+        }
+        assertEquals(4, table.generateSnapshotTable("t", snapshot).countQuery(1, 0, BinaryOperator.EQUAL));
+    }
+}
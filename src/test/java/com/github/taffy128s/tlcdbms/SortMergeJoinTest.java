@@ -0,0 +1,87 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * SortMergeJoin JUnit Test
+ */
+public class SortMergeJoinTest {
+    private Table first;
+    private Table second;
+
+    @Before
+    public void setUp() throws Exception {
+        ArrayList<String> attributeNames = new ArrayList<>();
+        ArrayList<DataType> attributeTypes = new ArrayList<>();
+        attributeNames.add("id");
+        attributeNames.add("name");
+        attributeTypes.add(new DataType(DataTypeIdentifier.INT, -1));
+        attributeTypes.add(new DataType(DataTypeIdentifier.VARCHAR, 40));
+        first = new SetTable("first", attributeNames, attributeTypes, -1, -1);
+        second = new BPlusTreeTable("second", attributeNames, attributeTypes, -1, 0);
+        for (int i = 0; i < 60; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(i % 13 == 0 ? null : (i * 7) % 23);
+            record.append("'f" + i + "'");
+            first.insert(record);
+        }
+        for (int i = 0; i < 40; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(i % 11 == 0 ? null : (i * 5) % 29);
+            record.append("'s" + i + "'");
+            second.insert(record);
+        }
+    }
+
+    private HashMap<DataRecord, Integer> nestedLoopJoin(BinaryOperator operator) {
+        HashMap<DataRecord, Integer> expected = new HashMap<>();
+        for (DataRecord a : first.getAllRecords()) {
+            for (DataRecord b : second.getAllRecords()) {
+                if (Condition.calculateResult(a.get(0), b.get(0), operator)) {
+                    expected.merge(HashJoin.concatenate(a, b), 1, Integer::sum);
+                }
+            }
+        }
+        return expected;
+    }
+
+    private HashMap<DataRecord, Integer> count(ArrayList<DataRecord> records) {
+        HashMap<DataRecord, Integer> counts = new HashMap<>();
+        for (DataRecord record : records) {
+            counts.merge(record, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    public void join() throws Exception {
+        BinaryOperator[] operators = {
+                BinaryOperator.EQUAL, BinaryOperator.LESS_THAN, BinaryOperator.LESS_EQUAL,
+                BinaryOperator.GREATER_THAN, BinaryOperator.GREATER_EQUAL
+        };
+        for (BinaryOperator operator : operators) {
+            SortMergeJoin sortMergeJoin = new SortMergeJoin(first, second, 0, 0, operator);
+            assertEquals(nestedLoopJoin(operator), count(sortMergeJoin.join()));
+        }
+    }
+
+    @Test
+    public void getAllRecordsInKeyOrder() throws Exception {
+        assertTrue(second.hasOrderedIndex(0));
+        assertFalse(first.hasOrderedIndex(0));
+        ArrayList<DataRecord> ascending = second.getAllRecords(0, SortingType.ASCENDING);
+        for (int i = 1; i < ascending.size(); ++i) {
+            assertTrue(DataRecord.compare(ascending.get(i - 1), ascending.get(i), 0) <= 0);
+        }
+        ArrayList<DataRecord> descending = second.getAllRecords(0, SortingType.DESCENDING);
+        for (int i = 1; i < descending.size(); ++i) {
+            assertTrue(DataRecord.compare(descending.get(i - 1), descending.get(i), 0) >= 0);
+        }
+    }
+}
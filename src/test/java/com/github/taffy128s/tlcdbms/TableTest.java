@@ -58,6 +58,35 @@ public class TableTest {
         assertTrue(pTable.insert(dataRecords.get(0)));
     }
 
+    @Test
+    public void checkInputDataBatch() throws Exception {
+        DataRecord newRecord = new DataRecord();
+        newRecord.append("QQ");
+        newRecord.append("zxc");
+        newRecord.append(30);
+        newRecord.append("SS");
+        DataRecord samePrimaryKey = new DataRecord();
+        samePrimaryKey.append("QQ");
+        samePrimaryKey.append("asd");
+        samePrimaryKey.append(31);
+        samePrimaryKey.append("BS");
+        ArrayList<DataRecord> batch = new ArrayList<>();
+        batch.add(dataRecords.get(0));
+        batch.add(newRecord);
+        batch.add(newRecord);
+        batch.add(samePrimaryKey);
+        ArrayList<InsertionResult> results = table.checkInputData(batch);
+        assertEquals(InsertionResult.DUPLICATED_DATA_TUPLE, results.get(0));
+        assertEquals(InsertionResult.SUCCESS, results.get(1));
+        assertEquals(InsertionResult.DUPLICATED_DATA_TUPLE, results.get(2));
+        assertEquals(InsertionResult.SUCCESS, results.get(3));
+        results = pTable.checkInputData(batch);
+        assertEquals(InsertionResult.SUCCESS, results.get(0));
+        assertEquals(InsertionResult.SUCCESS, results.get(1));
+        assertEquals(InsertionResult.DUPLICATED_DATA_TUPLE, results.get(2));
+        assertEquals(InsertionResult.DUPLICATED_PRIMARY_KEY, results.get(3));
+    }
+
     @Test
     public void setPrimaryKey() throws Exception {
         // nothing
@@ -83,6 +112,21 @@ public class TableTest {
         // nothing
     }
 
+    @Test
+    public void getAttributeIndex() throws Exception {
+        assertEquals(2, table.getAttributeIndex("Age"));
+        assertEquals(-1, table.getAttributeIndex("age"));
+        ArrayList<String> attributeNames = new ArrayList<>();
+        attributeNames.add("a");
+        attributeNames.add("b");
+        attributeNames.add("a");
+        table.setAttributeNames(attributeNames);
+        assertEquals(0, table.getAttributeIndex("a"));
+        assertEquals(1, table.getAttributeIndex("b"));
+        attributeNames.add("c");
+        assertEquals(3, table.getAttributeIndex("c"));
+    }
+
     @Test
     public void setAttributeTypes() throws Exception {
         // nothing
@@ -97,4 +141,42 @@ public class TableTest {
     public void disk() throws Exception {
         // nothing
     }
+
+    @Test
+    public void countQuery() throws Exception {
+        Table[] indexed = {
+                new HashTable("table3", table.getAttributeNames(), table.getAttributeTypes(), -1, 2),
+                new BPlusTreeTable("table4", table.getAttributeNames(), table.getAttributeTypes(), -1, 2)
+        };
+        Object[] ages = {50, 20, null, 20, 35, 50, 20};
+        for (Table index : indexed) {
+            for (int i = 0; i < ages.length; ++i) {
+                DataRecord record = new DataRecord();
+                record.append("N" + i);
+                record.append("x");
+                record.append(ages[i]);
+                record.append("D");
+                index.insert(record);
+            }
+            assertEquals(-1, index.countQuery(0, "N1", BinaryOperator.EQUAL));
+            for (BinaryOperator operator : BinaryOperator.values()) {
+                if (operator == BinaryOperator.AND || operator == BinaryOperator.OR) {
+                    continue;
+                }
+                for (Object key : new Object[] {20, 35, 40, null}) {
+                    Condition condition = new Condition(null, "table", "Age", key == null ? "null" : key.toString(), null, null, operator);
+                    ArrayList<DataRecord> expected = index.query(condition).getAllRecords();
+                    assertEquals(expected.size(), index.countQuery(2, key, operator));
+                    ArrayList<Object> keys = index.queryKeys(2, key, operator);
+                    if (keys != null) {
+                        ArrayList<Object> expectedKeys = new ArrayList<>();
+                        for (DataRecord record : expected) {
+                            expectedKeys.add(record.get(2));
+                        }
+                        assertEquals(expectedKeys, keys);
+                    }
+                }
+            }
+        }
+    }
 }
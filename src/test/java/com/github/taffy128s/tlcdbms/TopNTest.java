@@ -0,0 +1,33 @@
+package com.github.taffy128s.tlcdbms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * TopN JUnit Test
+ */
+public class TopNTest {
+    @Test
+    public void select() throws Exception {
+        Random random = new Random();
+        ArrayList<DataRecord> records = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            DataRecord record = new DataRecord();
+            record.append(random.nextInt(10) == 0 ? null : random.nextInt(50));
+            record.append(i);
+            records.add(record);
+        }
+        Comparator<DataRecord> comparator = (o1, o2) -> -DataRecord.compare(o1, o2, 0);
+        for (int limit : new int[] {0, 1, 20, 999, 1000, 5000}) {
+            ArrayList<DataRecord> expected = new ArrayList<>(records);
+            expected.sort(comparator);
+            expected.subList(Math.min(limit, expected.size()), expected.size()).clear();
+            assertEquals(expected, TopN.select(records, comparator, limit));
+        }
+    }
+}
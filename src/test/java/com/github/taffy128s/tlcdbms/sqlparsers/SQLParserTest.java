@@ -1,18 +1,25 @@
 package com.github.taffy128s.tlcdbms.sqlparsers;
 
+import com.github.taffy128s.tlcdbms.CommandType;
+import com.github.taffy128s.tlcdbms.Condition;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
 
 /**
  * SQLParser JUnit Test
  */
 public class SQLParserTest {
+    private SQLParser parser;
+
     @Before
     public void setUp() throws Exception {
-
+        parser = new SQLParser();
     }
 
     @After
@@ -22,6 +29,35 @@ public class SQLParserTest {
 
     @Test
     public void parse() throws Exception {
+        SQLParseResult first = parser.parse("select * from a where a.x = 1;");
+        assertEquals(CommandType.SELECT, first.getCommandType());
+        first.getConditions().get(0).setLeftTableName("changed");
+        SQLParseResult second = parser.parse("select  *  from a\n where a.x=1 ;");
+        assertFalse(first == second);
+        assertEquals("a", second.getConditions().get(0).getLeftTableName());
+    }
 
+    @Test
+    public void prepare() throws Exception {
+        SQLParseResult result = parser.parse("prepare q from select * from a where a.x > ? and a.y = ?;");
+        assertEquals(CommandType.PREPARE, result.getCommandType());
+        assertEquals("q", result.getStatementName());
+        SQLParseResult statement = result.getStatement();
+        assertEquals(2, statement.getParameterCount());
+        SQLParseResult bound = statement.bind(new ArrayList<>(Arrays.asList("5", "'abc'")));
+        ArrayList<String> constants = new ArrayList<>();
+        for (Condition condition : bound.getConditions()) {
+            if (condition.getRightConstant() != null) {
+                constants.add(condition.getRightConstant());
+            }
+        }
+        assertEquals(Arrays.asList("5", "'abc'"), constants);
+        assertNull(statement.bind(new ArrayList<>(Arrays.asList("'abc'", "5"))));
+        assertNull(statement.bind(new ArrayList<>(Arrays.asList("5"))));
+        assertNull(parser.parse("select * from a where a.x > ?;"));
+
+        SQLParseResult execute = parser.parse("execute q using 1, null;");
+        assertEquals(CommandType.EXECUTE, execute.getCommandType());
+        assertEquals(Arrays.asList("1", "null"), execute.getParameters());
     }
 }